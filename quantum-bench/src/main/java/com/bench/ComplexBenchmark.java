@@ -0,0 +1,74 @@
+package com.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.core.Complex;
+
+/**
+ * Cost of the {@link Complex} value class. Every operation returns a new object, so the allocation rate from the gc
+ * profiler is as interesting as the time (escape analysis should remove most of it in a loop like {@link #multiplyChain()}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComplexBenchmark {
+    private Complex a;
+    private Complex b;
+
+    @Setup
+    public void setup() {
+        a = new Complex(0.6, -0.8);
+        b = new Complex(1.5, 0.25);
+    }
+
+    @Benchmark
+    public Complex add() {
+        return a.add(b);
+    }
+
+    @Benchmark
+    public Complex multiply() {
+        return a.multiply(b);
+    }
+
+    @Benchmark
+    public Complex divide() {
+        return a.divide(b);
+    }
+
+    @Benchmark
+    public double magnitude() {
+        return a.magnitude();
+    }
+
+    @Benchmark
+    public String format() {
+        return a.toString();
+    }
+
+    /**
+     * Sixteen dependent multiplications, the pattern of a small matrix product.
+     */
+    @Benchmark
+    public Complex multiplyChain() {
+        Complex product = a;
+        for (int i = 0; i < 16; i++) {
+            product = product.multiply(b).add(a);
+        }
+        return product;
+    }
+}
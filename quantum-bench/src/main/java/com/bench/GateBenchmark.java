@@ -0,0 +1,127 @@
+package com.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.core.Gates;
+import com.core.Complex;
+import com.core.QuantumComputer;
+
+/**
+ * Throughput of every gate of {@link QuantumComputer} for different register sizes and target qubits.
+ * <p>
+ * The target position matters because low qubits pair up neighbouring amplitudes (and use the in-register vector
+ * shuffles) while high qubits pair up amplitudes half the state apart. Each call is one full pass over the state, so the
+ * score times 2^n * 16 bytes gives the memory bandwidth the gate reaches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "--enable-native-access=ALL-UNNAMED"})
+public class GateBenchmark {
+    @Param({"10", "16", "22"})
+    public int numQubits;
+
+    /**
+     * low is qubit 0, middle is qubit n/2 and high is qubit n-1.
+     */
+    @Param({"low", "middle", "high"})
+    public String target;
+
+    @Param({"true", "false"})
+    public boolean vector;
+
+    private QuantumComputer quantumComputer;
+    private int qubit;
+    private int other;
+    private Complex[][] general;
+
+    @Setup
+    public void setup() {
+        quantumComputer = new QuantumComputer("bench", numQubits, 1L);
+        quantumComputer.setVectorEnabled(vector);
+        qubit = switch (target) {
+            case "low" -> 0;
+            case "middle" -> numQubits / 2;
+            default -> numQubits - 1;
+        };
+        // the CNOT partner is a qubit on the other side of the register
+        other = qubit == 0 ? numQubits - 1 : 0;
+        for (int q = 0; q < numQubits; q++) {
+            quantumComputer.applyHadamard(q);
+            quantumComputer.applyRY(q, 0.1 * q);
+        }
+        general = Gates.rx(0.3);
+        general[0][1] = general[0][1].multiply(new Complex(0.6, 0.8));
+        general[1][0] = general[1][0].multiply(new Complex(0.6, -0.8));
+    }
+
+    @Benchmark
+    public void hadamard() {
+        quantumComputer.applyHadamard(qubit);
+    }
+
+    @Benchmark
+    public void pauliX() {
+        quantumComputer.applyPauliX(qubit);
+    }
+
+    @Benchmark
+    public void pauliY() {
+        quantumComputer.applyPauliY(qubit);
+    }
+
+    @Benchmark
+    public void pauliZ() {
+        quantumComputer.applyPauliZ(qubit);
+    }
+
+    @Benchmark
+    public void phaseT() {
+        quantumComputer.applyT(qubit);
+    }
+
+    @Benchmark
+    public void rotationX() {
+        quantumComputer.applyRX(qubit, 0.25);
+    }
+
+    @Benchmark
+    public void rotationY() {
+        quantumComputer.applyRY(qubit, 0.25);
+    }
+
+    @Benchmark
+    public void generalUnitary() {
+        quantumComputer.applySingleQubitGate(qubit, general);
+    }
+
+    @Benchmark
+    public void cnot() {
+        quantumComputer.applyCNOT(other, qubit);
+    }
+
+    /**
+     * Measuring collapses the qubit, so each call also puts it back into superposition with a Hadamard.
+     * Subtract the {@link #hadamard()} score to get the measurement alone.
+     */
+    @Benchmark
+    public int measureAndRestore() {
+        int result = quantumComputer.measure(qubit);
+        quantumComputer.applyHadamard(qubit);
+        return result;
+    }
+}
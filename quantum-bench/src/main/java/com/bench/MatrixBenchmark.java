@@ -0,0 +1,63 @@
+package com.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.core.linalg.ComplexMatrix;
+
+/**
+ * Dense {@link ComplexMatrix} operations on random matrices, a 1024 x 1024 product is a 10 qubit unitary.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MatrixBenchmark {
+    @Param({"64", "256", "1024"})
+    public int size;
+
+    private ComplexMatrix a;
+    private ComplexMatrix b;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        a = new ComplexMatrix(size, size);
+        b = new ComplexMatrix(size, size);
+        for (int r = 0; r < size; r++) {
+            for (int c = 0; c < size; c++) {
+                a.set(r, c, random.nextGaussian(), random.nextGaussian());
+                b.set(r, c, random.nextGaussian(), random.nextGaussian());
+            }
+        }
+    }
+
+    @Benchmark
+    public ComplexMatrix multiply() {
+        return a.multiply(b);
+    }
+
+    @Benchmark
+    public ComplexMatrix conjugateTranspose() {
+        return a.conjugateTranspose();
+    }
+
+    @Benchmark
+    public ComplexMatrix inverse() {
+        return a.inverse();
+    }
+}
@@ -0,0 +1,64 @@
+package com.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.core.Complex;
+import com.core.QuantumComputer;
+import com.core.QuantumNetwork;
+
+/**
+ * Sending and receiving messages on a {@link QuantumNetwork}.
+ * <p>
+ * The log lines of the network are turned off, they would measure the console instead of the network.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NetworkBenchmark {
+    /**
+     * The size of the quantum state that is sent.
+     */
+    @Param({"2", "10"})
+    public int numQubits;
+
+    private QuantumNetwork network;
+    private Complex[] state;
+
+    @Setup
+    public void setup() {
+        network = new QuantumNetwork();
+        network.setVerbose(false);
+        network.registerQuantumComputer(new QuantumComputer("alice", numQubits));
+        network.registerQuantumComputer(new QuantumComputer("bob", numQubits));
+        state = new QuantumComputer("payload", numQubits).getState();
+    }
+
+    @Benchmark
+    public Object sendAndReceiveQuantum() {
+        network.sendQuantumState("alice", "bob", state);
+        return network.receive("bob");
+    }
+
+    @Benchmark
+    public Object sendAndReceiveClassical() {
+        network.sendClassicalMessage("alice", "bob", "0110");
+        Object message = network.receive("bob");
+        network.clearMessages("bob");
+        return message;
+    }
+}
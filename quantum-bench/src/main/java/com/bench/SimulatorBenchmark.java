@@ -0,0 +1,90 @@
+package com.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.core.LinkModel;
+import com.core.NetworkSimulator;
+import com.core.QuantumComputer;
+import com.core.QuantumNetwork;
+
+/**
+ * Events per second of the {@link NetworkSimulator}.
+ * <p>
+ * The {@code hold} workload is the classic hold model for event queues: a fixed number of pending events, where every
+ * event that runs schedules one new event a random time ahead. The {@code messages} workload bounces classical messages
+ * between two nodes over a link with jitter, so every event is a message arrival that sends the next message.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SimulatorBenchmark {
+    private static final int EVENTS = 100_000;
+
+    /**
+     * The number of events waiting at any time.
+     */
+    @Param({"1000", "100000"})
+    public int pending;
+
+    @Param({"hold", "messages"})
+    public String workload;
+
+    private NetworkSimulator simulator;
+    private Runnable reschedule;
+    private long seed = 1;
+
+    @Setup
+    public void setup() {
+        QuantumNetwork network = new QuantumNetwork();
+        network.setVerbose(false);
+        network.registerQuantumComputer(new QuantumComputer("a", 1));
+        network.registerQuantumComputer(new QuantumComputer("b", 1));
+        simulator = new NetworkSimulator(network, 1).connect("a", "b", new LinkModel(1_000_000).setJitter(1_000));
+        simulator.onMessage("a", msg -> simulator.sendClassicalMessage("a", "b", msg.classicalData));
+        simulator.onMessage("b", msg -> simulator.sendClassicalMessage("b", "a", msg.classicalData));
+        reschedule = () -> simulator.schedule(nextDelay(), reschedule);
+        for (int i = 0; i < pending; i++) {
+            if (workload.equals("hold")) {
+                simulator.schedule(nextDelay(), reschedule);
+            } else {
+                simulator.sendClassicalMessage("a", "b", "token");
+            }
+        }
+    }
+
+    /**
+     * An exponential delay with a mean of 1 ms, from a xorshift generator.
+     */
+    private long nextDelay() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        double uniform = (seed >>> 11) * 0x1.0p-53;
+        return (long) (-Math.log1p(-uniform) * 1_000_000);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(EVENTS)
+    public long run() {
+        for (int i = 0; i < EVENTS; i++) {
+            simulator.step();
+        }
+        return simulator.getTime();
+    }
+}
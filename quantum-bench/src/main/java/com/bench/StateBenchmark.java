@@ -0,0 +1,74 @@
+package com.bench;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.core.PauliString;
+import com.core.QuantumComputer;
+
+/**
+ * Reading the state out: rendering it as text, sampling it and taking expectation values.
+ * These run on a state where every amplitude is nonzero, the worst case for rendering.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector", "--enable-native-access=ALL-UNNAMED"})
+public class StateBenchmark {
+    @Param({"8", "12", "16"})
+    public int numQubits;
+
+    private QuantumComputer quantumComputer;
+    private PauliString observable;
+    private final Writer discard = Writer.nullWriter();
+
+    @Setup
+    public void setup() {
+        quantumComputer = new QuantumComputer("bench", numQubits, 1L);
+        for (int q = 0; q < numQubits; q++) {
+            quantumComputer.applyHadamard(q);
+            quantumComputer.applyRZ(q, 0.2 * q);
+        }
+        observable = PauliString.of("X".repeat(numQubits));
+    }
+
+    @Benchmark
+    public String stateString() {
+        return quantumComputer.getStateString();
+    }
+
+    @Benchmark
+    public long writeState() throws IOException {
+        return quantumComputer.writeState(discard);
+    }
+
+    @Benchmark
+    public int writeTopStates() throws IOException {
+        return quantumComputer.writeTopStates(discard, 32);
+    }
+
+    @Benchmark
+    public Object sample() {
+        return quantumComputer.sample(1000);
+    }
+
+    @Benchmark
+    public double expectation() {
+        return quantumComputer.expectation(observable);
+    }
+}
@@ -1,8 +1,18 @@
 package com.cli;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Scanner;
+import java.util.function.ObjIntConsumer;
 
 import com.core.QuantumComputer;
 import com.core.QuantumNetwork;
@@ -17,76 +27,246 @@ import com.core.QuantumNetwork;
 public class QuantumCLI {
     private final QuantumNetwork network;
     private final Map<String, QuantumComputer> quantumComputers;
-    private final Scanner scanner;
+    /**
+     * All output goes through this one buffered writer. The interactive loop flushes it after every command,
+     * scripts only when they end, so long command files do not pay for a flush per line.
+     */
+    private final PrintWriter out;
+    private boolean echo = true;
+    /**
+     * The number of commands that failed so far.
+     */
+    private int failures;
     private static final String PROMPT = "qit> ";
+    private static final int OUTPUT_BUFFER = 1 << 16;
+    /**
+     * Registers up to this size show every state by default, bigger ones only show the most likely states.
+     */
+    private static final int SHOW_ALL_QUBITS = 16;
+    private static final int SHOW_TOP_STATES = 32;
 
     /**
-     * Init the CLI
+     * Init the CLI, writing to standard output
      */
     public QuantumCLI(){
+        this(new OutputStreamWriter(System.out));
+    }
+
+    /**
+     * Init the CLI with a different output (for example to capture it).
+     * @param output Where all output is written
+     */
+    public QuantumCLI(Writer output){
         this.network = new QuantumNetwork();
+        // the network logs straight to System.out, the CLI reports registrations through out instead
+        this.network.setVerbose(false);
         this.quantumComputers = new HashMap<>();
-        this.scanner = new Scanner(System.in);
+        this.out = new PrintWriter(new BufferedWriter(output, OUTPUT_BUFFER), false);
     }
 
     /**
      * Main entry point.
+     * <p>
+     * With no arguments the interactive prompt starts. {@code --script <file>} runs the commands in a file
+     * ({@code -} for standard input) and {@code --batch} runs commands piped into standard input, both without the prompt.
+     * {@code --quiet} stops scripts from echoing each command before its output.
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
         QuantumCLI cli = new QuantumCLI();
-        if (args.length > 0 && args[0].equals("--demo")) {
-            // cli.runDemo();
+        String script = null;
+        boolean batch = false;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--demo" -> {
+                    // cli.runDemo();
+                    return;
+                }
+                case "--script" -> {
+                    if (i + 1 >= args.length) {
+                        System.err.println("Usage: --script <file>");
+                        System.exit(2);
+                    }
+                    script = args[++i];
+                }
+                case "--batch" -> batch = true;
+                case "--quiet" -> cli.setEcho(false);
+                default -> {
+                    System.err.println("Unknown option: " + args[i]);
+                    System.exit(2);
+                }
+            }
+        }
+
+        if (script != null && !script.equals("-")) {
+            try (BufferedReader reader = Files.newBufferedReader(Path.of(script))) {
+                System.exit(cli.runScript(reader) == 0 ? 0 : 1);
+            }
+        } else if (script != null || batch) {
+            System.exit(cli.runScript(new BufferedReader(new InputStreamReader(System.in))) == 0 ? 0 : 1);
         } else {
             cli.start();
         }
     }
 
+    /**
+     * Turn echoing of script commands on or off.
+     * @param echo True to print each command (after the prompt) before its output when running a script
+     */
+    public void setEcho(boolean echo) {
+        this.echo = echo;
+    }
+
+    /**
+     * Run the interactive prompt on standard input until the user quits.
+     */
     public void start(){
         printWelcome();
 
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
         boolean running = true;
+        int lineNumber = 0;
 
         while (running) {
-            System.out.print(PROMPT);
-            String input = scanner.nextLine().trim();
-
-            if (input.isEmpty()) {
-                continue;
+            out.print(PROMPT);
+            out.flush();
+            String input;
+            try {
+                input = reader.readLine();
+            } catch (IOException e) {
+                out.println("Error: " + e.getMessage());
+                break;
+            }
+            if (input == null) {
+                break;
             }
+            String[] tokens = tokenize(input);
+            lineNumber++;
+            if (tokens.length > 0) {
+                running = runCommand(tokens, lineNumber, false);
+            }
+        }
+        out.flush();
+    }
 
-            String[] tokens = input.split("\\s+");
-            String command = tokens[0].toLowerCase();
+    /**
+     * Run commands from a script without the prompt, until the script ends or runs 'quit'.
+     * Empty lines and lines starting with '#' are skipped. An error is reported with its line number and the script goes on.
+     * @param reader The commands, one per line
+     * @return The number of commands that failed
+     * @throws IOException If the script can not be read
+     */
+    public int runScript(BufferedReader reader) throws IOException {
+        int failuresBefore = failures;
+        int lineNumber = 0;
+        try {
+            for (String input = reader.readLine(); input != null; input = reader.readLine()) {
+                lineNumber++;
+                String[] tokens = tokenize(input);
+                if (tokens.length == 0 || tokens[0].startsWith("#")) {
+                    continue;
+                }
+                if (echo) {
+                    out.print(PROMPT);
+                    out.println(input.strip());
+                }
+                if (!runCommand(tokens, lineNumber, true)) {
+                    break;
+                }
+            }
+        } finally {
+            out.flush();
+        }
+        return failures - failuresBefore;
+    }
 
-            try {
-                switch (command) {
-                    case "help", "h" -> printHelp();
-                    case "create" -> handleCreate(tokens);
-                    case "list" -> handleList();
-                    case "show" -> handleShow(tokens);
-                    case "hadamard" -> handleHadamard(tokens);
-                    case "x" -> handlePauliX(tokens);
-                    case "z" -> handlePauliZ(tokens);
-                    case "cnot" -> handleCNOT(tokens);
-                    case "measure" -> handleMeasure(tokens);
-                    case "reset" -> handleReset(tokens);
-                    // case "teleport" -> handleTeleport(tokens);
-                    // case "entangle" -> handleEntangle(tokens);
-                    // case "demo" -> runDemoMode();
-                    case "quit", "q", "exit" -> {
-                        running = false;
-                        System.out.println("Goodbye!");
-                    }
-                    default -> {
-                        System.out.println("Unknown command: " + command);
-                        System.out.println("Type 'help' for available commands.");
-                    }
+    /**
+     * Split a command line into words at runs of whitespace, without going through a regular expression.
+     * @param line The line
+     * @return The words (empty for a blank line)
+     */
+    static String[] tokenize(String line) {
+        int count = 0;
+        int length = line.length();
+        for (int i = 0; i < length; ) {
+            while (i < length && line.charAt(i) <= ' ') {
+                i++;
+            }
+            if (i < length) {
+                count++;
+                while (i < length && line.charAt(i) > ' ') {
+                    i++;
                 }
-                
-            } catch (Exception e) {
-                System.out.println("Error: " + e.getMessage());
             }
+        }
+        String[] tokens = new String[count];
+        int token = 0;
+        for (int i = 0; i < length; ) {
+            while (i < length && line.charAt(i) <= ' ') {
+                i++;
+            }
+            int start = i;
+            while (i < length && line.charAt(i) > ' ') {
+                i++;
+            }
+            if (i > start) {
+                tokens[token++] = line.substring(start, i);
+            }
+        }
+        return tokens;
+    }
 
+    /**
+     * Run one command.
+     * Handlers report a bad command (wrong arguments, an unknown computer, a file that can not be read or written)
+     * by throwing, so it is printed as an error and counted as a failure.
+     * @param tokens The words of the command line
+     * @param lineNumber The line the command came from (used in error messages of scripts)
+     * @param script True when the command comes from a script
+     * @return False if the command was 'quit'
+     */
+    private boolean runCommand(String[] tokens, int lineNumber, boolean script) {
+        String command = tokens[0].toLowerCase();
+        try {
+            switch (command) {
+                case "help", "h" -> printHelp();
+                case "create" -> handleCreate(tokens);
+                case "list" -> handleList();
+                case "show" -> handleShow(tokens);
+                case "hadamard" -> handleHadamard(tokens);
+                case "x" -> handlePauliX(tokens);
+                case "z" -> handlePauliZ(tokens);
+                case "y" -> handleFixedGate(tokens, "Pauli-Y", QuantumComputer::applyPauliY);
+                case "s" -> handleFixedGate(tokens, "S", QuantumComputer::applyS);
+                case "t" -> handleFixedGate(tokens, "T", QuantumComputer::applyT);
+                case "sx" -> handleFixedGate(tokens, "SX", QuantumComputer::applySX);
+                case "rx" -> handleAngleGate(tokens, "RX", QuantumComputer::applyRX);
+                case "ry" -> handleAngleGate(tokens, "RY", QuantumComputer::applyRY);
+                case "rz" -> handleAngleGate(tokens, "RZ", QuantumComputer::applyRZ);
+                case "phase" -> handleAngleGate(tokens, "Phase", QuantumComputer::applyPhase);
+                case "cnot" -> handleCNOT(tokens);
+                case "measure" -> handleMeasure(tokens);
+                case "sample" -> handleSample(tokens);
+                case "reset" -> handleReset(tokens);
+                case "save" -> handleSave(tokens);
+                case "load" -> handleLoad(tokens);
+                // case "teleport" -> handleTeleport(tokens);
+                // case "entangle" -> handleEntangle(tokens);
+                // case "demo" -> runDemoMode();
+                case "quit", "q", "exit" -> {
+                    out.println("Goodbye!");
+                    return false;
+                }
+                default -> {
+                    failures++;
+                    out.println("Unknown command: " + command);
+                    out.println("Type 'help' for available commands.");
+                }
+            }
+        } catch (Exception e) {
+            failures++;
+            out.println(script ? "Error on line " + lineNumber + ": " + e.getMessage() : "Error: " + e.getMessage());
         }
+        return true;
     }
 
     /**
@@ -96,22 +276,20 @@ public class QuantumCLI {
      */
     private void handleCreate(String[] tokens) {
         if (tokens.length < 3) {
-            System.out.println("Usage: create <name> <num_qubits>");
-            return;
+            throw new IllegalArgumentException("Usage: create <name> <num_qubits>");
         }
 
         String name = tokens[1];
         int numQubits = Integer.parseInt(tokens[2]);
 
         if (quantumComputers.containsKey(name)) {
-            System.out.println("Computer '" + name + "' already exists.");
-            return;
+            throw new IllegalArgumentException("Computer '" + name + "' already exists.");
         }
 
         QuantumComputer quantumComputer = new QuantumComputer(name, numQubits);
         quantumComputers.put(name, quantumComputer);
         network.registerQuantumComputer(quantumComputer);
-        System.out.println("created quantum computer '" + name + "' with " + numQubits + " qubits.");
+        out.println("created quantum computer '" + name + "' with " + numQubits + " qubits.");
     }
 
     /**
@@ -121,36 +299,59 @@ public class QuantumCLI {
      */
     private void handleList() {
         if (quantumComputers.isEmpty()) {
-            System.out.println("No quantum computers created yet.");
+            out.println("No quantum computers created yet.");
             return;
         }
 
-        System.out.println("Quantum Computers:");
+        out.println("Quantum Computers:");
         for (QuantumComputer quantumComputer : quantumComputers.values()) {
-            System.out.println(" -" + quantumComputer.getName() + " (" + quantumComputer.getNumQubits() + " qubits)");
+            out.println(" -" + quantumComputer.getName() + " (" + quantumComputer.getNumQubits() + " qubits)");
         }
     }
 
     /**
      * Handle 'show' command.
-     * Generally allows the user to see all of the qubit states of the quantum computer.
-     * @param tokens An array of strings that should include {show, <name>}
+     * Generally allows the user to see the qubit states of the quantum computer.
+     * Big registers only show the most likely states unless 'all' is given, so the output stays readable.
+     * @param tokens An array of strings that should include {show, <name>} and optionally {top, <k>}, {min, <probability>} or {all}
      */
     private void handleShow(String[] tokens) {
         if (tokens.length < 2) {
-            System.out.println("Usage: show <computer_name>");
-            return;
+            throw new IllegalArgumentException("Usage: show <computer_name> [top <k> | min <probability> | all]");
         }
 
         String name = tokens[1];
         QuantumComputer quantumComputer = quantumComputers.get(name);
 
         if (quantumComputer == null) {
-            System.out.println("Computer was not found: " + name);
-            return;
+            throw new IllegalArgumentException("Computer not found: " + name);
         }
 
-        System.out.println(quantumComputer.getStateString());
+        String mode = tokens.length > 2 ? tokens[2].toLowerCase() : "";
+        if ((mode.equals("top") || mode.equals("min")) && tokens.length < 4) {
+            throw new IllegalArgumentException("Usage: show <computer_name> [top <k> | min <probability> | all]");
+        }
+
+        // write straight to the output buffer instead of building the whole state as one string
+        try {
+            switch (mode) {
+                case "top" -> quantumComputer.writeTopStates(out, Integer.parseInt(tokens[3]));
+                case "min" -> quantumComputer.writeState(out, Double.parseDouble(tokens[3]));
+                case "all" -> quantumComputer.writeState(out);
+                case "" -> {
+                    if (quantumComputer.getNumQubits() <= SHOW_ALL_QUBITS) {
+                        quantumComputer.writeState(out);
+                    } else {
+                        int shown = quantumComputer.writeTopStates(out, SHOW_TOP_STATES);
+                        out.write("(showing the " + shown + " most likely states, use 'show " + name + " all' for every state)\n");
+                    }
+                }
+                default -> throw new IllegalArgumentException("Unknown show option: " + tokens[2]);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not show the state: " + e.getMessage(), e);
+        }
+        out.println();
     }
 
     /**
@@ -160,20 +361,18 @@ public class QuantumCLI {
      */
     private void handleHadamard(String[] tokens) {
         if (tokens.length < 3) {
-            System.out.println("Usage: hadamard <computer_name> <qubit_index>");
-            return;
+            throw new IllegalArgumentException("Usage: hadamard <computer_name> <qubit_index>");
         }
 
         QuantumComputer quantumComputer = quantumComputers.get(tokens[1]);
         int qubitIndex = Integer.parseInt(tokens[2]);
 
         if (quantumComputer == null) {
-            System.out.println("Computer was not found");
-            return;
+            throw new IllegalArgumentException("Computer not found: " + tokens[1]);
         }
 
         quantumComputer.applyHadamard(qubitIndex);
-        System.out.println("Applied Hadamard gate to " + tokens[1] + " qubit " + qubitIndex);
+        out.println("Applied Hadamard gate to " + tokens[1] + " qubit " + qubitIndex);
     }
 
     /**
@@ -183,20 +382,18 @@ public class QuantumCLI {
      */
     private void handlePauliX(String[] tokens) {
         if (tokens.length < 3) {
-            System.out.println("Usage: x <computer_name> <qubit_index>");
-            return;
+            throw new IllegalArgumentException("Usage: x <computer_name> <qubit_index>");
         }
         
         QuantumComputer quantumComputer = quantumComputers.get(tokens[1]);
         int qubitIndex = Integer.parseInt(tokens[2]);
         
         if (quantumComputer == null) {
-            System.out.println("Computer not found");
-            return;
+            throw new IllegalArgumentException("Computer not found: " + tokens[1]);
         }
         
         quantumComputer.applyPauliX(qubitIndex);
-        System.out.println("Applied Pauli-X gate to " + tokens[1] + " qubit " + qubitIndex);
+        out.println("Applied Pauli-X gate to " + tokens[1] + " qubit " + qubitIndex);
     }
 
     /**
@@ -206,20 +403,73 @@ public class QuantumCLI {
      */
     private void handlePauliZ(String[] tokens) {
         if (tokens.length < 3) {
-            System.out.println("Usage: x <computer_name> <qubit_index>");
-            return;
+            throw new IllegalArgumentException("Usage: z <computer_name> <qubit_index>");
         }
         
         QuantumComputer quantumComputer = quantumComputers.get(tokens[1]);
         int qubitIndex = Integer.parseInt(tokens[2]);
         
         if (quantumComputer == null) {
-            System.out.println("Computer not found");
-            return;
+            throw new IllegalArgumentException("Computer not found: " + tokens[1]);
         }
         
         quantumComputer.applyPauliZ(qubitIndex);
-        System.out.println("Applied Pauli-Z gate to " + tokens[1] + " qubit " + qubitIndex);
+        out.println("Applied Pauli-Z gate to " + tokens[1] + " qubit " + qubitIndex);
+    }
+
+    /**
+     * Functional interface for gates that take a qubit index and an angle.
+     */
+    @FunctionalInterface
+    private interface AngleGate {
+        void apply(QuantumComputer quantumComputer, int qubitIndex, double theta);
+    }
+
+    /**
+     * handles the fixed single qubit gate commands ('y', 's', 't', 'sx')
+     * Generally allows the user to apply a gate without parameters to a specific qubit on a specific quantum computer
+     * @param tokens An array of strings that should include {gate, <name>, <qubit_num>}
+     * @param gateName The name of the gate for the output messages
+     * @param gate The gate to apply
+     */
+    private void handleFixedGate(String[] tokens, String gateName, ObjIntConsumer<QuantumComputer> gate) {
+        if (tokens.length < 3) {
+            throw new IllegalArgumentException("Usage: " + tokens[0] + " <computer_name> <qubit_index>");
+        }
+
+        QuantumComputer quantumComputer = quantumComputers.get(tokens[1]);
+        int qubitIndex = Integer.parseInt(tokens[2]);
+
+        if (quantumComputer == null) {
+            throw new IllegalArgumentException("Computer not found: " + tokens[1]);
+        }
+
+        gate.accept(quantumComputer, qubitIndex);
+        out.println("Applied " + gateName + " gate to " + tokens[1] + " qubit " + qubitIndex);
+    }
+
+    /**
+     * handles the rotation and phase commands ('rx', 'ry', 'rz', 'phase')
+     * Generally allows the user to apply a gate with an angle (in radians) to a specific qubit on a specific quantum computer
+     * @param tokens An array of strings that should include {gate, <name>, <qubit_num>, <theta>}
+     * @param gateName The name of the gate for the output messages
+     * @param gate The gate to apply
+     */
+    private void handleAngleGate(String[] tokens, String gateName, AngleGate gate) {
+        if (tokens.length < 4) {
+            throw new IllegalArgumentException("Usage: " + tokens[0] + " <computer_name> <qubit_index> <theta>");
+        }
+
+        QuantumComputer quantumComputer = quantumComputers.get(tokens[1]);
+        int qubitIndex = Integer.parseInt(tokens[2]);
+        double theta = Double.parseDouble(tokens[3]);
+
+        if (quantumComputer == null) {
+            throw new IllegalArgumentException("Computer not found: " + tokens[1]);
+        }
+
+        gate.apply(quantumComputer, qubitIndex, theta);
+        out.println("Applied " + gateName + "(" + theta + ") gate to " + tokens[1] + " qubit " + qubitIndex);
     }
 
     /**
@@ -229,8 +479,7 @@ public class QuantumCLI {
      */
     private void handleCNOT(String[] tokens) {
         if (tokens.length < 4) {
-            System.out.println("Usage: cnot <computer_name> <control> <target>");
-            return;
+            throw new IllegalArgumentException("Usage: cnot <computer_name> <control> <target>");
         }
         
         QuantumComputer quantumComputer = quantumComputers.get(tokens[1]);
@@ -238,35 +487,67 @@ public class QuantumCLI {
         int target = Integer.parseInt(tokens[3]);
         
         if (quantumComputer == null) {
-            System.out.println("Computer not found");
-            return;
+            throw new IllegalArgumentException("Computer not found: " + tokens[1]);
         }
         
         quantumComputer.applyCNOT(control, target);
-        System.out.println("Applied CNOT gate to " + tokens[1] + " (control: " + control + ", target: " + target + ")");
+        out.println("Applied CNOT gate to " + tokens[1] + " (control: " + control + ", target: " + target + ")");
     }
 
     /**
      * handles measure command
-     * Generally allows the user to measure a specific qubit on a specific quantum computer
-     * @param tokens An array of strings that should include {measure, <name>, <qubit>}
+     * Generally allows the user to measure a specific qubit on a specific quantum computer.
+     * When more than one qubit is given they are all measured together in one pass.
+     * @param tokens An array of strings that should include {measure, <name>, <qubit>, [more qubits...]}
      */
     private void handleMeasure(String[] tokens) {
         if (tokens.length < 3) {
-            System.out.println("Usage: measure <computer_name> <qubit_index>");
-            return;
+            throw new IllegalArgumentException("Usage: measure <computer_name> <qubit_index> [more qubit indices]");
         }
         
         QuantumComputer quantumComputer = quantumComputers.get(tokens[1]);
-        int qubitIndex = Integer.parseInt(tokens[2]);
+        int[] qubits = new int[tokens.length - 2];
+        for (int j = 0; j < qubits.length; j++) {
+            qubits[j] = Integer.parseInt(tokens[j + 2]);
+        }
         
         if (quantumComputer == null) {
-            System.out.println("Computer not found");
-            return;
+            throw new IllegalArgumentException("Computer not found: " + tokens[1]);
         }
         
-        int result = quantumComputer.measure(qubitIndex);
-        System.out.println("Measured qubit " + qubitIndex + " of " + tokens[1] + ": " + result);
+        if (qubits.length == 1) {
+            int result = quantumComputer.measure(qubits[0]);
+            out.println("Measured qubit " + qubits[0] + " of " + tokens[1] + ": " + result);
+            return;
+        }
+        int[] results = quantumComputer.measureRegister(qubits);
+        for (int j = 0; j < qubits.length; j++) {
+            out.println("Measured qubit " + qubits[j] + " of " + tokens[1] + ": " + results[j]);
+        }
+    }
+
+    /**
+     * handles 'sample' command
+     * Generally allows the user to see a histogram of many measurements of the whole register without changing the state
+     * @param tokens An array of strings that should include {sample, <name>, <shots>}
+     */
+    private void handleSample(String[] tokens) {
+        if (tokens.length < 3) {
+            throw new IllegalArgumentException("Usage: sample <computer_name> <shots>");
+        }
+
+        QuantumComputer quantumComputer = quantumComputers.get(tokens[1]);
+        int shots = Integer.parseInt(tokens[2]);
+
+        if (quantumComputer == null) {
+            throw new IllegalArgumentException("Computer not found: " + tokens[1]);
+        }
+
+        Map<String, Integer> counts = quantumComputer.sample(shots);
+        out.println("Sampled " + tokens[1] + " " + shots + " times:");
+        for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+            out.println(String.format(" |%s>: %d (%.4f)", entry.getKey(), entry.getValue(), entry.getValue() / (double) shots));
+        }
     }
 
     /**
@@ -276,19 +557,17 @@ public class QuantumCLI {
      */
     private void handleReset(String[] tokens) {
         if (tokens.length < 2) {
-            System.out.println("Usage: reset <computer_name>");
-            return;
+            throw new IllegalArgumentException("Usage: reset <computer_name>");
         }
         
         QuantumComputer quantumComputer = quantumComputers.get(tokens[1]);
         
         if (quantumComputer == null) {
-            System.out.println("Computer not found");
-            return;
+            throw new IllegalArgumentException("Computer not found: " + tokens[1]);
         }
         
         quantumComputer.reset();
-        System.out.println("Reset quantum computer '" + tokens[1] + "' to |0...0> state");
+        out.println("Reset quantum computer '" + tokens[1] + "' to |0...0> state");
     }
 
 
@@ -296,41 +575,102 @@ public class QuantumCLI {
 
 
 
+    /**
+     * handles 'save' command
+     * Generally allows the user to write the state of a quantum computer to a checkpoint file
+     * @param tokens An array of strings that should include {save, <computer_name>, <file>}
+     */
+    private void handleSave(String[] tokens) {
+        if (tokens.length < 3) {
+            throw new IllegalArgumentException("Usage: save <computer_name> <file>");
+        }
+
+        QuantumComputer quantumComputer = quantumComputers.get(tokens[1]);
+
+        if (quantumComputer == null) {
+            throw new IllegalArgumentException("Computer not found: " + tokens[1]);
+        }
+
+        try {
+            quantumComputer.saveState(Path.of(tokens[2]));
+            out.println("Saved quantum computer '" + tokens[1] + "' to " + tokens[2]);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not save the state: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * handles 'load' command
+     * Generally allows the user to read a checkpoint file into a quantum computer, replacing one with the same name
+     * @param tokens An array of strings that should include {load, <computer_name>, <file>}
+     */
+    private void handleLoad(String[] tokens) {
+        if (tokens.length < 3) {
+            throw new IllegalArgumentException("Usage: load <computer_name> <file>");
+        }
+
+        String name = tokens[1];
+        QuantumComputer quantumComputer;
+        try {
+            quantumComputer = QuantumComputer.loadState(name, Path.of(tokens[2]));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not load the state: " + e.getMessage(), e);
+        }
+
+        if (quantumComputers.containsKey(name)) {
+            network.unregisterComputer(name);
+        }
+        quantumComputers.put(name, quantumComputer);
+        network.registerQuantumComputer(quantumComputer);
+        out.println("Loaded quantum computer '" + name + "' with " + quantumComputer.getNumQubits() + " qubits from " + tokens[2]);
+    }
+
     /**
      * Print welcome message
      */
     private void printWelcome() {
-        System.out.println("\n" + "=".repeat(50));
-        System.out.println("  QUANTUM COMPUTER SIMULATOR CLI");
-        System.out.println("=".repeat(50));
-        System.out.println("Simulates quantum computers and protocols");
-        System.out.println("Type 'help' for available commands");
-        System.out.println("Type 'demo' to run a demonstration");
-        System.out.println("Type 'quit' to exit\n");
+        out.println("\n" + "=".repeat(50));
+        out.println("  QUANTUM COMPUTER SIMULATOR CLI");
+        out.println("=".repeat(50));
+        out.println("Simulates quantum computers and protocols");
+        out.println("Type 'help' for available commands");
+        out.println("Type 'demo' to run a demonstration");
+        out.println("Type 'quit' to exit\n");
     }
 
     /**
      * Print help message.
      */
     private void printHelp() {
-        System.out.println("\n" + "-".repeat(50));
-        System.out.println("AVAILABLE COMMANDS:");
-        System.out.println("-".repeat(50));
-        System.out.println("create <name> <qubits>       Create a quantum computer");
-        System.out.println("list                         List all quantum computers");
-        System.out.println("show <name>                  Show quantum state");
-        System.out.println("hadamard <name> <qubit>      Apply Hadamard gate");
-        System.out.println("cnot <name> <ctl> <tgt>      Apply CNOT gate");
-        System.out.println("x <name> <qubit>             Apply Pauli-X gate");
-        System.out.println("z <name> <qubit>             Apply Pauli-Z gate");
-        System.out.println("measure <name> <qubit>       Measure a qubit");
-        System.out.println("reset <name>                 Reset to |0...0> state");
-        System.out.println("entangle <name> <q1> <q2>    Create Bell pair");
-        System.out.println("teleport <sender> <receiver> Execute teleportation");
-        System.out.println("demo                         Run interactive demo");
-        System.out.println("help                         Show this help");
-        System.out.println("(q)uit                       Exit program");
-        System.out.println("-".repeat(50) + "\n");
+        out.println("\n" + "-".repeat(50));
+        out.println("AVAILABLE COMMANDS:");
+        out.println("-".repeat(50));
+        out.println("create <name> <qubits>       Create a quantum computer");
+        out.println("list                         List all quantum computers");
+        out.println("show <name> [top <k>|min <p>|all]  Show quantum state");
+        out.println("hadamard <name> <qubit>      Apply Hadamard gate");
+        out.println("cnot <name> <ctl> <tgt>      Apply CNOT gate");
+        out.println("x <name> <qubit>             Apply Pauli-X gate");
+        out.println("z <name> <qubit>             Apply Pauli-Z gate");
+        out.println("y <name> <qubit>             Apply Pauli-Y gate");
+        out.println("s <name> <qubit>             Apply S gate");
+        out.println("t <name> <qubit>             Apply T gate");
+        out.println("sx <name> <qubit>            Apply square root of X gate");
+        out.println("rx <name> <qubit> <theta>    Rotate around X (radians)");
+        out.println("ry <name> <qubit> <theta>    Rotate around Y (radians)");
+        out.println("rz <name> <qubit> <theta>    Rotate around Z (radians)");
+        out.println("phase <name> <qubit> <theta> Apply phase gate (radians)");
+        out.println("measure <name> <qubit> [...]  Measure one or more qubits");
+        out.println("sample <name> <shots>        Histogram of many measurements");
+        out.println("reset <name>                 Reset to |0...0> state");
+        out.println("save <name> <file>           Save the state to a checkpoint file");
+        out.println("load <name> <file>           Load the state from a checkpoint file");
+        out.println("entangle <name> <q1> <q2>    Create Bell pair");
+        out.println("teleport <sender> <receiver> Execute teleportation");
+        out.println("demo                         Run interactive demo");
+        out.println("help                         Show this help");
+        out.println("(q)uit                       Exit program");
+        out.println("-".repeat(50) + "\n");
     }
 
 }
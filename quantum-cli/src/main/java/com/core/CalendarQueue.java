@@ -0,0 +1,240 @@
+package com.core;
+
+import java.util.Arrays;
+
+
+/**
+ * The event queue of the {@link NetworkSimulator}: a calendar queue (R. Brown, 1988) with O(1) amortized add and poll.
+ * <p>
+ * Time is cut into buckets of a fixed width, and the buckets are used like the days of a calendar year that repeats:
+ * an event at time t goes to bucket (t / width) mod buckets, in a list sorted by time. Polling walks the buckets from the
+ * current one and takes the first event that falls into this year's day. The number of buckets follows the number of
+ * events, and the width is picked again from the spread of the events whenever the queue grows or shrinks by a factor
+ * of two, or when polls keep finding the year empty (the times moved away from the width), so a bucket holds a few events.
+ * <p>
+ * Events with the same time come out in the order they were added, so a simulation is deterministic.
+ */
+final class CalendarQueue {
+    private static final int MIN_BUCKETS = 16;
+    private static final int MAX_BUCKETS = 1 << 24;
+    /**
+     * After this many polls that found nothing within a year, the width is picked again even if the size did not change.
+     */
+    private static final int MAX_YEAR_MISSES = 8;
+
+    /**
+     * One scheduled action.
+     */
+    static final class Event {
+        final long time;
+        final long sequence;
+        final Runnable action;
+        private Event next;
+
+        private Event(long time, long sequence, Runnable action) {
+            this.time = time;
+            this.sequence = sequence;
+            this.action = action;
+        }
+    }
+
+    private Event[] heads;
+    /**
+     * The last event of every bucket, so events added in time order (the common case) are appended without a walk.
+     */
+    private Event[] tails;
+    private int mask;
+    private long width;
+    private int size;
+    private long sequence;
+    /**
+     * The time of the last event taken, no event may be added before it.
+     */
+    private long lastTime;
+    private int currentBucket;
+    /**
+     * The end (exclusive) of the current bucket in the current year.
+     */
+    private long bucketTop;
+    /**
+     * The bucket end that goes with the bucket found by the last {@link #findNext()}.
+     */
+    private long foundTop;
+    /**
+     * True if the last {@link #findNext()} found nothing within a year and had to search every bucket.
+     */
+    private boolean foundByFullSearch;
+    private int yearMisses;
+
+    CalendarQueue() {
+        allocate(MIN_BUCKETS, 1L << 10);
+    }
+
+    /**
+     * Add an event.
+     * @param time The time of the event, not before the last event taken
+     * @param action The action to run
+     */
+    void add(long time, Runnable action) {
+        if (time < lastTime) {
+            throw new IllegalArgumentException("Can not schedule an event in the past: " + time + " < " + lastTime);
+        }
+        insert(new Event(time, sequence++, action));
+        size++;
+        if (size > 2 * heads.length && heads.length < MAX_BUCKETS) {
+            resize(heads.length * 2);
+        }
+    }
+
+    /**
+     * Take the next event.
+     * @return The event with the smallest time (the oldest of those with that time), or null if the queue is empty
+     */
+    Event poll() {
+        if (size == 0) {
+            return null;
+        }
+        int bucket = findNext();
+        if (foundByFullSearch) {
+            yearMisses++;
+        }
+        currentBucket = bucket;
+        bucketTop = foundTop;
+        Event event = heads[bucket];
+        heads[bucket] = event.next;
+        if (event.next == null) {
+            tails[bucket] = null;
+        }
+        event.next = null;
+        size--;
+        lastTime = event.time;
+        if (size < heads.length / 2 && heads.length > MIN_BUCKETS) {
+            resize(heads.length / 2);
+        } else if (yearMisses > MAX_YEAR_MISSES && size > 1) {
+            resize(heads.length);
+        }
+        return event;
+    }
+
+    /**
+     * Get the time of the next event without taking it.
+     * @return The time, or Long.MAX_VALUE if the queue is empty
+     */
+    long peekTime() {
+        return size == 0 ? Long.MAX_VALUE : heads[findNext()].time;
+    }
+
+    /**
+     * Get the number of events in the queue.
+     * @return The number of events
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Find the bucket whose first event is the next one. This does not move the current bucket, so {@link #peekTime()}
+     * followed by adding an earlier event still finds that event.
+     */
+    private int findNext() {
+        int bucket = currentBucket;
+        long top = bucketTop;
+        for (int day = 0; day < heads.length; day++) {
+            Event head = heads[bucket];
+            if (head != null && head.time < top) {
+                foundTop = top;
+                foundByFullSearch = false;
+                return bucket;
+            }
+            bucket = (bucket + 1) & mask;
+            top += width;
+        }
+
+        // nothing in the coming year: jump straight to the smallest event
+        int best = -1;
+        for (int i = 0; i < heads.length; i++) {
+            if (heads[i] != null && (best < 0 || before(heads[i], heads[best]))) {
+                best = i;
+            }
+        }
+        foundTop = (heads[best].time / width + 1) * width;
+        foundByFullSearch = true;
+        return best;
+    }
+
+    private void insert(Event event) {
+        int bucket = (int) ((event.time / width) & mask);
+        Event tail = tails[bucket];
+        if (tail == null) {
+            heads[bucket] = event;
+            tails[bucket] = event;
+            return;
+        }
+        if (!before(event, tail)) {
+            tail.next = event;
+            tails[bucket] = event;
+            return;
+        }
+        Event head = heads[bucket];
+        if (before(event, head)) {
+            event.next = head;
+            heads[bucket] = event;
+            return;
+        }
+        Event previous = head;
+        while (!before(event, previous.next)) {
+            previous = previous.next;
+        }
+        event.next = previous.next;
+        previous.next = event;
+    }
+
+    private static boolean before(Event a, Event b) {
+        return a.time < b.time || (a.time == b.time && a.sequence < b.sequence);
+    }
+
+    /**
+     * Change the number of buckets and pick a new width from the spread of the events.
+     * <p>
+     * The width is three times the average gap over the earlier half of the events (Brown uses three times the average gap).
+     * The earlier half leaves out far future outliers, but is large enough that a cluster of events at almost the same time
+     * does not make the buckets so narrow that a year covers nothing.
+     */
+    private void resize(int buckets) {
+        Event[] events = new Event[size];
+        int count = 0;
+        for (Event head : heads) {
+            for (Event event = head; event != null; event = event.next) {
+                events[count++] = event;
+            }
+        }
+        long newWidth = width;
+        if (count > 1) {
+            long[] times = new long[count];
+            for (int i = 0; i < count; i++) {
+                times[i] = events[i].time;
+            }
+            Arrays.sort(times);
+            int half = Math.max(1, count / 2);
+            long gap = (times[half] - times[0]) / half;
+            if (gap > 0) {
+                newWidth = 3 * gap;
+            }
+        }
+        allocate(buckets, newWidth);
+        for (int i = 0; i < count; i++) {
+            events[i].next = null;
+            insert(events[i]);
+        }
+    }
+
+    private void allocate(int buckets, long newWidth) {
+        yearMisses = 0;
+        heads = new Event[buckets];
+        tails = new Event[buckets];
+        mask = buckets - 1;
+        width = Math.max(1, newWidth);
+        currentBucket = (int) ((lastTime / width) & mask);
+        bucketTop = (lastTime / width + 1) * width;
+    }
+}
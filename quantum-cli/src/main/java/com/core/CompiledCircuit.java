@@ -0,0 +1,180 @@
+package com.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+
+/**
+ * A circuit that has been checked and prepared once so it can be run many times with almost no setup.
+ * <p>
+ * While the circuit is built every qubit index is checked, every single qubit matrix is classified and flattened for the
+ * kernels, every multi qubit gate gets its offsets and strides, and CNOTs are stored as strides. {@link #run(QuantumComputer)}
+ * then only walks the prepared steps and calls the kernels, without validating or creating any objects.
+ * <p>
+ * Compiled circuits are immutable and can be run on any number of quantum computers (with the right number of qubits),
+ * from any number of threads as long as each thread uses its own quantum computer.
+ * Use {@link com.simulation.CircuitBuilder#compile()} to compile a recorded circuit, with gate fusion.
+ */
+public final class CompiledCircuit {
+    private static final byte SINGLE = 0;
+    private static final byte CNOT = 1;
+    private static final byte DENSE = 2;
+
+    private final int numQubits;
+    private final byte[] opcodes;
+    /**
+     * The stride of the qubit of a single qubit gate, or of the control of a CNOT.
+     */
+    private final int[] firstStrides;
+    /**
+     * The stride of the target of a CNOT.
+     */
+    private final int[] secondStrides;
+    private final Gates.Kind[] kinds;
+    private final double[][] matrices;
+    private final DenseGate[] denseGates;
+
+    private CompiledCircuit(Builder builder) {
+        int steps = builder.opcodes.size();
+        this.numQubits = builder.numQubits;
+        this.opcodes = new byte[steps];
+        this.firstStrides = new int[steps];
+        this.secondStrides = new int[steps];
+        this.kinds = builder.kinds.toArray(new Gates.Kind[0]);
+        this.matrices = builder.matrices.toArray(new double[0][]);
+        this.denseGates = builder.denseGates.toArray(new DenseGate[0]);
+        for (int step = 0; step < steps; step++) {
+            opcodes[step] = builder.opcodes.get(step);
+            firstStrides[step] = builder.firstStrides.get(step);
+            secondStrides[step] = builder.secondStrides.get(step);
+        }
+    }
+
+    /**
+     * Start building a compiled circuit.
+     * @param numQubits The number of qubits the circuit runs on
+     * @return The builder
+     */
+    public static Builder builder(int numQubits) {
+        return new Builder(numQubits);
+    }
+
+    /**
+     * Run the circuit on the current state of a quantum computer.
+     * @param quantumComputer A quantum computer with the same number of qubits as the circuit
+     */
+    public void run(QuantumComputer quantumComputer) {
+        if (quantumComputer.getNumQubits() != numQubits) {
+            throw new IllegalArgumentException("Circuit is compiled for " + numQubits + " qubits but the computer has " + quantumComputer.getNumQubits());
+        }
+        for (int step = 0; step < opcodes.length; step++) {
+            switch (opcodes[step]) {
+                case SINGLE -> quantumComputer.applyFlatGate(firstStrides[step], kinds[step], matrices[step]);
+                case CNOT -> quantumComputer.applyCnotStrides(firstStrides[step], secondStrides[step]);
+                default -> quantumComputer.applyDenseGate(denseGates[step]);
+            }
+        }
+    }
+
+    /**
+     * Get the number of qubits the circuit runs on.
+     * @return The number of qubits
+     */
+    public int getNumQubits() {
+        return numQubits;
+    }
+
+    /**
+     * Get the number of steps (gates after compiling) in the circuit.
+     * @return The number of steps
+     */
+    public int getGateCount() {
+        return opcodes.length;
+    }
+
+    @Override
+    public String toString() {
+        return "CompiledCircuit{" + "numQubits=" + numQubits + ", gates=" + opcodes.length + '}';
+    }
+
+    /**
+     * Collects and checks the gates of a {@link CompiledCircuit}.
+     */
+    public static final class Builder {
+        private final int numQubits;
+        private final List<Byte> opcodes = new ArrayList<>();
+        private final List<Integer> firstStrides = new ArrayList<>();
+        private final List<Integer> secondStrides = new ArrayList<>();
+        private final List<Gates.Kind> kinds = new ArrayList<>();
+        private final List<double[]> matrices = new ArrayList<>();
+        private final List<DenseGate> denseGates = new ArrayList<>();
+
+        private Builder(int numQubits) {
+            if (numQubits < 1 || numQubits > 30) {
+                throw new IllegalArgumentException("Number of qubits must be between 1 and 30: " + numQubits);
+            }
+            this.numQubits = numQubits;
+        }
+
+        /**
+         * Add a single qubit gate.
+         * @param qubit The qubit
+         * @param matrix The 2x2 gate matrix, indexed as matrix[row][column]
+         * @return This builder (to allow for chaining commands)
+         */
+        public Builder gate(int qubit, Complex[][] matrix) {
+            validate(qubit);
+            Gates.Kind kind = Gates.classify(matrix);
+            return add(SINGLE, 1 << qubit, 0, kind, StateKernels.flatten(matrix), null);
+        }
+
+        /**
+         * Add a CNOT.
+         * @param control The control qubit
+         * @param target The target qubit
+         * @return This builder (to allow for chaining commands)
+         */
+        public Builder cnot(int control, int target) {
+            validate(control);
+            validate(target);
+            if (control == target) {
+                throw new IllegalArgumentException("Control and target must be different qubits: " + control);
+            }
+            return add(CNOT, 1 << control, 1 << target, null, null, null);
+        }
+
+        /**
+         * Add a dense gate on several qubits, see {@link QuantumComputer#applyMultiQubitGate(int[], Complex[][])}.
+         * @param qubits The qubits the gate acts on (all different)
+         * @param matrix The 2^k x 2^k gate matrix where k is the number of qubits
+         * @return This builder (to allow for chaining commands)
+         */
+        public Builder gate(int[] qubits, Complex[][] matrix) {
+            return add(DENSE, 0, 0, null, null, DenseGate.of(numQubits, qubits.clone(), matrix));
+        }
+
+        /**
+         * Finish the circuit.
+         * @return The compiled circuit
+         */
+        public CompiledCircuit build() {
+            return new CompiledCircuit(this);
+        }
+
+        private Builder add(byte opcode, int firstStride, int secondStride, Gates.Kind kind, double[] matrix, DenseGate denseGate) {
+            opcodes.add(opcode);
+            firstStrides.add(firstStride);
+            secondStrides.add(secondStride);
+            kinds.add(kind);
+            matrices.add(matrix);
+            denseGates.add(denseGate);
+            return this;
+        }
+
+        private void validate(int qubit) {
+            if (qubit < 0 || qubit >= numQubits) {
+                throw new IllegalArgumentException("Qubit index out of bounds: " + qubit);
+            }
+        }
+    }
+}
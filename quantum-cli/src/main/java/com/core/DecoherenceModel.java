@@ -0,0 +1,69 @@
+package com.core;
+
+import java.util.random.RandomGenerator;
+
+
+/**
+ * How a stored or travelling register loses its state over simulated time, used by the {@link NetworkSimulator}
+ * for qubits in a node's memory and on a link.
+ * <p>
+ * The models are stochastic, like the noise of the {@link com.simulation.TrajectorySimulator}: each call draws random Pauli
+ * errors with the probability of the real channel for the elapsed time, so the average over many runs gives the channel.
+ */
+@FunctionalInterface
+public interface DecoherenceModel {
+    /**
+     * Apply the decoherence for a stretch of time.
+     * @param quantumComputer The register
+     * @param elapsedNanos The simulated time in nanoseconds since the last call for this register
+     * @param random The random generator of the simulation
+     */
+    void apply(QuantumComputer quantumComputer, long elapsedNanos, RandomGenerator random);
+
+    /**
+     * Dephasing with time constant T2: every qubit gets a Z with probability (1 - e^{-t/T2}) / 2.
+     * @param t2Nanos T2 in nanoseconds
+     * @return The model
+     */
+    static DecoherenceModel dephasing(double t2Nanos) {
+        if (!(t2Nanos > 0)) {
+            throw new IllegalArgumentException("Time constant must be positive: " + t2Nanos);
+        }
+        return (quantumComputer, elapsedNanos, random) -> {
+            double probability = 0.5 * -Math.expm1(-elapsedNanos / t2Nanos);
+            for (int q = 0; q < quantumComputer.getNumQubits(); q++) {
+                if (random.nextDouble() < probability) {
+                    quantumComputer.applyPauliZ(q);
+                }
+            }
+        };
+    }
+
+    /**
+     * Depolarizing with a time constant: every qubit is replaced by the fully mixed state with probability p = 1 - e^{-t/T},
+     * which is an X, a Y or a Z with probability p/4 each.
+     * @param timeConstantNanos T in nanoseconds
+     * @return The model
+     */
+    static DecoherenceModel depolarizing(double timeConstantNanos) {
+        if (!(timeConstantNanos > 0)) {
+            throw new IllegalArgumentException("Time constant must be positive: " + timeConstantNanos);
+        }
+        return (quantumComputer, elapsedNanos, random) -> {
+            double probability = 0.75 * -Math.expm1(-elapsedNanos / timeConstantNanos);
+            for (int q = 0; q < quantumComputer.getNumQubits(); q++) {
+                double draw = random.nextDouble();
+                if (draw < probability) {
+                    int pauli = (int) (3 * draw / probability);
+                    if (pauli == 0) {
+                        quantumComputer.applyPauliX(q);
+                    } else if (pauli == 1) {
+                        quantumComputer.applyPauliY(q);
+                    } else {
+                        quantumComputer.applyPauliZ(q);
+                    }
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,83 @@
+package com.core;
+
+import java.util.Arrays;
+
+
+/**
+ * A multi qubit gate prepared for {@link StateKernels#dense}: the qubits are checked, the offsets of the basis states
+ * inside a group and the sorted strides are worked out, and the matrix is split into flat real and imaginary arrays.
+ * <p>
+ * Bit j of a row or column number of the matrix is the state of {@code qubits[j]}.
+ */
+final class DenseGate {
+    final int[] sortedStrides;
+    final int[] offsets;
+    final double[] matrixReal;
+    final double[] matrixImaginary;
+
+    private DenseGate(int[] sortedStrides, int[] offsets, double[] matrixReal, double[] matrixImaginary) {
+        this.sortedStrides = sortedStrides;
+        this.offsets = offsets;
+        this.matrixReal = matrixReal;
+        this.matrixImaginary = matrixImaginary;
+    }
+
+    /**
+     * Check and prepare a gate.
+     * @param numQubits The number of qubits of the register
+     * @param qubits The qubits the gate acts on (all different)
+     * @param matrix The 2^k x 2^k gate matrix where k is the number of qubits
+     * @return The prepared gate
+     */
+    static DenseGate of(int numQubits, int[] qubits, Complex[][] matrix) {
+        int dimension = 1 << qubits.length;
+        int usedMask = 0;
+        for (int qubit : qubits) {
+            if (qubit < 0 || qubit >= numQubits) {
+                throw new IllegalArgumentException("Qubit index out of bounds: " + qubit);
+            }
+            if ((usedMask & (1 << qubit)) != 0) {
+                throw new IllegalArgumentException("Qubit used twice in one gate: " + qubit);
+            }
+            usedMask |= 1 << qubit;
+        }
+        if (matrix.length != dimension) {
+            throw new IllegalArgumentException("Gate on " + qubits.length + " qubits must be " + dimension + "x" + dimension);
+        }
+
+        int[] offsets = new int[dimension];
+        for (int b = 0; b < dimension; b++) {
+            for (int j = 0; j < qubits.length; j++) {
+                if ((b & (1 << j)) != 0) {
+                    offsets[b] |= 1 << qubits[j];
+                }
+            }
+        }
+        int[] sortedStrides = new int[qubits.length];
+        for (int j = 0; j < qubits.length; j++) {
+            sortedStrides[j] = 1 << qubits[j];
+        }
+        Arrays.sort(sortedStrides);
+
+        double[] matrixReal = new double[dimension * dimension];
+        double[] matrixImaginary = new double[dimension * dimension];
+        for (int row = 0; row < dimension; row++) {
+            if (matrix[row] == null || matrix[row].length != dimension) {
+                throw new IllegalArgumentException("Gate on " + qubits.length + " qubits must be " + dimension + "x" + dimension);
+            }
+            for (int column = 0; column < dimension; column++) {
+                matrixReal[row * dimension + column] = matrix[row][column].real();
+                matrixImaginary[row * dimension + column] = matrix[row][column].imaginary();
+            }
+        }
+        return new DenseGate(sortedStrides, offsets, matrixReal, matrixImaginary);
+    }
+
+    /**
+     * Get the number of qubits the gate acts on.
+     * @return The number of qubits
+     */
+    int qubitCount() {
+        return sortedStrides.length;
+    }
+}
@@ -0,0 +1,384 @@
+package com.core;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+
+/**
+ * A quantum computer that holds a density matrix instead of a state vector, so it can model noise and decoherence.
+ * <p>
+ * The density matrix rho of n qubits is stored as a state vector of 2n qubits: element rho[r][c] is amplitude {@code r + (c << n)}.
+ * A gate U on qubit q then becomes U on vector qubit q (the row) and conj(U) on vector qubit q + n (the column), which gives
+ * U rho U^dagger in place with the same fast kernels (and the same parallel and vector paths) as {@link QuantumComputer}.
+ * <p>
+ * A noise channel with Kraus operators K_i acts on the row and column bit of its qubit together, as the 4x4 matrix
+ * sum of K_i (x) conj(K_i). That is applied as a two qubit gate on the vector, so channels are also in place with no copies of rho.
+ * <p>
+ * Memory is 16 * 4^n bytes, so 13 qubits take 1 GiB and 14 qubits 4 GiB.
+ */
+public class DensityMatrixComputer implements QuantumBackend {
+    /**
+     * The most qubits (the vector has twice as many, and a {@link QuantumComputer} holds at most 30).
+     */
+    public static final int MAX_QUBITS = 15;
+    private static final double KRAUS_TOLERANCE = 1e-9;
+
+    private String name;
+    private final int numQubits;
+    private final Random random;
+    /**
+     * rho as a 2n qubit vector.
+     */
+    private final QuantumComputer vector;
+
+    /**
+     * Initialize a density matrix quantum computer in the pure state |0...0>.
+     * @param name The name of this quantum computer
+     * @param numberOfQubits The number of qubits (1 to 15)
+     */
+    public DensityMatrixComputer(String name, int numberOfQubits) {
+        validateSize(numberOfQubits);
+        this.name = name;
+        this.numQubits = numberOfQubits;
+        this.random = new Random();
+        this.vector = new QuantumComputer(name, 2 * numberOfQubits);
+    }
+
+    /**
+     * Initialize a density matrix quantum computer with a fixed seed for the measurement randomness, so runs can be repeated exactly.
+     * @param name The name of this quantum computer
+     * @param numberOfQubits The number of qubits (1 to 15)
+     * @param seed The seed for measurements
+     */
+    public DensityMatrixComputer(String name, int numberOfQubits, long seed) {
+        validateSize(numberOfQubits);
+        this.name = name;
+        this.numQubits = numberOfQubits;
+        this.random = new Random(seed);
+        this.vector = new QuantumComputer(name, 2 * numberOfQubits);
+    }
+
+    private static void validateSize(int numberOfQubits) {
+        if (numberOfQubits < 1 || numberOfQubits > MAX_QUBITS) {
+            throw new IllegalArgumentException("Number of qubits must be between 1 and " + MAX_QUBITS + ": " + numberOfQubits);
+        }
+    }
+
+    private void validateQubitIndex(int qubitIndex) {
+        if (qubitIndex < 0 || qubitIndex >= numQubits) {
+            throw new IllegalArgumentException("Qubit index out of bounds: " + qubitIndex);
+        }
+    }
+
+    /**
+     * Apply a Hadamard gate to a qubit.
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    @Override
+    public void applyHadamard(int qubitIndex) {
+        validateQubitIndex(qubitIndex);
+        vector.applyHadamard(qubitIndex);
+        vector.applyHadamard(qubitIndex + numQubits);
+    }
+
+    /**
+     * Apply a Pauli-X gate to a qubit
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    @Override
+    public void applyPauliX(int qubitIndex) {
+        validateQubitIndex(qubitIndex);
+        vector.applyPauliX(qubitIndex);
+        vector.applyPauliX(qubitIndex + numQubits);
+    }
+
+    /**
+     * Apply a Pauli-Z gate to a qubit
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    @Override
+    public void applyPauliZ(int qubitIndex) {
+        validateQubitIndex(qubitIndex);
+        vector.applyPauliZ(qubitIndex);
+        vector.applyPauliZ(qubitIndex + numQubits);
+    }
+
+    /**
+     * Apply any single qubit gate (rho becomes U rho U^dagger).
+     * @param qubitIndex The index of the qubit to apply the gate to
+     * @param matrix The 2x2 gate matrix, indexed as matrix[row][column]
+     */
+    @Override
+    public void applySingleQubitGate(int qubitIndex, Complex[][] matrix) {
+        validateQubitIndex(qubitIndex);
+        Gates.classify(matrix); // validates the shape
+        vector.applySingleQubitGate(qubitIndex, matrix);
+        vector.applySingleQubitGate(qubitIndex + numQubits, conjugate(matrix));
+    }
+
+    /**
+     * Apply a controlled not gate (CNOT). CNOT is real, so the column bits get the same gate.
+     * @param control The control qubit index
+     * @param target The target qubit index
+     */
+    @Override
+    public void applyCNOT(int control, int target) {
+        validateQubitIndex(control);
+        validateQubitIndex(target);
+        vector.applyCNOT(control, target);
+        vector.applyCNOT(control + numQubits, target + numQubits);
+    }
+
+    /**
+     * Apply a noise channel to a qubit: rho becomes the sum of K_i rho K_i^dagger.
+     * @param qubitIndex The qubit
+     * @param krausOperators The 2x2 Kraus operators, which must satisfy sum of K_i^dagger K_i = I
+     */
+    public void applyChannel(int qubitIndex, Complex[][]... krausOperators) {
+        validateQubitIndex(qubitIndex);
+        if (krausOperators.length == 0) {
+            throw new IllegalArgumentException("A channel needs at least one Kraus operator");
+        }
+        double[] completeness = new double[8];
+        double[] superReal = new double[16];
+        double[] superImaginary = new double[16];
+        for (Complex[][] kraus : krausOperators) {
+            Gates.classify(kraus); // validates the shape
+            double[] k = StateKernels.flatten(kraus);
+            for (int i = 0; i < 2; i++) {
+                for (int j = 0; j < 2; j++) {
+                    // (K^dagger K)[i][j] = sum over m of conj(K[m][i]) K[m][j]
+                    for (int m = 0; m < 2; m++) {
+                        double ar = k[(m * 2 + i) * 2], ai = -k[(m * 2 + i) * 2 + 1];
+                        double br = k[(m * 2 + j) * 2], bi = k[(m * 2 + j) * 2 + 1];
+                        completeness[(i * 2 + j) * 2] += ar * br - ai * bi;
+                        completeness[(i * 2 + j) * 2 + 1] += ar * bi + ai * br;
+                    }
+                }
+            }
+            // S[(r', c'), (r, c)] += K[r'][r] * conj(K[c'][c]), where bit 0 of the index is the row bit and bit 1 the column bit
+            for (int out = 0; out < 4; out++) {
+                for (int in = 0; in < 4; in++) {
+                    int rowOut = out & 1, columnOut = out >> 1;
+                    int rowIn = in & 1, columnIn = in >> 1;
+                    double ar = k[(rowOut * 2 + rowIn) * 2], ai = k[(rowOut * 2 + rowIn) * 2 + 1];
+                    double br = k[(columnOut * 2 + columnIn) * 2], bi = -k[(columnOut * 2 + columnIn) * 2 + 1];
+                    superReal[out * 4 + in] += ar * br - ai * bi;
+                    superImaginary[out * 4 + in] += ar * bi + ai * br;
+                }
+            }
+        }
+        for (int i = 0; i < 2; i++) {
+            for (int j = 0; j < 2; j++) {
+                double expected = i == j ? 1.0 : 0.0;
+                if (Math.abs(completeness[(i * 2 + j) * 2] - expected) > KRAUS_TOLERANCE
+                        || Math.abs(completeness[(i * 2 + j) * 2 + 1]) > KRAUS_TOLERANCE) {
+                    throw new IllegalArgumentException("Kraus operators do not preserve the trace (sum of K^dagger K must be I)");
+                }
+            }
+        }
+
+        Complex[][] superoperator = new Complex[4][4];
+        for (int out = 0; out < 4; out++) {
+            for (int in = 0; in < 4; in++) {
+                superoperator[out][in] = new Complex(superReal[out * 4 + in], superImaginary[out * 4 + in]);
+            }
+        }
+        vector.applyMultiQubitGate(new int[] {qubitIndex, qubitIndex + numQubits}, superoperator);
+    }
+
+    /**
+     * Apply depolarizing noise: with probability p the qubit gets an X, Y or Z error (each equally likely).
+     * @param qubitIndex The qubit
+     * @param probability The error probability p (3/4 leaves the qubit fully mixed)
+     */
+    public void applyDepolarizing(int qubitIndex, double probability) {
+        validateProbability(probability);
+        double identityWeight = Math.sqrt(1 - probability);
+        double errorWeight = Math.sqrt(probability / 3);
+        applyChannel(qubitIndex,
+                scale(identity(), identityWeight),
+                scale(Gates.pauliX(), errorWeight),
+                scale(Gates.pauliY(), errorWeight),
+                scale(Gates.pauliZ(), errorWeight));
+    }
+
+    /**
+     * Apply amplitude damping (energy loss, |1> decays to |0>).
+     * @param qubitIndex The qubit
+     * @param gamma The decay probability
+     */
+    public void applyAmplitudeDamping(int qubitIndex, double gamma) {
+        validateProbability(gamma);
+        Complex zero = new Complex(0);
+        applyChannel(qubitIndex,
+                new Complex[][] {{new Complex(1), zero}, {zero, new Complex(Math.sqrt(1 - gamma))}},
+                new Complex[][] {{zero, new Complex(Math.sqrt(gamma))}, {zero, zero}});
+    }
+
+    /**
+     * Apply dephasing noise: with probability p the qubit gets a Z error. The off diagonal elements shrink by 1 - 2p.
+     * @param qubitIndex The qubit
+     * @param probability The error probability p
+     */
+    public void applyDephasing(int qubitIndex, double probability) {
+        validateProbability(probability);
+        applyChannel(qubitIndex,
+                scale(identity(), Math.sqrt(1 - probability)),
+                scale(Gates.pauliZ(), Math.sqrt(probability)));
+    }
+
+    /**
+     * Measures a qubit and collapses the state to a 0 or 1 (rho becomes P rho P / p for the projector P of the result)
+     * @param qubitIndex The index of the qubit to measure
+     * @return 0 or 1
+     */
+    @Override
+    public int measure(int qubitIndex) {
+        validateQubitIndex(qubitIndex);
+        double[] real = vector.realParts();
+        int dimension = 1 << numQubits;
+        double probZero = 0;
+        double trace = 0;
+        for (int i = 0; i < dimension; i++) {
+            double diagonal = real[i + (i << numQubits)];
+            trace += diagonal;
+            if ((i & (1 << qubitIndex)) == 0) {
+                probZero += diagonal;
+            }
+        }
+        probZero /= trace;
+
+        int result = random.nextDouble() < probZero ? 0 : 1;
+        double probKept = result == 0 ? probZero : 1 - probZero;
+        if (probKept == 1.0) {
+            return result;
+        }
+        // project the row and the column bit, each scaled by 1/sqrt(p) so rho is scaled by 1/p
+        double scale = 1.0 / Math.sqrt(probKept);
+        Complex zero = new Complex(0);
+        Complex[][] projector = result == 0
+                ? new Complex[][] {{new Complex(scale), zero}, {zero, zero}}
+                : new Complex[][] {{zero, zero}, {zero, new Complex(scale)}};
+        vector.applySingleQubitGate(qubitIndex, projector);
+        vector.applySingleQubitGate(qubitIndex + numQubits, projector);
+        return result;
+    }
+
+    /**
+     * Reset the quantum state to the pure state |0...0>
+     */
+    @Override
+    public void reset() {
+        vector.reset();
+    }
+
+    /**
+     * Get one element of the density matrix.
+     * @param row The row (a basis state)
+     * @param column The column (a basis state)
+     * @return rho[row][column]
+     */
+    public Complex getElement(int row, int column) {
+        int dimension = 1 << numQubits;
+        if (row < 0 || row >= dimension || column < 0 || column >= dimension) {
+            throw new IllegalArgumentException("Element out of bounds: (" + row + ", " + column + ")");
+        }
+        return vector.getAmplitude(row + (column << numQubits));
+    }
+
+    /**
+     * Get the probability of measuring a basis state (a diagonal element).
+     * @param basisState The basis state
+     * @return rho[basisState][basisState]
+     */
+    public double getProbability(int basisState) {
+        return getElement(basisState, basisState).real();
+    }
+
+    /**
+     * Get the purity Tr(rho^2), which is 1 for a pure state and 1/2^n for the fully mixed state.
+     * Since rho is Hermitian this is just the squared length of the vector.
+     * @return The purity
+     */
+    public double getPurity() {
+        double[] real = vector.realParts();
+        double[] imaginary = vector.imaginaryParts();
+        double sum = 0;
+        for (int i = 0; i < real.length; i++) {
+            sum += real[i] * real[i] + imaginary[i] * imaginary[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Enable or disable spreading gates across the fork/join pool (see {@link QuantumComputer#setParallelEnabled(boolean)}).
+     * @param parallelEnabled True to allow parallel gates
+     */
+    public void setParallelEnabled(boolean parallelEnabled) {
+        vector.setParallelEnabled(parallelEnabled);
+    }
+
+    /**
+     * Use a specific fork/join pool for parallel passes.
+     * @param pool The pool
+     */
+    public void setForkJoinPool(ForkJoinPool pool) {
+        vector.setForkJoinPool(pool);
+    }
+
+    private static void validateProbability(double probability) {
+        if (!(probability >= 0 && probability <= 1)) {
+            throw new IllegalArgumentException("Probability must be between 0 and 1: " + probability);
+        }
+    }
+
+    private static Complex[][] conjugate(Complex[][] matrix) {
+        return new Complex[][] {
+            {matrix[0][0].conjugate(), matrix[0][1].conjugate()},
+            {matrix[1][0].conjugate(), matrix[1][1].conjugate()}
+        };
+    }
+
+    private static Complex[][] identity() {
+        return new Complex[][] {{new Complex(1), new Complex(0)}, {new Complex(0), new Complex(1)}};
+    }
+
+    private static Complex[][] scale(Complex[][] matrix, double factor) {
+        return new Complex[][] {
+            {matrix[0][0].multiply(factor), matrix[0][1].multiply(factor)},
+            {matrix[1][0].multiply(factor), matrix[1][1].multiply(factor)}
+        };
+    }
+
+    /**
+     * Get the name of this quantum computer.
+     * @return The name
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Update the name of this quantum computer.
+     * @param name The new name for this quantum computer
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the number of qubits.
+     * @return The number of qubits
+     */
+    @Override
+    public int getNumQubits() {
+        return numQubits;
+    }
+
+    @Override
+    public String toString() {
+        return "Density Matrix Computer{" + "name='" + name + "\'" + ", numQubits=" + numQubits + '}';
+    }
+}
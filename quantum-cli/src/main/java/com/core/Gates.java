@@ -0,0 +1,202 @@
+package com.core;
+
+
+/**
+ * Factory for the common single-qubit gate matrices.
+ * <p>
+ * Every matrix is a 2x2 {@code Complex[][]} in row major order, so {@code matrix[row][column]}.
+ * The matrices can be passed straight to {@link QuantumComputer#applySingleQubitGate(int, Complex[][])}.
+ */
+public final class Gates {
+    /**
+     * Anything smaller than this is treated as an exact zero when classifying a matrix.
+     */
+    private static final double EPSILON = 1e-15;
+
+    /**
+     * The shape of a 2x2 gate matrix. The quantum computer uses this to pick the cheapest kernel.
+     */
+    public enum Kind {
+        /** Only the diagonal is non zero (Z, S, T, RZ, phase) */
+        DIAGONAL,
+        /** Only the anti diagonal is non zero (X, Y) */
+        ANTI_DIAGONAL,
+        /** Every entry is real (H, RY) */
+        REAL,
+        /** Anything else (RX, SX, ...) */
+        GENERAL
+    }
+
+    private Gates() {
+    }
+
+    /**
+     * Hadamard gate.
+     * @return The matrix (1/sqrt(2)) [[1, 1], [1, -1]]
+     */
+    public static Complex[][] hadamard() {
+        double scale = 1.0 / Math.sqrt(2);
+        return matrix(new Complex(scale), new Complex(scale), new Complex(scale), new Complex(-scale));
+    }
+
+    /**
+     * Pauli-X (NOT) gate.
+     * @return The matrix [[0, 1], [1, 0]]
+     */
+    public static Complex[][] pauliX() {
+        return matrix(new Complex(0), new Complex(1), new Complex(1), new Complex(0));
+    }
+
+    /**
+     * Pauli-Y gate.
+     * @return The matrix [[0, -i], [i, 0]]
+     */
+    public static Complex[][] pauliY() {
+        return matrix(new Complex(0), new Complex(0, -1), new Complex(0, 1), new Complex(0));
+    }
+
+    /**
+     * Pauli-Z gate.
+     * @return The matrix [[1, 0], [0, -1]]
+     */
+    public static Complex[][] pauliZ() {
+        return matrix(new Complex(1), new Complex(0), new Complex(0), new Complex(-1));
+    }
+
+    /**
+     * S gate (square root of Z).
+     * @return The matrix [[1, 0], [0, i]]
+     */
+    public static Complex[][] s() {
+        return phase(Math.PI / 2);
+    }
+
+    /**
+     * T gate (square root of S).
+     * @return The matrix [[1, 0], [0, e^{i pi/4}]]
+     */
+    public static Complex[][] t() {
+        return phase(Math.PI / 4);
+    }
+
+    /**
+     * SX gate (square root of X).
+     * @return The matrix (1/2) [[1+i, 1-i], [1-i, 1+i]]
+     */
+    public static Complex[][] sx() {
+        return matrix(new Complex(0.5, 0.5), new Complex(0.5, -0.5), new Complex(0.5, -0.5), new Complex(0.5, 0.5));
+    }
+
+    /**
+     * Phase gate.
+     * @param theta The phase angle in radians
+     * @return The matrix [[1, 0], [0, e^{i theta}]]
+     */
+    public static Complex[][] phase(double theta) {
+        return matrix(new Complex(1), new Complex(0), new Complex(0), new Complex(Math.cos(theta), Math.sin(theta)));
+    }
+
+    /**
+     * Rotation around the X axis of the Bloch sphere.
+     * @param theta The rotation angle in radians
+     * @return The matrix [[cos(theta/2), -i sin(theta/2)], [-i sin(theta/2), cos(theta/2)]]
+     */
+    public static Complex[][] rx(double theta) {
+        double cos = Math.cos(theta / 2);
+        double sin = Math.sin(theta / 2);
+        return matrix(new Complex(cos), new Complex(0, -sin), new Complex(0, -sin), new Complex(cos));
+    }
+
+    /**
+     * Rotation around the Y axis of the Bloch sphere.
+     * @param theta The rotation angle in radians
+     * @return The matrix [[cos(theta/2), -sin(theta/2)], [sin(theta/2), cos(theta/2)]]
+     */
+    public static Complex[][] ry(double theta) {
+        double cos = Math.cos(theta / 2);
+        double sin = Math.sin(theta / 2);
+        return matrix(new Complex(cos), new Complex(-sin), new Complex(sin), new Complex(cos));
+    }
+
+    /**
+     * Rotation around the Z axis of the Bloch sphere.
+     * @param theta The rotation angle in radians
+     * @return The matrix [[e^{-i theta/2}, 0], [0, e^{i theta/2}]]
+     */
+    public static Complex[][] rz(double theta) {
+        double cos = Math.cos(theta / 2);
+        double sin = Math.sin(theta / 2);
+        return matrix(new Complex(cos, -sin), new Complex(0), new Complex(0), new Complex(cos, sin));
+    }
+
+    /**
+     * Multiply two 2x2 matrices.
+     * <p>
+     * Applying {@code first} and then {@code second} is the same as applying {@code multiply(second, first)}.
+     * @param left The left matrix
+     * @param right The right matrix
+     * @return The product left * right
+     */
+    public static Complex[][] multiply(Complex[][] left, Complex[][] right) {
+        validate(left);
+        validate(right);
+        Complex[][] product = new Complex[2][2];
+        for (int row = 0; row < 2; row++) {
+            for (int column = 0; column < 2; column++) {
+                product[row][column] = left[row][0].multiply(right[0][column]).add(left[row][1].multiply(right[1][column]));
+            }
+        }
+        return product;
+    }
+
+    /**
+     * Work out the shape of a gate matrix.
+     * @param matrix The 2x2 matrix
+     * @return The kind of the matrix
+     * @throws IllegalArgumentException if the matrix is not 2x2
+     */
+    public static Kind classify(Complex[][] matrix) {
+        validate(matrix);
+        if (isZero(matrix[0][1]) && isZero(matrix[1][0])) {
+            return Kind.DIAGONAL;
+        }
+        if (isZero(matrix[0][0]) && isZero(matrix[1][1])) {
+            return Kind.ANTI_DIAGONAL;
+        }
+        for (Complex[] row : matrix) {
+            for (Complex entry : row) {
+                if (Math.abs(entry.imaginary()) >= EPSILON) {
+                    return Kind.GENERAL;
+                }
+            }
+        }
+        return Kind.REAL;
+    }
+
+    /**
+     * Make sure a matrix is a 2x2 matrix with no missing entries.
+     * @param matrix The matrix to check
+     * @throws IllegalArgumentException if the matrix is not 2x2
+     */
+    static void validate(Complex[][] matrix) {
+        if (matrix == null || matrix.length != 2 || matrix[0] == null || matrix[1] == null
+                || matrix[0].length != 2 || matrix[1].length != 2) {
+            throw new IllegalArgumentException("Single qubit gates must be 2x2 matrices");
+        }
+        for (Complex[] row : matrix) {
+            for (Complex entry : row) {
+                if (entry == null) {
+                    throw new IllegalArgumentException("Gate matrix has a missing entry");
+                }
+            }
+        }
+    }
+
+    private static boolean isZero(Complex value) {
+        return Math.abs(value.real()) < EPSILON && Math.abs(value.imaginary()) < EPSILON;
+    }
+
+    private static Complex[][] matrix(Complex m00, Complex m01, Complex m10, Complex m11) {
+        return new Complex[][] {{m00, m01}, {m10, m11}};
+    }
+}
@@ -0,0 +1,137 @@
+package com.core;
+
+import java.util.random.RandomGenerator;
+
+
+/**
+ * The physical properties of a link between two nodes in a {@link NetworkSimulator}: how long a message takes,
+ * how much that varies, how often a message is lost and how a quantum state decoheres on the way.
+ * <p>
+ * With jitter, messages on the same link can arrive in a different order than they were sent.
+ */
+public class LinkModel {
+    private long latencyNanos;
+    private long jitterNanos;
+    private double lossProbability;
+    private DecoherenceModel decoherence;
+
+    /**
+     * Create a link without delay, loss or decoherence.
+     */
+    public LinkModel() {
+    }
+
+    /**
+     * Create a link with a fixed delay.
+     * @param latencyNanos The delay in nanoseconds
+     */
+    public LinkModel(long latencyNanos) {
+        this.latencyNanos = checkLatency(latencyNanos);
+    }
+
+    /**
+     * Set the fixed part of the delay.
+     * @param latencyNanos The delay in nanoseconds
+     * @return This link (to allow for chaining commands)
+     */
+    public LinkModel setLatency(long latencyNanos) {
+        this.latencyNanos = checkLatency(latencyNanos);
+        return this;
+    }
+
+    private static long checkLatency(long latencyNanos) {
+        if (latencyNanos < 0) {
+            throw new IllegalArgumentException("Latency can not be negative: " + latencyNanos);
+        }
+        return latencyNanos;
+    }
+
+    /**
+     * Set the random part of the delay, uniform between 0 and the jitter.
+     * @param jitterNanos The largest extra delay in nanoseconds
+     * @return This link (to allow for chaining commands)
+     */
+    public LinkModel setJitter(long jitterNanos) {
+        if (jitterNanos < 0) {
+            throw new IllegalArgumentException("Jitter can not be negative: " + jitterNanos);
+        }
+        this.jitterNanos = jitterNanos;
+        return this;
+    }
+
+    /**
+     * Set the probability that a message is lost.
+     * @param probability The loss probability
+     * @return This link (to allow for chaining commands)
+     */
+    public LinkModel setLoss(double probability) {
+        if (!(probability >= 0 && probability <= 1)) {
+            throw new IllegalArgumentException("Probability must be between 0 and 1: " + probability);
+        }
+        this.lossProbability = probability;
+        return this;
+    }
+
+    /**
+     * Set how a quantum state decoheres while it travels over the link.
+     * @param decoherence The model, applied once for the travel time, or null for none
+     * @return This link (to allow for chaining commands)
+     */
+    public LinkModel setDecoherence(DecoherenceModel decoherence) {
+        this.decoherence = decoherence;
+        return this;
+    }
+
+    /**
+     * Get the fixed part of the delay.
+     * @return The delay in nanoseconds
+     */
+    public long getLatency() {
+        return latencyNanos;
+    }
+
+    /**
+     * Get the largest random extra delay.
+     * @return The jitter in nanoseconds
+     */
+    public long getJitter() {
+        return jitterNanos;
+    }
+
+    /**
+     * Get the probability that a message is lost.
+     * @return The loss probability
+     */
+    public double getLoss() {
+        return lossProbability;
+    }
+
+    /**
+     * Get how a quantum state decoheres on the link.
+     * @return The model, or null for none
+     */
+    public DecoherenceModel getDecoherence() {
+        return decoherence;
+    }
+
+    /**
+     * Draw the delay of one message.
+     * @param random The random generator of the simulation
+     * @return The delay in nanoseconds, or -1 if the message is lost
+     */
+    long sampleDelay(RandomGenerator random) {
+        if (lossProbability > 0 && random.nextDouble() < lossProbability) {
+            return -1;
+        }
+        return jitterNanos == 0 ? latencyNanos : latencyNanos + random.nextLong(jitterNanos + 1);
+    }
+
+    @Override
+    public String toString() {
+        return "LinkModel{" +
+                "latency=" + latencyNanos +
+                ", jitter=" + jitterNanos +
+                ", loss=" + lossProbability +
+                '}';
+    }
+}
@@ -0,0 +1,185 @@
+package com.core;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * An unbounded multi-producer single-consumer queue, the inbox of one node of a {@link QuantumNetwork}.
+ * <p>
+ * This is the linked queue of D. Vyukov: a producer swaps itself in as the new tail with one atomic exchange and then
+ * links the old tail to it, so senders never lock and never retry, however many there are. The consumer owns the head
+ * and only follows the links. A message whose sender is between the two steps is not visible yet; it shows up as soon
+ * as the link is written, and a waiting consumer is woken up after that.
+ * <p>
+ * Only one thread consumes at a time. Consumers take a lock that producers never touch, which costs nothing in the usual
+ * case of one thread per node and keeps the queue correct if several threads read the same inbox.
+ * @param <E> The type of the messages
+ */
+final class Mailbox<E> {
+    private static final VarHandle TAIL;
+    private static final VarHandle NEXT;
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            TAIL = lookup.findVarHandle(Mailbox.class, "tail", Node.class);
+            NEXT = lookup.findVarHandle(Node.class, "next", Node.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final class Node<E> {
+        private E value;
+        @SuppressWarnings("unused")
+        private Node<E> next;
+
+        private Node(E value) {
+            this.value = value;
+        }
+    }
+
+    /**
+     * The last node, swapped by the producers.
+     */
+    @SuppressWarnings("unused")
+    private volatile Node<E> tail;
+    /**
+     * The node before the first message (its value is already taken), only used by the consumer.
+     */
+    private Node<E> head;
+    private final ReentrantLock consumerLock = new ReentrantLock();
+    /**
+     * The consumer that is parked waiting for a message, or null.
+     */
+    private volatile Thread waiter;
+    private final AtomicInteger size = new AtomicInteger();
+
+    Mailbox() {
+        head = new Node<>(null);
+        tail = head;
+    }
+
+    /**
+     * Add a message, from any thread, without locking.
+     * @param message The message
+     */
+    @SuppressWarnings("unchecked")
+    void offer(E message) {
+        Node<E> node = new Node<>(message);
+        size.incrementAndGet();
+        Node<E> previous = (Node<E>) TAIL.getAndSet(this, node);
+        // a volatile write, so it is ordered before the read of waiter below
+        NEXT.setVolatile(previous, node);
+        Thread parked = waiter;
+        if (parked != null) {
+            LockSupport.unpark(parked);
+        }
+    }
+
+    /**
+     * Take the oldest message.
+     * @return The message, or null if there is none
+     */
+    E poll() {
+        consumerLock.lock();
+        try {
+            return pollLocked();
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    /**
+     * Take the oldest message, waiting for one if needed.
+     * @param timeout The longest time to wait, or a negative number to wait forever
+     * @param unit The unit of the timeout
+     * @return The message, or null if the time ran out
+     * @throws InterruptedException If the thread was interrupted while waiting
+     */
+    E take(long timeout, TimeUnit unit) throws InterruptedException {
+        boolean forever = timeout < 0;
+        long deadline = forever ? 0 : System.nanoTime() + unit.toNanos(timeout);
+        if (forever) {
+            consumerLock.lockInterruptibly();
+        } else if (!consumerLock.tryLock(timeout, unit)) {
+            return null;
+        }
+        try {
+            waiter = Thread.currentThread();
+            while (true) {
+                E message = pollLocked();
+                if (message != null) {
+                    return message;
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                if (forever) {
+                    LockSupport.park(this);
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return null;
+                    }
+                    LockSupport.parkNanos(this, remaining);
+                }
+            }
+        } finally {
+            waiter = null;
+            consumerLock.unlock();
+        }
+    }
+
+    /**
+     * Move up to maxMessages messages into a collection, oldest first, under one acquisition of the consumer lock.
+     * @param sink The collection to add to
+     * @param maxMessages The most messages to move
+     * @return The number of messages moved
+     */
+    int drainTo(Collection<? super E> sink, int maxMessages) {
+        consumerLock.lock();
+        try {
+            int moved = 0;
+            while (moved < maxMessages) {
+                E message = pollLocked();
+                if (message == null) {
+                    break;
+                }
+                sink.add(message);
+                moved++;
+            }
+            return moved;
+        } finally {
+            consumerLock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of messages that were sent and not taken yet.
+     * @return The number of messages
+     */
+    int size() {
+        return Math.max(0, size.get());
+    }
+
+    @SuppressWarnings("unchecked")
+    private E pollLocked() {
+        Node<E> next = (Node<E>) NEXT.getVolatile(head);
+        if (next == null) {
+            return null;
+        }
+        E message = next.value;
+        // the taken node becomes the new empty head, drop the reference so the message can be collected
+        next.value = null;
+        head = next;
+        size.decrementAndGet();
+        return message;
+    }
+}
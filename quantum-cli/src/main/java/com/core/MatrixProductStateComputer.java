@@ -0,0 +1,607 @@
+package com.core;
+
+import java.util.Random;
+
+import com.core.linalg.ComplexSvd;
+
+
+/**
+ * A quantum computer that stores the state as a matrix product state (MPS), for circuits that do not build up much entanglement.
+ * <p>
+ * Each qubit sits on one site of a chain and owns a tensor A[left][bit][right]. The amplitude of a basis state is the product
+ * of the matrices A[.][bit][.] along the chain. The size of the bond between two sites (the bond dimension) grows with the
+ * entanglement across that cut, so memory is about n * 2 * chi^2 instead of 2^n, and 1D circuits on 100+ qubits fit easily.
+ * <p>
+ * Single qubit gates act on one tensor. Two qubit gates contract the two neighbouring tensors, apply the gate and split them
+ * again with an SVD, keeping at most {@link #setMaxBondDimension(int) the maximum bond dimension} singular values and dropping
+ * the smallest ones while their weight stays under {@link #setTruncationThreshold(double) the truncation threshold}.
+ * The dropped weight is added to {@link #getTruncationError()}, an estimate of the lost fidelity (0 means the simulation is exact).
+ * <p>
+ * A CNOT between qubits that are not neighbours is routed with SWAP gates: the control moves along the chain until it is next to
+ * the target. The qubit then stays on its new site (the mapping from qubits to sites is tracked), so nothing is swapped back.
+ * <p>
+ * The tensors are kept in mixed canonical form around one site (the orthogonality center), so the norm and the probabilities of
+ * a qubit can be read from the center tensor alone and truncations are optimal.
+ */
+public class MatrixProductStateComputer implements QuantumBackend {
+    /**
+     * By default bonds are cut at this dimension.
+     */
+    public static final int DEFAULT_MAX_BOND_DIMENSION = 64;
+    /**
+     * By default singular values are dropped while their total weight stays below this.
+     */
+    public static final double DEFAULT_TRUNCATION_THRESHOLD = 1e-12;
+    /**
+     * Singular values this much smaller than the largest are treated as zero when moving the orthogonality center.
+     */
+    private static final double RANK_TOLERANCE = 1e-14;
+
+    private static final double[] CNOT_LEFT_CONTROL = permutation(0, 1, 3, 2);
+    private static final double[] CNOT_RIGHT_CONTROL = permutation(0, 3, 2, 1);
+    private static final double[] SWAP = permutation(0, 2, 1, 3);
+    private static final double[] ZERO_4X4 = new double[16];
+
+    private String name;
+    private final int numQubits;
+    private final Random random;
+    /**
+     * The real parts of the tensor on every site. Element (left, bit, right) is at {@code (left * 2 + bit) * rightDimension + right}.
+     */
+    private final double[][] tensorReal;
+    private final double[][] tensorImaginary;
+    /**
+     * bond[i] is the dimension of the bond on the left of site i (bond[0] and bond[n] are 1).
+     */
+    private final int[] bond;
+    /**
+     * The site each qubit is on, and the qubit on each site.
+     */
+    private final int[] siteOf;
+    private final int[] qubitAt;
+    private int center;
+    private int maxBondDimension = DEFAULT_MAX_BOND_DIMENSION;
+    private double truncationThreshold = DEFAULT_TRUNCATION_THRESHOLD;
+    private double truncationError;
+
+    /**
+     * Initialize an MPS quantum computer with all qubits in state |0>.
+     * @param name The name of this quantum computer
+     * @param numberOfQubits The number of qubits
+     */
+    public MatrixProductStateComputer(String name, int numberOfQubits) {
+        this(name, numberOfQubits, new Random());
+    }
+
+    /**
+     * Initialize an MPS quantum computer with a fixed seed for the measurement randomness, so runs can be repeated exactly.
+     * @param name The name of this quantum computer
+     * @param numberOfQubits The number of qubits
+     * @param seed The seed for measurements
+     */
+    public MatrixProductStateComputer(String name, int numberOfQubits, long seed) {
+        this(name, numberOfQubits, new Random(seed));
+    }
+
+    private MatrixProductStateComputer(String name, int numberOfQubits, Random random) {
+        if (numberOfQubits < 1) {
+            throw new IllegalArgumentException("Number of qubits must be at least 1: " + numberOfQubits);
+        }
+        this.name = name;
+        this.numQubits = numberOfQubits;
+        this.random = random;
+        this.tensorReal = new double[numberOfQubits][];
+        this.tensorImaginary = new double[numberOfQubits][];
+        this.bond = new int[numberOfQubits + 1];
+        this.siteOf = new int[numberOfQubits];
+        this.qubitAt = new int[numberOfQubits];
+        writeZeroState();
+    }
+
+    private void validateQubitIndex(int qubitIndex) {
+        if (qubitIndex < 0 || qubitIndex >= numQubits) {
+            throw new IllegalArgumentException("Qubit index out of bounds: " + qubitIndex);
+        }
+    }
+
+    /**
+     * Apply a Hadamard gate to a qubit.
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    @Override
+    public void applyHadamard(int qubitIndex) {
+        applySingleQubitGate(qubitIndex, Gates.hadamard());
+    }
+
+    /**
+     * Apply a Pauli-X gate to a qubit
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    @Override
+    public void applyPauliX(int qubitIndex) {
+        applySingleQubitGate(qubitIndex, Gates.pauliX());
+    }
+
+    /**
+     * Apply a Pauli-Z gate to a qubit
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    @Override
+    public void applyPauliZ(int qubitIndex) {
+        applySingleQubitGate(qubitIndex, Gates.pauliZ());
+    }
+
+    /**
+     * Apply any single qubit gate. This only changes the tensor of the qubit's site and never changes a bond dimension.
+     * @param qubitIndex The index of the qubit to apply the gate to
+     * @param matrix The 2x2 gate matrix, indexed as matrix[row][column]
+     */
+    @Override
+    public void applySingleQubitGate(int qubitIndex, Complex[][] matrix) {
+        validateQubitIndex(qubitIndex);
+        Gates.classify(matrix); // validates the shape
+        double[] m = StateKernels.flatten(matrix);
+        int site = siteOf[qubitIndex];
+        double[] real = tensorReal[site];
+        double[] imaginary = tensorImaginary[site];
+        int left = bond[site];
+        int right = bond[site + 1];
+        for (int l = 0; l < left; l++) {
+            for (int r = 0; r < right; r++) {
+                int i0 = (l * 2) * right + r;
+                int i1 = i0 + right;
+                double r0 = real[i0], m0 = imaginary[i0];
+                double r1 = real[i1], m1 = imaginary[i1];
+                real[i0] = m[0] * r0 - m[1] * m0 + m[2] * r1 - m[3] * m1;
+                imaginary[i0] = m[0] * m0 + m[1] * r0 + m[2] * m1 + m[3] * r1;
+                real[i1] = m[4] * r0 - m[5] * m0 + m[6] * r1 - m[7] * m1;
+                imaginary[i1] = m[4] * m0 + m[5] * r0 + m[6] * m1 + m[7] * r1;
+            }
+        }
+    }
+
+    /**
+     * Apply a controlled not gate (CNOT). If the qubits are not neighbours on the chain, the control is first moved next to the target with SWAP gates.
+     * @param control The control qubit index
+     * @param target The target qubit index
+     */
+    @Override
+    public void applyCNOT(int control, int target) {
+        validateQubitIndex(control);
+        validateQubitIndex(target);
+        if (control == target) {
+            throw new IllegalArgumentException("Control and target must be different qubits: " + control);
+        }
+        int controlSite = siteOf[control];
+        int targetSite = siteOf[target];
+        while (Math.abs(controlSite - targetSite) > 1) {
+            int nextSite = controlSite < targetSite ? controlSite + 1 : controlSite - 1;
+            applyTwoSiteGate(Math.min(controlSite, nextSite), SWAP, ZERO_4X4);
+            swapSites(controlSite, nextSite);
+            controlSite = nextSite;
+        }
+        if (controlSite < targetSite) {
+            applyTwoSiteGate(controlSite, CNOT_LEFT_CONTROL, ZERO_4X4);
+        } else {
+            applyTwoSiteGate(targetSite, CNOT_RIGHT_CONTROL, ZERO_4X4);
+        }
+    }
+
+    /**
+     * Measures a qubit and collapses the state to a 0 or 1
+     * @param qubitIndex The index of the qubit to measure
+     * @return 0 or 1
+     */
+    @Override
+    public int measure(int qubitIndex) {
+        validateQubitIndex(qubitIndex);
+        int site = siteOf[qubitIndex];
+        moveCenter(site);
+
+        double[] real = tensorReal[site];
+        double[] imaginary = tensorImaginary[site];
+        int left = bond[site];
+        int right = bond[site + 1];
+        double probZero = 0;
+        double probOne = 0;
+        for (int l = 0; l < left; l++) {
+            for (int r = 0; r < right; r++) {
+                int i0 = (l * 2) * right + r;
+                int i1 = i0 + right;
+                probZero += real[i0] * real[i0] + imaginary[i0] * imaginary[i0];
+                probOne += real[i1] * real[i1] + imaginary[i1] * imaginary[i1];
+            }
+        }
+        // the center tensor holds the whole norm, dividing by it removes any drift from truncation
+        int result = random.nextDouble() < probZero / (probZero + probOne) ? 0 : 1;
+        double scale = 1.0 / Math.sqrt(result == 0 ? probZero : probOne);
+        for (int l = 0; l < left; l++) {
+            for (int r = 0; r < right; r++) {
+                int kept = (l * 2 + result) * right + r;
+                int removed = (l * 2 + 1 - result) * right + r;
+                real[kept] *= scale;
+                imaginary[kept] *= scale;
+                real[removed] = 0.0;
+                imaginary[removed] = 0.0;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reset the quantum state to all 0s. This also puts every qubit back on its own site and clears the truncation error.
+     */
+    @Override
+    public void reset() {
+        writeZeroState();
+    }
+
+    /**
+     * Put every qubit in |0> on its own site, with all bonds of dimension 1.
+     */
+    private void writeZeroState() {
+        for (int site = 0; site < numQubits; site++) {
+            tensorReal[site] = new double[] {1.0, 0.0};
+            tensorImaginary[site] = new double[2];
+            bond[site] = 1;
+            siteOf[site] = site;
+            qubitAt[site] = site;
+        }
+        bond[numQubits] = 1;
+        center = 0;
+        truncationError = 0.0;
+    }
+
+    /**
+     * Apply a 4x4 gate to the sites (site, site + 1). Row/column index 2 * a + b means bit a on the left site and bit b on the right.
+     * Afterwards the orthogonality center is on site + 1.
+     */
+    private void applyTwoSiteGate(int site, double[] gateReal, double[] gateImaginary) {
+        moveCenter(site);
+        int left = bond[site];
+        int middle = bond[site + 1];
+        int right = bond[site + 2];
+        double[] aReal = tensorReal[site], aImaginary = tensorImaginary[site];
+        double[] bReal = tensorReal[site + 1], bImaginary = tensorImaginary[site + 1];
+
+        // theta[l][a][b][r] = sum over m of A[l][a][m] * B[m][b][r]
+        double[] thetaReal = new double[left * 4 * right];
+        double[] thetaImaginary = new double[left * 4 * right];
+        for (int l = 0; l < left; l++) {
+            for (int a = 0; a < 2; a++) {
+                for (int m = 0; m < middle; m++) {
+                    double xr = aReal[(l * 2 + a) * middle + m];
+                    double xi = aImaginary[(l * 2 + a) * middle + m];
+                    if (xr == 0 && xi == 0) {
+                        continue;
+                    }
+                    for (int b = 0; b < 2; b++) {
+                        int out = ((l * 2 + a) * 2 + b) * right;
+                        int in = (m * 2 + b) * right;
+                        for (int r = 0; r < right; r++) {
+                            thetaReal[out + r] += xr * bReal[in + r] - xi * bImaginary[in + r];
+                            thetaImaginary[out + r] += xr * bImaginary[in + r] + xi * bReal[in + r];
+                        }
+                    }
+                }
+            }
+        }
+
+        double[] vr = new double[4];
+        double[] vi = new double[4];
+        for (int l = 0; l < left; l++) {
+            for (int r = 0; r < right; r++) {
+                for (int ab = 0; ab < 4; ab++) {
+                    vr[ab] = thetaReal[(l * 4 + ab) * right + r];
+                    vi[ab] = thetaImaginary[(l * 4 + ab) * right + r];
+                }
+                for (int row = 0; row < 4; row++) {
+                    double sumReal = 0;
+                    double sumImaginary = 0;
+                    for (int column = 0; column < 4; column++) {
+                        double gr = gateReal[row * 4 + column];
+                        double gi = gateImaginary[row * 4 + column];
+                        sumReal += gr * vr[column] - gi * vi[column];
+                        sumImaginary += gr * vi[column] + gi * vr[column];
+                    }
+                    thetaReal[(l * 4 + row) * right + r] = sumReal;
+                    thetaImaginary[(l * 4 + row) * right + r] = sumImaginary;
+                }
+            }
+        }
+
+        // theta as a (left * 2) x (2 * right) matrix has the same flat layout
+        ComplexSvd svd = ComplexSvd.decompose(left * 2, 2 * right, thetaReal, thetaImaginary);
+        int keep = truncate(svd.getSingularValues());
+        double keptWeight = 0;
+        for (int k = 0; k < keep; k++) {
+            keptWeight += svd.getSingularValues()[k] * svd.getSingularValues()[k];
+        }
+        double normalization = 1.0 / Math.sqrt(keptWeight);
+
+        double[] newAReal = new double[left * 2 * keep];
+        double[] newAImaginary = new double[left * 2 * keep];
+        for (int row = 0; row < left * 2; row++) {
+            for (int k = 0; k < keep; k++) {
+                newAReal[row * keep + k] = svd.getUReal()[row * svd.getRank() + k];
+                newAImaginary[row * keep + k] = svd.getUImaginary()[row * svd.getRank() + k];
+            }
+        }
+        double[] newBReal = new double[keep * 2 * right];
+        double[] newBImaginary = new double[keep * 2 * right];
+        for (int k = 0; k < keep; k++) {
+            double sigma = svd.getSingularValues()[k] * normalization;
+            for (int column = 0; column < 2 * right; column++) {
+                newBReal[k * 2 * right + column] = sigma * svd.getVReal()[column * svd.getRank() + k];
+                newBImaginary[k * 2 * right + column] = -sigma * svd.getVImaginary()[column * svd.getRank() + k];
+            }
+        }
+        tensorReal[site] = newAReal;
+        tensorImaginary[site] = newAImaginary;
+        tensorReal[site + 1] = newBReal;
+        tensorImaginary[site + 1] = newBImaginary;
+        bond[site + 1] = keep;
+        center = site + 1;
+    }
+
+    /**
+     * Work out how many singular values to keep, and add the weight of the rest to the truncation error.
+     */
+    private int truncate(double[] singularValues) {
+        double total = 0;
+        for (double sigma : singularValues) {
+            total += sigma * sigma;
+        }
+        int keep = Math.min(singularValues.length, maxBondDimension);
+        double discarded = 0;
+        for (int k = keep; k < singularValues.length; k++) {
+            discarded += singularValues[k] * singularValues[k];
+        }
+        // drop more of the smallest values while their weight stays under the threshold
+        while (keep > 1) {
+            double weight = singularValues[keep - 1] * singularValues[keep - 1];
+            if ((discarded + weight) / total > truncationThreshold) {
+                break;
+            }
+            discarded += weight;
+            keep--;
+        }
+        truncationError += discarded / total;
+        return keep;
+    }
+
+    /**
+     * Move the orthogonality center to a site with exact SVDs (only zero singular values are dropped).
+     */
+    private void moveCenter(int site) {
+        while (center < site) {
+            int left = bond[center];
+            int right = bond[center + 1];
+            ComplexSvd svd = ComplexSvd.decompose(left * 2, right, tensorReal[center], tensorImaginary[center]);
+            int keep = nonZeroRank(svd.getSingularValues());
+
+            double[] newReal = new double[left * 2 * keep];
+            double[] newImaginary = new double[left * 2 * keep];
+            for (int row = 0; row < left * 2; row++) {
+                for (int k = 0; k < keep; k++) {
+                    newReal[row * keep + k] = svd.getUReal()[row * svd.getRank() + k];
+                    newImaginary[row * keep + k] = svd.getUImaginary()[row * svd.getRank() + k];
+                }
+            }
+            // the next tensor absorbs s V^dagger (keep x right)
+            int nextRight = bond[center + 2];
+            double[] nextReal = tensorReal[center + 1];
+            double[] nextImaginary = tensorImaginary[center + 1];
+            double[] absorbedReal = new double[keep * 2 * nextRight];
+            double[] absorbedImaginary = new double[keep * 2 * nextRight];
+            for (int k = 0; k < keep; k++) {
+                for (int m = 0; m < right; m++) {
+                    double xr = svd.getSingularValues()[k] * svd.getVReal()[m * svd.getRank() + k];
+                    double xi = -svd.getSingularValues()[k] * svd.getVImaginary()[m * svd.getRank() + k];
+                    for (int column = 0; column < 2 * nextRight; column++) {
+                        double yr = nextReal[m * 2 * nextRight + column];
+                        double yi = nextImaginary[m * 2 * nextRight + column];
+                        absorbedReal[k * 2 * nextRight + column] += xr * yr - xi * yi;
+                        absorbedImaginary[k * 2 * nextRight + column] += xr * yi + xi * yr;
+                    }
+                }
+            }
+            tensorReal[center] = newReal;
+            tensorImaginary[center] = newImaginary;
+            tensorReal[center + 1] = absorbedReal;
+            tensorImaginary[center + 1] = absorbedImaginary;
+            bond[center + 1] = keep;
+            center++;
+        }
+        while (center > site) {
+            int left = bond[center];
+            int right = bond[center + 1];
+            ComplexSvd svd = ComplexSvd.decompose(left, 2 * right, tensorReal[center], tensorImaginary[center]);
+            int keep = nonZeroRank(svd.getSingularValues());
+
+            double[] newReal = new double[keep * 2 * right];
+            double[] newImaginary = new double[keep * 2 * right];
+            for (int k = 0; k < keep; k++) {
+                for (int column = 0; column < 2 * right; column++) {
+                    newReal[k * 2 * right + column] = svd.getVReal()[column * svd.getRank() + k];
+                    newImaginary[k * 2 * right + column] = -svd.getVImaginary()[column * svd.getRank() + k];
+                }
+            }
+            // the previous tensor absorbs U s (left x keep)
+            int previousLeft = bond[center - 1];
+            double[] previousReal = tensorReal[center - 1];
+            double[] previousImaginary = tensorImaginary[center - 1];
+            double[] absorbedReal = new double[previousLeft * 2 * keep];
+            double[] absorbedImaginary = new double[previousLeft * 2 * keep];
+            for (int row = 0; row < previousLeft * 2; row++) {
+                for (int m = 0; m < left; m++) {
+                    double yr = previousReal[row * left + m];
+                    double yi = previousImaginary[row * left + m];
+                    if (yr == 0 && yi == 0) {
+                        continue;
+                    }
+                    for (int k = 0; k < keep; k++) {
+                        double xr = svd.getUReal()[m * svd.getRank() + k] * svd.getSingularValues()[k];
+                        double xi = svd.getUImaginary()[m * svd.getRank() + k] * svd.getSingularValues()[k];
+                        absorbedReal[row * keep + k] += yr * xr - yi * xi;
+                        absorbedImaginary[row * keep + k] += yr * xi + yi * xr;
+                    }
+                }
+            }
+            tensorReal[center] = newReal;
+            tensorImaginary[center] = newImaginary;
+            tensorReal[center - 1] = absorbedReal;
+            tensorImaginary[center - 1] = absorbedImaginary;
+            bond[center] = keep;
+            center--;
+        }
+    }
+
+    private static int nonZeroRank(double[] singularValues) {
+        int keep = 1;
+        while (keep < singularValues.length && singularValues[keep] > RANK_TOLERANCE * singularValues[0]) {
+            keep++;
+        }
+        return keep;
+    }
+
+    private void swapSites(int siteA, int siteB) {
+        int qubitA = qubitAt[siteA];
+        int qubitB = qubitAt[siteB];
+        qubitAt[siteA] = qubitB;
+        qubitAt[siteB] = qubitA;
+        siteOf[qubitA] = siteB;
+        siteOf[qubitB] = siteA;
+    }
+
+    /**
+     * Build a real 4x4 permutation matrix, where column j has its 1 in row {@code rows[j]}.
+     */
+    private static double[] permutation(int... rows) {
+        double[] matrix = new double[16];
+        for (int column = 0; column < 4; column++) {
+            matrix[rows[column] * 4 + column] = 1.0;
+        }
+        return matrix;
+    }
+
+    /**
+     * Get the amplitude of one basis state by multiplying the matrices along the chain.
+     * @param index The basis state, bit q is the value of qubit q (so this needs at most 63 qubits)
+     * @return The amplitude
+     */
+    public Complex getAmplitude(long index) {
+        if (numQubits > 63 || index < 0 || (numQubits < 63 && index >= 1L << numQubits)) {
+            throw new IllegalArgumentException("Basis state out of bounds: " + index);
+        }
+        double[] vectorReal = {1.0};
+        double[] vectorImaginary = {0.0};
+        for (int site = 0; site < numQubits; site++) {
+            int bit = (int) ((index >>> qubitAt[site]) & 1L);
+            int left = bond[site];
+            int right = bond[site + 1];
+            double[] nextReal = new double[right];
+            double[] nextImaginary = new double[right];
+            for (int l = 0; l < left; l++) {
+                for (int r = 0; r < right; r++) {
+                    double tr = tensorReal[site][(l * 2 + bit) * right + r];
+                    double ti = tensorImaginary[site][(l * 2 + bit) * right + r];
+                    nextReal[r] += vectorReal[l] * tr - vectorImaginary[l] * ti;
+                    nextImaginary[r] += vectorReal[l] * ti + vectorImaginary[l] * tr;
+                }
+            }
+            vectorReal = nextReal;
+            vectorImaginary = nextImaginary;
+        }
+        return new Complex(vectorReal[0], vectorImaginary[0]);
+    }
+
+    /**
+     * Set the largest bond dimension kept after a two qubit gate.
+     * @param maxBondDimension The maximum (at least 1)
+     */
+    public void setMaxBondDimension(int maxBondDimension) {
+        if (maxBondDimension < 1) {
+            throw new IllegalArgumentException("Maximum bond dimension must be at least 1: " + maxBondDimension);
+        }
+        this.maxBondDimension = maxBondDimension;
+    }
+
+    /**
+     * Get the largest bond dimension kept after a two qubit gate.
+     * @return The maximum bond dimension
+     */
+    public int getMaxBondDimension() {
+        return maxBondDimension;
+    }
+
+    /**
+     * Set how much weight of small singular values may be dropped after each two qubit gate.
+     * @param truncationThreshold The threshold (0 only drops values past the maximum bond dimension)
+     */
+    public void setTruncationThreshold(double truncationThreshold) {
+        if (truncationThreshold < 0) {
+            throw new IllegalArgumentException("Truncation threshold can not be negative: " + truncationThreshold);
+        }
+        this.truncationThreshold = truncationThreshold;
+    }
+
+    /**
+     * Get how much weight of small singular values may be dropped after each two qubit gate.
+     * @return The threshold
+     */
+    public double getTruncationThreshold() {
+        return truncationThreshold;
+    }
+
+    /**
+     * Get the total weight of the singular values dropped since the last reset. This is roughly 1 minus the fidelity with the exact state.
+     * @return The truncation error (0 when nothing was dropped)
+     */
+    public double getTruncationError() {
+        return truncationError;
+    }
+
+    /**
+     * Get the largest bond dimension currently in the chain.
+     * @return The largest bond dimension
+     */
+    public int getBondDimension() {
+        int largest = 1;
+        for (int dimension : bond) {
+            largest = Math.max(largest, dimension);
+        }
+        return largest;
+    }
+
+    /**
+     * Get the name of this quantum computer.
+     * @return The name
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Update the name of this quantum computer.
+     * @param name The new name for this quantum computer
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the number of qubits.
+     * @return The number of qubits
+     */
+    @Override
+    public int getNumQubits() {
+        return numQubits;
+    }
+
+    @Override
+    public String toString() {
+        return "MPS Quantum Computer{" + "name='" + name + "\'" + ", numQubits=" + numQubits + ", bondDimension=" + getBondDimension() + '}';
+    }
+}
@@ -0,0 +1,102 @@
+package com.core;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+
+/**
+ * Allocates large off-heap blocks whose pages are not touched yet.
+ * <p>
+ * {@link Arena#allocate(long, long)} zeroes the memory from the calling thread, which puts every page on that thread's NUMA node.
+ * On Linux this class maps anonymous memory with {@code mmap} instead, so no page exists until it is first written.
+ * The caller can then write the memory from the threads that will use it (first touch) to spread it across the nodes.
+ * On other systems, or when native access is not allowed, it falls back to a normal arena allocation.
+ */
+final class NativeMemory {
+    private static final int PROT_READ = 0x1;
+    private static final int PROT_WRITE = 0x2;
+    private static final int MAP_PRIVATE = 0x02;
+    private static final int MAP_ANONYMOUS = 0x20;
+    private static final int MAP_NORESERVE = 0x4000;
+    private static final long MAP_FAILED = -1L;
+
+    /**
+     * Reports blocks that could not be unmapped, through the platform logger so applications can route or silence it.
+     */
+    private static final System.Logger LOGGER = System.getLogger(NativeMemory.class.getName());
+
+    private static final MethodHandle MMAP;
+    private static final MethodHandle MUNMAP;
+
+    static {
+        MethodHandle mmap = null;
+        MethodHandle munmap = null;
+        if (System.getProperty("os.name", "").toLowerCase().contains("linux")) {
+            try {
+                Linker linker = Linker.nativeLinker();
+                SymbolLookup libc = linker.defaultLookup();
+                mmap = libc.find("mmap").map(symbol -> linker.downcallHandle(symbol,
+                        FunctionDescriptor.of(ADDRESS, ADDRESS, JAVA_LONG, JAVA_INT, JAVA_INT, JAVA_INT, JAVA_LONG))).orElse(null);
+                munmap = libc.find("munmap").map(symbol -> linker.downcallHandle(symbol,
+                        FunctionDescriptor.of(JAVA_INT, ADDRESS, JAVA_LONG))).orElse(null);
+            } catch (RuntimeException | LinkageError e) {
+                // native access is not allowed on this JVM, use the arena instead
+                mmap = null;
+                munmap = null;
+            }
+        }
+        MMAP = mmap;
+        MUNMAP = munmap;
+    }
+
+    private NativeMemory() {
+    }
+
+    /**
+     * Allocate a block that is freed when the arena is closed.
+     * @param arena The arena that owns the block
+     * @param bytes The size of the block in bytes
+     * @return The block. Its contents are zero, but the pages may not exist until they are written
+     */
+    static MemorySegment allocate(Arena arena, long bytes) {
+        if (MMAP != null && MUNMAP != null) {
+            try {
+                MemorySegment address = (MemorySegment) MMAP.invokeExact(MemorySegment.NULL, bytes,
+                        PROT_READ | PROT_WRITE, MAP_PRIVATE | MAP_ANONYMOUS | MAP_NORESERVE, -1, 0L);
+                if (address.address() != MAP_FAILED) {
+                    return address.reinterpret(bytes, arena, segment -> unmap(segment, bytes));
+                }
+            } catch (Throwable e) {
+                // fall back to the arena below
+            }
+        }
+        return arena.allocate(bytes, 64);
+    }
+
+    /**
+     * Check if blocks are mapped lazily (so first touch placement works).
+     * @return True when mmap is used
+     */
+    static boolean isLazilyMapped() {
+        return MMAP != null && MUNMAP != null;
+    }
+
+    private static void unmap(MemorySegment segment, long bytes) {
+        try {
+            int result = (int) MUNMAP.invokeExact(segment, bytes);
+            if (result != 0) {
+                LOGGER.log(System.Logger.Level.WARNING, "munmap failed for {0} bytes", bytes);
+            }
+        } catch (Throwable e) {
+            LOGGER.log(System.Logger.Level.WARNING, "munmap failed for " + bytes + " bytes", e);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.core;
+
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * One node of a {@link NetworkRuntime}: a registered quantum computer and the network operations its protocol uses.
+ * <p>
+ * A node is only used by the thread that runs its protocol. The receive operations wait on the node's own mailbox, and
+ * quantum messages are delivered into the node's register on the way (see {@link QuantumNetwork#deliver(String)}).
+ */
+public final class NetworkNode {
+    private final String name;
+    private final QuantumComputer quantumComputer;
+    private final QuantumNetwork network;
+
+    NetworkNode(String name, QuantumComputer quantumComputer, QuantumNetwork network) {
+        this.name = name;
+        this.quantumComputer = quantumComputer;
+        this.network = network;
+    }
+
+    /**
+     * Get the name of the node (the name of its quantum computer).
+     * @return The name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Get the quantum computer of this node.
+     * @return The quantum computer
+     */
+    public QuantumComputer getQuantumComputer() {
+        return quantumComputer;
+    }
+
+    /**
+     * Get the network the node is on.
+     * @return The network
+     */
+    public QuantumNetwork getNetwork() {
+        return network;
+    }
+
+    /**
+     * Send a classical message.
+     * @param toName The receiver's name
+     * @param message The message
+     */
+    public void send(String toName, String message) {
+        network.sendClassicalMessage(name, toName, message);
+    }
+
+    /**
+     * Send the current state of this node's register.
+     * @param toName The receiver's name
+     */
+    public void sendQuantumState(String toName) {
+        network.sendQuantumState(name, toName);
+    }
+
+    /**
+     * Wait for the next message for this node.
+     * @return The message
+     * @throws InterruptedException If the node was stopped while waiting
+     */
+    public QuantumNetwork.Message receive() throws InterruptedException {
+        return network.deliver(network.receiveBlocking(name));
+    }
+
+    /**
+     * Wait at most the given time for the next message for this node.
+     * @param timeout The longest time to wait
+     * @param unit The unit of the timeout
+     * @return The message, or null if none arrived in time
+     * @throws InterruptedException If the node was stopped while waiting
+     */
+    public QuantumNetwork.Message receive(long timeout, TimeUnit unit) throws InterruptedException {
+        return network.deliver(network.receive(name, timeout, unit));
+    }
+
+    /**
+     * Wait for the next message and return its classical content.
+     * @return The classical message
+     * @throws InterruptedException If the node was stopped while waiting
+     * @throws IllegalStateException If the next message is a quantum message
+     */
+    public String receiveClassical() throws InterruptedException {
+        QuantumNetwork.Message message = receive();
+        if (message.isQuantum()) {
+            throw new IllegalStateException("Expected a classical message but got a quantum message from " + message.from);
+        }
+        return message.classicalData;
+    }
+
+    @Override
+    public String toString() {
+        return "NetworkNode{" + "name='" + name + '\'' + '}';
+    }
+}
@@ -0,0 +1,15 @@
+package com.core;
+
+
+/**
+ * The program one node runs in a {@link NetworkRuntime}, for example its side of teleportation or of a key distribution.
+ */
+@FunctionalInterface
+public interface NetworkProtocol {
+    /**
+     * Run the protocol. Blocking calls on the node park its virtual thread, so waiting for a message is cheap.
+     * @param node The node, with its quantum computer and its send and receive operations
+     * @throws Exception Any failure, which is reported for this node in the {@link NetworkRunResult}
+     */
+    void run(NetworkNode node) throws Exception;
+}
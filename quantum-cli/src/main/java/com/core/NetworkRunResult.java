@@ -0,0 +1,92 @@
+package com.core;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The outcome of a {@link NetworkRuntime} run: which nodes finished, which failed (with their exception) and which
+ * were stopped because another node failed or the time ran out.
+ */
+public class NetworkRunResult {
+    private final int nodes;
+    private final Map<String, Throwable> failures;
+    private final Set<String> cancelled;
+    private final boolean timedOut;
+    private final long elapsedNanos;
+
+    NetworkRunResult(int nodes, Map<String, Throwable> failures, Set<String> cancelled, boolean timedOut, long elapsedNanos) {
+        this.nodes = nodes;
+        this.failures = Collections.unmodifiableMap(failures);
+        this.cancelled = Collections.unmodifiableSet(cancelled);
+        this.timedOut = timedOut;
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Check if every node finished its protocol without an exception.
+     * @return True if the run succeeded
+     */
+    public boolean isSuccessful() {
+        return failures.isEmpty() && cancelled.isEmpty();
+    }
+
+    /**
+     * Get the exceptions of the nodes whose protocol failed.
+     * @return The exception of every failed node, by node name
+     */
+    public Map<String, Throwable> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Get the nodes that were stopped before they finished, because another node failed or the time ran out.
+     * @return The names of the stopped nodes
+     */
+    public Set<String> getCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Check if the run was stopped because the time ran out.
+     * @return True if the run timed out
+     */
+    public boolean isTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Get the number of nodes that were run.
+     * @return The number of nodes
+     */
+    public int getNodeCount() {
+        return nodes;
+    }
+
+    /**
+     * Get the number of nodes that finished their protocol.
+     * @return The number of nodes
+     */
+    public int getCompletedCount() {
+        return nodes - failures.size() - cancelled.size();
+    }
+
+    /**
+     * Get how long the run took.
+     * @return The wall clock time in nanoseconds
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "NetworkRunResult{" +
+                "nodes=" + nodes +
+                ", completed=" + getCompletedCount() +
+                ", failed=" + failures.size() +
+                ", cancelled=" + cancelled.size() +
+                ", timedOut=" + timedOut +
+                '}';
+    }
+}
@@ -0,0 +1,177 @@
+package com.core;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Runs a protocol on every node of a {@link QuantumNetwork}, each on its own virtual thread.
+ * <p>
+ * A node that waits for a message parks its virtual thread (the mailboxes park with {@link java.util.concurrent.locks.LockSupport}
+ * and never hold a monitor), so tens of thousands of nodes can wait at the same time on a handful of carrier threads.
+ * <p>
+ * A run is structured: {@link #run()} does not return before every node thread has ended. If a node throws, the other
+ * nodes are interrupted (unless fail fast is off) and every exception is reported for its node in the {@link NetworkRunResult}.
+ * The same happens to the nodes that are still running when the timeout of {@link #run(long, TimeUnit)} is reached.
+ * <pre>
+ * NetworkRuntime runtime = new NetworkRuntime(network)
+ *         .node("alice", alice -&gt; alice.send("bob", "hello"))
+ *         .node("bob", bob -&gt; System.out.println(bob.receiveClassical()));
+ * NetworkRunResult result = runtime.run();
+ * </pre>
+ */
+public class NetworkRuntime {
+    private final QuantumNetwork network;
+    private final Map<String, NetworkProtocol> protocols = new LinkedHashMap<>();
+    private boolean failFast = true;
+
+    /**
+     * Create a runtime for the nodes of a network.
+     * @param network The network the nodes are registered on
+     */
+    public NetworkRuntime(QuantumNetwork network) {
+        this.network = network;
+    }
+
+    /**
+     * Set the protocol of a node.
+     * @param computerName The name of a quantum computer registered on the network
+     * @param protocol The protocol it runs
+     * @return This runtime (to allow for chaining commands)
+     */
+    public NetworkRuntime node(String computerName, NetworkProtocol protocol) {
+        if (!network.hasQuantumComputer(computerName)) {
+            throw new IllegalArgumentException("Quantum computer not found: " + computerName);
+        }
+        protocols.put(computerName, protocol);
+        return this;
+    }
+
+    /**
+     * Set whether a failing node stops the other nodes (on by default).
+     * @param failFast True to interrupt the other nodes when one fails
+     * @return This runtime (to allow for chaining commands)
+     */
+    public NetworkRuntime setFailFast(boolean failFast) {
+        this.failFast = failFast;
+        return this;
+    }
+
+    /**
+     * Run every node until all of them have finished or one has failed.
+     * @return The result
+     * @throws InterruptedException If the calling thread was interrupted (the nodes are stopped first)
+     */
+    public NetworkRunResult run() throws InterruptedException {
+        return run(-1, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Run every node, stopping the nodes that are still running after the timeout.
+     * @param timeout The longest time the nodes may run, or a negative number for no limit
+     * @param unit The unit of the timeout
+     * @return The result
+     * @throws InterruptedException If the calling thread was interrupted (the nodes are stopped first)
+     */
+    public NetworkRunResult run(long timeout, TimeUnit unit) throws InterruptedException {
+        long start = System.nanoTime();
+        Map<String, Throwable> failures = new ConcurrentHashMap<>();
+        Set<String> cancelled = ConcurrentHashMap.newKeySet();
+        CountDownLatch finished = new CountDownLatch(protocols.size());
+        AtomicBoolean stopping = new AtomicBoolean();
+        List<Thread> threads = new ArrayList<>(protocols.size());
+
+        for (Map.Entry<String, NetworkProtocol> entry : protocols.entrySet()) {
+            String name = entry.getKey();
+            NetworkProtocol protocol = entry.getValue();
+            NetworkNode node = new NetworkNode(name, network.getComputer(name), network);
+            threads.add(Thread.ofVirtual().name("node-" + name).unstarted(() -> {
+                try {
+                    if (stopping.get()) {
+                        // a node failed before this thread started, so the interrupt did not reach it
+                        cancelled.add(name);
+                        return;
+                    }
+                    protocol.run(node);
+                    if (stopping.get() && Thread.currentThread().isInterrupted()) {
+                        cancelled.add(name);
+                    }
+                } catch (Throwable e) {
+                    if (stopping.get() && (e instanceof InterruptedException || Thread.currentThread().isInterrupted())) {
+                        // stopped by the runtime, not a failure of this node
+                        cancelled.add(name);
+                    } else {
+                        failures.put(name, e);
+                        if (failFast) {
+                            stop(threads, stopping);
+                        }
+                    }
+                } finally {
+                    finished.countDown();
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+
+        boolean timedOut = false;
+        try {
+            if (timeout < 0) {
+                finished.await();
+            } else if (!finished.await(timeout, unit)) {
+                timedOut = true;
+                stop(threads, stopping);
+            }
+        } catch (InterruptedException e) {
+            stop(threads, stopping);
+            joinAll(threads);
+            throw e;
+        }
+        joinAll(threads);
+        return new NetworkRunResult(threads.size(), failures, cancelled, timedOut, System.nanoTime() - start);
+    }
+
+    @Override
+    public String toString() {
+        return "NetworkRuntime{" + "nodes=" + protocols.size() + ", failFast=" + failFast + '}';
+    }
+
+    /**
+     * Interrupt every node thread that is still running, once.
+     */
+    private static void stop(List<Thread> threads, AtomicBoolean stopping) {
+        if (stopping.compareAndSet(false, true)) {
+            for (Thread thread : threads) {
+                thread.interrupt();
+            }
+        }
+    }
+
+    /**
+     * Wait for every node thread to end, even if this thread is interrupted while waiting.
+     */
+    private static void joinAll(List<Thread> threads) {
+        boolean interrupted = false;
+        for (Thread thread : threads) {
+            while (true) {
+                try {
+                    thread.join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
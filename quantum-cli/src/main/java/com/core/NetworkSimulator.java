@@ -0,0 +1,347 @@
+package com.core;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.function.Consumer;
+import java.util.random.RandomGenerator;
+
+
+/**
+ * A deterministic discrete-event simulation of a {@link QuantumNetwork} with a simulated clock.
+ * <p>
+ * Sending a message through the simulator draws its delay (or its loss) from the {@link LinkModel} of the link and
+ * schedules its arrival as an event. Events run one at a time in time order, from a {@link CalendarQueue}, and move the
+ * clock forward. An arriving message goes to the handler of the receiver if it has one (see {@link #onMessage(String, Consumer)}),
+ * otherwise into its mailbox with {@link QuantumNetwork.Message#simulatedTime} set.
+ * <p>
+ * A quantum message is loaded into the receiver's register when it arrives. Then the decoherence of the link is applied for
+ * the travel time, and the fidelity with the sent state is stored on the message. Registers in a node's memory decohere
+ * with the node's {@link DecoherenceModel} for the simulated time since they were last touched; this is brought up to date
+ * whenever a message is sent from them or {@link #getComputer(String)} is called.
+ * <p>
+ * All randomness comes from one generator with the seed of the simulation, so the same seed and the same calls give
+ * the same run. The simulator is single threaded: protocols are written as event handlers instead of blocking threads
+ * (see {@link NetworkRuntime} for that style).
+ */
+public class NetworkSimulator {
+    private final QuantumNetwork network;
+    private final CalendarQueue queue = new CalendarQueue();
+    private final RandomGenerator random;
+    private final Map<String, Map<String, LinkModel>> links = new HashMap<>();
+    private final Map<String, Node> nodes = new HashMap<>();
+    private LinkModel defaultLink = new LinkModel();
+    private long now;
+    private long eventsProcessed;
+    private long messagesSent;
+    private long messagesLost;
+
+    /**
+     * The simulation state of one node.
+     */
+    private static final class Node {
+        private DecoherenceModel memory;
+        private long lastUpdate;
+        private Consumer<QuantumNetwork.Message> handler;
+    }
+
+    /**
+     * Create a simulation of a network, starting at time 0.
+     * @param network The network, with every node already registered
+     * @param seed The seed of all randomness in the simulation
+     */
+    public NetworkSimulator(QuantumNetwork network, long seed) {
+        this.network = network;
+        this.random = new SplittableRandom(seed);
+    }
+
+    /**
+     * Set the link used between nodes that have no link of their own (no delay, loss or decoherence by default).
+     * @param link The link
+     * @return This simulator (to allow for chaining commands)
+     */
+    public NetworkSimulator setDefaultLink(LinkModel link) {
+        this.defaultLink = link;
+        return this;
+    }
+
+    /**
+     * Set the link from one node to another (one direction).
+     * @param fromName The sender's name
+     * @param toName The receiver's name
+     * @param link The link
+     * @return This simulator (to allow for chaining commands)
+     */
+    public NetworkSimulator setLink(String fromName, String toName, LinkModel link) {
+        checkNode(fromName);
+        checkNode(toName);
+        links.computeIfAbsent(fromName, name -> new HashMap<>()).put(toName, link);
+        return this;
+    }
+
+    /**
+     * Set the link between two nodes in both directions.
+     * @param firstName The name of one node
+     * @param secondName The name of the other node
+     * @param link The link
+     * @return This simulator (to allow for chaining commands)
+     */
+    public NetworkSimulator connect(String firstName, String secondName, LinkModel link) {
+        setLink(firstName, secondName, link);
+        return setLink(secondName, firstName, link);
+    }
+
+    /**
+     * Set how the register of a node decoheres while it is stored, from the current simulated time on.
+     * @param computerName The node's name
+     * @param memory The model, or null for none
+     * @return This simulator (to allow for chaining commands)
+     */
+    public NetworkSimulator setMemoryDecoherence(String computerName, DecoherenceModel memory) {
+        checkNode(computerName);
+        Node node = node(computerName);
+        // bring the register up to now with the old model, so the new one only covers time from here on
+        getComputer(computerName);
+        node.memory = memory;
+        return this;
+    }
+
+    /**
+     * Set the function that handles every message that arrives at a node. Messages for nodes without a handler go
+     * into their mailbox.
+     * @param computerName The node's name
+     * @param handler The handler, which runs at the simulated arrival time and may send messages and schedule events
+     * @return This simulator (to allow for chaining commands)
+     */
+    public NetworkSimulator onMessage(String computerName, Consumer<QuantumNetwork.Message> handler) {
+        checkNode(computerName);
+        node(computerName).handler = handler;
+        return this;
+    }
+
+    /**
+     * Run an action after a simulated delay.
+     * @param delayNanos The delay in nanoseconds
+     * @param action The action
+     */
+    public void schedule(long delayNanos, Runnable action) {
+        if (delayNanos < 0) {
+            throw new IllegalArgumentException("Delay can not be negative: " + delayNanos);
+        }
+        queue.add(now + delayNanos, action);
+    }
+
+    /**
+     * Run an action at a simulated time.
+     * @param timeNanos The time in nanoseconds, not before the current time
+     * @param action The action
+     */
+    public void scheduleAt(long timeNanos, Runnable action) {
+        if (timeNanos < now) {
+            throw new IllegalArgumentException("Can not schedule an event in the past: " + timeNanos + " < " + now);
+        }
+        queue.add(timeNanos, action);
+    }
+
+    /**
+     * Send a classical message over the link between two nodes.
+     * @param fromName The sender's name
+     * @param toName The receiver's name
+     * @param message The message
+     * @return True if the message is on its way, false if the link lost it
+     */
+    public boolean sendClassicalMessage(String fromName, String toName, String message) {
+        checkNode(fromName);
+        checkNode(toName);
+        long delay = linkFor(fromName, toName).sampleDelay(random);
+        messagesSent++;
+        if (delay < 0) {
+            messagesLost++;
+            return false;
+        }
+        QuantumNetwork.Message msg = new QuantumNetwork.Message(fromName, toName, null, message);
+        queue.add(now + delay, () -> arrive(msg));
+        return true;
+    }
+
+    /**
+     * Send the current state of a node's register over the link to another node.
+     * @param fromName The sender's name
+     * @param toName The receiver's name
+     * @return True if the state is on its way, false if the link lost it
+     */
+    public boolean sendQuantumState(String fromName, String toName) {
+        QuantumComputer sender = getComputer(fromName);
+        // fail now instead of inside the arrival event, where it would stop the whole run
+        network.checkStateSize(toName, 1 << sender.getNumQubits());
+        LinkModel link = linkFor(fromName, toName);
+        long delay = link.sampleDelay(random);
+        messagesSent++;
+        if (delay < 0) {
+            messagesLost++;
+            return false;
+        }
+        StateSnapshot sent = sender.snapshot();
+        QuantumNetwork.Message msg = new QuantumNetwork.Message(fromName, toName, sent);
+        queue.add(now + delay, () -> {
+            QuantumComputer receiver = network.getComputer(toName);
+            if (receiver == null) {
+                messagesLost++;
+                return;
+            }
+            receiver.restore(sent);
+            node(toName).lastUpdate = now;
+            if (link.getDecoherence() != null) {
+                link.getDecoherence().apply(receiver, delay, random);
+            }
+            msg.fidelity = receiver.fidelity(sent);
+            arrive(msg);
+        });
+        return true;
+    }
+
+    /**
+     * Get the register of a node at the current simulated time (its memory decoherence is applied up to now first).
+     * @param computerName The node's name
+     * @return The quantum computer
+     */
+    public QuantumComputer getComputer(String computerName) {
+        QuantumComputer quantumComputer = network.getComputer(computerName);
+        if (quantumComputer == null) {
+            throw new IllegalArgumentException("Quantum computer not found: " + computerName);
+        }
+        Node node = nodes.get(computerName);
+        if (node != null) {
+            if (node.memory != null && now > node.lastUpdate) {
+                node.memory.apply(quantumComputer, now - node.lastUpdate, random);
+            }
+            node.lastUpdate = now;
+        }
+        return quantumComputer;
+    }
+
+    /**
+     * Run the next event.
+     * @return True if an event was run, false if there are none left
+     */
+    public boolean step() {
+        CalendarQueue.Event event = queue.poll();
+        if (event == null) {
+            return false;
+        }
+        now = event.time;
+        eventsProcessed++;
+        event.action.run();
+        return true;
+    }
+
+    /**
+     * Run events until there are none left.
+     * @return The number of events that were run
+     */
+    public long run() {
+        long start = eventsProcessed;
+        while (step()) {
+            // every event may schedule more
+        }
+        return eventsProcessed - start;
+    }
+
+    /**
+     * Run the events up to and including a simulated time, then move the clock to that time.
+     * @param timeNanos The time in nanoseconds
+     * @return The number of events that were run
+     */
+    public long runUntil(long timeNanos) {
+        long start = eventsProcessed;
+        // peekTime is Long.MAX_VALUE for an empty queue, so it can not be the only check
+        while (queue.size() > 0 && queue.peekTime() <= timeNanos) {
+            step();
+        }
+        now = Math.max(now, timeNanos);
+        return eventsProcessed - start;
+    }
+
+    /**
+     * Get the simulated time.
+     * @return The time in nanoseconds since the start of the simulation
+     */
+    public long getTime() {
+        return now;
+    }
+
+    /**
+     * Get the number of events that have been run.
+     * @return The number of events
+     */
+    public long getEventsProcessed() {
+        return eventsProcessed;
+    }
+
+    /**
+     * Get the number of events that are waiting.
+     * @return The number of events
+     */
+    public int getPendingEvents() {
+        return queue.size();
+    }
+
+    /**
+     * Get the number of messages sent through the simulator.
+     * @return The number of messages
+     */
+    public long getMessagesSent() {
+        return messagesSent;
+    }
+
+    /**
+     * Get the number of messages that links lost (or that arrived at a node that had left the network).
+     * @return The number of messages
+     */
+    public long getMessagesLost() {
+        return messagesLost;
+    }
+
+    @Override
+    public String toString() {
+        return "NetworkSimulator{" +
+                "time=" + now +
+                ", events=" + eventsProcessed +
+                ", pending=" + queue.size() +
+                ", sent=" + messagesSent +
+                ", lost=" + messagesLost +
+                '}';
+    }
+
+    private void arrive(QuantumNetwork.Message msg) {
+        msg.simulatedTime = now;
+        Node node = nodes.get(msg.to);
+        if (node != null && node.handler != null) {
+            node.handler.accept(msg);
+        } else if (network.hasQuantumComputer(msg.to)) {
+            network.post(msg);
+        } else {
+            messagesLost++;
+        }
+    }
+
+    private LinkModel linkFor(String fromName, String toName) {
+        Map<String, LinkModel> outgoing = links.get(fromName);
+        LinkModel link = outgoing == null ? null : outgoing.get(toName);
+        return link == null ? defaultLink : link;
+    }
+
+    private Node node(String computerName) {
+        return nodes.computeIfAbsent(computerName, name -> {
+            Node node = new Node();
+            node.lastUpdate = now;
+            return node;
+        });
+    }
+
+    private void checkNode(String computerName) {
+        if (!network.hasQuantumComputer(computerName)) {
+            throw new IllegalArgumentException("Quantum computer not found: " + computerName);
+        }
+    }
+}
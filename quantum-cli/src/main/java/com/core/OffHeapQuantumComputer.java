@@ -0,0 +1,370 @@
+package com.core;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+
+/**
+ * A quantum computer whose state vector lives outside the Java heap.
+ * <p>
+ * {@link QuantumComputer} keeps the amplitudes in Java arrays, which are indexed with an int and so stop at 30 qubits.
+ * This class keeps them in two {@link MemorySegment}s (real and imaginary parts) indexed with a long, so the only limit
+ * is the memory of the machine (34 qubits needs 256 GB). The memory is not seen by the garbage collector at all.
+ * <p>
+ * The memory is owned by a shared {@link Arena} and is freed by {@link #close()}, so use it in a try-with-resources block.
+ * {@link #reset()} keeps the memory and writes |0...0> back into it.
+ * <p>
+ * When the memory is allocated it is first written in parallel, in the same contiguous ranges that the gate kernels
+ * use, so that on a NUMA machine every page ends up on the node of the thread that works on it (see {@link NativeMemory}).
+ */
+public class OffHeapQuantumComputer implements QuantumBackend, AutoCloseable {
+    /**
+     * The largest register this class will try to allocate (2^40 amplitudes is 16 TB).
+     */
+    public static final int MAX_QUBITS = 40;
+    private static final ValueLayout.OfDouble DOUBLE = ValueLayout.JAVA_DOUBLE;
+    /**
+     * See {@code QuantumComputer.REDUCTION_BLOCK}, the measurement sums are added up in fixed blocks so the result does not
+     * depend on how the work was split.
+     */
+    private static final long REDUCTION_BLOCK = 1 << 14;
+    private static final double[] HADAMARD = StateKernels.flatten(Gates.hadamard());
+    private static final double[] PAULI_X = StateKernels.flatten(Gates.pauliX());
+    private static final double[] PAULI_Z = StateKernels.flatten(Gates.pauliZ());
+
+    private String name;
+    private final int numQubits;
+    private final long stateSize;
+    private final Random random;
+    private final Arena arena;
+    private final MemorySegment stateReal;
+    private final MemorySegment stateImaginary;
+    private int parallelThreshold = QuantumComputer.DEFAULT_PARALLEL_THRESHOLD;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private boolean closed;
+
+    /**
+     * Allocate an off-heap quantum computer with all qubits in |0>.
+     * @param name The name of this quantum computer
+     * @param numberOfQubits The number of qubits
+     */
+    public OffHeapQuantumComputer(String name, int numberOfQubits) {
+        this(name, numberOfQubits, new Random());
+    }
+
+    /**
+     * Allocate an off-heap quantum computer with a fixed seed for measurements.
+     * @param name The name of this quantum computer
+     * @param numberOfQubits The number of qubits
+     * @param seed The seed for measurements
+     */
+    public OffHeapQuantumComputer(String name, int numberOfQubits, long seed) {
+        this(name, numberOfQubits, new Random(seed));
+    }
+
+    private OffHeapQuantumComputer(String name, int numberOfQubits, Random random) {
+        if (numberOfQubits < 1 || numberOfQubits > MAX_QUBITS) {
+            throw new IllegalArgumentException("Number of qubits must be between 1 and " + MAX_QUBITS + ": " + numberOfQubits);
+        }
+        this.name = name;
+        this.numQubits = numberOfQubits;
+        this.stateSize = 1L << numberOfQubits;
+        this.random = random;
+        this.arena = Arena.ofShared();
+        try {
+            this.stateReal = NativeMemory.allocate(arena, stateSize * Double.BYTES);
+            this.stateImaginary = NativeMemory.allocate(arena, stateSize * Double.BYTES);
+        } catch (RuntimeException | OutOfMemoryError e) {
+            arena.close();
+            throw e;
+        }
+        writeZeroState();
+    }
+
+    /**
+     * Reset the quantum state to all 0s. The memory is kept and rewritten in parallel.
+     */
+    @Override
+    public void reset() {
+        checkOpen();
+        writeZeroState();
+    }
+
+    /**
+     * Zero both blocks in parallel and set the amplitude of |0...0>. The constructor calls this instead of the overridable {@link #reset()}.
+     */
+    private void writeZeroState() {
+        forEach(stateSize, (from, to) -> {
+            stateReal.asSlice(from * Double.BYTES, (to - from) * Double.BYTES).fill((byte) 0);
+            stateImaginary.asSlice(from * Double.BYTES, (to - from) * Double.BYTES).fill((byte) 0);
+        });
+        stateReal.setAtIndex(DOUBLE, 0, 1.0);
+    }
+
+    /**
+     * Free the off-heap memory. The quantum computer can not be used after this.
+     */
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            arena.close();
+        }
+    }
+
+    @Override
+    public void applyHadamard(int qubitIndex) {
+        applyKernel(qubitIndex, Gates.Kind.REAL, HADAMARD);
+    }
+
+    @Override
+    public void applyPauliX(int qubitIndex) {
+        applyKernel(qubitIndex, Gates.Kind.ANTI_DIAGONAL, PAULI_X);
+    }
+
+    @Override
+    public void applyPauliZ(int qubitIndex) {
+        applyKernel(qubitIndex, Gates.Kind.DIAGONAL, PAULI_Z);
+    }
+
+    @Override
+    public void applySingleQubitGate(int qubitIndex, Complex[][] matrix) {
+        applyKernel(qubitIndex, Gates.classify(matrix), StateKernels.flatten(matrix));
+    }
+
+    @Override
+    public void applyCNOT(int control, int target) {
+        validateQubitIndex(control);
+        validateQubitIndex(target);
+        if (control == target) {
+            throw new IllegalArgumentException("Control and target must be different qubits: " + control);
+        }
+        checkOpen();
+        long controlStride = 1L << control;
+        long targetStride = 1L << target;
+        long lowStride = Math.min(controlStride, targetStride);
+        long highStride = Math.max(controlStride, targetStride);
+
+        forEach(stateSize >> 2, (from, to) -> {
+            for (long k = from; k < to; k++) {
+                long i0 = insertZeroBit(insertZeroBit(k, lowStride), highStride) | controlStride;
+                swap(i0, i0 | targetStride);
+            }
+        });
+    }
+
+    @Override
+    public int measure(int qubitIndex) {
+        validateQubitIndex(qubitIndex);
+        checkOpen();
+        long stride = 1L << qubitIndex;
+        long pairs = stateSize >> 1;
+
+        // sum fixed blocks in parallel, then add the block sums in order
+        int blocks = (int) ((pairs + REDUCTION_BLOCK - 1) / REDUCTION_BLOCK);
+        double[] partialSums = new double[blocks];
+        forEach(blocks, (fromBlock, toBlock) -> {
+            for (long block = fromBlock; block < toBlock; block++) {
+                long start = block * REDUCTION_BLOCK;
+                long end = Math.min(start + REDUCTION_BLOCK, pairs);
+                double sum = 0;
+                for (long k = start; k < end; k++) {
+                    long i0 = insertZeroBit(k, stride);
+                    double real = stateReal.getAtIndex(DOUBLE, i0);
+                    double imaginary = stateImaginary.getAtIndex(DOUBLE, i0);
+                    sum += real * real + imaginary * imaginary;
+                }
+                partialSums[(int) block] = sum;
+            }
+        });
+        double probZero = 0;
+        for (double partialSum : partialSums) {
+            probZero += partialSum;
+        }
+
+        int result = random.nextDouble() < probZero ? 0 : 1;
+        double scale = 1.0 / Math.sqrt(result == 0 ? probZero : 1 - probZero);
+        long keptOffset = result == 0 ? 0 : stride;
+        long rejectedOffset = stride - keptOffset;
+
+        forEach(pairs, (from, to) -> {
+            for (long k = from; k < to; k++) {
+                long i0 = insertZeroBit(k, stride);
+                long kept = i0 + keptOffset;
+                long rejected = i0 + rejectedOffset;
+                stateReal.setAtIndex(DOUBLE, kept, stateReal.getAtIndex(DOUBLE, kept) * scale);
+                stateImaginary.setAtIndex(DOUBLE, kept, stateImaginary.getAtIndex(DOUBLE, kept) * scale);
+                stateReal.setAtIndex(DOUBLE, rejected, 0.0);
+                stateImaginary.setAtIndex(DOUBLE, rejected, 0.0);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Get one amplitude.
+     * @param index The basis state index
+     * @return The amplitude of |index>
+     */
+    public Complex getAmplitude(long index) {
+        checkOpen();
+        if (index < 0 || index >= stateSize) {
+            throw new IllegalArgumentException("Basis state index out of bounds: " + index);
+        }
+        return new Complex(stateReal.getAtIndex(DOUBLE, index), stateImaginary.getAtIndex(DOUBLE, index));
+    }
+
+    /**
+     * Get the number of amplitudes (2^n).
+     * @return The size of the state vector
+     */
+    public long getStateSize() {
+        return stateSize;
+    }
+
+    /**
+     * Set the smallest register (in qubits) that is run in parallel.
+     * @param parallelThreshold The number of qubits
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        if (parallelThreshold < 0) {
+            throw new IllegalArgumentException("Parallel threshold must not be negative: " + parallelThreshold);
+        }
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Use a specific fork/join pool for parallel gates instead of the common pool.
+     * @param pool The pool to use
+     */
+    public void setForkJoinPool(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool must not be null");
+        }
+        this.pool = pool;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Update the name of this quantum computer.
+     * @param name The new name for this quantum computer
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public int getNumQubits() {
+        return numQubits;
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapQuantumComputer{" + "name='" + name + "'" + ", numQubits=" + numQubits + '}';
+    }
+
+    /**
+     * Run a 2x2 gate with the kernel for its kind over all pairs.
+     */
+    private void applyKernel(int qubitIndex, Gates.Kind kind, double[] matrix) {
+        validateQubitIndex(qubitIndex);
+        checkOpen();
+        long stride = 1L << qubitIndex;
+        double m00r = matrix[0], m00i = matrix[1], m01r = matrix[2], m01i = matrix[3];
+        double m10r = matrix[4], m10i = matrix[5], m11r = matrix[6], m11i = matrix[7];
+        boolean touchZero = m00r != 1.0 || m00i != 0.0;
+
+        // pick the loop once per gate rather than once per pair
+        ParallelRange.LongBody body = switch (kind) {
+            case DIAGONAL -> (from, to) -> {
+                for (long k = from; k < to; k++) {
+                    long i0 = insertZeroBit(k, stride);
+                    long i1 = i0 | stride;
+                    if (touchZero) {
+                        double real0 = stateReal.getAtIndex(DOUBLE, i0);
+                        double imaginary0 = stateImaginary.getAtIndex(DOUBLE, i0);
+                        stateReal.setAtIndex(DOUBLE, i0, m00r * real0 - m00i * imaginary0);
+                        stateImaginary.setAtIndex(DOUBLE, i0, m00r * imaginary0 + m00i * real0);
+                    }
+                    double real1 = stateReal.getAtIndex(DOUBLE, i1);
+                    double imaginary1 = stateImaginary.getAtIndex(DOUBLE, i1);
+                    stateReal.setAtIndex(DOUBLE, i1, m11r * real1 - m11i * imaginary1);
+                    stateImaginary.setAtIndex(DOUBLE, i1, m11r * imaginary1 + m11i * real1);
+                }
+            };
+            case ANTI_DIAGONAL -> (from, to) -> {
+                for (long k = from; k < to; k++) {
+                    long i0 = insertZeroBit(k, stride);
+                    long i1 = i0 | stride;
+                    double real0 = stateReal.getAtIndex(DOUBLE, i0);
+                    double imaginary0 = stateImaginary.getAtIndex(DOUBLE, i0);
+                    double real1 = stateReal.getAtIndex(DOUBLE, i1);
+                    double imaginary1 = stateImaginary.getAtIndex(DOUBLE, i1);
+                    stateReal.setAtIndex(DOUBLE, i0, m01r * real1 - m01i * imaginary1);
+                    stateImaginary.setAtIndex(DOUBLE, i0, m01r * imaginary1 + m01i * real1);
+                    stateReal.setAtIndex(DOUBLE, i1, m10r * real0 - m10i * imaginary0);
+                    stateImaginary.setAtIndex(DOUBLE, i1, m10r * imaginary0 + m10i * real0);
+                }
+            };
+            case REAL, GENERAL -> (from, to) -> {
+                for (long k = from; k < to; k++) {
+                    long i0 = insertZeroBit(k, stride);
+                    long i1 = i0 | stride;
+                    double real0 = stateReal.getAtIndex(DOUBLE, i0);
+                    double imaginary0 = stateImaginary.getAtIndex(DOUBLE, i0);
+                    double real1 = stateReal.getAtIndex(DOUBLE, i1);
+                    double imaginary1 = stateImaginary.getAtIndex(DOUBLE, i1);
+                    stateReal.setAtIndex(DOUBLE, i0, m00r * real0 - m00i * imaginary0 + m01r * real1 - m01i * imaginary1);
+                    stateImaginary.setAtIndex(DOUBLE, i0, m00r * imaginary0 + m00i * real0 + m01r * imaginary1 + m01i * real1);
+                    stateReal.setAtIndex(DOUBLE, i1, m10r * real0 - m10i * imaginary0 + m11r * real1 - m11i * imaginary1);
+                    stateImaginary.setAtIndex(DOUBLE, i1, m10r * imaginary0 + m10i * real0 + m11r * imaginary1 + m11i * real1);
+                }
+            };
+        };
+        forEach(stateSize >> 1, body);
+    }
+
+    /**
+     * Run the body over [0, count), in parallel for registers at or above the threshold.
+     */
+    private void forEach(long count, ParallelRange.LongBody body) {
+        if (numQubits >= parallelThreshold && pool.getParallelism() > 1) {
+            ParallelRange.forEachLong(pool, count, body);
+        } else {
+            body.apply(0, count);
+        }
+    }
+
+    private void swap(long first, long second) {
+        double real = stateReal.getAtIndex(DOUBLE, first);
+        double imaginary = stateImaginary.getAtIndex(DOUBLE, first);
+        stateReal.setAtIndex(DOUBLE, first, stateReal.getAtIndex(DOUBLE, second));
+        stateImaginary.setAtIndex(DOUBLE, first, stateImaginary.getAtIndex(DOUBLE, second));
+        stateReal.setAtIndex(DOUBLE, second, real);
+        stateImaginary.setAtIndex(DOUBLE, second, imaginary);
+    }
+
+    private static long insertZeroBit(long k, long stride) {
+        long lowMask = stride - 1;
+        return ((k & ~lowMask) << 1) | (k & lowMask);
+    }
+
+    private void validateQubitIndex(int qubitIndex) {
+        if (qubitIndex < 0 || qubitIndex >= numQubits) {
+            throw new IllegalArgumentException("Qubit index out of bounds: " + qubitIndex);
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("Quantum computer '" + name + "' has been closed");
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.core;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+/**
+ * Splits an index range [0, count) across a {@link ForkJoinPool}.
+ * <p>
+ * The range is cut in half until the pieces are small enough, so each task gets a contiguous run of indices.
+ * Because the gate kernels work on pair (or quad) numbers, a pair is never split between two tasks.
+ */
+final class ParallelRange {
+    /**
+     * Below this many indices a piece is never split any further, since the fork costs more than the work.
+     */
+    static final int MIN_GRAIN = 1 << 11;
+
+    /**
+     * The work done on one contiguous piece of the range.
+     */
+    @FunctionalInterface
+    interface Body {
+        void apply(int from, int to);
+    }
+
+    /**
+     * The work done on one contiguous piece of a range that may be longer than an int (off-heap states).
+     */
+    @FunctionalInterface
+    interface LongBody {
+        void apply(long from, long to);
+    }
+
+    private ParallelRange() {
+    }
+
+    /**
+     * Run the body over [0, count), split across the pool.
+     * @param pool The pool to run in
+     * @param count The size of the range
+     * @param body The work for each piece
+     */
+    static void forEach(ForkJoinPool pool, int count, Body body) {
+        forEach(pool, count, MIN_GRAIN, body);
+    }
+
+    /**
+     * Run the body over [0, count), split across the pool, with a custom smallest piece size.
+     * @param pool The pool to run in
+     * @param count The size of the range
+     * @param minGrain The smallest piece that is worth its own task
+     * @param body The work for each piece
+     */
+    static void forEach(ForkJoinPool pool, int count, int minGrain, Body body) {
+        int grain = Math.max(minGrain, count / (pool.getParallelism() * 8));
+        if (count <= grain) {
+            body.apply(0, count);
+            return;
+        }
+        pool.invoke(new Task(body, 0, count, grain));
+    }
+
+    /**
+     * Run the body over [0, count) for long ranges, split across the pool.
+     * @param pool The pool to run in
+     * @param count The size of the range
+     * @param body The work for each piece
+     */
+    static void forEachLong(ForkJoinPool pool, long count, LongBody body) {
+        long grain = Math.max(MIN_GRAIN, count / (pool.getParallelism() * 8L));
+        if (count <= grain) {
+            body.apply(0, count);
+            return;
+        }
+        pool.invoke(new LongTask(body, 0, count, grain));
+    }
+
+    private static final class Task extends RecursiveAction {
+        private final Body body;
+        private final int from;
+        private final int to;
+        private final int grain;
+
+        Task(Body body, int from, int to, int grain) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                body.apply(from, to);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new Task(body, from, middle, grain), new Task(body, middle, to, grain));
+        }
+    }
+
+    private static final class LongTask extends RecursiveAction {
+        private final LongBody body;
+        private final long from;
+        private final long to;
+        private final long grain;
+
+        LongTask(LongBody body, long from, long to, long grain) {
+            this.body = body;
+            this.from = from;
+            this.to = to;
+            this.grain = grain;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= grain) {
+                body.apply(from, to);
+                return;
+            }
+            long middle = (from + to) >>> 1;
+            invokeAll(new LongTask(body, from, middle, grain), new LongTask(body, middle, to, grain));
+        }
+    }
+}
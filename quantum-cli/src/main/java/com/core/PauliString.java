@@ -0,0 +1,166 @@
+package com.core;
+
+
+/**
+ * A tensor product of Pauli matrices (I, X, Y, Z) on the qubits, with a real coefficient, like {@code 0.5 * XIZ}.
+ * <p>
+ * The string is stored as two bit masks: bit q of the X mask is set for X or Y on qubit q, and bit q of the Z mask for Z or Y.
+ * Applying the string to a basis state |i> then only flips the bits in the X mask and picks up a sign from the parity of
+ * {@code i & zMask}, which is what {@link QuantumComputer#expectation(PauliString)} uses to avoid building P|psi>.
+ * <p>
+ * In text form qubit 0 is the rightmost character, like the bit strings of {@link QuantumComputer}.
+ */
+public final class PauliString {
+    private final double coefficient;
+    private final long xMask;
+    private final long zMask;
+
+    private PauliString(double coefficient, long xMask, long zMask) {
+        this.coefficient = coefficient;
+        this.xMask = xMask;
+        this.zMask = zMask;
+    }
+
+    /**
+     * Parse a Pauli string with coefficient 1.
+     * @param paulis The Paulis, for example "XIZ" (Z on qubit 0, X on qubit 2). A leading '+' or '-' sets the sign
+     * @return The Pauli string
+     */
+    public static PauliString of(String paulis) {
+        return of(1.0, paulis);
+    }
+
+    /**
+     * Parse a weighted Pauli string.
+     * @param coefficient The weight
+     * @param paulis The Paulis, for example "XIZ" (Z on qubit 0, X on qubit 2). A leading '+' or '-' sets the sign
+     * @return The Pauli string
+     */
+    public static PauliString of(double coefficient, String paulis) {
+        String body = paulis.trim();
+        if (body.startsWith("+") || body.startsWith("-")) {
+            coefficient = body.charAt(0) == '-' ? -coefficient : coefficient;
+            body = body.substring(1);
+        }
+        if (body.length() > 63) {
+            throw new IllegalArgumentException("Pauli strings can have at most 63 qubits: " + body.length());
+        }
+        long xMask = 0;
+        long zMask = 0;
+        for (int position = 0; position < body.length(); position++) {
+            long bit = 1L << (body.length() - 1 - position);
+            switch (Character.toUpperCase(body.charAt(position))) {
+                case 'I' -> { }
+                case 'X' -> xMask |= bit;
+                case 'Y' -> { xMask |= bit; zMask |= bit; }
+                case 'Z' -> zMask |= bit;
+                default -> throw new IllegalArgumentException("Unknown Pauli '" + body.charAt(position) + "' in " + paulis);
+            }
+        }
+        return new PauliString(coefficient, xMask, zMask);
+    }
+
+    /**
+     * Create a Pauli string with a single non identity Pauli.
+     * @param pauli 'X', 'Y' or 'Z'
+     * @param qubit The qubit it acts on
+     * @return The Pauli string with coefficient 1
+     */
+    public static PauliString single(char pauli, int qubit) {
+        if (qubit < 0 || qubit > 62) {
+            throw new IllegalArgumentException("Qubit index out of bounds: " + qubit);
+        }
+        long bit = 1L << qubit;
+        return switch (Character.toUpperCase(pauli)) {
+            case 'X' -> new PauliString(1.0, bit, 0);
+            case 'Y' -> new PauliString(1.0, bit, bit);
+            case 'Z' -> new PauliString(1.0, 0, bit);
+            default -> throw new IllegalArgumentException("Unknown Pauli '" + pauli + "'");
+        };
+    }
+
+    /**
+     * Get a copy of this string with a different coefficient.
+     * @param coefficient The new weight
+     * @return The new Pauli string
+     */
+    public PauliString withCoefficient(double coefficient) {
+        return new PauliString(coefficient, xMask, zMask);
+    }
+
+    /**
+     * Get the coefficient.
+     * @return The weight
+     */
+    public double getCoefficient() {
+        return coefficient;
+    }
+
+    /**
+     * Get the qubits with an X or Y.
+     * @return The X mask
+     */
+    public long getXMask() {
+        return xMask;
+    }
+
+    /**
+     * Get the qubits with a Z or Y.
+     * @return The Z mask
+     */
+    public long getZMask() {
+        return zMask;
+    }
+
+    /**
+     * Get the number of Y matrices (each one adds a factor of i when the string is written as X and Z parts).
+     * @return The number of Ys
+     */
+    public int getYCount() {
+        return Long.bitCount(xMask & zMask);
+    }
+
+    /**
+     * Get the number of qubits the string needs (one more than the highest qubit with a non identity Pauli).
+     * @return The number of qubits, 0 for the identity
+     */
+    public int getQubitSpan() {
+        return 64 - Long.numberOfLeadingZeros(xMask | zMask);
+    }
+
+    /**
+     * Get the Pauli on one qubit.
+     * @param qubit The qubit
+     * @return 'I', 'X', 'Y' or 'Z'
+     */
+    public char getPauli(int qubit) {
+        long x = (xMask >>> qubit) & 1L;
+        long z = (zMask >>> qubit) & 1L;
+        return x == 0 ? (z == 0 ? 'I' : 'Z') : (z == 0 ? 'X' : 'Y');
+    }
+
+    @Override
+    public String toString() {
+        int span = Math.max(1, getQubitSpan());
+        StringBuilder stringBuilder = new StringBuilder().append(coefficient).append(" * ");
+        for (int qubit = span - 1; qubit >= 0; qubit--) {
+            stringBuilder.append(getPauli(qubit));
+        }
+        return stringBuilder.toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof PauliString other)) {
+            return false;
+        }
+        return Double.compare(coefficient, other.coefficient) == 0 && xMask == other.xMask && zMask == other.zMask;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = Double.hashCode(coefficient);
+        hash = 31 * hash + Long.hashCode(xMask);
+        return 31 * hash + Long.hashCode(zMask);
+    }
+}
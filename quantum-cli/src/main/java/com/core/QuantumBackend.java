@@ -0,0 +1,135 @@
+package com.core;
+
+
+/**
+ * The operations every simulator backend supports, whatever way it stores the quantum state.
+ * <p>
+ * The named gates (Y, S, T, SX, phase and the rotations) are built on {@link #applySingleQubitGate(int, Complex[][])},
+ * so a backend only has to provide the basic gates, the general single qubit gate, CNOT and measurement.
+ */
+public interface QuantumBackend {
+
+    /**
+     * Get the name of this quantum computer.
+     * @return The name
+     */
+    String getName();
+
+    /**
+     * Get the number of qubits.
+     * @return The number of qubits
+     */
+    int getNumQubits();
+
+    /**
+     * Apply a Hadamard gate to a qubit.
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    void applyHadamard(int qubitIndex);
+
+    /**
+     * Apply a Pauli-X gate to a qubit
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    void applyPauliX(int qubitIndex);
+
+    /**
+     * Apply a Pauli-Z gate to a qubit
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    void applyPauliZ(int qubitIndex);
+
+    /**
+     * Apply any single qubit gate.
+     * @param qubitIndex The index of the qubit to apply the gate to
+     * @param matrix The 2x2 gate matrix, indexed as matrix[row][column]
+     */
+    void applySingleQubitGate(int qubitIndex, Complex[][] matrix);
+
+    /**
+     * Apply a controlled not gate (CNOT).
+     * @param control The control qubit index
+     * @param target The target qubit index
+     */
+    void applyCNOT(int control, int target);
+
+    /**
+     * Measures a qubit and collapses the state to a 0 or 1
+     * @param qubitIndex The index of the qubit to measure
+     * @return 0 or 1
+     */
+    int measure(int qubitIndex);
+
+    /**
+     * Reset the quantum state to all 0s
+     */
+    void reset();
+
+    /**
+     * Apply a Pauli-Y gate to a qubit
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    default void applyPauliY(int qubitIndex) {
+        applySingleQubitGate(qubitIndex, Gates.pauliY());
+    }
+
+    /**
+     * Apply an S gate (phase of pi/2) to a qubit
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    default void applyS(int qubitIndex) {
+        applySingleQubitGate(qubitIndex, Gates.s());
+    }
+
+    /**
+     * Apply a T gate (phase of pi/4) to a qubit
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    default void applyT(int qubitIndex) {
+        applySingleQubitGate(qubitIndex, Gates.t());
+    }
+
+    /**
+     * Apply a square root of X gate to a qubit
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    default void applySX(int qubitIndex) {
+        applySingleQubitGate(qubitIndex, Gates.sx());
+    }
+
+    /**
+     * Apply a phase gate [[1, 0], [0, e^{i theta}]] to a qubit
+     * @param qubitIndex The index of the qubit to apply the gate to
+     * @param theta The phase angle in radians
+     */
+    default void applyPhase(int qubitIndex, double theta) {
+        applySingleQubitGate(qubitIndex, Gates.phase(theta));
+    }
+
+    /**
+     * Rotate a qubit around the X axis
+     * @param qubitIndex The index of the qubit to apply the gate to
+     * @param theta The rotation angle in radians
+     */
+    default void applyRX(int qubitIndex, double theta) {
+        applySingleQubitGate(qubitIndex, Gates.rx(theta));
+    }
+
+    /**
+     * Rotate a qubit around the Y axis
+     * @param qubitIndex The index of the qubit to apply the gate to
+     * @param theta The rotation angle in radians
+     */
+    default void applyRY(int qubitIndex, double theta) {
+        applySingleQubitGate(qubitIndex, Gates.ry(theta));
+    }
+
+    /**
+     * Rotate a qubit around the Z axis
+     * @param qubitIndex The index of the qubit to apply the gate to
+     * @param theta The rotation angle in radians
+     */
+    default void applyRZ(int qubitIndex, double theta) {
+        applySingleQubitGate(qubitIndex, Gates.rz(theta));
+    }
+}
@@ -1,17 +1,67 @@
 package com.core;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.random.RandomGenerator;
 
 
 /**
  * Represents a quantum computer that can contain quantum circuits. Additionally, it simulates qubits and quantum gate operations.
  */
-public class QuantumComputer {
+public class QuantumComputer implements QuantumBackend {
+    /**
+     * By default registers with at least this many qubits spread each gate across the fork/join pool.
+     */
+    public static final int DEFAULT_PARALLEL_THRESHOLD = 18;
+    /**
+     * The number of amplitude pairs summed together before the partial sums are added up during a measurement.
+     * The blocks are the same for the serial and the parallel path, so both add the numbers in the same order
+     * and give bit-identical probabilities.
+     */
+    private static final int REDUCTION_BLOCK = 1 << 14;
+    /**
+     * {@link #measureRegister(int...)} keeps a probability per outcome up to this many measured qubits, and above it draws
+     * a basis state with a cumulative walk instead, so measuring a whole large register does not need a table as large as the state.
+     */
+    private static final int MAX_HISTOGRAM_QUBITS = 12;
+    /**
+     * The most histogram entries the per block histograms of one parallel round of {@link #measureRegister(int...)} may hold.
+     */
+    private static final int MAX_PARTIAL_HISTOGRAM_ENTRIES = 1 << 20;
+    /**
+     * The Hadamard matrix in the flat layout used by the kernels (for the vector path).
+     */
+    private static final double[] HADAMARD = StateKernels.flatten(Gates.hadamard());
+
     private String name;
     private final int numQubits;
-    private Complex[] state;
-    private final Random random;
+    /**
+     * The real parts of the amplitudes. Index i holds the amplitude of basis state |i>.
+     * <p>
+     * The state is stored as two primitive arrays (structure of arrays) instead of a {@code Complex[]}
+     * so that gates can be applied in place without creating any objects.
+     */
+    private double[] stateReal;
+    /**
+     * The imaginary parts of the amplitudes, laid out the same way as {@link #stateReal}.
+     */
+    private double[] stateImaginary;
+    /**
+     * True while the amplitude arrays are also held by a {@link StateSnapshot}. The next write copies them first (copy on write).
+     */
+    private boolean shared;
+    private RandomGenerator random;
+    private boolean parallelEnabled = true;
+    private int parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private boolean vectorEnabled = VectorSupport.isAvailable();
     // private Map<String, Integer> measurementResults;
 
     /**
@@ -27,19 +77,54 @@ public class QuantumComputer {
         initialize(numberOfQubits);
     }
 
+    /**
+     * Initialize a quantum computer with a fixed seed for the measurement randomness, so runs can be repeated exactly.
+     * @param name The name of this quantum computer
+     * @param numberOfQubits The number of qubits
+     * @param seed The seed for measurements
+     */
+    public QuantumComputer(String name, int numberOfQubits, long seed){
+        this.name = name;
+        this.numQubits = numberOfQubits;
+        this.random = new Random(seed);
+        initialize(numberOfQubits);
+    }
+
+    /**
+     * Start from a snapshot, sharing its arrays.
+     */
+    private QuantumComputer(String name, StateSnapshot snapshot) {
+        this.name = name;
+        this.numQubits = snapshot.getNumQubits();
+        this.random = new Random();
+        this.stateReal = snapshot.real;
+        this.stateImaginary = snapshot.imaginary;
+        this.shared = true;
+    }
+
     /**
      * Initialize all qubits to state |0> 
+     * <p>
+     * The amplitude arrays are reused when they already have the right size, so resetting does not allocate.
      * @param numberOfQubits The number of qubits to initialize
      */
     public final void initialize(int numberOfQubits){
+        if (numberOfQubits < 0 || numberOfQubits > 30){
+            throw new IllegalArgumentException("Number of qubits must be between 0 and 30 (use OffHeapQuantumComputer for more): " + numberOfQubits);
+        }
         int stateSize = 1 << numberOfQubits; // implements the use of the left shift for speed up (equivalent to 2^{numberOfQubits})
-        this.state = new Complex[stateSize];
 
-        // initialize each complex number
-        state[0] = new Complex(1,0);
-        for (int i = 1; i < stateSize; i++){
-            state[i] = new Complex(0,0);
+        if (this.stateReal == null || this.stateReal.length != stateSize || shared){
+            // arrays shared with a snapshot must not be cleared, so they are replaced instead
+            this.stateReal = new double[stateSize];
+            this.stateImaginary = new double[stateSize];
+            this.shared = false;
+        } else {
+            Arrays.fill(this.stateReal, 0.0);
+            Arrays.fill(this.stateImaginary, 0.0);
         }
+
+        stateReal[0] = 1.0;
     }
 
     /**
@@ -57,70 +142,95 @@ public class QuantumComputer {
      * Apply a Hadamard gate to a qubit.
      * @param qubitIndex The index of the qubit to apply the gate to
      */
+    @Override
     public void applyHadamard(int qubitIndex){
         validateQubitIndex(qubitIndex);
-        int stateSize = 1 << numQubits;
-        Complex[] newState = new Complex[stateSize];
-
-        for (int i = 0; i < stateSize; i++){
-            newState[i] = new Complex(0,0);
-        }
-
-        // Apply Hadamard
-        double scaleFactor = 1.0 / Math.sqrt(2);
-
-        // Mask out qubits at position qubitIndex
-        int mask = 1 << qubitIndex;
-
-        for (int i = 0; i < stateSize; i++){
-            // Apply H to each qubit depending on whether it is 1 or 0
-            if ((i & mask) == 0){
-                newState[i] = newState[i].add(state[i].multiply(scaleFactor));
-                newState[i | mask] = newState[i | mask].add(state[i].multiply(scaleFactor));
+        ensureWritable();
+        double[] real = stateReal, imaginary = stateImaginary;
+        int stride = 1 << qubitIndex;
+        if (isVectorEnabled()) {
+            if (runsInParallel()) {
+                ParallelRange.forEach(pool, pairCount(), (from, to) -> VectorKernels.general(real, imaginary, stride, from, to, HADAMARD));
             } else {
-                newState[i ^ mask] = newState[i ^ mask].add(state[i].multiply(scaleFactor));
-                newState[i] = newState[i].add(state[i].multiply(-scaleFactor));
+                VectorKernels.general(real, imaginary, stride, 0, pairCount(), HADAMARD);
             }
+        } else if (runsInParallel()) {
+            ParallelRange.forEach(pool, pairCount(), (from, to) -> StateKernels.hadamard(real, imaginary, stride, from, to));
+        } else {
+            StateKernels.hadamard(real, imaginary, stride, 0, pairCount());
         }
-        this.state = newState;
     }
 
     /**
      * Apply a Pauli-X gate to a qubit
      * @param qubitIndex The index of the qubit to apply the gate to
      */
+    @Override
     public void applyPauliX(int qubitIndex) {
         validateQubitIndex(qubitIndex);
-
-        int stateSize = 1 << numQubits;
-        Complex[] newState = new Complex[stateSize];
-
-        for (int i = 0; i < stateSize; i++) {
-            newState[i] = new Complex(0,0);
+        ensureWritable();
+        double[] real = stateReal, imaginary = stateImaginary;
+        int stride = 1 << qubitIndex;
+        if (runsInParallel()) {
+            ParallelRange.forEach(pool, pairCount(), (from, to) -> StateKernels.pauliX(real, imaginary, stride, from, to));
+        } else {
+            StateKernels.pauliX(real, imaginary, stride, 0, pairCount());
         }
-
-        int mask = 1 << qubitIndex;
-
-        for (int i = 0; i < stateSize; i++){
-            newState[i ^ mask] = state[i];
-        }
-
-        state = newState;
     }
 
     /**
      * Apply a Pauli-Z gate to a qubit
      * @param qubitIndex The index of the qubit to apply the gate to
      */
+    @Override
     public void applyPauliZ(int qubitIndex) {
         validateQubitIndex(qubitIndex);
+        ensureWritable();
+        double[] real = stateReal, imaginary = stateImaginary;
+        int stride = 1 << qubitIndex;
+        if (runsInParallel()) {
+            ParallelRange.forEach(pool, pairCount(), (from, to) -> StateKernels.pauliZ(real, imaginary, stride, from, to));
+        } else {
+            StateKernels.pauliZ(real, imaginary, stride, 0, pairCount());
+        }
+    }
 
-        int mask = 1 << qubitIndex;
+    /**
+     * Apply any single qubit gate.
+     * <p>
+     * The matrix is classified first (see {@link Gates#classify(Complex[][])}) and the cheapest in place kernel for that shape is used,
+     * so for example a phase gate only touches the half of the state where the qubit is 1.
+     * The matrix is assumed to be unitary; it is not checked.
+     * @param qubitIndex The index of the qubit to apply the gate to
+     * @param matrix The 2x2 gate matrix, indexed as matrix[row][column]
+     */
+    @Override
+    public void applySingleQubitGate(int qubitIndex, Complex[][] matrix) {
+        validateQubitIndex(qubitIndex);
+        applyFlatGate(1 << qubitIndex, Gates.classify(matrix), StateKernels.flatten(matrix));
+    }
 
-        for (int i = 0; i < state.length; i ++){
-            if ((i & mask) != 0){
-                this.state[i] = this.state[i].multiply(-1);
+    /**
+     * Apply a single qubit gate that was already checked and flattened (see {@link CompiledCircuit}).
+     * @param stride 2^{qubit index}
+     * @param kind The shape of the matrix
+     * @param flat The matrix in the layout of {@link StateKernels#flatten(Complex[][])}
+     */
+    void applyFlatGate(int stride, Gates.Kind kind, double[] flat) {
+        ensureWritable();
+        double[] real = stateReal, imaginary = stateImaginary;
+        // diagonal and anti diagonal gates keep their scalar kernels, which read and write less memory
+        boolean dense = kind == Gates.Kind.REAL || kind == Gates.Kind.GENERAL;
+        if (dense && isVectorEnabled()) {
+            if (runsInParallel()) {
+                ParallelRange.forEach(pool, pairCount(), (from, to) -> VectorKernels.general(real, imaginary, stride, from, to, flat));
+            } else {
+                VectorKernels.general(real, imaginary, stride, 0, pairCount(), flat);
             }
+        } else if (runsInParallel()) {
+            ParallelRange.forEach(pool, pairCount(), (from, to) -> StateKernels.matrix(real, imaginary, stride, from, to, kind, flat));
+        } else {
+            StateKernels.matrix(real, imaginary, stride, 0, pairCount(), kind, flat);
         }
     }
 
@@ -129,28 +239,64 @@ public class QuantumComputer {
      * @param control The control qubit index
      * @param target The target qubit index
      */
+    @Override
     public void applyCNOT(int control, int target) { 
         validateQubitIndex(control);
         validateQubitIndex(target);
-
-        int stateSize = 1 << this.numQubits;
-        Complex[] newState = new Complex[stateSize];
-
-        for (int i = 0; i < stateSize; i++) {
-            newState[i] = new Complex(0, 0);
+        if (control == target){
+            throw new IllegalArgumentException("Control and target must be different qubits: " + control);
         }
+        applyCnotStrides(1 << control, 1 << target);
+    }
 
-        int controlMask = 1 << control;
-        int targetMask  = 1 << target;
-
-        for (int i = 0; i < stateSize; i++) {
-            if ((i & controlMask) != 0) {
-                newState[i ^ targetMask] = state[i];
+    /**
+     * Apply a CNOT on qubits that were already checked (see {@link CompiledCircuit}).
+     * @param controlStride 2^{control index}
+     * @param targetStride 2^{target index}
+     */
+    void applyCnotStrides(int controlStride, int targetStride) {
+        ensureWritable();
+        double[] real = stateReal, imaginary = stateImaginary;
+        int quads = stateReal.length >> 2;
+        if (isVectorEnabled()) {
+            // the vector kernel walks the target pairs and masks on the control bit
+            if (runsInParallel()) {
+                ParallelRange.forEach(pool, pairCount(), (from, to) -> VectorKernels.cnot(real, imaginary, controlStride, targetStride, from, to));
             } else {
-                newState[i] = state[i];
+                VectorKernels.cnot(real, imaginary, controlStride, targetStride, 0, pairCount());
             }
+        } else if (runsInParallel()) {
+            ParallelRange.forEach(pool, quads, (from, to) -> StateKernels.cnot(real, imaginary, controlStride, targetStride, from, to));
+        } else {
+            StateKernels.cnot(real, imaginary, controlStride, targetStride, 0, quads);
+        }
+    }
+
+    /**
+     * Apply a dense gate on several qubits at once (used for fused gate blocks).
+     * <p>
+     * Bit j of a row or column number of the matrix is the state of {@code qubits[j]}, so for qubits {2, 5} row 1 means
+     * qubit 2 is 1 and qubit 5 is 0. The matrix is assumed to be unitary; it is not checked.
+     * @param qubits The qubits the gate acts on (all different)
+     * @param matrix The 2^k x 2^k gate matrix where k is the number of qubits
+     */
+    public void applyMultiQubitGate(int[] qubits, Complex[][] matrix) {
+        applyDenseGate(DenseGate.of(numQubits, qubits, matrix));
+    }
+
+    /**
+     * Apply a multi qubit gate that was already checked and prepared (see {@link CompiledCircuit}).
+     * @param gate The prepared gate
+     */
+    void applyDenseGate(DenseGate gate) {
+        ensureWritable();
+        double[] real = stateReal, imaginary = stateImaginary;
+        int groups = stateReal.length >> gate.qubitCount();
+        if (runsInParallel()) {
+            ParallelRange.forEach(pool, groups, (from, to) -> StateKernels.dense(real, imaginary, gate.sortedStrides, gate.offsets, gate.matrixReal, gate.matrixImaginary, from, to));
+        } else {
+            StateKernels.dense(real, imaginary, gate.sortedStrides, gate.offsets, gate.matrixReal, gate.matrixImaginary, 0, groups);
         }
-        state = newState;
     }
 
     /**
@@ -158,67 +304,717 @@ public class QuantumComputer {
      * @param qubitIndex The index of the qubit to measure 
      * @return 0 or 1 
      */
+    @Override
     public int measure(int qubitIndex) {
         validateQubitIndex(qubitIndex);
 
-        double probZero  = 0;
-        int    mask      = 1 << qubitIndex;
-        int    stateSize = 1 << this.numQubits;
-        
-        for (int i = 0; i < stateSize; i++) {
-            if ((i & mask) == 0){
-                probZero += state[i].magnitudeSquared();
+        int    stride   = 1 << qubitIndex;
+        double probZero = probabilityOfZero(stride);
+
+        int result = random.nextDouble() < probZero ? 0 : 1;
+
+        // Collapse the state now: keep the measured half (renormalized) and zero the other half
+        double probKept = result == 0 ? probZero : 1 - probZero;
+        double scale    = 1.0 / Math.sqrt(probKept);
+        if (probKept == 1.0) {
+            // the result was certain, so the other half is already zero and nothing needs rescaling
+            return result;
+        }
+
+        ensureWritable();
+        double[] real = stateReal, imaginary = stateImaginary;
+        if (runsInParallel()) {
+            ParallelRange.forEach(pool, pairCount(), (from, to) -> StateKernels.collapse(real, imaginary, stride, from, to, result, scale));
+        } else {
+            StateKernels.collapse(real, imaginary, stride, 0, pairCount(), result, scale);
+        }
+
+        return result;
+    }
+
+    /**
+     * Measure several qubits at once and collapse the state.
+     * <p>
+     * This makes one pass over the state to get the probability of every outcome of the measured qubits, picks an outcome,
+     * and then makes one more pass that keeps (and renormalizes) the matching amplitudes and zeroes the rest.
+     * Measuring the qubits one by one would take two passes per qubit. The outcome has the same distribution either way.
+     * <p>
+     * The probabilities are added up in the same fixed blocks as {@link #measure(int)}, so the serial and the parallel path
+     * pick the same outcome and leave the same state. For more than 12 measured qubits there is no table of outcomes: a basis
+     * state is drawn with a cumulative walk over the amplitudes and the measured bits are read from it, which takes one more
+     * pass but no memory the size of the state.
+     * @param qubits The qubits to measure (all different)
+     * @return The measured bits, results[j] is the value of qubits[j]
+     */
+    public int[] measureRegister(int... qubits) {
+        if (qubits.length == 0) {
+            return new int[0];
+        }
+        int[] strides = new int[qubits.length];
+        int mask = 0;
+        for (int j = 0; j < qubits.length; j++) {
+            validateQubitIndex(qubits[j]);
+            strides[j] = 1 << qubits[j];
+            if ((mask & strides[j]) != 0) {
+                throw new IllegalArgumentException("Qubit measured twice: " + qubits[j]);
             }
+            mask |= strides[j];
         }
 
-        int result = random.nextDouble() < probZero ? 0 : 1;
+        ensureWritable();
+        double[] real = stateReal, imaginary = stateImaginary;
+        int stateSize = stateReal.length;
+        int finalMask = mask;
+        int outcome;
+        double probability;
+        if (qubits.length <= MAX_HISTOGRAM_QUBITS) {
+            double[] histogram = registerHistogram(strides);
+            double total = 0;
+            for (double outcomeProbability : histogram) {
+                total += outcomeProbability;
+            }
+            double draw = random.nextDouble() * total;
+            outcome = 0;
+            double cumulative = histogram[0];
+            while (outcome < histogram.length - 1 && (draw >= cumulative || histogram[outcome] == 0)) {
+                outcome++;
+                cumulative += histogram[outcome];
+            }
+            while (histogram[outcome] == 0 && outcome > 0) {
+                // rounding pushed the draw past the last possible outcome
+                outcome--;
+            }
+            probability = histogram[outcome];
+        } else {
+            // too many outcomes for a table: draw a basis state and read the measured bits from it
+            int state = drawBasisState(random.nextDouble());
+            outcome = 0;
+            for (int j = 0; j < strides.length; j++) {
+                if ((state & strides[j]) != 0) {
+                    outcome |= 1 << j;
+                }
+            }
+            int statePattern = state & mask;
+            probability = blockSum(stateSize, (from, to) -> StateKernels.patternProbability(real, imaginary, finalMask, statePattern, from, to));
+        }
 
-        // Collapse the state now
-        Complex[] newState = new Complex[stateSize];
+        int[] results = new int[qubits.length];
+        int pattern = 0;
+        for (int j = 0; j < qubits.length; j++) {
+            results[j] = (outcome >> j) & 1;
+            if (results[j] == 1) {
+                pattern |= strides[j];
+            }
+        }
+
+        // one collapse sweep
+        int finalPattern = pattern;
+        double scale = 1.0 / Math.sqrt(probability);
+        if (runsInParallel()) {
+            ParallelRange.forEach(pool, stateSize, (from, to) -> StateKernels.collapseRegister(real, imaginary, finalMask, finalPattern, scale, from, to));
+        } else {
+            StateKernels.collapseRegister(real, imaginary, mask, pattern, scale, 0, stateSize);
+        }
+        return results;
+    }
+
+    /**
+     * Sample the whole register many times without changing the state.
+     * <p>
+     * Instead of measuring qubit by qubit for every shot, all the random numbers are drawn up front and sorted, and then one
+     * pass over the amplitudes walks the running (cumulative) probability and hands each random number to the basis state
+     * it falls in. That costs O(shots log shots + 2^n) and needs no table the size of the state.
+     * @param shots The number of samples to draw
+     * @return The number of times each basis state was drawn, keyed by bitstring (qubit 0 is the rightmost bit) in ascending order.
+     *         States that were never drawn are left out
+     */
+    public Map<String, Integer> sample(int shots) {
+        if (shots < 0) {
+            throw new IllegalArgumentException("Number of shots must not be negative: " + shots);
+        }
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        if (shots == 0) {
+            return counts;
+        }
 
-        for (int i = 0; i < stateSize; i++) {
-            newState[i] = new Complex(0,0);
+        // scale by the total so rounding in the norm can not leave draws past the end
+        double total = 0;
+        for (int i = 0; i < stateReal.length; i++) {
+            total += stateReal[i] * stateReal[i] + stateImaginary[i] * stateImaginary[i];
+        }
+        double[] draws = new double[shots];
+        for (int shot = 0; shot < shots; shot++) {
+            draws[shot] = random.nextDouble() * total;
         }
+        Arrays.sort(draws);
 
-        if (result == 0){
-            for (int i = 0; i < stateSize; i++){
-                newState[i] = state[i].divide(Math.sqrt(probZero));
+        double cumulative = 0;
+        int next = 0;
+        int lastNonZero = 0;
+        for (int i = 0; i < stateReal.length && next < shots; i++) {
+            double probability = stateReal[i] * stateReal[i] + stateImaginary[i] * stateImaginary[i];
+            if (probability == 0) {
+                continue;
             }
-        } else { // result equals 1 then
-            double probOne = 1 - probZero; // small speedup
-            for (int i = 0; i < stateSize; i++){
-                newState[i] = state[i].divide(Math.sqrt(probOne));
+            lastNonZero = i;
+            cumulative += probability;
+            int count = 0;
+            while (next < shots && draws[next] < cumulative) {
+                next++;
+                count++;
             }
+            if (count > 0) {
+                counts.put(toBitString(i), count);
+            }
+        }
+        if (next < shots) {
+            // only possible through rounding right at the top of the range
+            counts.merge(toBitString(lastNonZero), shots - next, Integer::sum);
         }
+        return counts;
+    }
 
-        state = newState;
-        return result;
+    /**
+     * Work out the expectation value of a Pauli string, {@code <psi|P|psi>} (including the coefficient).
+     * <p>
+     * This reads the amplitudes in place with the X and Z bit masks of the string, so the state is not copied and P|psi> is
+     * never built. Large registers are split into blocks across the fork/join pool; on the serial path nothing is allocated.
+     * @param pauliString The Pauli string
+     * @return The expectation value
+     */
+    public double expectation(PauliString pauliString) {
+        if (pauliString.getQubitSpan() > numQubits) {
+            throw new IllegalArgumentException("Pauli string acts on qubit " + (pauliString.getQubitSpan() - 1) + " but there are only " + numQubits + " qubits");
+        }
+        int xMask = (int) pauliString.getXMask();
+        int zMask = (int) pauliString.getZMask();
+        // i^{#Y} times the sum: 1 keeps the real part, i takes minus the imaginary part, -1 and -i flip those
+        int power = pauliString.getYCount() & 3;
+        boolean imaginaryPart = (power & 1) == 1;
+        double sign = power == 0 || power == 3 ? 1.0 : -1.0;
+
+        double[] real = stateReal, imaginary = stateImaginary;
+        int size = real.length;
+        int blocks = (size + REDUCTION_BLOCK - 1) / REDUCTION_BLOCK;
+        double sum = 0;
+        if (runsInParallel() && blocks > 1) {
+            double[] partialSums = new double[blocks];
+            ParallelRange.forEach(pool, blocks, 1, (from, to) -> {
+                for (int block = from; block < to; block++) {
+                    int start = block * REDUCTION_BLOCK;
+                    partialSums[block] = StateKernels.pauliTerm(real, imaginary, xMask, zMask, imaginaryPart, start, Math.min(start + REDUCTION_BLOCK, size));
+                }
+            });
+            for (double partialSum : partialSums) {
+                sum += partialSum;
+            }
+        } else {
+            for (int start = 0; start < size; start += REDUCTION_BLOCK) {
+                sum += StateKernels.pauliTerm(real, imaginary, xMask, zMask, imaginaryPart, start, Math.min(start + REDUCTION_BLOCK, size));
+            }
+        }
+        return pauliString.getCoefficient() * sign * sum;
+    }
+
+    /**
+     * Work out the expectation value of an observable written as a sum of weighted Pauli strings (for example a Hamiltonian).
+     * @param observable The terms of the sum
+     * @return The expectation value
+     */
+    public double expectation(List<PauliString> observable) {
+        double sum = 0;
+        for (int term = 0; term < observable.size(); term++) {
+            sum += expectation(observable.get(term));
+        }
+        return sum;
+    }
+
+    /**
+     * Work out the overlap {@code <a|b>} of the states of two quantum computers.
+     * <p>
+     * Both amplitude arrays are read in place (nothing is copied into {@link Complex} objects). The sum is split into the
+     * same fixed blocks as a measurement, each block and the block sums use Kahan summation, so the result stays accurate
+     * for 2^28 amplitudes and is the same on the serial and the parallel path. The settings of {@code a} decide if it runs in parallel.
+     * @param a The bra (conjugated) state
+     * @param b The ket state
+     * @return The overlap
+     */
+    public static Complex overlap(QuantumComputer a, QuantumComputer b) {
+        double[] sums = a.overlapSums(b.numQubits, b.stateReal, b.stateImaginary);
+        return new Complex(sums[0], sums[1]);
+    }
+
+    /**
+     * Work out the fidelity |<a|b>|^2 of the states of two quantum computers (1 for the same state, 0 for orthogonal states).
+     * @param a One quantum computer
+     * @param b Another quantum computer with the same number of qubits
+     * @return The fidelity
+     */
+    public static double fidelity(QuantumComputer a, QuantumComputer b) {
+        double[] sums = a.overlapSums(b.numQubits, b.stateReal, b.stateImaginary);
+        return sums[0] * sums[0] + sums[1] * sums[1];
+    }
+
+    /**
+     * Work out the trace distance of the states of two quantum computers. For pure states this is sqrt(1 - fidelity).
+     * @param a One quantum computer
+     * @param b Another quantum computer with the same number of qubits
+     * @return The trace distance, 0 for the same state and 1 for orthogonal states
+     */
+    public static double traceDistance(QuantumComputer a, QuantumComputer b) {
+        return Math.sqrt(Math.max(0.0, 1.0 - fidelity(a, b)));
+    }
+
+    /**
+     * Work out the fidelity of the current state with a snapshot (for example the state before it was sent or stored).
+     * @param snapshot A snapshot with the same number of qubits
+     * @return The fidelity
+     */
+    public double fidelity(StateSnapshot snapshot) {
+        double[] sums = overlapSums(snapshot.getNumQubits(), snapshot.real, snapshot.imaginary);
+        return sums[0] * sums[0] + sums[1] * sums[1];
+    }
+
+    /**
+     * Format a basis state index as a bitstring with one character per qubit (qubit 0 is the rightmost character).
+     * @param index The basis state index
+     * @return The bitstring
+     */
+    public String toBitString(int index) {
+        char[] bits = new char[numQubits];
+        for (int q = 0; q < numQubits; q++) {
+            bits[numQubits - 1 - q] = (index & (1 << q)) != 0 ? '1' : '0';
+        }
+        return new String(bits);
+    }
+
+    /**
+     * Probability that the qubit with the given stride reads 0.
+     * The pairs are summed in fixed blocks of {@link #REDUCTION_BLOCK} and the block sums are added in order,
+     * whether or not the blocks were computed in parallel.
+     * @param stride 2^{qubit index}
+     * @return The probability of measuring 0
+     */
+    private double probabilityOfZero(int stride) {
+        double[] real = stateReal, imaginary = stateImaginary;
+        int pairs  = pairCount();
+        int blocks = (pairs + REDUCTION_BLOCK - 1) / REDUCTION_BLOCK;
+
+        double probZero = 0;
+        if (runsInParallel() && blocks > 1) {
+            double[] partialSums = new double[blocks];
+            ParallelRange.forEach(pool, blocks, 1, (from, to) -> {
+                for (int block = from; block < to; block++) {
+                    int start = block * REDUCTION_BLOCK;
+                    partialSums[block] = StateKernels.probabilityOfZero(real, imaginary, stride, start, Math.min(start + REDUCTION_BLOCK, pairs));
+                }
+            });
+            for (double partialSum : partialSums) {
+                probZero += partialSum;
+            }
+        } else {
+            for (int start = 0; start < pairs; start += REDUCTION_BLOCK) {
+                probZero += StateKernels.probabilityOfZero(real, imaginary, stride, start, Math.min(start + REDUCTION_BLOCK, pairs));
+            }
+        }
+        return probZero;
+    }
+
+    /**
+     * The real and imaginary part of sum(conj(this[i]) * other[i]), in blocks of {@link #REDUCTION_BLOCK}.
+     */
+    private double[] overlapSums(int otherQubits, double[] otherReal, double[] otherImaginary) {
+        if (otherQubits != numQubits) {
+            throw new IllegalArgumentException("Can not compare a state of " + numQubits + " qubits with one of " + otherQubits + " qubits");
+        }
+        double[] real = stateReal, imaginary = stateImaginary;
+        int size = real.length;
+        int blocks = (size + REDUCTION_BLOCK - 1) / REDUCTION_BLOCK;
+        double[] partialSums = new double[2 * blocks];
+        if (runsInParallel() && blocks > 1) {
+            ParallelRange.forEach(pool, blocks, 1, (from, to) -> {
+                for (int block = from; block < to; block++) {
+                    int start = block * REDUCTION_BLOCK;
+                    StateKernels.overlap(real, imaginary, otherReal, otherImaginary, start, Math.min(start + REDUCTION_BLOCK, size), partialSums, 2 * block);
+                }
+            });
+        } else {
+            for (int block = 0; block < blocks; block++) {
+                int start = block * REDUCTION_BLOCK;
+                StateKernels.overlap(real, imaginary, otherReal, otherImaginary, start, Math.min(start + REDUCTION_BLOCK, size), partialSums, 2 * block);
+            }
+        }
+        return new double[] {StateKernels.compensatedSum(partialSums, 0, 2), StateKernels.compensatedSum(partialSums, 1, 2)};
+    }
+
+    /**
+     * A sum over the basis states [from, to), see {@link #blockSum(int, BlockSum)}.
+     */
+    @FunctionalInterface
+    private interface BlockSum {
+        double sum(int from, int to);
+    }
+
+    /**
+     * Add up a sum over [0, count) in fixed blocks of {@link #REDUCTION_BLOCK}, adding the block sums in block order,
+     * so the serial and the parallel path give bit-identical results.
+     */
+    private double blockSum(int count, BlockSum body) {
+        int blocks = (count + REDUCTION_BLOCK - 1) / REDUCTION_BLOCK;
+        double[] partialSums = new double[blocks];
+        if (runsInParallel() && blocks > 1) {
+            ParallelRange.forEach(pool, blocks, 1, (from, to) -> {
+                for (int block = from; block < to; block++) {
+                    int start = block * REDUCTION_BLOCK;
+                    partialSums[block] = body.sum(start, Math.min(start + REDUCTION_BLOCK, count));
+                }
+            });
+        } else {
+            for (int block = 0; block < blocks; block++) {
+                int start = block * REDUCTION_BLOCK;
+                partialSums[block] = body.sum(start, Math.min(start + REDUCTION_BLOCK, count));
+            }
+        }
+        double sum = 0;
+        for (double partialSum : partialSums) {
+            sum += partialSum;
+        }
+        return sum;
+    }
+
+    /**
+     * The probability of every outcome of the measured qubits.
+     * <p>
+     * Every block of {@link #REDUCTION_BLOCK} amplitudes gets its own histogram and the block histograms are added in block
+     * order, on the serial and on the parallel path alike, so both give bit-identical probabilities. The parallel path works
+     * through the blocks in rounds, so the block histograms of one round never hold more than
+     * {@link #MAX_PARTIAL_HISTOGRAM_ENTRIES} numbers.
+     */
+    private double[] registerHistogram(int[] strides) {
+        double[] real = stateReal, imaginary = stateImaginary;
+        int stateSize = real.length;
+        int outcomes = 1 << strides.length;
+        int blocks = (stateSize + REDUCTION_BLOCK - 1) / REDUCTION_BLOCK;
+        int blocksPerRound = runsInParallel() ? Math.max(1, Math.min(blocks, MAX_PARTIAL_HISTOGRAM_ENTRIES / outcomes)) : 1;
+        double[][] partialHistograms = new double[blocksPerRound][outcomes];
+        double[] histogram = new double[outcomes];
+        for (int first = 0; first < blocks; first += blocksPerRound) {
+            int roundStart = first;
+            int roundBlocks = Math.min(blocksPerRound, blocks - first);
+            if (roundBlocks > 1) {
+                ParallelRange.forEach(pool, roundBlocks, 1, (from, to) -> {
+                    for (int slot = from; slot < to; slot++) {
+                        int start = (roundStart + slot) * REDUCTION_BLOCK;
+                        Arrays.fill(partialHistograms[slot], 0.0);
+                        StateKernels.registerHistogram(real, imaginary, strides, start, Math.min(start + REDUCTION_BLOCK, stateSize), partialHistograms[slot]);
+                    }
+                });
+            } else {
+                int start = roundStart * REDUCTION_BLOCK;
+                Arrays.fill(partialHistograms[0], 0.0);
+                StateKernels.registerHistogram(real, imaginary, strides, start, Math.min(start + REDUCTION_BLOCK, stateSize), partialHistograms[0]);
+            }
+            for (int slot = 0; slot < roundBlocks; slot++) {
+                for (int outcome = 0; outcome < outcomes; outcome++) {
+                    histogram[outcome] += partialHistograms[slot][outcome];
+                }
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Pick a basis state with probability |amplitude|^2 by walking the running (cumulative) probability, like {@link #sample(int)}.
+     * The block sums locate the block first, so only one block is walked amplitude by amplitude.
+     * @param uniform A random number in [0, 1)
+     * @return The basis state
+     */
+    private int drawBasisState(double uniform) {
+        double[] real = stateReal, imaginary = stateImaginary;
+        int stateSize = real.length;
+        int blocks = (stateSize + REDUCTION_BLOCK - 1) / REDUCTION_BLOCK;
+        double[] blockSums = new double[blocks];
+        double total = blockSum(stateSize, (from, to) -> {
+            double sum = StateKernels.probabilitySum(real, imaginary, from, to);
+            blockSums[from / REDUCTION_BLOCK] = sum;
+            return sum;
+        });
+        double draw = uniform * total;
+        int lastNonZero = 0;
+        double cumulative = 0;
+        for (int block = 0; block < blocks; block++) {
+            if (blockSums[block] == 0) {
+                continue;
+            }
+            if (draw >= cumulative + blockSums[block] && block < blocks - 1) {
+                cumulative += blockSums[block];
+                continue;
+            }
+            int end = Math.min((block + 1) * REDUCTION_BLOCK, stateSize);
+            for (int i = block * REDUCTION_BLOCK; i < end; i++) {
+                double probability = real[i] * real[i] + imaginary[i] * imaginary[i];
+                if (probability == 0) {
+                    continue;
+                }
+                lastNonZero = i;
+                cumulative += probability;
+                if (draw < cumulative) {
+                    return i;
+                }
+            }
+        }
+        // only possible through rounding right at the top of the range
+        return lastNonZero;
+    }
+
+    /**
+     * The number of amplitude pairs a single qubit gate works on (2^{n-1}).
+     */
+    private int pairCount() {
+        return stateReal.length >> 1;
+    }
+
+    /**
+     * Whether gates on this register should be split across the fork/join pool.
+     */
+    private boolean runsInParallel() {
+        return parallelEnabled && numQubits >= parallelThreshold && pool.getParallelism() > 1;
+    }
+
+    /**
+     * Turn parallel gate application on or off. When on, registers at or above the parallel threshold split every gate
+     * and measurement across the fork/join pool. Results are the same either way.
+     * @param parallelEnabled True to allow parallel execution
+     */
+    public void setParallelEnabled(boolean parallelEnabled) {
+        this.parallelEnabled = parallelEnabled;
+    }
+
+    /**
+     * Check if parallel gate application is allowed.
+     * @return True if parallel execution is allowed
+     */
+    public boolean isParallelEnabled() {
+        return parallelEnabled;
+    }
+
+    /**
+     * Set the smallest register (in qubits) that is run in parallel. Smaller registers stay serial since the fork overhead
+     * is bigger than the gate itself.
+     * @param parallelThreshold The number of qubits
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        if (parallelThreshold < 0) {
+            throw new IllegalArgumentException("Parallel threshold must not be negative: " + parallelThreshold);
+        }
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Get the smallest register (in qubits) that is run in parallel.
+     * @return The number of qubits
+     */
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Turn the SIMD (Vector API) kernels on or off. They are only used when the JVM was started with
+     * {@code --add-modules jdk.incubator.vector}; otherwise the scalar kernels are always used.
+     * Results match the scalar kernels up to floating point rounding.
+     * @param vectorEnabled True to use the vector kernels when they are available
+     */
+    public void setVectorEnabled(boolean vectorEnabled) {
+        this.vectorEnabled = vectorEnabled;
+    }
+
+    /**
+     * Check if the SIMD kernels are being used.
+     * @return True if the vector kernels are enabled and available on this JVM
+     */
+    public boolean isVectorEnabled() {
+        return vectorEnabled && VectorSupport.isAvailable();
+    }
+
+    /**
+     * Use a specific fork/join pool for parallel gates instead of the common pool.
+     * @param pool The pool to use
+     */
+    public void setForkJoinPool(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool must not be null");
+        }
+        this.pool = pool;
+    }
+
+    /**
+     * Replace the source of randomness used by measurements and sampling, for example with a
+     * {@link java.util.SplittableRandom} stream so parallel runs each get an independent stream.
+     * @param random The random generator
+     */
+    public void setRandomGenerator(RandomGenerator random) {
+        if (random == null) {
+            throw new IllegalArgumentException("Random generator can not be null");
+        }
+        this.random = random;
     }
 
     /**
      * Get the current quantum state as a string for display.
+     * <p>
+     * This holds every line in memory, so for big registers {@link #writeState(Appendable, double)} or
+     * {@link #writeTopStates(Appendable, int)} are better.
      * @return String representation of the state.
      */
     public String getStateString(){
         StringBuilder stringBuilder = new StringBuilder();
+        try {
+            writeState(stringBuilder);
+        } catch (IOException e) {
+            // a StringBuilder never throws
+            throw new UncheckedIOException(e);
+        }
+        return stringBuilder.toString();
+    }
 
-        for (int i = 0; i < state.length; i ++){
-            if (state[i].magnitude() > 1e-10) {
-                @SuppressWarnings("UnnecessaryTemporaryOnConversionFromString")
-                String binary = String.format("%0" + numQubits + "d", Integer.parseInt(Integer.toBinaryString(i)));
-                stringBuilder.append(String.format("|%s>: %s(prob %.4f)\n", binary, state[i].toString(), state[i].magnitudeSquared()));
-            }
+    /**
+     * Write every basis state with a probability above 1e-20, one line per state, in order of index.
+     * @param out Where to write (for example a {@link java.io.Writer} or {@link StringBuilder})
+     * @return The number of lines written
+     * @throws IOException If writing fails
+     */
+    public long writeState(Appendable out) throws IOException {
+        return writeState(out, 1e-20);
+    }
+
+    /**
+     * Write every basis state with a probability above a threshold, one line per state, in order of index.
+     * The lines are written as they are found, so the output never has to fit in memory.
+     * @param out Where to write (for example a {@link java.io.Writer} or {@link StringBuilder})
+     * @param threshold The smallest probability that is not written
+     * @return The number of lines written
+     * @throws IOException If writing fails
+     */
+    public long writeState(Appendable out, double threshold) throws IOException {
+        if (!(threshold >= 0)) {
+            throw new IllegalArgumentException("Threshold can not be negative: " + threshold);
         }
+        return new StateRenderer(stateReal, stateImaginary, numQubits).writeAbove(out, threshold);
+    }
 
-        return stringBuilder.toString();
+    /**
+     * Write the k most likely basis states, most likely first, in the same format as {@link #writeState(Appendable)}.
+     * Only k states are kept while the state is scanned, so this is cheap even when almost every amplitude is nonzero.
+     * @param out Where to write
+     * @param k The most states to write
+     * @return The number of lines written (less than k if fewer states have a nonzero probability)
+     * @throws IOException If writing fails
+     */
+    public int writeTopStates(Appendable out, int k) throws IOException {
+        if (k < 1) {
+            throw new IllegalArgumentException("Number of states must be at least 1: " + k);
+        }
+        return new StateRenderer(stateReal, stateImaginary, numQubits).writeTop(out, k);
+    }
+
+    /**
+     * Save the state to a binary checkpoint file (see {@link #loadState(String, Path)} to read it back).
+     * <p>
+     * The amplitudes are written exactly through a memory mapped file, and chunks of amplitudes that are all zero are skipped.
+     * @param path The file, which is replaced if it exists
+     * @throws IOException If the file can not be written
+     */
+    public void saveState(Path path) throws IOException {
+        StateCheckpoint.write(path, numQubits, stateReal, stateImaginary);
+    }
+
+    /**
+     * Create a quantum computer from a checkpoint written by {@link #saveState(Path)}.
+     * @param name The name of the new quantum computer
+     * @param path The file
+     * @return A quantum computer with the saved number of qubits and state
+     * @throws IOException If the file can not be read, is not a checkpoint, or fails its checksum
+     */
+    public static QuantumComputer loadState(String name, Path path) throws IOException {
+        return StateCheckpoint.read(path, name);
+    }
+
+    /**
+     * Capture the current state so it can be restored or forked later.
+     * <p>
+     * This does not copy anything: the snapshot shares the amplitude arrays and this computer copies them the next time
+     * a gate or measurement writes to the state (copy on write). Taking a snapshot after a long preparation circuit
+     * therefore costs nothing until the state changes, and then one array copy instead of re-running the circuit.
+     * @return The snapshot
+     */
+    public StateSnapshot snapshot() {
+        shared = true;
+        return new StateSnapshot(numQubits, stateReal, stateImaginary);
+    }
+
+    /**
+     * Go back to a snapshot. Like {@link #snapshot()} this only shares the arrays, the copy happens on the next write.
+     * @param snapshot A snapshot of a computer with the same number of qubits
+     */
+    public void restore(StateSnapshot snapshot) {
+        if (snapshot.getNumQubits() != numQubits) {
+            throw new IllegalArgumentException("Snapshot has " + snapshot.getNumQubits() + " qubits but this computer has " + numQubits);
+        }
+        stateReal = snapshot.real;
+        stateImaginary = snapshot.imaginary;
+        shared = true;
+    }
+
+    /**
+     * Create a new quantum computer that starts from the current state of this one.
+     * <p>
+     * Both computers share the state until one of them changes it, so forking many branches from one prepared state
+     * costs one copy per branch that is actually used. The fork has the same parallel settings and its own randomness.
+     * @param name The name of the new quantum computer
+     * @return The new quantum computer
+     */
+    public QuantumComputer fork(String name) {
+        QuantumComputer fork = fromSnapshot(name, snapshot());
+        fork.parallelEnabled = parallelEnabled;
+        fork.parallelThreshold = parallelThreshold;
+        fork.pool = pool;
+        fork.vectorEnabled = vectorEnabled;
+        return fork;
+    }
+
+    /**
+     * Create a new quantum computer in the state of a snapshot, without copying it until it changes.
+     * @param name The name of the new quantum computer
+     * @param snapshot The state to start from
+     * @return The new quantum computer
+     */
+    public static QuantumComputer fromSnapshot(String name, StateSnapshot snapshot) {
+        return new QuantumComputer(name, snapshot);
+    }
+
+    /**
+     * Copy the amplitude arrays if a snapshot still shares them, so this computer can write to its own.
+     */
+    private void ensureWritable() {
+        if (shared) {
+            stateReal = stateReal.clone();
+            stateImaginary = stateImaginary.clone();
+            shared = false;
+        }
     }
 
     /**
      * Get the raw quantum state
+     * <p>
+     * This builds {@link Complex} objects for every amplitude, so it is meant for inspection and tests, not for hot loops.
      * @return A copy of the exact quantum state
      */
     public Complex[] getState() {
-        return Arrays.copyOf(state, state.length);
+        Complex[] copy = new Complex[stateReal.length];
+        for (int i = 0; i < copy.length; i++){
+            copy[i] = new Complex(stateReal[i], stateImaginary[i]);
+        }
+        return copy;
     }
 
     /**
@@ -226,17 +1022,65 @@ public class QuantumComputer {
      * @param newState The new state to set
      */
     public void setState(Complex[] newState){
-        if(newState.length != this.state.length){
-            throw new IllegalArgumentException("State size mismatch. Expected: " + this.state.length + " but got: " + newState.length);
+        if(newState.length != this.stateReal.length){
+            throw new IllegalArgumentException("State size mismatch. Expected: " + this.stateReal.length + " but got: " + newState.length);
+        }
+        ensureWritable();
+        for (int i = 0; i < newState.length; i++){
+            stateReal[i] = newState[i].real();
+            stateImaginary[i] = newState[i].imaginary();
+        }
+    }
+
+    /**
+     * Get the amplitude of one basis state without copying the whole state.
+     */
+    Complex getAmplitude(int index) {
+        return new Complex(stateReal[index], stateImaginary[index]);
+    }
+
+    /**
+     * Get the real parts of the state for other simulators in this package. This is the live array, not a copy,
+     * so it is first made private to this computer if a snapshot still shares it.
+     */
+    double[] realParts() {
+        ensureWritable();
+        return stateReal;
+    }
+
+    /**
+     * Get the imaginary parts of the state for other simulators in this package. This is the live array, not a copy,
+     * so it is first made private to this computer if a snapshot still shares it.
+     */
+    double[] imaginaryParts() {
+        ensureWritable();
+        return stateImaginary;
+    }
+
+    /**
+     * Replace the state with the amplitudes stored in a sparse map (used when a {@link SparseQuantumComputer} switches to dense storage).
+     * Basis states that are not in the map become 0.
+     * @param amplitudes The amplitudes, every key must be below 2^{numQubits}
+     */
+    void loadSparse(SparseAmplitudeMap amplitudes) {
+        ensureWritable();
+        Arrays.fill(stateReal, 0.0);
+        Arrays.fill(stateImaginary, 0.0);
+        for (int slot = 0; slot < amplitudes.capacity(); slot++) {
+            long key = amplitudes.keyAt(slot);
+            if (key != SparseAmplitudeMap.EMPTY) {
+                stateReal[(int) key] = amplitudes.realAt(slot);
+                stateImaginary[(int) key] = amplitudes.imaginaryAt(slot);
+            }
         }
-        this.state = Arrays.copyOf(newState, newState.length);
     }
 
     /**
      * Get the name of this quantum computer.
      * @return The name
      */
-    public String getName() { 
+    @Override
+    public String getName() {
         return name;
     }
 
@@ -252,6 +1096,7 @@ public class QuantumComputer {
      * Get the number of qubits.
      * @return The number of qubits
      */
+    @Override
     public int getNumQubits(){
         return numQubits;
     }
@@ -259,6 +1104,7 @@ public class QuantumComputer {
     /**
      * Reset the quantum state to all 0s
      */
+    @Override
     public void reset(){
         this.initialize(this.numQubits);
     }
@@ -1,20 +1,28 @@
 package com.core;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Represents a quantum network that enables communication between quantum computers.
  * Handles both classical and quantum message passing.
+ * <p>
+ * The network is thread safe. Every registered computer has its own mailbox, a lock-free queue that any number of
+ * threads can send to at the same time (see {@link Mailbox}), and is read with {@link #receive(String)} and its blocking,
+ * timed and batch variants. Messages from one sender to one receiver arrive in the order they were sent.
+ * Simulations that run many nodes on many threads should also turn off the log lines with {@link #setVerbose(boolean)},
+ * since every line goes through the lock of {@code System.out}.
  */
 public class QuantumNetwork {
     private final Map<String, QuantumComputer> quantumComputers;
-    private final Queue<Message> messageQueue;
+    private final Map<String, Mailbox<Message>> mailboxes;
     private final Map<String, List<String>> classicalMessages;
+    private volatile boolean verbose = true;
 
     /**
      * Message class for network communication. 
@@ -26,6 +34,19 @@ public class QuantumNetwork {
         public Complex[] quantumData;
         public String    classicalData;
         public long      timeStamp;
+        /**
+         * The sent state of a quantum message sent with {@link QuantumNetwork#sendQuantumState(String, String)}.
+         */
+        public StateSnapshot snapshot;
+        /**
+         * The fidelity of the state the receiver ended up with (NaN until the message is delivered). Delivery through the network
+         * copies the state exactly, so it is 1; a {@link NetworkSimulator} works it out after the decoherence of the link.
+         */
+        public double    fidelity = Double.NaN;
+        /**
+         * The simulated arrival time in nanoseconds for messages sent through a {@link NetworkSimulator} (-1 otherwise).
+         */
+        public long      simulatedTime = -1;
         
 
         public Message(String from, String to, Complex[] quantumData, String classicalData) {
@@ -36,6 +57,19 @@ public class QuantumNetwork {
             this.timeStamp = System.currentTimeMillis();
         }
 
+        public Message(String from, String to, StateSnapshot snapshot) {
+            this(from, to, null, null);
+            this.snapshot = snapshot;
+        }
+
+        /**
+         * Check if this message carries a quantum state.
+         * @return True for a quantum message
+         */
+        public boolean isQuantum() {
+            return quantumData != null || snapshot != null;
+        }
+
         @Override
         public String toString() {
             return String.format("[Message from %s to %s at %d Classical: %s", from, to, timeStamp, classicalData);
@@ -46,9 +80,9 @@ public class QuantumNetwork {
      * Initialize a quantum network
      */
     public QuantumNetwork() {
-        this.quantumComputers = new HashMap<>();
-        this.messageQueue = new LinkedList<>();
-        this.classicalMessages = new HashMap<>();
+        this.quantumComputers = new ConcurrentHashMap<>();
+        this.mailboxes = new ConcurrentHashMap<>();
+        this.classicalMessages = new ConcurrentHashMap<>();
     }
 
     /**
@@ -56,9 +90,11 @@ public class QuantumNetwork {
      * @param computer The quantum computer to register to the network
      */
     public void registerQuantumComputer(QuantumComputer quantumComputer) {
+        // the mailbox exists before the computer is visible, so a sender that finds the computer also finds its mailbox
+        this.mailboxes.put(quantumComputer.getName(), new Mailbox<>());
+        this.classicalMessages.put(quantumComputer.getName(), Collections.synchronizedList(new ArrayList<>()));
         this.quantumComputers.put(quantumComputer.getName(), quantumComputer);
-        this.classicalMessages.put(quantumComputer.getName(), new ArrayList<>());
-        System.out.println("Register quantum computer: " + quantumComputer.getClass());
+        log("Register quantum computer: " + quantumComputer.getClass());
     }
 
     /**
@@ -66,6 +102,7 @@ public class QuantumNetwork {
      */
     public void unregisterComputer(String computerName) { 
         this.quantumComputers.remove(computerName);
+        this.mailboxes.remove(computerName);
         this.classicalMessages.remove(computerName);
     }
 
@@ -79,13 +116,15 @@ public class QuantumNetwork {
         if (!quantumComputers.containsKey(fromName)) {
             throw new IllegalArgumentException("Sender not found: " + fromName);
         }
-        if (!quantumComputers.containsKey(toName)) {
-            throw new IllegalArgumentException("Receiver not found: " + toName);
+        Mailbox<Message> mailbox = mailboxFor(toName);
+        List<String> received = classicalMessages.get(toName);
+        if (received != null) {
+            received.add(message);
+        }
+        mailbox.offer(new Message(fromName, toName, null, message));
+        if (verbose) {
+            log("Classical message sent from " + fromName + " to " + toName + ": " + message);
         }
-        Message msg = new Message(fromName, toName, null, message);
-        messageQueue.add(msg);
-        classicalMessages.get(toName).add(message);
-        System.out.println("Classical message sent from " + fromName + " to " + toName + ": " + message);
     }
 
     /**
@@ -98,13 +137,42 @@ public class QuantumNetwork {
         if (!quantumComputers.containsKey(fromName)) {
             throw new IllegalArgumentException("Sender not found: " + fromName);
         }
-        if (!quantumComputers.containsKey(toName)) {
-            throw new IllegalArgumentException("Receiver not found: " + toName);
+        Mailbox<Message> mailbox = mailboxFor(toName);
+        checkStateSize(toName, quantumState.length);
+        mailbox.offer(new Message(fromName, toName, quantumState, null));
+        log("Quantum message sent from " + fromName + " to " + toName);
+    }
+
+    /**
+     * Send the current state of the sender's register over the network.
+     * <p>
+     * The state is captured with {@link QuantumComputer#snapshot()}, so nothing is copied until the sender changes its state.
+     * @param fromName The sender's name
+     * @param toName The receiver's name
+     */
+    public void sendQuantumState(String fromName, String toName) {
+        QuantumComputer sender = quantumComputers.get(fromName);
+        if (sender == null) {
+            throw new IllegalArgumentException("Sender not found: " + fromName);
         }
+        Mailbox<Message> mailbox = mailboxFor(toName);
+        checkStateSize(toName, 1 << sender.getNumQubits());
+        mailbox.offer(new Message(fromName, toName, sender.snapshot()));
+        log("Quantum message sent from " + fromName + " to " + toName);
+    }
 
-        Message msg = new Message(fromName, toName, quantumState, null);
-        messageQueue.add(msg);
-        System.out.println("Quantum message sent from " + fromName + " to " + toName);
+    /**
+     * Put a message that has already arrived (in a {@link NetworkSimulator}) into the receiver's mailbox, without logging it.
+     */
+    void post(Message msg) {
+        Mailbox<Message> mailbox = mailboxFor(msg.to);
+        if (!msg.isQuantum() && msg.classicalData != null) {
+            List<String> received = classicalMessages.get(msg.to);
+            if (received != null) {
+                received.add(msg.classicalData);
+            }
+        }
+        mailbox.offer(msg);
     }
 
     /**
@@ -119,11 +187,117 @@ public class QuantumNetwork {
     }
 
     /**
-     * Receive a message from the queue.
-     * @return The next message, or null if the queue is empty
+     * Receive a message for any computer.
+     * <p>
+     * The mailboxes are checked one after the other, so messages for different computers do not come out in the order
+     * they were sent. Use {@link #receive(String)} to read the messages of one computer.
+     * @return A message, or null if every mailbox is empty
      */
     public Message receive() {
-        return messageQueue.poll();
+        for (Mailbox<Message> mailbox : mailboxes.values()) {
+            Message msg = mailbox.poll();
+            if (msg != null) {
+                return msg;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Receive the oldest message for a computer without waiting.
+     * @param computerName The receiver's name
+     * @return The message, or null if there is none
+     */
+    public Message receive(String computerName) {
+        return mailboxFor(computerName).poll();
+    }
+
+    /**
+     * Receive the oldest message for a computer, waiting until one arrives.
+     * @param computerName The receiver's name
+     * @return The message
+     * @throws InterruptedException If the thread was interrupted while waiting
+     */
+    public Message receiveBlocking(String computerName) throws InterruptedException {
+        return mailboxFor(computerName).take(-1, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Receive the oldest message for a computer, waiting at most the given time for one to arrive.
+     * @param computerName The receiver's name
+     * @param timeout The longest time to wait
+     * @param unit The unit of the timeout
+     * @return The message, or null if none arrived in time
+     * @throws InterruptedException If the thread was interrupted while waiting
+     */
+    public Message receive(String computerName, long timeout, TimeUnit unit) throws InterruptedException {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Timeout can not be negative: " + timeout);
+        }
+        return mailboxFor(computerName).take(timeout, unit);
+    }
+
+    /**
+     * Move every waiting message for a computer into a collection, oldest first.
+     * @param computerName The receiver's name
+     * @param sink The collection to add the messages to
+     * @return The number of messages moved
+     */
+    public int drainTo(String computerName, Collection<? super Message> sink) {
+        return drainTo(computerName, sink, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Move up to maxMessages waiting messages for a computer into a collection, oldest first.
+     * @param computerName The receiver's name
+     * @param sink The collection to add the messages to
+     * @param maxMessages The most messages to move
+     * @return The number of messages moved
+     */
+    public int drainTo(String computerName, Collection<? super Message> sink, int maxMessages) {
+        return mailboxFor(computerName).drainTo(sink, maxMessages);
+    }
+
+    /**
+     * Take a message for any computer (see {@link #receive()}) and deliver it.
+     * <p>
+     * For a quantum message the sent state is loaded into the receiver's register. Nothing on this network changes a state
+     * in transit, so {@link Message#fidelity} is set to 1 without comparing the states (use a {@link NetworkSimulator} for
+     * links that decohere). Messages to computers that have left the network are returned as is.
+     * @return The delivered message, or null if the queue is empty
+     */
+    public Message deliver() {
+        return deliver(receive());
+    }
+
+    /**
+     * Take the oldest message for a computer and deliver it, see {@link #deliver()}.
+     * @param computerName The receiver's name
+     * @return The delivered message, or null if there is none
+     */
+    public Message deliver(String computerName) {
+        return deliver(receive(computerName));
+    }
+
+    /**
+     * Deliver a message that was already taken from a mailbox (also used by {@link NetworkNode}).
+     */
+    Message deliver(Message msg) {
+        if (msg == null || !msg.isQuantum() || !Double.isNaN(msg.fidelity)) {
+            // classical, or already delivered into the register by a NetworkSimulator
+            return msg;
+        }
+        QuantumComputer receiver = quantumComputers.get(msg.to);
+        if (receiver == null) {
+            return msg;
+        }
+        receiver.restore(msg.snapshot != null ? msg.snapshot : StateSnapshot.of(msg.quantumData));
+        // the state arrives exactly as it was sent
+        msg.fidelity = 1.0;
+        if (verbose) {
+            log("Quantum message delivered from " + msg.from + " to " + msg.to + String.format(" (fidelity %.6f)", msg.fidelity));
+        }
+        return msg;
     }
 
     /**
@@ -140,9 +314,7 @@ public class QuantumNetwork {
      * @param computerName The name of the computer
      */
     public void clearMessages(String computerName) {
-        if (classicalMessages.containsKey(computerName)){
-            classicalMessages.put(computerName, new ArrayList<>());
-        }
+        classicalMessages.computeIfPresent(computerName, (name, messages) -> Collections.synchronizedList(new ArrayList<>()));
     }
 
     /**
@@ -173,18 +345,74 @@ public class QuantumNetwork {
 
     /**
      * Get the current message queue size.
-     * @return Number of pending messages
+     * @return Number of pending messages in all mailboxes
      */
     public int getMessageQueueSize() {
-        return messageQueue.size();
+        int size = 0;
+        for (Mailbox<Message> mailbox : mailboxes.values()) {
+            size += mailbox.size();
+        }
+        return size;
+    }
+
+    /**
+     * Get the number of messages waiting for a computer.
+     * @param computerName The receiver's name
+     * @return Number of pending messages
+     */
+    public int getMessageQueueSize(String computerName) {
+        return mailboxFor(computerName).size();
+    }
+
+    /**
+     * Turn the log lines for registrations and messages on or off (on by default).
+     * @param verbose True to print a line for every registration and message
+     */
+    public void setVerbose(boolean verbose) {
+        this.verbose = verbose;
+    }
+
+    /**
+     * Check if the network prints log lines.
+     * @return True if log lines are printed
+     */
+    public boolean isVerbose() {
+        return verbose;
     }
 
     @Override
     public String toString() {
         return "QuantumNetwork{" +
                 "computers=" + quantumComputers.size() +
-                ", pendingMessages=" + messageQueue.size() +
+                ", pendingMessages=" + getMessageQueueSize() +
                 '}';
     }
 
+    private Mailbox<Message> mailboxFor(String computerName) {
+        Mailbox<Message> mailbox = mailboxes.get(computerName);
+        if (mailbox == null) {
+            throw new IllegalArgumentException("Receiver not found: " + computerName);
+        }
+        return mailbox;
+    }
+
+    /**
+     * Check that a state of the given size fits the receiver's register, so delivering it can not fail later.
+     */
+    void checkStateSize(String toName, int stateSize) {
+        QuantumComputer receiver = quantumComputers.get(toName);
+        if (receiver == null) {
+            throw new IllegalArgumentException("Receiver not found: " + toName);
+        }
+        if (stateSize != 1 << receiver.getNumQubits()) {
+            throw new IllegalArgumentException("State size mismatch. Expected: " + (1 << receiver.getNumQubits()) + " but got: " + stateSize);
+        }
+    }
+
+    private void log(String line) {
+        if (verbose) {
+            System.out.println(line);
+        }
+    }
+
 }
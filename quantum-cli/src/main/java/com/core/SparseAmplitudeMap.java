@@ -0,0 +1,148 @@
+package com.core;
+
+import java.util.Arrays;
+
+
+/**
+ * A hash map from basis state index (long) to amplitude (real, imaginary) with no boxing.
+ * <p>
+ * It uses open addressing with linear probing over three parallel arrays. The table is a power of two in size and is kept
+ * at most half full. There is no remove; gates build the next state into a second map and swap the two, so removals are
+ * never needed and the arrays are reused from gate to gate.
+ * <p>
+ * Slots can be walked directly with {@link #capacity()} and {@link #keyAt(int)}, where empty slots have the key {@link #EMPTY}.
+ */
+final class SparseAmplitudeMap {
+    /**
+     * The key of an empty slot. Basis state indices are never negative.
+     */
+    static final long EMPTY = -1L;
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private double[] reals;
+    private double[] imaginaries;
+    private int size;
+    private int mask;
+
+    SparseAmplitudeMap() {
+        allocate(MIN_CAPACITY);
+    }
+
+    /**
+     * Get the number of stored amplitudes.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the number of slots (for walking the table).
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    long keyAt(int slot) {
+        return keys[slot];
+    }
+
+    double realAt(int slot) {
+        return reals[slot];
+    }
+
+    double imaginaryAt(int slot) {
+        return imaginaries[slot];
+    }
+
+    /**
+     * Overwrite the amplitude in an occupied slot.
+     */
+    void setAt(int slot, double real, double imaginary) {
+        reals[slot] = real;
+        imaginaries[slot] = imaginary;
+    }
+
+    /**
+     * Remove everything but keep the arrays.
+     */
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, EMPTY);
+            size = 0;
+        }
+    }
+
+    /**
+     * Add to the amplitude of a basis state, inserting it if it is not there.
+     * @param key The basis state index
+     * @param real The real part to add
+     * @param imaginary The imaginary part to add
+     */
+    void add(long key, double real, double imaginary) {
+        int slot = findSlot(key);
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            reals[slot] = real;
+            imaginaries[slot] = imaginary;
+            size++;
+            if (size * 2 > keys.length) {
+                grow();
+            }
+        } else {
+            reals[slot] += real;
+            imaginaries[slot] += imaginary;
+        }
+    }
+
+    /**
+     * Get the slot of a key.
+     * @param key The basis state index
+     * @return The slot, or -1 if the key is not stored
+     */
+    int indexOf(long key) {
+        int slot = findSlot(key);
+        return keys[slot] == EMPTY ? -1 : slot;
+    }
+
+    private int findSlot(long key) {
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        double[] oldReals = reals;
+        double[] oldImaginaries = imaginaries;
+        allocate(oldKeys.length * 2);
+        for (int slot = 0; slot < oldKeys.length; slot++) {
+            if (oldKeys[slot] != EMPTY) {
+                int newSlot = findSlot(oldKeys[slot]);
+                keys[newSlot] = oldKeys[slot];
+                reals[newSlot] = oldReals[slot];
+                imaginaries[newSlot] = oldImaginaries[slot];
+                size++;
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        reals = new double[capacity];
+        imaginaries = new double[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    /**
+     * Spread the bits of the key (basis states often differ only in a few high bits).
+     */
+    private static int hash(long key) {
+        long mixed = key * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32));
+    }
+}
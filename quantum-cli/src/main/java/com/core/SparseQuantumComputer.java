@@ -0,0 +1,445 @@
+package com.core;
+
+import java.util.Arrays;
+import java.util.Random;
+
+
+/**
+ * A quantum computer that only stores the basis states with a non zero amplitude.
+ * <p>
+ * Circuits like GHZ preparation or reversible arithmetic built from X and CNOT keep only a handful of non zero amplitudes,
+ * so this can simulate them on 40 to 62 qubits, where a full state vector could never be allocated.
+ * The amplitudes live in a primitive hash map from basis state to (real, imaginary), so no objects are created per amplitude.
+ * <p>
+ * When the fraction of non zero amplitudes grows past the dense threshold (and there are at most 30 qubits), the state is moved
+ * into a normal {@link QuantumComputer} and every later call is passed on to it. {@link #reset()} goes back to sparse storage.
+ */
+public class SparseQuantumComputer implements QuantumBackend {
+    /**
+     * The most qubits a basis state index (a non negative long) can hold.
+     */
+    public static final int MAX_QUBITS = 62;
+    /**
+     * By default the state moves to dense storage once more than 1/16 of the amplitudes are non zero.
+     * A sparse entry takes about three times the memory of a dense one and every gate needs hash lookups, so past this point
+     * the dense simulator is both smaller and faster.
+     */
+    public static final double DEFAULT_DENSE_THRESHOLD = 1.0 / 16;
+    /**
+     * Amplitudes with a squared magnitude at or below this are dropped (they are rounding left over from cancellation, like H H).
+     */
+    private static final double PRUNE_THRESHOLD = 1e-30;
+    private static final int MAX_DENSE_QUBITS = 30;
+    private static final double[] HADAMARD = StateKernels.flatten(Gates.hadamard());
+
+    private String name;
+    private final int numQubits;
+    private final Random random;
+    /**
+     * The current amplitudes.
+     */
+    private SparseAmplitudeMap amplitudes = new SparseAmplitudeMap();
+    /**
+     * Where gates that move amplitudes write the next state, swapped with {@link #amplitudes} afterwards.
+     */
+    private SparseAmplitudeMap next = new SparseAmplitudeMap();
+    private double denseThreshold = DEFAULT_DENSE_THRESHOLD;
+    /**
+     * The dense simulator once the state has switched over, otherwise null.
+     */
+    private QuantumComputer dense;
+
+    /**
+     * Initialize a sparse quantum computer with all qubits in state |0>.
+     * @param name The name of this quantum computer
+     * @param numberOfQubits The number of qubits (1 to 62)
+     */
+    public SparseQuantumComputer(String name, int numberOfQubits) {
+        this(name, numberOfQubits, new Random());
+    }
+
+    /**
+     * Initialize a sparse quantum computer with a fixed seed for the measurement randomness, so runs can be repeated exactly.
+     * @param name The name of this quantum computer
+     * @param numberOfQubits The number of qubits (1 to 62)
+     * @param seed The seed for measurements
+     */
+    public SparseQuantumComputer(String name, int numberOfQubits, long seed) {
+        this(name, numberOfQubits, new Random(seed));
+    }
+
+    private SparseQuantumComputer(String name, int numberOfQubits, Random random) {
+        if (numberOfQubits < 1 || numberOfQubits > MAX_QUBITS) {
+            throw new IllegalArgumentException("Number of qubits must be between 1 and " + MAX_QUBITS + ": " + numberOfQubits);
+        }
+        this.name = name;
+        this.numQubits = numberOfQubits;
+        this.random = random;
+        writeZeroState();
+    }
+
+    private void validateQubitIndex(int qubitIndex) {
+        if (qubitIndex < 0 || qubitIndex >= numQubits) {
+            throw new IllegalArgumentException("Qubit index out of bounds: " + qubitIndex);
+        }
+    }
+
+    /**
+     * Apply a Hadamard gate to a qubit.
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    @Override
+    public void applyHadamard(int qubitIndex) {
+        validateQubitIndex(qubitIndex);
+        if (dense != null) {
+            dense.applyHadamard(qubitIndex);
+            return;
+        }
+        applyPairwise(1L << qubitIndex, HADAMARD);
+    }
+
+    /**
+     * Apply a Pauli-X gate to a qubit. This only renames basis states, so the number of stored amplitudes stays the same.
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    @Override
+    public void applyPauliX(int qubitIndex) {
+        validateQubitIndex(qubitIndex);
+        if (dense != null) {
+            dense.applyPauliX(qubitIndex);
+            return;
+        }
+        long mask = 1L << qubitIndex;
+        for (int slot = 0; slot < amplitudes.capacity(); slot++) {
+            long key = amplitudes.keyAt(slot);
+            if (key != SparseAmplitudeMap.EMPTY) {
+                next.add(key ^ mask, amplitudes.realAt(slot), amplitudes.imaginaryAt(slot));
+            }
+        }
+        swap();
+    }
+
+    /**
+     * Apply a Pauli-Z gate to a qubit
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    @Override
+    public void applyPauliZ(int qubitIndex) {
+        validateQubitIndex(qubitIndex);
+        if (dense != null) {
+            dense.applyPauliZ(qubitIndex);
+            return;
+        }
+        applyDiagonal(1L << qubitIndex, 1, 0, -1, 0);
+    }
+
+    /**
+     * Apply any single qubit gate. Diagonal gates change the amplitudes in place, anti diagonal gates only move them,
+     * and any other gate can at most double the number of stored amplitudes.
+     * @param qubitIndex The index of the qubit to apply the gate to
+     * @param matrix The 2x2 gate matrix, indexed as matrix[row][column]
+     */
+    @Override
+    public void applySingleQubitGate(int qubitIndex, Complex[][] matrix) {
+        validateQubitIndex(qubitIndex);
+        Gates.Kind kind = Gates.classify(matrix);
+        if (dense != null) {
+            dense.applySingleQubitGate(qubitIndex, matrix);
+            return;
+        }
+        long mask = 1L << qubitIndex;
+        if (kind == Gates.Kind.DIAGONAL) {
+            applyDiagonal(mask, matrix[0][0].real(), matrix[0][0].imaginary(), matrix[1][1].real(), matrix[1][1].imaginary());
+        } else {
+            applyPairwise(mask, StateKernels.flatten(matrix));
+        }
+    }
+
+    /**
+     * Apply a controlled not gate (CNOT). Like X this only renames basis states.
+     * @param control The control qubit index
+     * @param target The target qubit index
+     */
+    @Override
+    public void applyCNOT(int control, int target) {
+        validateQubitIndex(control);
+        validateQubitIndex(target);
+        if (control == target) {
+            throw new IllegalArgumentException("Control and target must be different qubits: " + control);
+        }
+        if (dense != null) {
+            dense.applyCNOT(control, target);
+            return;
+        }
+        long controlMask = 1L << control;
+        long targetMask = 1L << target;
+        for (int slot = 0; slot < amplitudes.capacity(); slot++) {
+            long key = amplitudes.keyAt(slot);
+            if (key != SparseAmplitudeMap.EMPTY) {
+                long moved = (key & controlMask) != 0 ? key ^ targetMask : key;
+                next.add(moved, amplitudes.realAt(slot), amplitudes.imaginaryAt(slot));
+            }
+        }
+        swap();
+    }
+
+    /**
+     * Measures a qubit and collapses the state to a 0 or 1
+     * @param qubitIndex The index of the qubit to measure
+     * @return 0 or 1
+     */
+    @Override
+    public int measure(int qubitIndex) {
+        validateQubitIndex(qubitIndex);
+        if (dense != null) {
+            return dense.measure(qubitIndex);
+        }
+        long mask = 1L << qubitIndex;
+        double probZero = 0.0;
+        for (int slot = 0; slot < amplitudes.capacity(); slot++) {
+            long key = amplitudes.keyAt(slot);
+            if (key != SparseAmplitudeMap.EMPTY && (key & mask) == 0) {
+                probZero += magnitudeSquared(slot);
+            }
+        }
+
+        int result = random.nextDouble() < probZero ? 0 : 1;
+        double probKept = result == 0 ? probZero : 1 - probZero;
+        if (probKept == 1.0) {
+            // the result was certain, so nothing is removed or rescaled
+            return result;
+        }
+
+        double scale = 1.0 / Math.sqrt(probKept);
+        long kept = result == 0 ? 0 : mask;
+        for (int slot = 0; slot < amplitudes.capacity(); slot++) {
+            long key = amplitudes.keyAt(slot);
+            if (key != SparseAmplitudeMap.EMPTY && (key & mask) == kept) {
+                next.add(key, amplitudes.realAt(slot) * scale, amplitudes.imaginaryAt(slot) * scale);
+            }
+        }
+        swap();
+        return result;
+    }
+
+    /**
+     * Reset the quantum state to all 0s. This also goes back to sparse storage.
+     */
+    @Override
+    public void reset() {
+        writeZeroState();
+    }
+
+    /**
+     * Drop the dense fallback and store |0...0> as the only amplitude.
+     */
+    private void writeZeroState() {
+        dense = null;
+        amplitudes.clear();
+        next.clear();
+        amplitudes.add(0L, 1.0, 0.0);
+    }
+
+    /**
+     * Multiply every amplitude by d0 or d1 depending on the qubit, in place.
+     */
+    private void applyDiagonal(long mask, double d0Real, double d0Imaginary, double d1Real, double d1Imaginary) {
+        for (int slot = 0; slot < amplitudes.capacity(); slot++) {
+            long key = amplitudes.keyAt(slot);
+            if (key == SparseAmplitudeMap.EMPTY) {
+                continue;
+            }
+            double dReal = (key & mask) == 0 ? d0Real : d1Real;
+            double dImaginary = (key & mask) == 0 ? d0Imaginary : d1Imaginary;
+            double real = amplitudes.realAt(slot);
+            double imaginary = amplitudes.imaginaryAt(slot);
+            amplitudes.setAt(slot, dReal * real - dImaginary * imaginary, dReal * imaginary + dImaginary * real);
+        }
+    }
+
+    /**
+     * Apply a 2x2 matrix (flat layout, see {@link StateKernels#flatten}) to every pair of basis states that differ only in the qubit.
+     * Each pair is handled once, from whichever of its two states is stored (the |0> one if both are), and results that are
+     * (almost) zero are not stored.
+     */
+    private void applyPairwise(long mask, double[] m) {
+        for (int slot = 0; slot < amplitudes.capacity(); slot++) {
+            long key = amplitudes.keyAt(slot);
+            if (key == SparseAmplitudeMap.EMPTY) {
+                continue;
+            }
+            int partnerSlot = amplitudes.indexOf(key ^ mask);
+            if ((key & mask) != 0 && partnerSlot >= 0) {
+                continue; // the pair is handled from its |0> state
+            }
+            int zeroSlot = (key & mask) == 0 ? slot : partnerSlot;
+            int oneSlot = (key & mask) == 0 ? partnerSlot : slot;
+            double r0 = zeroSlot >= 0 ? amplitudes.realAt(zeroSlot) : 0.0;
+            double i0 = zeroSlot >= 0 ? amplitudes.imaginaryAt(zeroSlot) : 0.0;
+            double r1 = oneSlot >= 0 ? amplitudes.realAt(oneSlot) : 0.0;
+            double i1 = oneSlot >= 0 ? amplitudes.imaginaryAt(oneSlot) : 0.0;
+
+            long zeroKey = key & ~mask;
+            store(zeroKey,
+                    m[0] * r0 - m[1] * i0 + m[2] * r1 - m[3] * i1,
+                    m[0] * i0 + m[1] * r0 + m[2] * i1 + m[3] * r1);
+            store(zeroKey | mask,
+                    m[4] * r0 - m[5] * i0 + m[6] * r1 - m[7] * i1,
+                    m[4] * i0 + m[5] * r0 + m[6] * i1 + m[7] * r1);
+        }
+        swap();
+        switchToDenseIfFull();
+    }
+
+    private void store(long key, double real, double imaginary) {
+        if (real * real + imaginary * imaginary > PRUNE_THRESHOLD) {
+            next.add(key, real, imaginary);
+        }
+    }
+
+    private void swap() {
+        SparseAmplitudeMap previous = amplitudes;
+        amplitudes = next;
+        next = previous;
+        next.clear();
+    }
+
+    private void switchToDenseIfFull() {
+        if (numQubits > MAX_DENSE_QUBITS || amplitudes.size() <= denseThreshold * (1L << numQubits)) {
+            return;
+        }
+        dense = new QuantumComputer(name, numQubits, random.nextLong());
+        dense.loadSparse(amplitudes);
+        amplitudes.clear();
+        next.clear();
+    }
+
+    private double magnitudeSquared(int slot) {
+        double real = amplitudes.realAt(slot);
+        double imaginary = amplitudes.imaginaryAt(slot);
+        return real * real + imaginary * imaginary;
+    }
+
+    /**
+     * Get the amplitude of one basis state.
+     * @param index The basis state
+     * @return The amplitude (0 when it is not stored)
+     */
+    public Complex getAmplitude(long index) {
+        if (index < 0 || index >= 1L << numQubits) {
+            throw new IllegalArgumentException("Basis state out of bounds: " + index);
+        }
+        if (dense != null) {
+            return dense.getAmplitude((int) index);
+        }
+        int slot = amplitudes.indexOf(index);
+        return slot < 0 ? new Complex(0) : new Complex(amplitudes.realAt(slot), amplitudes.imaginaryAt(slot));
+    }
+
+    /**
+     * Get the number of stored (non zero) amplitudes.
+     * @return The number of stored amplitudes, or 2^n once the state is dense
+     */
+    public long getSupportSize() {
+        return dense != null ? 1L << numQubits : amplitudes.size();
+    }
+
+    /**
+     * Check if the state has switched to dense storage.
+     * @return True when gates are passed on to a dense {@link QuantumComputer}
+     */
+    public boolean isDense() {
+        return dense != null;
+    }
+
+    /**
+     * Set the fraction of non zero amplitudes at which the state moves to dense storage. It is checked after every gate
+     * that can add amplitudes. Registers with more than 30 qubits always stay sparse.
+     * @param denseThreshold A fraction in (0, 1]. 1 means never switch
+     */
+    public void setDenseThreshold(double denseThreshold) {
+        if (!(denseThreshold > 0 && denseThreshold <= 1)) {
+            throw new IllegalArgumentException("Dense threshold must be in (0, 1]: " + denseThreshold);
+        }
+        this.denseThreshold = denseThreshold;
+    }
+
+    /**
+     * Get the fraction of non zero amplitudes at which the state moves to dense storage.
+     * @return The threshold
+     */
+    public double getDenseThreshold() {
+        return denseThreshold;
+    }
+
+    /**
+     * Get the current quantum state as a string for display, in order of basis state.
+     * @return String representation of the state.
+     */
+    public String getStateString() {
+        if (dense != null) {
+            return dense.getStateString();
+        }
+        long[] keys = new long[amplitudes.size()];
+        int count = 0;
+        for (int slot = 0; slot < amplitudes.capacity(); slot++) {
+            if (amplitudes.keyAt(slot) != SparseAmplitudeMap.EMPTY) {
+                keys[count++] = amplitudes.keyAt(slot);
+            }
+        }
+        Arrays.sort(keys);
+
+        StringBuilder stringBuilder = new StringBuilder();
+        for (long key : keys) {
+            int slot = amplitudes.indexOf(key);
+            double magnitudeSquared = magnitudeSquared(slot);
+            if (magnitudeSquared > 1e-20) {
+                Complex amplitude = new Complex(amplitudes.realAt(slot), amplitudes.imaginaryAt(slot));
+                stringBuilder.append(String.format("|%s>: %s(prob %.4f)\n", toBitString(key), amplitude.toString(), magnitudeSquared));
+            }
+        }
+        return stringBuilder.toString();
+    }
+
+    private String toBitString(long index) {
+        char[] bits = new char[numQubits];
+        for (int q = 0; q < numQubits; q++) {
+            bits[numQubits - 1 - q] = ((index >>> q) & 1L) == 0 ? '0' : '1';
+        }
+        return new String(bits);
+    }
+
+    /**
+     * Get the name of this quantum computer.
+     * @return The name
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Update the name of this quantum computer.
+     * @param name The new name for this quantum computer
+     */
+    public void setName(String name) {
+        this.name = name;
+        if (dense != null) {
+            dense.setName(name);
+        }
+    }
+
+    /**
+     * Get the number of qubits.
+     * @return The number of qubits
+     */
+    @Override
+    public int getNumQubits() {
+        return numQubits;
+    }
+
+    @Override
+    public String toString() {
+        return "Sparse Quantum Computer{" + "name='" + name + "\'" + ", numQubits=" + numQubits + ", support=" + getSupportSize() + '}';
+    }
+}
@@ -0,0 +1,492 @@
+package com.core;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+
+/**
+ * A quantum computer for Clifford circuits (H, S, the Paulis and CNOT), simulated with a stabilizer tableau
+ * (Aaronson and Gottesman, "Improved simulation of stabilizer circuits", the CHP simulator).
+ * <p>
+ * Instead of 2^n amplitudes the state is described by n destabilizer and n stabilizer Pauli strings, so memory grows with n^2
+ * and thousands of qubits are practical. Gates cost O(n) and measurements O(n^2).
+ * <p>
+ * The tableau is stored by column: for every qubit there is one {@code long[]} bitset of the X bits and one of the Z bits
+ * over all 2n + 1 rows (the extra row is scratch space for measurements). A gate only touches the columns of its qubits,
+ * so it updates 64 rows per word operation, and the row products a measurement needs are done for all affected rows at once.
+ * <p>
+ * Any single qubit gate that is a Clifford gate (up to a global phase) is accepted; other gates, like T, throw an
+ * {@link UnsupportedOperationException}.
+ */
+public class StabilizerComputer implements QuantumBackend {
+    private static final double CLIFFORD_TOLERANCE = 1e-9;
+    /**
+     * The 24 single qubit Clifford gates (up to a global phase) with the shortest H/S sequence for each.
+     */
+    private static final List<Complex[][]> CLIFFORD_MATRICES = new ArrayList<>();
+    private static final List<String> CLIFFORD_SEQUENCES = new ArrayList<>();
+
+    static {
+        // breadth first search from the identity, so every gate gets a shortest sequence
+        Complex[][] identity = {{new Complex(1), new Complex(0)}, {new Complex(0), new Complex(1)}};
+        CLIFFORD_MATRICES.add(identity);
+        CLIFFORD_SEQUENCES.add("");
+        for (int next = 0; next < CLIFFORD_MATRICES.size(); next++) {
+            for (char gate : new char[] {'H', 'S'}) {
+                Complex[][] product = Gates.multiply(gate == 'H' ? Gates.hadamard() : Gates.s(), CLIFFORD_MATRICES.get(next));
+                if (findClifford(product) < 0) {
+                    CLIFFORD_MATRICES.add(product);
+                    CLIFFORD_SEQUENCES.add(CLIFFORD_SEQUENCES.get(next) + gate);
+                }
+            }
+        }
+    }
+
+    private String name;
+    private final int numQubits;
+    private final Random random;
+    /**
+     * The number of longs per column (2n + 1 rows, 64 per long).
+     */
+    private final int rowWords;
+    /**
+     * The X bits, column by column: word w of qubit q is at {@code q * rowWords + w}.
+     * Rows 0 to n-1 are the destabilizers, rows n to 2n-1 the stabilizers and row 2n is scratch.
+     */
+    private final long[] xBits;
+    /**
+     * The Z bits, laid out like {@link #xBits}. A row with both bits set on a qubit has a Y there.
+     */
+    private final long[] zBits;
+    /**
+     * The sign bit of every row (1 means the Pauli string has a minus sign).
+     */
+    private final long[] signs;
+
+    /**
+     * Initialize a stabilizer computer with all qubits in state |0>.
+     * @param name The name of this quantum computer
+     * @param numberOfQubits The number of qubits
+     */
+    public StabilizerComputer(String name, int numberOfQubits) {
+        this(name, numberOfQubits, new Random());
+    }
+
+    /**
+     * Initialize a stabilizer computer with a fixed seed for the measurement randomness, so runs can be repeated exactly.
+     * @param name The name of this quantum computer
+     * @param numberOfQubits The number of qubits
+     * @param seed The seed for measurements
+     */
+    public StabilizerComputer(String name, int numberOfQubits, long seed) {
+        this(name, numberOfQubits, new Random(seed));
+    }
+
+    private StabilizerComputer(String name, int numberOfQubits, Random random) {
+        if (numberOfQubits < 1) {
+            throw new IllegalArgumentException("Number of qubits must be at least 1: " + numberOfQubits);
+        }
+        this.name = name;
+        this.numQubits = numberOfQubits;
+        this.random = random;
+        this.rowWords = (2 * numberOfQubits + 1 + 63) >>> 6;
+        this.xBits = new long[numberOfQubits * rowWords];
+        this.zBits = new long[numberOfQubits * rowWords];
+        this.signs = new long[rowWords];
+        writeZeroState();
+    }
+
+    private void validateQubitIndex(int qubitIndex) {
+        if (qubitIndex < 0 || qubitIndex >= numQubits) {
+            throw new IllegalArgumentException("Qubit index out of bounds: " + qubitIndex);
+        }
+    }
+
+    /**
+     * Apply a Hadamard gate to a qubit (swaps X and Z).
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    @Override
+    public void applyHadamard(int qubitIndex) {
+        validateQubitIndex(qubitIndex);
+        int base = qubitIndex * rowWords;
+        for (int w = 0; w < rowWords; w++) {
+            long x = xBits[base + w];
+            long z = zBits[base + w];
+            signs[w] ^= x & z;
+            xBits[base + w] = z;
+            zBits[base + w] = x;
+        }
+    }
+
+    /**
+     * Apply an S gate to a qubit (X becomes Y).
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    @Override
+    public void applyS(int qubitIndex) {
+        validateQubitIndex(qubitIndex);
+        int base = qubitIndex * rowWords;
+        for (int w = 0; w < rowWords; w++) {
+            long x = xBits[base + w];
+            signs[w] ^= x & zBits[base + w];
+            zBits[base + w] ^= x;
+        }
+    }
+
+    /**
+     * Apply a Pauli-X gate to a qubit (flips the sign of rows with Z or Y there).
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    @Override
+    public void applyPauliX(int qubitIndex) {
+        validateQubitIndex(qubitIndex);
+        int base = qubitIndex * rowWords;
+        for (int w = 0; w < rowWords; w++) {
+            signs[w] ^= zBits[base + w];
+        }
+    }
+
+    /**
+     * Apply a Pauli-Y gate to a qubit (flips the sign of rows with X or Z there).
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    @Override
+    public void applyPauliY(int qubitIndex) {
+        validateQubitIndex(qubitIndex);
+        int base = qubitIndex * rowWords;
+        for (int w = 0; w < rowWords; w++) {
+            signs[w] ^= xBits[base + w] ^ zBits[base + w];
+        }
+    }
+
+    /**
+     * Apply a Pauli-Z gate to a qubit (flips the sign of rows with X or Y there).
+     * @param qubitIndex The index of the qubit to apply the gate to
+     */
+    @Override
+    public void applyPauliZ(int qubitIndex) {
+        validateQubitIndex(qubitIndex);
+        int base = qubitIndex * rowWords;
+        for (int w = 0; w < rowWords; w++) {
+            signs[w] ^= xBits[base + w];
+        }
+    }
+
+    /**
+     * Apply a single qubit Clifford gate. The matrix is matched (up to a global phase) against the 24 single qubit Clifford gates
+     * and applied as its shortest sequence of H and S gates.
+     * @param qubitIndex The index of the qubit to apply the gate to
+     * @param matrix The 2x2 gate matrix, indexed as matrix[row][column]
+     * @throws UnsupportedOperationException If the gate is not a Clifford gate
+     */
+    @Override
+    public void applySingleQubitGate(int qubitIndex, Complex[][] matrix) {
+        validateQubitIndex(qubitIndex);
+        Gates.classify(matrix); // validates the shape
+        int clifford = findClifford(matrix);
+        if (clifford < 0) {
+            throw new UnsupportedOperationException("Only Clifford gates can be simulated with a stabilizer tableau (use QuantumComputer for others)");
+        }
+        for (char gate : CLIFFORD_SEQUENCES.get(clifford).toCharArray()) {
+            if (gate == 'H') {
+                applyHadamard(qubitIndex);
+            } else {
+                applyS(qubitIndex);
+            }
+        }
+    }
+
+    /**
+     * Apply a controlled not gate (CNOT).
+     * @param control The control qubit index
+     * @param target The target qubit index
+     */
+    @Override
+    public void applyCNOT(int control, int target) {
+        validateQubitIndex(control);
+        validateQubitIndex(target);
+        if (control == target) {
+            throw new IllegalArgumentException("Control and target must be different qubits: " + control);
+        }
+        int a = control * rowWords;
+        int b = target * rowWords;
+        for (int w = 0; w < rowWords; w++) {
+            long xa = xBits[a + w];
+            long za = zBits[a + w];
+            long xb = xBits[b + w];
+            long zb = zBits[b + w];
+            signs[w] ^= xa & zb & ~(xb ^ za);
+            xBits[b + w] = xb ^ xa;
+            zBits[a + w] = za ^ zb;
+        }
+    }
+
+    /**
+     * Measures a qubit in the Z basis and collapses the state to a 0 or 1
+     * @param qubitIndex The index of the qubit to measure
+     * @return 0 or 1
+     */
+    @Override
+    public int measure(int qubitIndex) {
+        validateQubitIndex(qubitIndex);
+        int base = qubitIndex * rowWords;
+
+        // a stabilizer that does not commute with Z on this qubit means the result is random
+        int pivot = -1;
+        for (int row = numQubits; row < 2 * numQubits; row++) {
+            if (bit(xBits, base, row) != 0) {
+                pivot = row;
+                break;
+            }
+        }
+
+        if (pivot >= 0) {
+            long[] rows = new long[rowWords];
+            for (int w = 0; w < rowWords; w++) {
+                rows[w] = xBits[base + w];
+            }
+            clearBit(rows, 0, pivot);
+            clearBit(rows, 0, 2 * numQubits);
+            multiplyRows(rows, pivot);
+
+            int result = random.nextBoolean() ? 1 : 0;
+            copyRow(pivot, pivot - numQubits);
+            for (int q = 0; q < numQubits; q++) {
+                clearBit(xBits, q * rowWords, pivot);
+                clearBit(zBits, q * rowWords, pivot);
+            }
+            setBit(zBits, base, pivot, 1);
+            setBit(signs, 0, pivot, result);
+            return result;
+        }
+
+        // the result is certain: build it up in the scratch row
+        int scratch = 2 * numQubits;
+        for (int q = 0; q < numQubits; q++) {
+            clearBit(xBits, q * rowWords, scratch);
+            clearBit(zBits, q * rowWords, scratch);
+        }
+        clearBit(signs, 0, scratch);
+        for (int row = 0; row < numQubits; row++) {
+            if (bit(xBits, base, row) != 0) {
+                multiplyRow(scratch, row + numQubits);
+            }
+        }
+        return (int) bit(signs, 0, scratch);
+    }
+
+    /**
+     * Reset the quantum state to all 0s (destabilizers X_i, stabilizers Z_i).
+     */
+    @Override
+    public void reset() {
+        writeZeroState();
+    }
+
+    /**
+     * Write the tableau of |0...0>: destabilizer X_i and stabilizer Z_i for every qubit, all signs positive.
+     */
+    private void writeZeroState() {
+        Arrays.fill(xBits, 0L);
+        Arrays.fill(zBits, 0L);
+        Arrays.fill(signs, 0L);
+        for (int q = 0; q < numQubits; q++) {
+            setBit(xBits, q * rowWords, q, 1);
+            setBit(zBits, q * rowWords, q + numQubits, 1);
+        }
+    }
+
+    /**
+     * Replace row h by the product of rows h and i (the "rowsum" of the CHP paper), one qubit at a time.
+     */
+    private void multiplyRow(int h, int i) {
+        int phase = 2 * (int) bit(signs, 0, h) + 2 * (int) bit(signs, 0, i);
+        for (int q = 0; q < numQubits; q++) {
+            int base = q * rowWords;
+            long x1 = bit(xBits, base, i);
+            long z1 = bit(zBits, base, i);
+            long x2 = bit(xBits, base, h);
+            long z2 = bit(zBits, base, h);
+            phase += phaseExponent(x1, z1, x2, z2);
+            setBit(xBits, base, h, x1 ^ x2);
+            setBit(zBits, base, h, z1 ^ z2);
+        }
+        setBit(signs, 0, h, (phase & 3) == 2 ? 1 : 0);
+    }
+
+    /**
+     * Multiply every row in the mask by the pivot row at once. The power of i each row picks up is counted in a
+     * two bit counter per row (the low and high bits are kept in separate words), so everything stays word-parallel.
+     * @param rows The rows to update, as a bitset (must not contain the pivot)
+     * @param pivot The row to multiply by
+     */
+    private void multiplyRows(long[] rows, int pivot) {
+        long[] low = new long[rowWords];
+        long[] high = new long[rowWords];
+        for (int q = 0; q < numQubits; q++) {
+            int base = q * rowWords;
+            long x1 = bit(xBits, base, pivot);
+            long z1 = bit(zBits, base, pivot);
+            if ((x1 | z1) == 0) {
+                continue;
+            }
+            long xFlip = -x1;
+            long zFlip = -z1;
+            for (int w = 0; w < rowWords; w++) {
+                long mask = rows[w];
+                long x2 = xBits[base + w];
+                long z2 = zBits[base + w];
+                long plus;
+                long minus;
+                if (x1 != 0 && z1 != 0) {        // Y times ...
+                    plus = z2 & ~x2;
+                    minus = x2 & ~z2;
+                } else if (x1 != 0) {            // X times ...
+                    plus = z2 & x2;
+                    minus = z2 & ~x2;
+                } else {                         // Z times ...
+                    plus = x2 & ~z2;
+                    minus = x2 & z2;
+                }
+                plus &= mask;
+                minus &= mask;
+                // counter += 1 for plus, counter += 3 (-1 mod 4) for minus
+                high[w] ^= low[w] & plus;
+                low[w] ^= plus;
+                high[w] ^= (low[w] & minus) ^ minus;
+                low[w] ^= minus;
+                xBits[base + w] = x2 ^ (xFlip & mask);
+                zBits[base + w] = z2 ^ (zFlip & mask);
+            }
+        }
+        long pivotSign = -bit(signs, 0, pivot);
+        for (int w = 0; w < rowWords; w++) {
+            // the counter is always even, so the new sign is the old sign plus the pivot's sign plus the high bit
+            signs[w] ^= (high[w] ^ pivotSign) & rows[w];
+        }
+    }
+
+    /**
+     * The power of i picked up when multiplying Pauli (x1, z1) by Pauli (x2, z2), as -1, 0 or 1.
+     */
+    private static int phaseExponent(long x1, long z1, long x2, long z2) {
+        if (x1 == 0 && z1 == 0) {
+            return 0;
+        }
+        if (x1 == 1 && z1 == 1) {
+            return (int) (z2 - x2);
+        }
+        if (x1 == 1) {
+            return (int) (z2 * (2 * x2 - 1));
+        }
+        return (int) (x2 * (1 - 2 * z2));
+    }
+
+    private void copyRow(int from, int to) {
+        for (int q = 0; q < numQubits; q++) {
+            setBit(xBits, q * rowWords, to, bit(xBits, q * rowWords, from));
+            setBit(zBits, q * rowWords, to, bit(zBits, q * rowWords, from));
+        }
+        setBit(signs, 0, to, bit(signs, 0, from));
+    }
+
+    private static long bit(long[] bits, int base, int row) {
+        return (bits[base + (row >>> 6)] >>> row) & 1L;
+    }
+
+    private static void setBit(long[] bits, int base, int row, long value) {
+        int word = base + (row >>> 6);
+        bits[word] = (bits[word] & ~(1L << row)) | (value << row);
+    }
+
+    private static void clearBit(long[] bits, int base, int row) {
+        bits[base + (row >>> 6)] &= ~(1L << row);
+    }
+
+    /**
+     * Find a matrix in the Clifford table that equals this one up to a global phase.
+     * @return The index in the table, or -1
+     */
+    private static int findClifford(Complex[][] matrix) {
+        for (int c = 0; c < CLIFFORD_MATRICES.size(); c++) {
+            Complex[][] clifford = CLIFFORD_MATRICES.get(c);
+            // |tr(C^dagger U)| is 2 exactly when U = e^{i phi} C
+            double real = 0;
+            double imaginary = 0;
+            for (int row = 0; row < 2; row++) {
+                for (int column = 0; column < 2; column++) {
+                    Complex a = clifford[row][column];
+                    Complex b = matrix[row][column];
+                    real += a.real() * b.real() + a.imaginary() * b.imaginary();
+                    imaginary += a.real() * b.imaginary() - a.imaginary() * b.real();
+                }
+            }
+            if (Math.abs(Math.hypot(real, imaginary) - 2) < CLIFFORD_TOLERANCE) {
+                return c;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Get the stabilizer generators of the current state, for example {@code +XX} and {@code +ZZ} for a Bell pair.
+     * Qubit 0 is the rightmost character, like in the bit strings of {@link QuantumComputer}.
+     * @return The n stabilizers
+     */
+    public List<String> getStabilizers() {
+        List<String> stabilizers = new ArrayList<>(numQubits);
+        for (int row = numQubits; row < 2 * numQubits; row++) {
+            StringBuilder stringBuilder = new StringBuilder(numQubits + 1);
+            stringBuilder.append(bit(signs, 0, row) == 0 ? '+' : '-');
+            for (int q = numQubits - 1; q >= 0; q--) {
+                long x = bit(xBits, q * rowWords, row);
+                long z = bit(zBits, q * rowWords, row);
+                stringBuilder.append(x == 0 ? (z == 0 ? 'I' : 'Z') : (z == 0 ? 'X' : 'Y'));
+            }
+            stabilizers.add(stringBuilder.toString());
+        }
+        return stabilizers;
+    }
+
+    /**
+     * Get the current stabilizers as a string for display, one per line.
+     * @return String representation of the state.
+     */
+    public String getStateString() {
+        return String.join("\n", getStabilizers()) + "\n";
+    }
+
+    /**
+     * Get the name of this quantum computer.
+     * @return The name
+     */
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Update the name of this quantum computer.
+     * @param name The new name for this quantum computer
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the number of qubits.
+     * @return The number of qubits
+     */
+    @Override
+    public int getNumQubits() {
+        return numQubits;
+    }
+
+    @Override
+    public String toString() {
+        return "Stabilizer Computer{" + "name='" + name + "\'" + ", numQubits=" + numQubits + '}';
+    }
+}
@@ -0,0 +1,212 @@
+package com.core;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32C;
+
+
+/**
+ * Reads and writes state vectors in a compact binary checkpoint format through memory mapped files.
+ * <p>
+ * The file is a fixed header, a bitmap with one bit per chunk of amplitudes, and then the raw little endian doubles of
+ * every chunk that has a nonzero amplitude (the real parts of the chunk followed by its imaginary parts). Chunks that
+ * are all exactly zero are left out, which keeps checkpoints of sparse or partly prepared states small without losing
+ * anything. The header ends with a CRC32C of the bitmap and the chunks, which is checked while the state is read back.
+ * <p>
+ * The payload is mapped in windows of {@link #WINDOW_BYTES} and copied with bulk {@link DoubleBuffer} puts and gets,
+ * so a big state is moved at about the speed of the disk and never needs a second copy on the heap.
+ */
+final class StateCheckpoint {
+    /**
+     * "QSTA" in ASCII.
+     */
+    static final int MAGIC = 0x51535441;
+    static final int VERSION = 1;
+    /**
+     * The size of a stored number in bytes (only doubles for now).
+     */
+    static final int PRECISION = Double.BYTES;
+    /**
+     * The number of amplitudes in a chunk that is either stored or skipped.
+     */
+    static final int CHUNK_AMPLITUDES = 1 << 14;
+    /**
+     * magic, version, qubits, precision, chunk amplitudes, chunks, stored chunks, reserved (all ints), then the checksum (long).
+     */
+    static final int HEADER_BYTES = 8 * Integer.BYTES + Long.BYTES;
+    private static final long WINDOW_BYTES = 1L << 26;
+
+    private StateCheckpoint() {
+    }
+
+    /**
+     * Write a state to a file, replacing anything that is already there.
+     * @param path The file
+     * @param numQubits The number of qubits
+     * @param real The real parts
+     * @param imaginary The imaginary parts
+     */
+    static void write(Path path, int numQubits, double[] real, double[] imaginary) throws IOException {
+        int chunkAmplitudes = Math.min(CHUNK_AMPLITUDES, real.length);
+        int chunks = real.length / chunkAmplitudes;
+        long[] present = new long[(chunks + 63) >>> 6];
+        int stored = 0;
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            if (!isZero(real, imaginary, chunk * chunkAmplitudes, chunkAmplitudes)) {
+                present[chunk >>> 6] |= 1L << chunk;
+                stored++;
+            }
+        }
+        int storedChunks = stored;
+        long chunkBytes = 2L * chunkAmplitudes * PRECISION;
+        long bitmapBytes = (long) present.length * Long.BYTES;
+        long fileBytes = HEADER_BYTES + bitmapBytes + stored * chunkBytes;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            CRC32C crc = new CRC32C();
+            MappedByteBuffer bitmap = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES, bitmapBytes);
+            bitmap.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().put(present);
+            crc.update(bitmap.rewind());
+            bitmap.force();
+
+            int chunksPerWindow = (int) Math.max(1, WINDOW_BYTES / chunkBytes);
+            long position = HEADER_BYTES + bitmapBytes;
+            int chunk = nextPresent(present, 0, chunks);
+            while (chunk < chunks) {
+                int count = Math.min(chunksPerWindow, stored);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_WRITE, position, count * chunkBytes);
+                DoubleBuffer doubles = window.order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+                for (int i = 0; i < count; i++, chunk = nextPresent(present, chunk + 1, chunks)) {
+                    int from = chunk * chunkAmplitudes;
+                    doubles.put(real, from, chunkAmplitudes).put(imaginary, from, chunkAmplitudes);
+                }
+                crc.update(window.rewind());
+                window.force();
+                position += count * chunkBytes;
+                stored -= count;
+            }
+
+            // the header goes last, so a file cut short by a crash never has a valid header
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES);
+            header.order(ByteOrder.LITTLE_ENDIAN)
+                    .putInt(MAGIC).putInt(VERSION).putInt(numQubits).putInt(PRECISION)
+                    .putInt(chunkAmplitudes).putInt(chunks).putInt(storedChunks).putInt(0)
+                    .putLong(crc.getValue());
+            header.force();
+            if (channel.size() != fileBytes) {
+                throw new IOException("Checkpoint has the wrong size: " + channel.size() + " bytes instead of " + fileBytes);
+            }
+        }
+    }
+
+    /**
+     * Read a checkpoint into a new quantum computer.
+     * @param path The file
+     * @param name The name of the new quantum computer
+     * @return The quantum computer, in the saved state
+     */
+    static QuantumComputer read(Path path, String name) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                throw new IOException("Not a state checkpoint: " + path);
+            }
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a state checkpoint: " + path);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported checkpoint version: " + version);
+            }
+            int numQubits = header.getInt();
+            int precision = header.getInt();
+            int chunkAmplitudes = header.getInt();
+            int chunks = header.getInt();
+            int stored = header.getInt();
+            header.getInt();
+            long checksum = header.getLong();
+            if (numQubits < 0 || numQubits > 30 || precision != PRECISION || chunkAmplitudes < 1
+                    || (long) chunks * chunkAmplitudes != 1L << numQubits || stored < 0 || stored > chunks) {
+                throw new IOException("Corrupt checkpoint header: " + path);
+            }
+            long chunkBytes = 2L * chunkAmplitudes * PRECISION;
+            long bitmapBytes = (long) ((chunks + 63) >>> 6) * Long.BYTES;
+            if (channel.size() != HEADER_BYTES + bitmapBytes + stored * chunkBytes) {
+                throw new IOException("Checkpoint has the wrong size: " + path);
+            }
+
+            CRC32C crc = new CRC32C();
+            MappedByteBuffer bitmap = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_BYTES, bitmapBytes);
+            long[] present = new long[(chunks + 63) >>> 6];
+            bitmap.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(present);
+            crc.update(bitmap.rewind());
+            if (countBits(present) != stored) {
+                throw new IOException("Corrupt checkpoint header: " + path);
+            }
+
+            QuantumComputer quantumComputer = new QuantumComputer(name, numQubits);
+            double[] real = quantumComputer.realParts();
+            double[] imaginary = quantumComputer.imaginaryParts();
+            real[0] = 0.0;
+
+            int chunksPerWindow = (int) Math.max(1, WINDOW_BYTES / chunkBytes);
+            long position = HEADER_BYTES + bitmapBytes;
+            int chunk = nextPresent(present, 0, chunks);
+            while (chunk < chunks) {
+                int count = Math.min(chunksPerWindow, stored);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, count * chunkBytes);
+                crc.update(window);
+                DoubleBuffer doubles = window.rewind().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+                for (int i = 0; i < count; i++, chunk = nextPresent(present, chunk + 1, chunks)) {
+                    int from = chunk * chunkAmplitudes;
+                    doubles.get(real, from, chunkAmplitudes).get(imaginary, from, chunkAmplitudes);
+                }
+                position += count * chunkBytes;
+                stored -= count;
+            }
+            if (crc.getValue() != checksum) {
+                throw new IOException("Checkpoint checksum does not match: " + path);
+            }
+            return quantumComputer;
+        }
+    }
+
+    private static boolean isZero(double[] real, double[] imaginary, int from, int length) {
+        for (int i = from; i < from + length; i++) {
+            if (real[i] != 0.0 || imaginary[i] != 0.0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Find the first stored chunk at or after a position.
+     * @return The chunk, or chunks if there is none
+     */
+    private static int nextPresent(long[] present, int from, int chunks) {
+        for (int chunk = from; chunk < chunks; chunk++) {
+            long word = present[chunk >>> 6] >>> chunk;
+            if (word != 0) {
+                return Math.min(chunks, chunk + Long.numberOfTrailingZeros(word));
+            }
+            chunk |= 63;
+        }
+        return chunks;
+    }
+
+    private static int countBits(long[] words) {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
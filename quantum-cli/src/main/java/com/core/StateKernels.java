@@ -0,0 +1,389 @@
+package com.core;
+
+
+/**
+ * In place gate kernels that work directly on the real/imaginary amplitude arrays.
+ * <p>
+ * A single-qubit gate on qubit t pairs every index with a 0 at bit t (i0) with the same index with a 1 at bit t (i1 = i0 | stride).
+ * The kernels loop over "pair numbers" k in [from, to), where k runs from 0 to 2^{n-1}, and get i0 by inserting a 0 bit
+ * into k at position t. Working on pair ranges means a range of pairs can be handed to any thread without splitting a pair.
+ * <p>
+ * None of these methods allocate, apart from the small gather buffers of {@link #dense}.
+ */
+final class StateKernels {
+
+    private StateKernels() {
+    }
+
+    /**
+     * Insert a zero bit into an index.
+     * @param k The pair number
+     * @param stride 2^t where t is the position of the inserted bit
+     * @return k with a 0 inserted at position t
+     */
+    static int insertZeroBit(int k, int stride) {
+        int lowMask = stride - 1;
+        return ((k & ~lowMask) << 1) | (k & lowMask);
+    }
+
+    /**
+     * Hadamard on the pairs [from, to).
+     */
+    static void hadamard(double[] real, double[] imaginary, int stride, int from, int to) {
+        double scaleFactor = 1.0 / Math.sqrt(2);
+        for (int k = from; k < to; k++) {
+            int i0 = insertZeroBit(k, stride);
+            int i1 = i0 | stride;
+            double real0 = real[i0];
+            double imaginary0 = imaginary[i0];
+            double real1 = real[i1];
+            double imaginary1 = imaginary[i1];
+
+            real[i0] = (real0 + real1) * scaleFactor;
+            imaginary[i0] = (imaginary0 + imaginary1) * scaleFactor;
+            real[i1] = (real0 - real1) * scaleFactor;
+            imaginary[i1] = (imaginary0 - imaginary1) * scaleFactor;
+        }
+    }
+
+    /**
+     * Pauli-X on the pairs [from, to). This is just a swap of each pair.
+     */
+    static void pauliX(double[] real, double[] imaginary, int stride, int from, int to) {
+        for (int k = from; k < to; k++) {
+            int i0 = insertZeroBit(k, stride);
+            swap(real, imaginary, i0, i0 | stride);
+        }
+    }
+
+    /**
+     * Pauli-Z on the pairs [from, to). Only the i1 half changes sign.
+     */
+    static void pauliZ(double[] real, double[] imaginary, int stride, int from, int to) {
+        for (int k = from; k < to; k++) {
+            int i1 = insertZeroBit(k, stride) | stride;
+            real[i1] = -real[i1];
+            imaginary[i1] = -imaginary[i1];
+        }
+    }
+
+    /**
+     * Diagonal gate [[d0, 0], [0, d1]] on the pairs [from, to).
+     * When d0 is exactly 1 (phase, S, T) the i0 half is skipped.
+     */
+    static void diagonal(double[] real, double[] imaginary, int stride, int from, int to,
+                         double d0Real, double d0Imaginary, double d1Real, double d1Imaginary) {
+        boolean touchZero = d0Real != 1.0 || d0Imaginary != 0.0;
+        for (int k = from; k < to; k++) {
+            int i0 = insertZeroBit(k, stride);
+            int i1 = i0 | stride;
+            if (touchZero) {
+                double real0 = real[i0];
+                double imaginary0 = imaginary[i0];
+                real[i0] = d0Real * real0 - d0Imaginary * imaginary0;
+                imaginary[i0] = d0Real * imaginary0 + d0Imaginary * real0;
+            }
+            double real1 = real[i1];
+            double imaginary1 = imaginary[i1];
+            real[i1] = d1Real * real1 - d1Imaginary * imaginary1;
+            imaginary[i1] = d1Real * imaginary1 + d1Imaginary * real1;
+        }
+    }
+
+    /**
+     * Anti diagonal gate [[0, a01], [a10, 0]] on the pairs [from, to).
+     */
+    static void antiDiagonal(double[] real, double[] imaginary, int stride, int from, int to,
+                             double a01Real, double a01Imaginary, double a10Real, double a10Imaginary) {
+        for (int k = from; k < to; k++) {
+            int i0 = insertZeroBit(k, stride);
+            int i1 = i0 | stride;
+            double real0 = real[i0];
+            double imaginary0 = imaginary[i0];
+            double real1 = real[i1];
+            double imaginary1 = imaginary[i1];
+
+            real[i0] = a01Real * real1 - a01Imaginary * imaginary1;
+            imaginary[i0] = a01Real * imaginary1 + a01Imaginary * real1;
+            real[i1] = a10Real * real0 - a10Imaginary * imaginary0;
+            imaginary[i1] = a10Real * imaginary0 + a10Imaginary * real0;
+        }
+    }
+
+    /**
+     * Real gate [[m00, m01], [m10, m11]] on the pairs [from, to).
+     */
+    static void real(double[] real, double[] imaginary, int stride, int from, int to,
+                     double m00, double m01, double m10, double m11) {
+        for (int k = from; k < to; k++) {
+            int i0 = insertZeroBit(k, stride);
+            int i1 = i0 | stride;
+            double real0 = real[i0];
+            double imaginary0 = imaginary[i0];
+            double real1 = real[i1];
+            double imaginary1 = imaginary[i1];
+
+            real[i0] = m00 * real0 + m01 * real1;
+            imaginary[i0] = m00 * imaginary0 + m01 * imaginary1;
+            real[i1] = m10 * real0 + m11 * real1;
+            imaginary[i1] = m10 * imaginary0 + m11 * imaginary1;
+        }
+    }
+
+    /**
+     * Any 2x2 gate on the pairs [from, to).
+     * @param matrix The gate as {m00 real, m00 imaginary, m01 real, m01 imaginary, m10 real, m10 imaginary, m11 real, m11 imaginary}
+     */
+    static void general(double[] real, double[] imaginary, int stride, int from, int to, double[] matrix) {
+        double m00r = matrix[0], m00i = matrix[1], m01r = matrix[2], m01i = matrix[3];
+        double m10r = matrix[4], m10i = matrix[5], m11r = matrix[6], m11i = matrix[7];
+        for (int k = from; k < to; k++) {
+            int i0 = insertZeroBit(k, stride);
+            int i1 = i0 | stride;
+            double real0 = real[i0];
+            double imaginary0 = imaginary[i0];
+            double real1 = real[i1];
+            double imaginary1 = imaginary[i1];
+
+            real[i0] = m00r * real0 - m00i * imaginary0 + m01r * real1 - m01i * imaginary1;
+            imaginary[i0] = m00r * imaginary0 + m00i * real0 + m01r * imaginary1 + m01i * real1;
+            real[i1] = m10r * real0 - m10i * imaginary0 + m11r * real1 - m11i * imaginary1;
+            imaginary[i1] = m10r * imaginary0 + m10i * real0 + m11r * imaginary1 + m11i * real1;
+        }
+    }
+
+    /**
+     * Apply an already classified 2x2 gate on the pairs [from, to) using the kernel for its kind.
+     * @param kind The kind of the matrix
+     * @param matrix The gate in the layout used by {@link #general}
+     */
+    static void matrix(double[] real, double[] imaginary, int stride, int from, int to, Gates.Kind kind, double[] matrix) {
+        switch (kind) {
+            case DIAGONAL -> diagonal(real, imaginary, stride, from, to, matrix[0], matrix[1], matrix[6], matrix[7]);
+            case ANTI_DIAGONAL -> antiDiagonal(real, imaginary, stride, from, to, matrix[2], matrix[3], matrix[4], matrix[5]);
+            case REAL -> real(real, imaginary, stride, from, to, matrix[0], matrix[2], matrix[4], matrix[6]);
+            case GENERAL -> general(real, imaginary, stride, from, to, matrix);
+        }
+    }
+
+    /**
+     * Flatten a 2x2 {@code Complex[][]} into the layout used by {@link #general}.
+     * @param matrix The gate matrix
+     * @return {m00 real, m00 imaginary, m01 real, ..., m11 imaginary}
+     */
+    static double[] flatten(Complex[][] matrix) {
+        return new double[] {
+            matrix[0][0].real(), matrix[0][0].imaginary(), matrix[0][1].real(), matrix[0][1].imaginary(),
+            matrix[1][0].real(), matrix[1][0].imaginary(), matrix[1][1].real(), matrix[1][1].imaginary()
+        };
+    }
+
+    /**
+     * CNOT on the quads [from, to). Every index is built by inserting a 0 at both the control and target positions
+     * and then setting the control bit, so only the amplitudes that actually move are visited (2^{n-2} swaps).
+     * @param controlStride 2^{control}
+     * @param targetStride 2^{target}
+     */
+    static void cnot(double[] real, double[] imaginary, int controlStride, int targetStride, int from, int to) {
+        int lowStride = Math.min(controlStride, targetStride);
+        int highStride = Math.max(controlStride, targetStride);
+        for (int k = from; k < to; k++) {
+            int i0 = insertZeroBit(insertZeroBit(k, lowStride), highStride) | controlStride;
+            swap(real, imaginary, i0, i0 | targetStride);
+        }
+    }
+
+    /**
+     * Dense k-qubit gate on the groups [from, to). Each group is the 2^k amplitudes that share all bits outside the gate's qubits.
+     * @param sortedStrides The strides of the gate's qubits in ascending order (used to build the base index of a group)
+     * @param offsets offsets[b] is the index offset of local basis state b inside a group (bit j of b is the gate's j-th qubit)
+     * @param matrixReal The real parts of the 2^k x 2^k matrix, row major
+     * @param matrixImaginary The imaginary parts of the matrix, row major
+     */
+    static void dense(double[] real, double[] imaginary, int[] sortedStrides, int[] offsets,
+                      double[] matrixReal, double[] matrixImaginary, int from, int to) {
+        int dimension = offsets.length;
+        double[] inReal = new double[dimension];
+        double[] inImaginary = new double[dimension];
+        for (int k = from; k < to; k++) {
+            int base = k;
+            for (int stride : sortedStrides) {
+                base = insertZeroBit(base, stride);
+            }
+            for (int b = 0; b < dimension; b++) {
+                inReal[b] = real[base + offsets[b]];
+                inImaginary[b] = imaginary[base + offsets[b]];
+            }
+            for (int row = 0; row < dimension; row++) {
+                double sumReal = 0;
+                double sumImaginary = 0;
+                int rowStart = row * dimension;
+                for (int column = 0; column < dimension; column++) {
+                    double mr = matrixReal[rowStart + column];
+                    double mi = matrixImaginary[rowStart + column];
+                    sumReal += mr * inReal[column] - mi * inImaginary[column];
+                    sumImaginary += mr * inImaginary[column] + mi * inReal[column];
+                }
+                real[base + offsets[row]] = sumReal;
+                imaginary[base + offsets[row]] = sumImaginary;
+            }
+        }
+    }
+
+    /**
+     * Sum of |amplitude|^2 over the i0 (bit is 0) half of the pairs [from, to).
+     */
+    static double probabilityOfZero(double[] real, double[] imaginary, int stride, int from, int to) {
+        double probability = 0;
+        for (int k = from; k < to; k++) {
+            int i0 = insertZeroBit(k, stride);
+            probability += real[i0] * real[i0] + imaginary[i0] * imaginary[i0];
+        }
+        return probability;
+    }
+
+    /**
+     * Part of a Pauli string expectation over the basis states [from, to).
+     * <p>
+     * P|i> = i^{#Y} (-1)^{parity(i & zMask)} |i ^ xMask>, so the sum is over conj(psi[i ^ xMask]) * psi[i] * sign(i).
+     * Only the real or the imaginary part of that sum is needed (which one depends on the number of Ys), so only that part is added up.
+     * @param imaginaryPart True to add up the imaginary parts, false for the real parts
+     */
+    static double pauliTerm(double[] real, double[] imaginary, int xMask, int zMask, boolean imaginaryPart, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            int j = i ^ xMask;
+            double value = imaginaryPart
+                    ? real[j] * imaginary[i] - imaginary[j] * real[i]
+                    : real[j] * real[i] + imaginary[j] * imaginary[i];
+            sum += (Integer.bitCount(i & zMask) & 1) == 0 ? value : -value;
+        }
+        return sum;
+    }
+
+    /**
+     * Part of the overlap sum(conj(a[i]) * b[i]) over [from, to), with Kahan summation.
+     * The real part goes to sums[slot] and the imaginary part to sums[slot + 1].
+     */
+    static void overlap(double[] aReal, double[] aImaginary, double[] bReal, double[] bImaginary, int from, int to, double[] sums, int slot) {
+        double sumReal = 0, errorReal = 0;
+        double sumImaginary = 0, errorImaginary = 0;
+        for (int i = from; i < to; i++) {
+            double termReal = aReal[i] * bReal[i] + aImaginary[i] * bImaginary[i] - errorReal;
+            double nextReal = sumReal + termReal;
+            errorReal = (nextReal - sumReal) - termReal;
+            sumReal = nextReal;
+
+            double termImaginary = aReal[i] * bImaginary[i] - aImaginary[i] * bReal[i] - errorImaginary;
+            double nextImaginary = sumImaginary + termImaginary;
+            errorImaginary = (nextImaginary - sumImaginary) - termImaginary;
+            sumImaginary = nextImaginary;
+        }
+        sums[slot] = sumReal;
+        sums[slot + 1] = sumImaginary;
+    }
+
+    /**
+     * Kahan sum of values[first], values[first + step], values[first + 2 * step], ...
+     */
+    static double compensatedSum(double[] values, int first, int step) {
+        double sum = 0, error = 0;
+        for (int i = first; i < values.length; i += step) {
+            double term = values[i] - error;
+            double next = sum + term;
+            error = (next - sum) - term;
+            sum = next;
+        }
+        return sum;
+    }
+
+    /**
+     * Sum of |amplitude|^2 over the basis states [from, to).
+     */
+    static double probabilitySum(double[] real, double[] imaginary, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            sum += real[i] * real[i] + imaginary[i] * imaginary[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Sum of |amplitude|^2 over the basis states in [from, to) whose masked bits equal the pattern.
+     */
+    static double patternProbability(double[] real, double[] imaginary, int mask, int pattern, int from, int to) {
+        double sum = 0;
+        for (int i = from; i < to; i++) {
+            if ((i & mask) == pattern) {
+                sum += real[i] * real[i] + imaginary[i] * imaginary[i];
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Collapse the pairs [from, to) after a measurement: scale the kept half and zero the rejected half.
+     * @param result The measured bit (0 keeps i0, 1 keeps i1)
+     * @param scale 1/sqrt(probability of the result)
+     */
+    static void collapse(double[] real, double[] imaginary, int stride, int from, int to, int result, double scale) {
+        int keptOffset = result == 0 ? 0 : stride;
+        int rejectedOffset = stride - keptOffset;
+        for (int k = from; k < to; k++) {
+            int i0 = insertZeroBit(k, stride);
+            real[i0 + keptOffset] *= scale;
+            imaginary[i0 + keptOffset] *= scale;
+            real[i0 + rejectedOffset] = 0.0;
+            imaginary[i0 + rejectedOffset] = 0.0;
+        }
+    }
+
+    /**
+     * Add the probabilities of the amplitudes [from, to) into a histogram over the outcomes of some qubits.
+     * @param strides The strides of the measured qubits; bit j of an outcome is the qubit with strides[j]
+     * @param histogram The histogram to add into, with 2^{strides.length} entries
+     */
+    static void registerHistogram(double[] real, double[] imaginary, int[] strides, int from, int to, double[] histogram) {
+        for (int i = from; i < to; i++) {
+            double probability = real[i] * real[i] + imaginary[i] * imaginary[i];
+            if (probability == 0) {
+                continue;
+            }
+            int outcome = 0;
+            for (int j = 0; j < strides.length; j++) {
+                if ((i & strides[j]) != 0) {
+                    outcome |= 1 << j;
+                }
+            }
+            histogram[outcome] += probability;
+        }
+    }
+
+    /**
+     * Collapse the amplitudes [from, to) after measuring several qubits in one sweep: amplitudes whose measured bits match
+     * the outcome are scaled, the rest are zeroed.
+     * @param mask The bits of the measured qubits
+     * @param pattern The value those bits must have
+     * @param scale 1/sqrt(probability of the outcome)
+     */
+    static void collapseRegister(double[] real, double[] imaginary, int mask, int pattern, double scale, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if ((i & mask) == pattern) {
+                real[i] *= scale;
+                imaginary[i] *= scale;
+            } else {
+                real[i] = 0.0;
+                imaginary[i] = 0.0;
+            }
+        }
+    }
+
+    private static void swap(double[] real, double[] imaginary, int first, int second) {
+        double tempReal = real[first];
+        double tempImaginary = imaginary[first];
+        real[first] = real[second];
+        imaginary[first] = imaginary[second];
+        real[second] = tempReal;
+        imaginary[second] = tempImaginary;
+    }
+}
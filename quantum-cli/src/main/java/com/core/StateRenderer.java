@@ -0,0 +1,191 @@
+package com.core;
+
+import java.io.IOException;
+
+
+/**
+ * Writes the amplitudes of a state vector as text, one line per basis state, straight to an {@link Appendable}.
+ * <p>
+ * Lines look like {@code |0101>: 0.707107(prob 0.5000)}. Numbers are formatted by hand into one reused line buffer and
+ * bit strings are written from the index bits, so nothing is built per amplitude and the whole state never has to fit in one string.
+ * There are two ways to keep the output small for big registers: only states above a probability threshold, or only the
+ * k most likely states (found with a bounded min-heap in one pass).
+ */
+final class StateRenderer {
+    /**
+     * The same cut-off as {@link Complex#toString()} uses for printing only the real or the imaginary part.
+     */
+    private static final double PART_EPSILON = 1e-15;
+    private static final long[] POWERS_OF_TEN = {1L, 10L, 100L, 1_000L, 10_000L, 100_000L, 1_000_000L};
+
+    private final double[] real;
+    private final double[] imaginary;
+    private final int numQubits;
+    private final StringBuilder line = new StringBuilder(64);
+
+    StateRenderer(double[] real, double[] imaginary, int numQubits) {
+        this.real = real;
+        this.imaginary = imaginary;
+        this.numQubits = numQubits;
+    }
+
+    /**
+     * Write every basis state with a probability above the threshold, in order of index.
+     * @param out Where to write
+     * @param threshold The smallest probability that is not written
+     * @return The number of lines written
+     */
+    long writeAbove(Appendable out, double threshold) throws IOException {
+        long written = 0;
+        for (int i = 0; i < real.length; i++) {
+            double probability = real[i] * real[i] + imaginary[i] * imaginary[i];
+            if (probability > threshold) {
+                writeLine(out, i, probability);
+                written++;
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Write the k most likely basis states, most likely first (ties in order of index). States with probability 0 are never written.
+     * @param out Where to write
+     * @param k The most lines to write
+     * @return The number of lines written
+     */
+    int writeTop(Appendable out, int k) throws IOException {
+        // min-heap on (probability, then higher index first) so the root is always the entry to evict
+        int[] heapIndex = new int[Math.min(k, real.length)];
+        double[] heapProbability = new double[heapIndex.length];
+        int size = 0;
+        for (int i = 0; i < real.length; i++) {
+            double probability = real[i] * real[i] + imaginary[i] * imaginary[i];
+            if (probability <= 0) {
+                continue;
+            }
+            if (size < heapIndex.length) {
+                heapIndex[size] = i;
+                heapProbability[size] = probability;
+                siftUp(heapIndex, heapProbability, size++);
+            } else if (heapIndex.length > 0 && probability > heapProbability[0]) {
+                heapIndex[0] = i;
+                heapProbability[0] = probability;
+                siftDown(heapIndex, heapProbability, size);
+            }
+        }
+        // popping the heap gives the entries from least to most likely, so fill the order from the back
+        int[] order = new int[size];
+        double[] orderProbability = new double[size];
+        for (int remaining = size; remaining > 0; remaining--) {
+            order[remaining - 1] = heapIndex[0];
+            orderProbability[remaining - 1] = heapProbability[0];
+            heapIndex[0] = heapIndex[remaining - 1];
+            heapProbability[0] = heapProbability[remaining - 1];
+            siftDown(heapIndex, heapProbability, remaining - 1);
+        }
+        for (int j = 0; j < size; j++) {
+            writeLine(out, order[j], orderProbability[j]);
+        }
+        return size;
+    }
+
+    private void writeLine(Appendable out, int index, double probability) throws IOException {
+        line.setLength(0);
+        line.append('|');
+        for (int q = numQubits - 1; q >= 0; q--) {
+            line.append(((index >>> q) & 1) == 0 ? '0' : '1');
+        }
+        line.append(">: ");
+        double re = real[index];
+        double im = imaginary[index];
+        if (Math.abs(im) < PART_EPSILON) {
+            appendFixed(line, re, 6);
+        } else if (Math.abs(re) < PART_EPSILON) {
+            appendFixed(line, im, 6);
+            line.append('i');
+        } else {
+            appendFixed(line, re, 6);
+            if (im >= 0) {
+                line.append('+');
+            }
+            appendFixed(line, im, 6);
+            line.append('i');
+        }
+        line.append("(prob ");
+        appendFixed(line, probability, 4);
+        line.append(")\n");
+        out.append(line);
+    }
+
+    /**
+     * Append a number with a fixed number of decimals (rounded half up, like %.nf) without going through a Formatter.
+     * Values within a few ulps of a tie still go to the formatter, since only it rounds like %.nf there.
+     */
+    static void appendFixed(StringBuilder stringBuilder, double value, int decimals) {
+        long scale = POWERS_OF_TEN[decimals];
+        double magnitude = Math.abs(value);
+        if (!(magnitude * scale < Long.MAX_VALUE / 2)) {
+            // infinities, NaN and huge values are rare enough to leave to the formatter
+            stringBuilder.append(String.format("%." + decimals + "f", value));
+            return;
+        }
+        double scaledValue = magnitude * scale;
+        long scaled = Math.round(scaledValue);
+        if (Math.abs(Math.abs(scaledValue - scaled) - 0.5) <= 4 * Math.ulp(scaledValue)) {
+            // a decimal tie like 0.58415 is stored just below or above it, the formatter rounds the shortest decimal form
+            stringBuilder.append(String.format("%." + decimals + "f", value));
+            return;
+        }
+        if (value < 0) {
+            stringBuilder.append('-');
+        }
+        stringBuilder.append(scaled / scale).append('.');
+        long fraction = scaled % scale;
+        for (long digit = scale / 10; digit > 0; digit /= 10) {
+            stringBuilder.append((char) ('0' + (fraction / digit) % 10));
+        }
+    }
+
+    private static boolean less(int[] heapIndex, double[] heapProbability, int a, int b) {
+        if (heapProbability[a] != heapProbability[b]) {
+            return heapProbability[a] < heapProbability[b];
+        }
+        return heapIndex[a] > heapIndex[b];
+    }
+
+    private static void siftUp(int[] heapIndex, double[] heapProbability, int position) {
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            if (!less(heapIndex, heapProbability, position, parent)) {
+                return;
+            }
+            swap(heapIndex, heapProbability, position, parent);
+            position = parent;
+        }
+    }
+
+    private static void siftDown(int[] heapIndex, double[] heapProbability, int size) {
+        int position = 0;
+        while (true) {
+            int left = 2 * position + 1;
+            if (left >= size) {
+                return;
+            }
+            int smallest = left + 1 < size && less(heapIndex, heapProbability, left + 1, left) ? left + 1 : left;
+            if (!less(heapIndex, heapProbability, smallest, position)) {
+                return;
+            }
+            swap(heapIndex, heapProbability, position, smallest);
+            position = smallest;
+        }
+    }
+
+    private static void swap(int[] heapIndex, double[] heapProbability, int a, int b) {
+        int index = heapIndex[a];
+        heapIndex[a] = heapIndex[b];
+        heapIndex[b] = index;
+        double probability = heapProbability[a];
+        heapProbability[a] = heapProbability[b];
+        heapProbability[b] = probability;
+    }
+}
@@ -0,0 +1,68 @@
+package com.core;
+
+
+/**
+ * A frozen state vector taken with {@link QuantumComputer#snapshot()}.
+ * <p>
+ * The amplitude arrays are shared with the computers that were restored or forked from it and are never written again:
+ * a computer that shares them copies them before its next write. A snapshot can be restored any number of times.
+ */
+public final class StateSnapshot {
+    private final int numQubits;
+    final double[] real;
+    final double[] imaginary;
+
+    StateSnapshot(int numQubits, double[] real, double[] imaginary) {
+        this.numQubits = numQubits;
+        this.real = real;
+        this.imaginary = imaginary;
+    }
+
+    /**
+     * Copy a state given as {@link Complex} numbers into a snapshot.
+     * @param state The amplitudes, a power of two of them
+     * @return The snapshot
+     */
+    static StateSnapshot of(Complex[] state) {
+        if (state.length < 2 || Integer.bitCount(state.length) != 1) {
+            throw new IllegalArgumentException("State size must be a power of two: " + state.length);
+        }
+        double[] real = new double[state.length];
+        double[] imaginary = new double[state.length];
+        for (int i = 0; i < state.length; i++) {
+            real[i] = state[i].real();
+            imaginary[i] = state[i].imaginary();
+        }
+        return new StateSnapshot(Integer.numberOfTrailingZeros(state.length), real, imaginary);
+    }
+
+    /**
+     * Get the number of qubits.
+     * @return The number of qubits
+     */
+    public int getNumQubits() {
+        return numQubits;
+    }
+
+    /**
+     * Get one amplitude of the captured state.
+     * @param index The basis state
+     * @return The amplitude
+     */
+    public Complex getAmplitude(int index) {
+        return new Complex(real[index], imaginary[index]);
+    }
+
+    /**
+     * Get the memory the captured state uses.
+     * @return The size of the amplitude arrays in bytes
+     */
+    public long getSizeInBytes() {
+        return 2L * real.length * Double.BYTES;
+    }
+
+    @Override
+    public String toString() {
+        return "StateSnapshot{" + "numQubits=" + numQubits + '}';
+    }
+}
@@ -0,0 +1,241 @@
+package com.core;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+
+/**
+ * SIMD versions of the gate kernels using the (incubator) Java Vector API.
+ * <p>
+ * They take the same pair ranges as {@link StateKernels} so they can be used on either the serial or the fork/join path.
+ * There are two paths for every kernel:
+ * <ul>
+ *   <li>High target (stride &gt;= lanes): the i0 and i1 halves are separate contiguous runs, so a whole vector of i0 amplitudes
+ *       is combined with the vector of i1 amplitudes at the same offset.</li>
+ *   <li>Low target (stride &lt; lanes): both halves of each pair sit inside one vector, so the partner of each lane is found by
+ *       shuffling the vector with lane ^ stride and the matrix row is picked per lane.</li>
+ * </ul>
+ * Pieces of a range that do not line up with a full vector fall back to the scalar kernels.
+ * <p>
+ * This class must only be touched when {@link VectorSupport#isAvailable()} is true, otherwise it fails to load.
+ */
+final class VectorKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    /**
+     * The number of doubles in one vector (8 with AVX-512, 4 with AVX2).
+     */
+    static final int LANES = SPECIES.length();
+
+    private VectorKernels() {
+    }
+
+    /**
+     * Any 2x2 gate on the pairs [from, to).
+     * @param matrix The gate in the layout used by {@link StateKernels#general}
+     */
+    static void general(double[] real, double[] imaginary, int stride, int from, int to, double[] matrix) {
+        if (stride >= LANES) {
+            generalHigh(real, imaginary, stride, from, to, matrix);
+        } else {
+            generalLow(real, imaginary, stride, from, to, matrix);
+        }
+    }
+
+    private static void generalHigh(double[] real, double[] imaginary, int stride, int from, int to, double[] matrix) {
+        DoubleVector m00r = DoubleVector.broadcast(SPECIES, matrix[0]), m00i = DoubleVector.broadcast(SPECIES, matrix[1]);
+        DoubleVector m01r = DoubleVector.broadcast(SPECIES, matrix[2]), m01i = DoubleVector.broadcast(SPECIES, matrix[3]);
+        DoubleVector m10r = DoubleVector.broadcast(SPECIES, matrix[4]), m10i = DoubleVector.broadcast(SPECIES, matrix[5]);
+        DoubleVector m11r = DoubleVector.broadcast(SPECIES, matrix[6]), m11i = DoubleVector.broadcast(SPECIES, matrix[7]);
+
+        int k = scalarHead(real, imaginary, stride, from, to, LANES, matrix);
+        for (; k + LANES <= to; k += LANES) {
+            // k is a multiple of LANES and stride >= LANES, so i0 .. i0 + LANES - 1 all belong to the same run
+            int i0 = StateKernels.insertZeroBit(k, stride);
+            int i1 = i0 | stride;
+            DoubleVector a0r = DoubleVector.fromArray(SPECIES, real, i0);
+            DoubleVector a0i = DoubleVector.fromArray(SPECIES, imaginary, i0);
+            DoubleVector a1r = DoubleVector.fromArray(SPECIES, real, i1);
+            DoubleVector a1i = DoubleVector.fromArray(SPECIES, imaginary, i1);
+
+            // (m00 * a0 + m01 * a1) and (m10 * a0 + m11 * a1) as complex multiply-adds
+            m00r.mul(a0r).sub(m00i.mul(a0i)).add(m01r.mul(a1r)).sub(m01i.mul(a1i)).intoArray(real, i0);
+            m00r.mul(a0i).add(m00i.mul(a0r)).add(m01r.mul(a1i)).add(m01i.mul(a1r)).intoArray(imaginary, i0);
+            m10r.mul(a0r).sub(m10i.mul(a0i)).add(m11r.mul(a1r)).sub(m11i.mul(a1i)).intoArray(real, i1);
+            m10r.mul(a0i).add(m10i.mul(a0r)).add(m11r.mul(a1i)).add(m11i.mul(a1r)).intoArray(imaginary, i1);
+        }
+        StateKernels.general(real, imaginary, stride, k, to, matrix);
+    }
+
+    private static void generalLow(double[] real, double[] imaginary, int stride, int from, int to, double[] matrix) {
+        int pairsPerVector = LANES / 2;
+        if (pairsPerVector == 0) {
+            StateKernels.general(real, imaginary, stride, from, to, matrix);
+            return;
+        }
+
+        // lane j keeps its own amplitude times "self" and adds its partner (lane j ^ stride) times "partner"
+        double[] selfReal = new double[LANES], selfImaginary = new double[LANES];
+        double[] partnerReal = new double[LANES], partnerImaginary = new double[LANES];
+        for (int lane = 0; lane < LANES; lane++) {
+            boolean isOne = (lane & stride) != 0;
+            selfReal[lane] = isOne ? matrix[6] : matrix[0];
+            selfImaginary[lane] = isOne ? matrix[7] : matrix[1];
+            partnerReal[lane] = isOne ? matrix[4] : matrix[2];
+            partnerImaginary[lane] = isOne ? matrix[5] : matrix[3];
+        }
+        DoubleVector sr = DoubleVector.fromArray(SPECIES, selfReal, 0);
+        DoubleVector si = DoubleVector.fromArray(SPECIES, selfImaginary, 0);
+        DoubleVector pr = DoubleVector.fromArray(SPECIES, partnerReal, 0);
+        DoubleVector pi = DoubleVector.fromArray(SPECIES, partnerImaginary, 0);
+        VectorShuffle<Double> partner = partnerShuffle(stride);
+
+        int k = scalarHead(real, imaginary, stride, from, to, pairsPerVector, matrix);
+        for (; k + pairsPerVector <= to; k += pairsPerVector) {
+            // k is a multiple of LANES / 2 >= stride, so the amplitudes start at 2k
+            int index = k << 1;
+            DoubleVector vr = DoubleVector.fromArray(SPECIES, real, index);
+            DoubleVector vi = DoubleVector.fromArray(SPECIES, imaginary, index);
+            DoubleVector wr = vr.rearrange(partner);
+            DoubleVector wi = vi.rearrange(partner);
+
+            sr.mul(vr).sub(si.mul(vi)).add(pr.mul(wr)).sub(pi.mul(wi)).intoArray(real, index);
+            sr.mul(vi).add(si.mul(vr)).add(pr.mul(wi)).add(pi.mul(wr)).intoArray(imaginary, index);
+        }
+        StateKernels.general(real, imaginary, stride, k, to, matrix);
+    }
+
+    /**
+     * CNOT on the target pairs [from, to). Unlike the scalar kernel this walks every target pair and uses a lane mask
+     * for the control bit, which keeps the loads and stores contiguous.
+     * @param controlStride 2^{control}
+     * @param targetStride 2^{target}
+     */
+    static void cnot(double[] real, double[] imaginary, int controlStride, int targetStride, int from, int to) {
+        if (targetStride >= LANES) {
+            cnotHigh(real, imaginary, controlStride, targetStride, from, to);
+        } else {
+            cnotLow(real, imaginary, controlStride, targetStride, from, to);
+        }
+    }
+
+    private static void cnotHigh(double[] real, double[] imaginary, int controlStride, int targetStride, int from, int to) {
+        // with a low control qubit only some lanes swap, with a high control qubit the whole vector either swaps or not
+        VectorMask<Double> laneControl = controlStride < LANES ? controlMask(controlStride) : null;
+
+        int k = from;
+        for (; k < to && (k & (LANES - 1)) != 0; k++) {
+            controlledSwap(real, imaginary, controlStride, targetStride, k);
+        }
+        for (; k + LANES <= to; k += LANES) {
+            int i0 = StateKernels.insertZeroBit(k, targetStride);
+            int i1 = i0 | targetStride;
+            if (laneControl == null && (i0 & controlStride) == 0) {
+                continue;
+            }
+            DoubleVector a0r = DoubleVector.fromArray(SPECIES, real, i0);
+            DoubleVector a0i = DoubleVector.fromArray(SPECIES, imaginary, i0);
+            DoubleVector a1r = DoubleVector.fromArray(SPECIES, real, i1);
+            DoubleVector a1i = DoubleVector.fromArray(SPECIES, imaginary, i1);
+            if (laneControl == null) {
+                a1r.intoArray(real, i0);
+                a1i.intoArray(imaginary, i0);
+                a0r.intoArray(real, i1);
+                a0i.intoArray(imaginary, i1);
+            } else {
+                a0r.blend(a1r, laneControl).intoArray(real, i0);
+                a0i.blend(a1i, laneControl).intoArray(imaginary, i0);
+                a1r.blend(a0r, laneControl).intoArray(real, i1);
+                a1i.blend(a0i, laneControl).intoArray(imaginary, i1);
+            }
+        }
+        for (; k < to; k++) {
+            controlledSwap(real, imaginary, controlStride, targetStride, k);
+        }
+    }
+
+    private static void cnotLow(double[] real, double[] imaginary, int controlStride, int targetStride, int from, int to) {
+        int pairsPerVector = LANES / 2;
+        if (pairsPerVector == 0) {
+            for (int k = from; k < to; k++) {
+                controlledSwap(real, imaginary, controlStride, targetStride, k);
+            }
+            return;
+        }
+        VectorMask<Double> laneControl = controlStride < LANES ? controlMask(controlStride) : null;
+        VectorShuffle<Double> partner = partnerShuffle(targetStride);
+
+        int k = from;
+        for (; k < to && (k % pairsPerVector) != 0; k++) {
+            controlledSwap(real, imaginary, controlStride, targetStride, k);
+        }
+        for (; k + pairsPerVector <= to; k += pairsPerVector) {
+            int index = k << 1;
+            if (laneControl == null && (index & controlStride) == 0) {
+                continue;
+            }
+            DoubleVector vr = DoubleVector.fromArray(SPECIES, real, index);
+            DoubleVector vi = DoubleVector.fromArray(SPECIES, imaginary, index);
+            if (laneControl == null) {
+                vr.rearrange(partner).intoArray(real, index);
+                vi.rearrange(partner).intoArray(imaginary, index);
+            } else {
+                vr.blend(vr.rearrange(partner), laneControl).intoArray(real, index);
+                vi.blend(vi.rearrange(partner), laneControl).intoArray(imaginary, index);
+            }
+        }
+        for (; k < to; k++) {
+            controlledSwap(real, imaginary, controlStride, targetStride, k);
+        }
+    }
+
+    /**
+     * Apply the scalar kernel to pairs until k is a multiple of the vector step.
+     * @return The first k that is a multiple of the step (or to)
+     */
+    private static int scalarHead(double[] real, double[] imaginary, int stride, int from, int to, int step, double[] matrix) {
+        int alignedFrom = Math.min(to, ((from + step - 1) / step) * step);
+        StateKernels.general(real, imaginary, stride, from, alignedFrom, matrix);
+        return alignedFrom;
+    }
+
+    /**
+     * Swap the target pair k if its control bit is set.
+     */
+    private static void controlledSwap(double[] real, double[] imaginary, int controlStride, int targetStride, int k) {
+        int i0 = StateKernels.insertZeroBit(k, targetStride);
+        if ((i0 & controlStride) == 0) {
+            return;
+        }
+        int i1 = i0 | targetStride;
+        double tempReal = real[i0];
+        double tempImaginary = imaginary[i0];
+        real[i0] = real[i1];
+        imaginary[i0] = imaginary[i1];
+        real[i1] = tempReal;
+        imaginary[i1] = tempImaginary;
+    }
+
+    /**
+     * The shuffle that moves every lane to lane ^ stride.
+     */
+    private static VectorShuffle<Double> partnerShuffle(int stride) {
+        int[] order = new int[LANES];
+        for (int lane = 0; lane < LANES; lane++) {
+            order[lane] = lane ^ stride;
+        }
+        return VectorShuffle.fromArray(SPECIES, order, 0);
+    }
+
+    /**
+     * The mask of lanes whose control bit is set, for vectors starting at a multiple of LANES.
+     */
+    private static VectorMask<Double> controlMask(int controlStride) {
+        boolean[] bits = new boolean[LANES];
+        for (int lane = 0; lane < LANES; lane++) {
+            bits[lane] = (lane & controlStride) != 0;
+        }
+        return VectorMask.fromArray(SPECIES, bits, 0);
+    }
+}
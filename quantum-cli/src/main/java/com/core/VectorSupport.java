@@ -0,0 +1,38 @@
+package com.core;
+
+
+/**
+ * Checks whether the SIMD kernels in {@link VectorKernels} can be used.
+ * <p>
+ * The Vector API is still an incubator module, so it is only there when the JVM is started with
+ * {@code --add-modules jdk.incubator.vector}. Without it the simulator silently uses the scalar kernels.
+ * The vector kernels can also be turned off with {@code -Dcom.core.vector=false}.
+ */
+final class VectorSupport {
+    private static final boolean AVAILABLE = detect();
+
+    private VectorSupport() {
+    }
+
+    /**
+     * Check if the vector kernels can be used on this JVM.
+     * @return True if the incubator module is loaded and a vector holds at least two doubles
+     */
+    static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    private static boolean detect() {
+        if (!Boolean.parseBoolean(System.getProperty("com.core.vector", "true"))) {
+            return false;
+        }
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            return VectorKernels.LANES >= 2;
+        } catch (LinkageError e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,579 @@
+package com.core.linalg;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import com.core.Complex;
+
+
+/**
+ * A dense complex matrix stored as two primitive arrays, for analysing gates and unitaries.
+ * <p>
+ * Element (r, c) is at {@code r * columns + c} of the real and the imaginary array (row-major, structure of arrays),
+ * the same layout as {@link ComplexSvd} and the state vector kernels, so no {@link Complex} objects are made while computing.
+ * The operations return new matrices and never change their inputs; {@link #set(int, int, double, double)} is the only
+ * method that changes a matrix.
+ * <p>
+ * {@link #multiply(ComplexMatrix)} is cache blocked (a tile of the right hand matrix is reused for a whole block of rows)
+ * and splits the row blocks across a fork/join pool for big products. Every element is summed in the same order either
+ * way, so the parallel and the serial product are bit-identical.
+ */
+public final class ComplexMatrix {
+    /**
+     * The number of rows in one parallel task and the depth of one tile of the right hand matrix.
+     */
+    private static final int ROW_BLOCK = 64;
+    private static final int INNER_BLOCK = 64;
+    /**
+     * The number of columns of one tile, 64 x 256 complex numbers is 256 KB.
+     */
+    private static final int COLUMN_BLOCK = 256;
+    /**
+     * Products with fewer multiply-adds than this are not split across threads.
+     */
+    private static final long PARALLEL_WORK = 1L << 21;
+    private static final double EPSILON = 1e-14;
+
+    private final int rows;
+    private final int columns;
+    private final double[] real;
+    private final double[] imaginary;
+
+    /**
+     * Create a matrix of zeros.
+     * @param rows The number of rows
+     * @param columns The number of columns
+     */
+    public ComplexMatrix(int rows, int columns) {
+        if (rows < 1 || columns < 1 || (long) rows * columns > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Matrix size out of range: " + rows + "x" + columns);
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.real = new double[rows * columns];
+        this.imaginary = new double[rows * columns];
+    }
+
+    private ComplexMatrix(int rows, int columns, double[] real, double[] imaginary) {
+        this.rows = rows;
+        this.columns = columns;
+        this.real = real;
+        this.imaginary = imaginary;
+    }
+
+    /**
+     * Create an identity matrix.
+     * @param size The number of rows and columns
+     * @return The identity
+     */
+    public static ComplexMatrix identity(int size) {
+        ComplexMatrix identity = new ComplexMatrix(size, size);
+        for (int i = 0; i < size; i++) {
+            identity.real[i * size + i] = 1.0;
+        }
+        return identity;
+    }
+
+    /**
+     * Copy a matrix of {@link Complex} numbers (for example a gate from {@link com.core.Gates}).
+     * @param matrix The matrix, indexed as matrix[row][column]
+     * @return The matrix
+     */
+    public static ComplexMatrix of(Complex[][] matrix) {
+        ComplexMatrix result = new ComplexMatrix(matrix.length, matrix[0].length);
+        for (int r = 0; r < result.rows; r++) {
+            if (matrix[r].length != result.columns) {
+                throw new IllegalArgumentException("All rows must have " + result.columns + " columns: row " + r);
+            }
+            for (int c = 0; c < result.columns; c++) {
+                result.real[r * result.columns + c] = matrix[r][c].real();
+                result.imaginary[r * result.columns + c] = matrix[r][c].imaginary();
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Copy a matrix from row-major real and imaginary arrays.
+     * @param rows The number of rows
+     * @param columns The number of columns
+     * @param real The real parts
+     * @param imaginary The imaginary parts
+     * @return The matrix
+     */
+    public static ComplexMatrix of(int rows, int columns, double[] real, double[] imaginary) {
+        if (real.length != rows * columns || imaginary.length != rows * columns) {
+            throw new IllegalArgumentException("Arrays must have " + rows * columns + " elements");
+        }
+        return new ComplexMatrix(rows, columns, real.clone(), imaginary.clone());
+    }
+
+    /**
+     * Get the number of rows.
+     * @return The number of rows
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * Get the number of columns.
+     * @return The number of columns
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Get the real part of an element.
+     * @param row The row
+     * @param column The column
+     * @return The real part
+     */
+    public double getReal(int row, int column) {
+        return real[index(row, column)];
+    }
+
+    /**
+     * Get the imaginary part of an element.
+     * @param row The row
+     * @param column The column
+     * @return The imaginary part
+     */
+    public double getImaginary(int row, int column) {
+        return imaginary[index(row, column)];
+    }
+
+    /**
+     * Get an element.
+     * @param row The row
+     * @param column The column
+     * @return The element
+     */
+    public Complex get(int row, int column) {
+        int index = index(row, column);
+        return new Complex(real[index], imaginary[index]);
+    }
+
+    /**
+     * Set an element.
+     * @param row The row
+     * @param column The column
+     * @param re The real part
+     * @param im The imaginary part
+     */
+    public void set(int row, int column, double re, double im) {
+        int index = index(row, column);
+        real[index] = re;
+        imaginary[index] = im;
+    }
+
+    /**
+     * Copy the matrix into {@link Complex} objects (for the gate methods of the simulators).
+     * @return The matrix, indexed as matrix[row][column]
+     */
+    public Complex[][] toComplexArray() {
+        Complex[][] matrix = new Complex[rows][columns];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                matrix[r][c] = new Complex(real[r * columns + c], imaginary[r * columns + c]);
+            }
+        }
+        return matrix;
+    }
+
+    /**
+     * Multiply with another matrix, splitting big products across the common fork/join pool.
+     * @param other The right hand matrix
+     * @return this * other
+     */
+    public ComplexMatrix multiply(ComplexMatrix other) {
+        return multiply(other, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Multiply with another matrix.
+     * @param other The right hand matrix
+     * @param pool The pool for big products
+     * @return this * other
+     */
+    public ComplexMatrix multiply(ComplexMatrix other, ForkJoinPool pool) {
+        if (columns != other.rows) {
+            throw new IllegalArgumentException("Can not multiply " + rows + "x" + columns + " by " + other.rows + "x" + other.columns);
+        }
+        ComplexMatrix product = new ComplexMatrix(rows, other.columns);
+        int rowBlocks = (rows + ROW_BLOCK - 1) / ROW_BLOCK;
+        if ((long) rows * columns * other.columns < PARALLEL_WORK || rowBlocks == 1 || pool.getParallelism() == 1) {
+            multiplyRows(other, product, 0, rows);
+            return product;
+        }
+        List<Callable<Void>> tasks = new ArrayList<>(rowBlocks);
+        for (int block = 0; block < rowBlocks; block++) {
+            int from = block * ROW_BLOCK;
+            int to = Math.min(rows, from + ROW_BLOCK);
+            tasks.add(() -> {
+                multiplyRows(other, product, from, to);
+                return null;
+            });
+        }
+        for (Future<Void> future : pool.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while multiplying", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Matrix product failed: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return product;
+    }
+
+    /**
+     * Work out rows [rowFrom, rowTo) of the product, one tile of the right hand matrix at a time.
+     * The innermost loop runs along a row of the tile and of the product, which the JIT turns into vector instructions.
+     */
+    private void multiplyRows(ComplexMatrix other, ComplexMatrix product, int rowFrom, int rowTo) {
+        int width = other.columns;
+        double[] otherReal = other.real, otherImaginary = other.imaginary;
+        double[] productReal = product.real, productImaginary = product.imaginary;
+        for (int innerStart = 0; innerStart < columns; innerStart += INNER_BLOCK) {
+            int innerEnd = Math.min(columns, innerStart + INNER_BLOCK);
+            for (int columnStart = 0; columnStart < width; columnStart += COLUMN_BLOCK) {
+                int columnEnd = Math.min(width, columnStart + COLUMN_BLOCK);
+                for (int i = rowFrom; i < rowTo; i++) {
+                    int productRow = i * width;
+                    int k = innerStart;
+                    // two rows of the tile per pass, so each product element is loaded and stored half as often
+                    for (; k + 1 < innerEnd; k += 2) {
+                        double ar = real[i * columns + k];
+                        double ai = imaginary[i * columns + k];
+                        double cr = real[i * columns + k + 1];
+                        double ci = imaginary[i * columns + k + 1];
+                        int otherRow = k * width;
+                        int nextRow = otherRow + width;
+                        for (int j = columnStart; j < columnEnd; j++) {
+                            double br = otherReal[otherRow + j];
+                            double bi = otherImaginary[otherRow + j];
+                            double dr = otherReal[nextRow + j];
+                            double di = otherImaginary[nextRow + j];
+                            productReal[productRow + j] = productReal[productRow + j] + (ar * br - ai * bi) + (cr * dr - ci * di);
+                            productImaginary[productRow + j] = productImaginary[productRow + j] + (ar * bi + ai * br) + (cr * di + ci * dr);
+                        }
+                    }
+                    for (; k < innerEnd; k++) {
+                        double ar = real[i * columns + k];
+                        double ai = imaginary[i * columns + k];
+                        int otherRow = k * width;
+                        for (int j = columnStart; j < columnEnd; j++) {
+                            double br = otherReal[otherRow + j];
+                            double bi = otherImaginary[otherRow + j];
+                            productReal[productRow + j] += ar * br - ai * bi;
+                            productImaginary[productRow + j] += ar * bi + ai * br;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the Kronecker (tensor) product. Like for gates, the left matrix acts on the higher qubits.
+     * @param other The right hand matrix
+     * @return this (x) other
+     */
+    public ComplexMatrix kronecker(ComplexMatrix other) {
+        ComplexMatrix result = new ComplexMatrix(rows * other.rows, columns * other.columns);
+        int width = result.columns;
+        for (int i = 0; i < rows; i++) {
+            for (int j = 0; j < columns; j++) {
+                double ar = real[i * columns + j];
+                double ai = imaginary[i * columns + j];
+                if (ar == 0 && ai == 0) {
+                    continue;
+                }
+                for (int k = 0; k < other.rows; k++) {
+                    int resultRow = (i * other.rows + k) * width + j * other.columns;
+                    int otherRow = k * other.columns;
+                    for (int l = 0; l < other.columns; l++) {
+                        double br = other.real[otherRow + l];
+                        double bi = other.imaginary[otherRow + l];
+                        result.real[resultRow + l] = ar * br - ai * bi;
+                        result.imaginary[resultRow + l] = ar * bi + ai * br;
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the conjugate transpose (the adjoint, or dagger).
+     * @return The conjugate transpose
+     */
+    public ComplexMatrix conjugateTranspose() {
+        ComplexMatrix result = new ComplexMatrix(columns, rows);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                result.real[c * rows + r] = real[r * columns + c];
+                result.imaginary[c * rows + r] = -imaginary[r * columns + c];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Add another matrix of the same size.
+     * @param other The matrix to add
+     * @return this + other
+     */
+    public ComplexMatrix add(ComplexMatrix other) {
+        checkSameSize(other);
+        ComplexMatrix result = new ComplexMatrix(rows, columns);
+        for (int i = 0; i < real.length; i++) {
+            result.real[i] = real[i] + other.real[i];
+            result.imaginary[i] = imaginary[i] + other.imaginary[i];
+        }
+        return result;
+    }
+
+    /**
+     * Subtract another matrix of the same size.
+     * @param other The matrix to subtract
+     * @return this - other
+     */
+    public ComplexMatrix subtract(ComplexMatrix other) {
+        checkSameSize(other);
+        ComplexMatrix result = new ComplexMatrix(rows, columns);
+        for (int i = 0; i < real.length; i++) {
+            result.real[i] = real[i] - other.real[i];
+            result.imaginary[i] = imaginary[i] - other.imaginary[i];
+        }
+        return result;
+    }
+
+    /**
+     * Multiply every element by a complex number.
+     * @param re The real part of the factor
+     * @param im The imaginary part of the factor
+     * @return The scaled matrix
+     */
+    public ComplexMatrix scale(double re, double im) {
+        ComplexMatrix result = new ComplexMatrix(rows, columns);
+        for (int i = 0; i < real.length; i++) {
+            result.real[i] = re * real[i] - im * imaginary[i];
+            result.imaginary[i] = re * imaginary[i] + im * real[i];
+        }
+        return result;
+    }
+
+    /**
+     * Get the inner product sum(conj(this[i][j]) * other[i][j]). For column vectors this is the usual {@code <this|other>}.
+     * @param other A matrix of the same size
+     * @return The inner product
+     */
+    public Complex innerProduct(ComplexMatrix other) {
+        checkSameSize(other);
+        double sumReal = 0;
+        double sumImaginary = 0;
+        for (int i = 0; i < real.length; i++) {
+            sumReal += real[i] * other.real[i] + imaginary[i] * other.imaginary[i];
+            sumImaginary += real[i] * other.imaginary[i] - imaginary[i] * other.real[i];
+        }
+        return new Complex(sumReal, sumImaginary);
+    }
+
+    /**
+     * Get the Frobenius norm (the 2-norm for vectors).
+     * @return sqrt(sum |a_ij|^2)
+     */
+    public double norm() {
+        double sum = 0;
+        for (int i = 0; i < real.length; i++) {
+            sum += real[i] * real[i] + imaginary[i] * imaginary[i];
+        }
+        return Math.sqrt(sum);
+    }
+
+    /**
+     * Get the trace.
+     * @return The sum of the diagonal
+     */
+    public Complex trace() {
+        checkSquare();
+        double sumReal = 0;
+        double sumImaginary = 0;
+        for (int i = 0; i < rows; i++) {
+            sumReal += real[i * columns + i];
+            sumImaginary += imaginary[i * columns + i];
+        }
+        return new Complex(sumReal, sumImaginary);
+    }
+
+    /**
+     * Check if the matrix is unitary, U^dagger U = I.
+     * @param tolerance The largest allowed difference of any element of U^dagger U from the identity
+     * @return True if the matrix is unitary
+     */
+    public boolean isUnitary(double tolerance) {
+        if (rows != columns) {
+            return false;
+        }
+        ComplexMatrix product = conjugateTranspose().multiply(this);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                double expected = r == c ? 1.0 : 0.0;
+                if (Math.hypot(product.real[r * columns + c] - expected, product.imaginary[r * columns + c]) > tolerance) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the inverse, with Gauss-Jordan elimination and partial pivoting.
+     * @return The inverse
+     * @throws IllegalArgumentException If the matrix is not square or is singular
+     */
+    public ComplexMatrix inverse() {
+        checkSquare();
+        int n = rows;
+        double[] aReal = real.clone();
+        double[] aImaginary = imaginary.clone();
+        ComplexMatrix inverse = identity(n);
+        double[] bReal = inverse.real;
+        double[] bImaginary = inverse.imaginary;
+        double scaleOfMatrix = Math.max(norm(), Double.MIN_NORMAL);
+
+        for (int column = 0; column < n; column++) {
+            int pivot = column;
+            double best = 0;
+            for (int r = column; r < n; r++) {
+                double magnitude = Math.hypot(aReal[r * n + column], aImaginary[r * n + column]);
+                if (magnitude > best) {
+                    best = magnitude;
+                    pivot = r;
+                }
+            }
+            if (best <= EPSILON * scaleOfMatrix) {
+                throw new IllegalArgumentException("Matrix is singular");
+            }
+            if (pivot != column) {
+                swapRows(aReal, aImaginary, n, pivot, column);
+                swapRows(bReal, bImaginary, n, pivot, column);
+            }
+
+            // divide the pivot row by the pivot
+            double pr = aReal[column * n + column];
+            double pi = aImaginary[column * n + column];
+            double denominator = pr * pr + pi * pi;
+            double inverseReal = pr / denominator;
+            double inverseImaginary = -pi / denominator;
+            scaleRow(aReal, aImaginary, n, column, inverseReal, inverseImaginary);
+            scaleRow(bReal, bImaginary, n, column, inverseReal, inverseImaginary);
+
+            for (int r = 0; r < n; r++) {
+                double fr = aReal[r * n + column];
+                double fi = aImaginary[r * n + column];
+                if (r == column || (fr == 0 && fi == 0)) {
+                    continue;
+                }
+                subtractRow(aReal, aImaginary, n, r, column, fr, fi);
+                subtractRow(bReal, bImaginary, n, r, column, fr, fi);
+            }
+        }
+        return inverse;
+    }
+
+    /**
+     * Get the singular value decomposition.
+     * @return The decomposition, this = U diag(s) V^dagger
+     */
+    public ComplexSvd svd() {
+        return ComplexSvd.decompose(rows, columns, real, imaginary);
+    }
+
+    /**
+     * Get the eigenvalues and eigenvectors of a Hermitian matrix.
+     * @return The decomposition
+     * @throws IllegalArgumentException If the matrix is not Hermitian
+     */
+    public HermitianEigen eigenHermitian() {
+        return HermitianEigen.decompose(this);
+    }
+
+    /**
+     * Get the live real parts for other classes of this package.
+     */
+    double[] realParts() {
+        return real;
+    }
+
+    /**
+     * Get the live imaginary parts for other classes of this package.
+     */
+    double[] imaginaryParts() {
+        return imaginary;
+    }
+
+    @Override
+    public String toString() {
+        return "ComplexMatrix{" + "rows=" + rows + ", columns=" + columns + '}';
+    }
+
+    private int index(int row, int column) {
+        if (row < 0 || row >= rows || column < 0 || column >= columns) {
+            throw new IllegalArgumentException("Element out of bounds: (" + row + ", " + column + ")");
+        }
+        return row * columns + column;
+    }
+
+    private void checkSameSize(ComplexMatrix other) {
+        if (rows != other.rows || columns != other.columns) {
+            throw new IllegalArgumentException("Size mismatch: " + rows + "x" + columns + " and " + other.rows + "x" + other.columns);
+        }
+    }
+
+    private void checkSquare() {
+        if (rows != columns) {
+            throw new IllegalArgumentException("Matrix must be square: " + rows + "x" + columns);
+        }
+    }
+
+    private static void swapRows(double[] re, double[] im, int n, int a, int b) {
+        for (int c = 0; c < n; c++) {
+            double t = re[a * n + c];
+            re[a * n + c] = re[b * n + c];
+            re[b * n + c] = t;
+            t = im[a * n + c];
+            im[a * n + c] = im[b * n + c];
+            im[b * n + c] = t;
+        }
+    }
+
+    private static void scaleRow(double[] re, double[] im, int n, int row, double sr, double si) {
+        for (int c = row * n; c < (row + 1) * n; c++) {
+            double xr = re[c];
+            double xi = im[c];
+            re[c] = xr * sr - xi * si;
+            im[c] = xr * si + xi * sr;
+        }
+    }
+
+    /**
+     * row[target] -= factor * row[source]
+     */
+    private static void subtractRow(double[] re, double[] im, int n, int target, int source, double fr, double fi) {
+        for (int c = 0; c < n; c++) {
+            double xr = re[source * n + c];
+            double xi = im[source * n + c];
+            re[target * n + c] -= fr * xr - fi * xi;
+            im[target * n + c] -= fr * xi + fi * xr;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.core.linalg;
+
+import java.util.Arrays;
+
+
+/**
+ * Singular value decomposition of a small complex matrix, A = U diag(s) V^dagger.
+ * <p>
+ * It uses one-sided Jacobi (Hestenes) rotations: pairs of columns are rotated until every pair is orthogonal,
+ * and then the column lengths are the singular values. This is simple, accurate for the small matrices the
+ * {@link com.core.MatrixProductStateComputer} produces, and only needs primitive arrays.
+ * <p>
+ * Matrices are stored row-major in separate real and imaginary arrays, element (r, c) at {@code r * columns + c}.
+ */
+public final class ComplexSvd {
+    private static final int MAX_SWEEPS = 60;
+    private static final double EPSILON = 1e-15;
+
+    private final int rank;
+    private final double[] singularValues;
+    private final double[] uReal;
+    private final double[] uImaginary;
+    private final double[] vReal;
+    private final double[] vImaginary;
+
+    private ComplexSvd(int rank, double[] singularValues, double[] uReal, double[] uImaginary, double[] vReal, double[] vImaginary) {
+        this.rank = rank;
+        this.singularValues = singularValues;
+        this.uReal = uReal;
+        this.uImaginary = uImaginary;
+        this.vReal = vReal;
+        this.vImaginary = vImaginary;
+    }
+
+    /**
+     * Decompose a matrix.
+     * @param rows The number of rows
+     * @param columns The number of columns
+     * @param real The real parts, row-major
+     * @param imaginary The imaginary parts, row-major
+     * @return The decomposition
+     */
+    public static ComplexSvd decompose(int rows, int columns, double[] real, double[] imaginary) {
+        if (rows < columns) {
+            // A^dagger = V s U^dagger, and Jacobi works best with at least as many rows as columns
+            double[] transposedReal = new double[real.length];
+            double[] transposedImaginary = new double[imaginary.length];
+            for (int r = 0; r < rows; r++) {
+                for (int c = 0; c < columns; c++) {
+                    transposedReal[c * rows + r] = real[r * columns + c];
+                    transposedImaginary[c * rows + r] = -imaginary[r * columns + c];
+                }
+            }
+            ComplexSvd transposed = decompose(columns, rows, transposedReal, transposedImaginary);
+            return new ComplexSvd(transposed.rank, transposed.singularValues,
+                    transposed.vReal, transposed.vImaginary, transposed.uReal, transposed.uImaginary);
+        }
+
+        // work on columns (stored column by column so the rotations read memory in order)
+        double[][] aReal = new double[columns][rows];
+        double[][] aImaginary = new double[columns][rows];
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                aReal[c][r] = real[r * columns + c];
+                aImaginary[c][r] = imaginary[r * columns + c];
+            }
+        }
+        double[][] wReal = new double[columns][columns];
+        double[][] wImaginary = new double[columns][columns];
+        for (int c = 0; c < columns; c++) {
+            wReal[c][c] = 1.0;
+        }
+
+        for (int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+            boolean rotated = false;
+            for (int p = 0; p < columns - 1; p++) {
+                for (int q = p + 1; q < columns; q++) {
+                    rotated |= orthogonalize(aReal[p], aImaginary[p], aReal[q], aImaginary[q], wReal[p], wImaginary[p], wReal[q], wImaginary[q]);
+                }
+            }
+            if (!rotated) {
+                break;
+            }
+        }
+
+        double[] norms = new double[columns];
+        Integer[] order = new Integer[columns];
+        for (int c = 0; c < columns; c++) {
+            double sum = 0;
+            for (int r = 0; r < rows; r++) {
+                sum += aReal[c][r] * aReal[c][r] + aImaginary[c][r] * aImaginary[c][r];
+            }
+            norms[c] = Math.sqrt(sum);
+            order[c] = c;
+        }
+        Arrays.sort(order, (x, y) -> Double.compare(norms[y], norms[x]));
+
+        int rank = columns;
+        double[] singularValues = new double[rank];
+        double[] uReal = new double[rows * rank];
+        double[] uImaginary = new double[rows * rank];
+        double[] vReal = new double[columns * rank];
+        double[] vImaginary = new double[columns * rank];
+        for (int k = 0; k < rank; k++) {
+            int c = order[k];
+            double sigma = norms[c];
+            singularValues[k] = sigma;
+            double inverse = sigma > 0 ? 1.0 / sigma : 0.0;
+            for (int r = 0; r < rows; r++) {
+                uReal[r * rank + k] = aReal[c][r] * inverse;
+                uImaginary[r * rank + k] = aImaginary[c][r] * inverse;
+            }
+            for (int r = 0; r < columns; r++) {
+                vReal[r * rank + k] = wReal[c][r];
+                vImaginary[r * rank + k] = wImaginary[c][r];
+            }
+        }
+        return new ComplexSvd(rank, singularValues, uReal, uImaginary, vReal, vImaginary);
+    }
+
+    /**
+     * Get the number of singular values, min(rows, columns).
+     * @return The rank of the decomposition (including zero singular values)
+     */
+    public int getRank() {
+        return rank;
+    }
+
+    /**
+     * Get the singular values. The arrays returned by this class are not copied.
+     * @return The singular values, largest first
+     */
+    public double[] getSingularValues() {
+        return singularValues;
+    }
+
+    /**
+     * Get the real parts of U.
+     * @return U, rows x rank, row-major
+     */
+    public double[] getUReal() {
+        return uReal;
+    }
+
+    /**
+     * Get the imaginary parts of U.
+     * @return U, rows x rank, row-major
+     */
+    public double[] getUImaginary() {
+        return uImaginary;
+    }
+
+    /**
+     * Get the real parts of V (so A = U diag(s) V^dagger).
+     * @return V, columns x rank, row-major
+     */
+    public double[] getVReal() {
+        return vReal;
+    }
+
+    /**
+     * Get the imaginary parts of V (so A = U diag(s) V^dagger).
+     * @return V, columns x rank, row-major
+     */
+    public double[] getVImaginary() {
+        return vImaginary;
+    }
+
+    /**
+     * Rotate columns p and q (and the same columns of V) so they are orthogonal.
+     * The phase of their inner product is moved onto column q first, which leaves a real Jacobi rotation.
+     * @return True if a rotation was needed
+     */
+    private static boolean orthogonalize(double[] pReal, double[] pImaginary, double[] qReal, double[] qImaginary,
+                                         double[] vpReal, double[] vpImaginary, double[] vqReal, double[] vqImaginary) {
+        double alpha = 0;
+        double beta = 0;
+        double gammaReal = 0;
+        double gammaImaginary = 0;
+        for (int r = 0; r < pReal.length; r++) {
+            alpha += pReal[r] * pReal[r] + pImaginary[r] * pImaginary[r];
+            beta += qReal[r] * qReal[r] + qImaginary[r] * qImaginary[r];
+            // conj(p) * q
+            gammaReal += pReal[r] * qReal[r] + pImaginary[r] * qImaginary[r];
+            gammaImaginary += pReal[r] * qImaginary[r] - pImaginary[r] * qReal[r];
+        }
+        double gamma = Math.hypot(gammaReal, gammaImaginary);
+        if (gamma <= EPSILON * Math.sqrt(alpha * beta) || gamma == 0) {
+            return false;
+        }
+
+        double zeta = (beta - alpha) / (2 * gamma);
+        double t = Math.signum(zeta) / (Math.abs(zeta) + Math.sqrt(1 + zeta * zeta));
+        if (zeta == 0) {
+            t = 1;
+        }
+        double c = 1 / Math.sqrt(1 + t * t);
+        double s = c * t;
+        // e^{-i phi} where phi is the phase of gamma
+        double phaseReal = gammaReal / gamma;
+        double phaseImaginary = -gammaImaginary / gamma;
+
+        rotate(pReal, pImaginary, qReal, qImaginary, c, s, phaseReal, phaseImaginary);
+        rotate(vpReal, vpImaginary, vqReal, vqImaginary, c, s, phaseReal, phaseImaginary);
+        return true;
+    }
+
+    /**
+     * p' = c p - s e^{-i phi} q, q' = s p + c e^{-i phi} q.
+     */
+    private static void rotate(double[] pReal, double[] pImaginary, double[] qReal, double[] qImaginary,
+                               double c, double s, double phaseReal, double phaseImaginary) {
+        for (int r = 0; r < pReal.length; r++) {
+            double shiftedReal = phaseReal * qReal[r] - phaseImaginary * qImaginary[r];
+            double shiftedImaginary = phaseReal * qImaginary[r] + phaseImaginary * qReal[r];
+            double oldReal = pReal[r];
+            double oldImaginary = pImaginary[r];
+            pReal[r] = c * oldReal - s * shiftedReal;
+            pImaginary[r] = c * oldImaginary - s * shiftedImaginary;
+            qReal[r] = s * oldReal + c * shiftedReal;
+            qImaginary[r] = s * oldImaginary + c * shiftedImaginary;
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.core.linalg;
+
+import java.util.Arrays;
+
+
+/**
+ * Eigenvalues and eigenvectors of a small Hermitian matrix (an observable or a Hamiltonian), H = V diag(lambda) V^dagger.
+ * <p>
+ * It uses cyclic Jacobi rotations. For each off diagonal element the phase is first moved onto a column (a diagonal
+ * unitary), which leaves a real element that a real Jacobi rotation zeroes. The rotations are collected in V.
+ * The eigenvalues of a Hermitian matrix are real, so they are returned as doubles.
+ */
+public final class HermitianEigen {
+    private static final int MAX_SWEEPS = 100;
+    private static final double EPSILON = 1e-15;
+
+    private final double[] eigenvalues;
+    private final ComplexMatrix eigenvectors;
+
+    private HermitianEigen(double[] eigenvalues, ComplexMatrix eigenvectors) {
+        this.eigenvalues = eigenvalues;
+        this.eigenvectors = eigenvectors;
+    }
+
+    /**
+     * Decompose a Hermitian matrix.
+     * @param matrix The matrix
+     * @return The decomposition
+     * @throws IllegalArgumentException If the matrix is not square or not Hermitian
+     */
+    public static HermitianEigen decompose(ComplexMatrix matrix) {
+        int n = matrix.getRows();
+        if (n != matrix.getColumns()) {
+            throw new IllegalArgumentException("Matrix must be square: " + n + "x" + matrix.getColumns());
+        }
+        double[] aReal = matrix.realParts().clone();
+        double[] aImaginary = matrix.imaginaryParts().clone();
+        double tolerance = 1e-10 * Math.max(1.0, matrix.norm());
+        for (int r = 0; r < n; r++) {
+            for (int c = r; c < n; c++) {
+                if (Math.hypot(aReal[r * n + c] - aReal[c * n + r], aImaginary[r * n + c] + aImaginary[c * n + r]) > tolerance) {
+                    throw new IllegalArgumentException("Matrix is not Hermitian at (" + r + ", " + c + ")");
+                }
+            }
+        }
+        double[] vReal = new double[n * n];
+        double[] vImaginary = new double[n * n];
+        for (int i = 0; i < n; i++) {
+            vReal[i * n + i] = 1.0;
+        }
+
+        double scale = Math.max(matrix.norm(), Double.MIN_NORMAL);
+        for (int sweep = 0; sweep < MAX_SWEEPS; sweep++) {
+            boolean rotated = false;
+            for (int p = 0; p < n - 1; p++) {
+                for (int q = p + 1; q < n; q++) {
+                    rotated |= rotate(aReal, aImaginary, vReal, vImaginary, n, p, q, scale);
+                }
+            }
+            if (!rotated) {
+                break;
+            }
+        }
+
+        // sort ascending and reorder the eigenvector columns to match
+        Integer[] order = new Integer[n];
+        double[] diagonal = new double[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+            diagonal[i] = aReal[i * n + i];
+        }
+        Arrays.sort(order, (x, y) -> Double.compare(diagonal[x], diagonal[y]));
+        double[] eigenvalues = new double[n];
+        ComplexMatrix eigenvectors = new ComplexMatrix(n, n);
+        for (int k = 0; k < n; k++) {
+            int column = order[k];
+            eigenvalues[k] = diagonal[column];
+            for (int r = 0; r < n; r++) {
+                eigenvectors.set(r, k, vReal[r * n + column], vImaginary[r * n + column]);
+            }
+        }
+        return new HermitianEigen(eigenvalues, eigenvectors);
+    }
+
+    /**
+     * Get the eigenvalues.
+     * @return The eigenvalues, smallest first (not copied)
+     */
+    public double[] getEigenvalues() {
+        return eigenvalues;
+    }
+
+    /**
+     * Get the eigenvectors.
+     * @return A unitary matrix whose column k is the eigenvector of eigenvalue k
+     */
+    public ComplexMatrix getEigenvectors() {
+        return eigenvectors;
+    }
+
+    /**
+     * Zero element (p, q) (and (q, p)) with one phase change and one real rotation.
+     * @return True if a rotation was needed
+     */
+    private static boolean rotate(double[] aReal, double[] aImaginary, double[] vReal, double[] vImaginary, int n, int p, int q, double scale) {
+        double offReal = aReal[p * n + q];
+        double offImaginary = aImaginary[p * n + q];
+        double off = Math.hypot(offReal, offImaginary);
+        if (off <= EPSILON * scale) {
+            return false;
+        }
+
+        // D = diag(1, .., e^{-i phi} at q, ..) makes element (p, q) of D^dagger A D real and positive
+        double phaseReal = offReal / off;
+        double phaseImaginary = -offImaginary / off;
+        for (int k = 0; k < n; k++) {
+            // column q times e^{-i phi}
+            multiply(aReal, aImaginary, k * n + q, phaseReal, phaseImaginary);
+            multiply(vReal, vImaginary, k * n + q, phaseReal, phaseImaginary);
+        }
+        for (int k = 0; k < n; k++) {
+            // row q times e^{i phi}
+            multiply(aReal, aImaginary, q * n + k, phaseReal, -phaseImaginary);
+        }
+
+        // the real Jacobi rotation for a symmetric 2x2 block with off diagonal element off
+        double theta = (aReal[q * n + q] - aReal[p * n + p]) / (2 * off);
+        double t = Math.signum(theta) / (Math.abs(theta) + Math.sqrt(theta * theta + 1));
+        if (theta == 0) {
+            t = 1;
+        }
+        double c = 1 / Math.sqrt(t * t + 1);
+        double s = t * c;
+        for (int k = 0; k < n; k++) {
+            rotatePair(aReal, aImaginary, k * n + p, k * n + q, c, s);
+            rotatePair(vReal, vImaginary, k * n + p, k * n + q, c, s);
+        }
+        for (int k = 0; k < n; k++) {
+            rotatePair(aReal, aImaginary, p * n + k, q * n + k, c, s);
+        }
+        aReal[p * n + q] = 0;
+        aImaginary[p * n + q] = 0;
+        aReal[q * n + p] = 0;
+        aImaginary[q * n + p] = 0;
+        aImaginary[p * n + p] = 0;
+        aImaginary[q * n + q] = 0;
+        return true;
+    }
+
+    private static void multiply(double[] re, double[] im, int index, double sr, double si) {
+        double xr = re[index];
+        double xi = im[index];
+        re[index] = xr * sr - xi * si;
+        im[index] = xr * si + xi * sr;
+    }
+
+    /**
+     * x' = c x - s y, y' = s x + c y.
+     */
+    private static void rotatePair(double[] re, double[] im, int x, int y, double c, double s) {
+        double xr = re[x];
+        double xi = im[x];
+        double yr = re[y];
+        double yi = im[y];
+        re[x] = c * xr - s * yr;
+        im[x] = c * xi - s * yi;
+        re[y] = s * xr + c * yr;
+        im[y] = s * xi + c * yi;
+    }
+}
@@ -1,22 +1,156 @@
 package com.simulation;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.core.CompiledCircuit;
+import com.core.Complex;
+import com.core.QuantumBackend;
 import com.core.QuantumComputer;
+import com.simulation.CircuitOperation.Kind;
 
 /**
  * Helper class for building quantum circuits with a (hopefully) good interface.
+ * <p>
+ * By default every gate is applied straight away. In deferred mode ({@link #setDeferred(boolean)}) the gates are only
+ * recorded, and {@link #execute()} fuses them (see {@link GateFusion}) before applying them, which means fewer passes
+ * over the state vector for deep circuits.
+ * <p>
+ * The builder works with any {@link QuantumBackend}. Fusion only pays off for the dense {@link QuantumComputer}, so for other
+ * backends (sparse, stabilizer, ...) deferred gates are applied one by one, in order.
  */
 public class CircuitBuilder {
-    private final QuantumComputer quantumComputer;
+    private final QuantumBackend backend;
     private StringBuilder circuitLog;
+    private final List<CircuitOperation> pendingOperations;
+    private boolean deferred;
+    private int maxFusedQubits = GateFusion.DEFAULT_MAX_BLOCK_QUBITS;
 
     /**
      * Create a circuit builder for a quantum computer.
-     * @param quantumComputer The quantum computer to build the circuit for
+     * @param backend The quantum computer to build the circuit for
      */
-    public CircuitBuilder(QuantumComputer quantumComputer) {
-        this.quantumComputer = quantumComputer;
+    public CircuitBuilder(QuantumBackend backend) {
+        this.backend = backend;
         this.circuitLog = new StringBuilder();
-        this.circuitLog.append("Circuit for ").append(quantumComputer.getName()).append(":\n");
+        this.circuitLog.append("Circuit for ").append(backend.getName()).append(":\n");
+        this.pendingOperations = new ArrayList<>();
+    }
+
+    /**
+     * Turn deferred mode on or off. Turning it off executes anything that is still pending.
+     * @param deferred True to record gates and only apply them on {@link #execute()}
+     * @return This builder (to allow for chaining commands)
+     */
+    public CircuitBuilder setDeferred(boolean deferred) {
+        if (!deferred) {
+            execute();
+        }
+        this.deferred = deferred;
+        return this;
+    }
+
+    /**
+     * Check if this builder records gates instead of applying them.
+     * @return True in deferred mode
+     */
+    public boolean isDeferred() {
+        return deferred;
+    }
+
+    /**
+     * Set the largest dense block the fusion pass may build in deferred mode.
+     * @param maxFusedQubits The number of qubits (1 only merges single qubit gates)
+     * @return This builder (to allow for chaining commands)
+     */
+    public CircuitBuilder setMaxFusedQubits(int maxFusedQubits) {
+        if (maxFusedQubits < 1) {
+            throw new IllegalArgumentException("Fused blocks need at least one qubit: " + maxFusedQubits);
+        }
+        this.maxFusedQubits = maxFusedQubits;
+        return this;
+    }
+
+    /**
+     * Fuse and apply all recorded gates. Does nothing if there are none (or the builder is not deferred).
+     * @return This builder (to allow for chaining commands)
+     */
+    public CircuitBuilder execute() {
+        if (pendingOperations.isEmpty()) {
+            return this;
+        }
+        List<CircuitOperation> operations = backend instanceof QuantumComputer
+                ? GateFusion.fuse(pendingOperations, maxFusedQubits)
+                : pendingOperations;
+        for (CircuitOperation operation : operations) {
+            operation.applyTo(backend);
+        }
+        pendingOperations.clear();
+        return this;
+    }
+
+    /**
+     * Compile the gates recorded in deferred mode into a {@link CompiledCircuit} instead of applying them.
+     * <p>
+     * The gates are fused first, like in {@link #execute()}, and then checked and prepared once, so the result can be run
+     * on many quantum computers with almost no setup. The recorded gates are handed over to the compiled circuit, so they
+     * are no longer pending afterwards.
+     * @return The compiled circuit
+     * @throws IllegalStateException If the builder is not in deferred mode (its gates were already applied)
+     */
+    public CompiledCircuit compile() {
+        if (!deferred) {
+            throw new IllegalStateException("Only gates recorded in deferred mode can be compiled");
+        }
+        CompiledCircuit compiled = compile(backend.getNumQubits(), pendingOperations, maxFusedQubits);
+        pendingOperations.clear();
+        return compiled;
+    }
+
+    /**
+     * Fuse and compile a list of gates.
+     * @param numQubits The number of qubits the circuit runs on
+     * @param operations The gates, in order
+     * @param maxFusedQubits The largest dense block the fusion pass may build
+     * @return The compiled circuit
+     */
+    public static CompiledCircuit compile(int numQubits, List<CircuitOperation> operations, int maxFusedQubits) {
+        CompiledCircuit.Builder builder = CompiledCircuit.builder(numQubits);
+        for (CircuitOperation operation : GateFusion.fuse(operations, maxFusedQubits)) {
+            switch (operation.getKind()) {
+                case CNOT -> builder.cnot(operation.getQubit(0), operation.getQubit(1));
+                case BLOCK -> builder.gate(operation.getQubits(), operation.getMatrix());
+                default -> builder.gate(operation.getQubit(0), operation.getMatrix());
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Get the gates recorded in deferred mode that have not been executed yet.
+     * @return The pending gates, in order
+     */
+    public List<CircuitOperation> getPendingOperations() {
+        return Collections.unmodifiableList(pendingOperations);
+    }
+
+    /**
+     * Apply a gate now, or record it in deferred mode.
+     * @param operation The gate
+     */
+    private void record(CircuitOperation operation) {
+        for (int i = 0; i < operation.getQubitCount(); i++) {
+            int qubit = operation.getQubit(i);
+            if (qubit < 0 || qubit >= backend.getNumQubits()) {
+                throw new IllegalArgumentException("Qubit index out of bounds: " + qubit);
+            }
+        }
+        if (deferred) {
+            pendingOperations.add(operation);
+        } else {
+            operation.applyTo(backend);
+        }
     }
 
     /**
@@ -25,7 +159,7 @@ public class CircuitBuilder {
      * @return This builder (to allow for chaining commands)
      */
     public CircuitBuilder hadamard(int qubitIndex) {
-        this.quantumComputer.applyHadamard(qubitIndex);
+        record(CircuitOperation.gate(Kind.HADAMARD, qubitIndex));
         circuitLog.append(" H(q").append(qubitIndex).append(")\n");
         return this;
     }    
@@ -36,7 +170,7 @@ public class CircuitBuilder {
      * @return This builder (to allow for chaining commands)
      */
     public CircuitBuilder pauliX(int qubitIndex) {
-        this.quantumComputer.applyPauliX(qubitIndex);
+        record(CircuitOperation.gate(Kind.PAULI_X, qubitIndex));
         circuitLog.append(" X(q").append(qubitIndex).append(")\n");
         return this;
     }
@@ -47,18 +181,122 @@ public class CircuitBuilder {
      * @return This builder (to allow for chaining commands)
      */
     public CircuitBuilder pauliZ(int qubitIndex) {
-        this.quantumComputer.applyPauliZ(qubitIndex);
+        record(CircuitOperation.gate(Kind.PAULI_Z, qubitIndex));
         circuitLog.append(" Z(q").append(qubitIndex).append(")\n");
         return this;
     }
 
+    /**
+     * Apply Pauli-Y gate.
+     * @param qubitIndex The index for the qubit to apply the gate on
+     * @return This builder (to allow for chaining commands)
+     */
+    public CircuitBuilder pauliY(int qubitIndex) {
+        record(CircuitOperation.gate(Kind.PAULI_Y, qubitIndex));
+        circuitLog.append(" Y(q").append(qubitIndex).append(")\n");
+        return this;
+    }
+
+    /**
+     * Apply S gate.
+     * @param qubitIndex The index for the qubit to apply the gate on
+     * @return This builder (to allow for chaining commands)
+     */
+    public CircuitBuilder s(int qubitIndex) {
+        record(CircuitOperation.gate(Kind.S, qubitIndex));
+        circuitLog.append(" S(q").append(qubitIndex).append(")\n");
+        return this;
+    }
+
+    /**
+     * Apply T gate.
+     * @param qubitIndex The index for the qubit to apply the gate on
+     * @return This builder (to allow for chaining commands)
+     */
+    public CircuitBuilder t(int qubitIndex) {
+        record(CircuitOperation.gate(Kind.T, qubitIndex));
+        circuitLog.append(" T(q").append(qubitIndex).append(")\n");
+        return this;
+    }
+
+    /**
+     * Apply square root of X gate.
+     * @param qubitIndex The index for the qubit to apply the gate on
+     * @return This builder (to allow for chaining commands)
+     */
+    public CircuitBuilder sx(int qubitIndex) {
+        record(CircuitOperation.gate(Kind.SX, qubitIndex));
+        circuitLog.append(" SX(q").append(qubitIndex).append(")\n");
+        return this;
+    }
+
+    /**
+     * Apply phase gate.
+     * @param qubitIndex The index for the qubit to apply the gate on
+     * @param theta The phase angle in radians
+     * @return This builder (to allow for chaining commands)
+     */
+    public CircuitBuilder phase(int qubitIndex, double theta) {
+        record(CircuitOperation.rotation(Kind.PHASE, qubitIndex, theta));
+        circuitLog.append(" P(q").append(qubitIndex).append(", ").append(theta).append(")\n");
+        return this;
+    }
+
+    /**
+     * Apply X rotation.
+     * @param qubitIndex The index for the qubit to apply the gate on
+     * @param theta The rotation angle in radians
+     * @return This builder (to allow for chaining commands)
+     */
+    public CircuitBuilder rx(int qubitIndex, double theta) {
+        record(CircuitOperation.rotation(Kind.RX, qubitIndex, theta));
+        circuitLog.append(" RX(q").append(qubitIndex).append(", ").append(theta).append(")\n");
+        return this;
+    }
+
+    /**
+     * Apply Y rotation.
+     * @param qubitIndex The index for the qubit to apply the gate on
+     * @param theta The rotation angle in radians
+     * @return This builder (to allow for chaining commands)
+     */
+    public CircuitBuilder ry(int qubitIndex, double theta) {
+        record(CircuitOperation.rotation(Kind.RY, qubitIndex, theta));
+        circuitLog.append(" RY(q").append(qubitIndex).append(", ").append(theta).append(")\n");
+        return this;
+    }
+
+    /**
+     * Apply Z rotation.
+     * @param qubitIndex The index for the qubit to apply the gate on
+     * @param theta The rotation angle in radians
+     * @return This builder (to allow for chaining commands)
+     */
+    public CircuitBuilder rz(int qubitIndex, double theta) {
+        record(CircuitOperation.rotation(Kind.RZ, qubitIndex, theta));
+        circuitLog.append(" RZ(q").append(qubitIndex).append(", ").append(theta).append(")\n");
+        return this;
+    }
+
+    /**
+     * Apply any single qubit gate.
+     * @param qubitIndex The index for the qubit to apply the gate on
+     * @param matrix The 2x2 gate matrix
+     * @return This builder (to allow for chaining commands)
+     */
+    public CircuitBuilder gate(int qubitIndex, Complex[][] matrix) {
+        record(CircuitOperation.unitary(qubitIndex, matrix));
+        circuitLog.append(" U(q").append(qubitIndex).append(")\n");
+        return this;
+    }
+
     /**
      * Apply CNOT gate.
      * @param qubitIndex The index for the qubit to apply the gate on
      * @return This builder (to allow for chaining commands)
      */
     public CircuitBuilder cnot(int control, int target) {
-        this.quantumComputer.applyCNOT(control, target);
+        record(CircuitOperation.cnot(control, target));
         circuitLog.append("  CNOT(q").append(control).append(", q").append(target).append(")\n");
         return this;
     }
@@ -69,11 +307,34 @@ public class CircuitBuilder {
      * @return The measurement of the qubit (0 or 1)
      */
     public int measure(int qubitIndex) {
-        int result = this.quantumComputer.measure(qubitIndex);
+        execute();
+        int result = this.backend.measure(qubitIndex);
         circuitLog.append("  Measure(q").append(qubitIndex).append(") = ").append(result).append("\n");
         return result;
     }
 
+    /**
+     * Measure several qubits (with a single pass over the state on a {@link QuantumComputer}, otherwise one at a time)
+     * @param qubits The indices of the qubits to measure
+     * @return The measurements, results[j] is the value of qubits[j]
+     */
+    public int[] measureRegister(int... qubits) {
+        execute();
+        int[] results;
+        if (backend instanceof QuantumComputer quantumComputer) {
+            results = quantumComputer.measureRegister(qubits);
+        } else {
+            results = new int[qubits.length];
+            for (int j = 0; j < qubits.length; j++) {
+                results[j] = backend.measure(qubits[j]);
+            }
+        }
+        for (int j = 0; j < qubits.length; j++) {
+            circuitLog.append("  Measure(q").append(qubits[j]).append(") = ").append(results[j]).append("\n");
+        }
+        return results;
+    }
+
     /**
      * Creates a bell entangled pair of qubits
      * @param qubit1 First qubit
@@ -93,7 +354,7 @@ public class CircuitBuilder {
      */
     public void resetLog(){
         circuitLog = new StringBuilder();
-        this.circuitLog.append("Circuit for ").append(quantumComputer.getName()).append(":\n");
+        this.circuitLog.append("Circuit for ").append(backend.getName()).append(":\n");
     }
 
     /**
@@ -111,8 +372,24 @@ public class CircuitBuilder {
         System.out.println(circuitLog.toString());
     }
 
+    /**
+     * Get the quantum computer. In deferred mode call {@link #execute()} first if the state should include the pending gates.
+     * @return The quantum computer this builder works on
+     * @throws IllegalStateException If the builder works on a different kind of backend (use {@link #getBackend()})
+     */
     public QuantumComputer getQuantumComputer() {
-        return this.quantumComputer;
+        if (!(backend instanceof QuantumComputer quantumComputer)) {
+            throw new IllegalStateException("This circuit runs on a " + backend.getClass().getSimpleName() + ", not a QuantumComputer");
+        }
+        return quantumComputer;
+    }
+
+    /**
+     * Get the backend this builder works on. In deferred mode call {@link #execute()} first if the state should include the pending gates.
+     * @return The backend
+     */
+    public QuantumBackend getBackend() {
+        return this.backend;
     }
 
 }
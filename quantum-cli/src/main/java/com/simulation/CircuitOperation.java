@@ -0,0 +1,267 @@
+package com.simulation;
+
+import java.util.Arrays;
+
+import com.core.Complex;
+import com.core.Gates;
+import com.core.QuantumBackend;
+import com.core.QuantumComputer;
+
+/**
+ * One gate in a recorded circuit (the intermediate representation used by the deferred {@link CircuitBuilder}).
+ * <p>
+ * Operations are immutable. Every operation can give its matrix, which is what the fusion pass in {@link GateFusion} multiplies together.
+ */
+public final class CircuitOperation {
+
+    /**
+     * The kind of gate.
+     */
+    public enum Kind {
+        HADAMARD("H"),
+        PAULI_X("X"),
+        PAULI_Y("Y"),
+        PAULI_Z("Z"),
+        S("S"),
+        T("T"),
+        SX("SX"),
+        PHASE("P"),
+        RX("RX"),
+        RY("RY"),
+        RZ("RZ"),
+        /** Any 2x2 matrix (including single qubit gates that were fused together) */
+        UNITARY("U"),
+        CNOT("CNOT"),
+        /** A dense gate on two or more qubits (made by the fusion pass) */
+        BLOCK("BLOCK");
+
+        private final String label;
+
+        Kind(String label) {
+            this.label = label;
+        }
+    }
+
+    private final Kind kind;
+    private final int[] qubits;
+    private final double angle;
+    private final Complex[][] matrix;
+
+    private CircuitOperation(Kind kind, int[] qubits, double angle, Complex[][] matrix) {
+        this.kind = kind;
+        this.qubits = qubits;
+        this.angle = angle;
+        this.matrix = matrix;
+    }
+
+    /**
+     * Create a single qubit gate without a parameter.
+     * @param kind One of H, X, Y, Z, S, T or SX
+     * @param qubit The qubit
+     * @return The operation
+     */
+    public static CircuitOperation gate(Kind kind, int qubit) {
+        if (kind == Kind.PHASE || kind == Kind.RX || kind == Kind.RY || kind == Kind.RZ
+                || kind == Kind.UNITARY || kind == Kind.CNOT || kind == Kind.BLOCK) {
+            throw new IllegalArgumentException(kind + " needs more than a qubit index");
+        }
+        return new CircuitOperation(kind, new int[] {qubit}, 0.0, null);
+    }
+
+    /**
+     * Create a rotation or phase gate.
+     * @param kind One of PHASE, RX, RY or RZ
+     * @param qubit The qubit
+     * @param angle The angle in radians
+     * @return The operation
+     */
+    public static CircuitOperation rotation(Kind kind, int qubit, double angle) {
+        if (kind != Kind.PHASE && kind != Kind.RX && kind != Kind.RY && kind != Kind.RZ) {
+            throw new IllegalArgumentException(kind + " does not take an angle");
+        }
+        return new CircuitOperation(kind, new int[] {qubit}, angle, null);
+    }
+
+    /**
+     * Create a gate from any 2x2 matrix.
+     * @param qubit The qubit
+     * @param matrix The 2x2 matrix
+     * @return The operation
+     */
+    public static CircuitOperation unitary(int qubit, Complex[][] matrix) {
+        Gates.classify(matrix); // validates the shape
+        return new CircuitOperation(Kind.UNITARY, new int[] {qubit}, 0.0, copy(matrix));
+    }
+
+    /**
+     * Create a CNOT gate.
+     * @param control The control qubit
+     * @param target The target qubit
+     * @return The operation
+     */
+    public static CircuitOperation cnot(int control, int target) {
+        if (control == target) {
+            throw new IllegalArgumentException("Control and target must be different qubits: " + control);
+        }
+        return new CircuitOperation(Kind.CNOT, new int[] {control, target}, 0.0, null);
+    }
+
+    /**
+     * Create a dense gate on several qubits. Bit j of a row/column number is the state of {@code qubits[j]}.
+     * @param qubits The qubits
+     * @param matrix The 2^k x 2^k matrix
+     * @return The operation
+     */
+    public static CircuitOperation block(int[] qubits, Complex[][] matrix) {
+        if (matrix.length != 1 << qubits.length) {
+            throw new IllegalArgumentException("Block on " + qubits.length + " qubits needs a " + (1 << qubits.length) + " row matrix");
+        }
+        return new CircuitOperation(Kind.BLOCK, qubits.clone(), 0.0, copy(matrix));
+    }
+
+    /**
+     * Get the kind of gate.
+     * @return The kind
+     */
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * Get the qubits this gate acts on. For CNOT this is {control, target}.
+     * @return A copy of the qubit indices
+     */
+    public int[] getQubits() {
+        return qubits.clone();
+    }
+
+    /**
+     * Get the number of qubits this gate acts on.
+     * @return The number of qubits
+     */
+    public int getQubitCount() {
+        return qubits.length;
+    }
+
+    /**
+     * Get one of the qubits without copying the array.
+     * @param position The position in {@link #getQubits()}
+     * @return The qubit index
+     */
+    public int getQubit(int position) {
+        return qubits[position];
+    }
+
+    /**
+     * Get the angle of a rotation or phase gate.
+     * @return The angle in radians (0 for gates without an angle)
+     */
+    public double getAngle() {
+        return angle;
+    }
+
+    /**
+     * Get the matrix of this gate. Bit j of a row/column number is the state of {@code getQubits()[j]}.
+     * @return A new copy of the matrix
+     */
+    public Complex[][] getMatrix() {
+        return switch (kind) {
+            case HADAMARD -> Gates.hadamard();
+            case PAULI_X -> Gates.pauliX();
+            case PAULI_Y -> Gates.pauliY();
+            case PAULI_Z -> Gates.pauliZ();
+            case S -> Gates.s();
+            case T -> Gates.t();
+            case SX -> Gates.sx();
+            case PHASE -> Gates.phase(angle);
+            case RX -> Gates.rx(angle);
+            case RY -> Gates.ry(angle);
+            case RZ -> Gates.rz(angle);
+            case UNITARY, BLOCK -> copy(matrix);
+            case CNOT -> cnotMatrix();
+        };
+    }
+
+    /**
+     * Apply this gate to a quantum computer, using the quantum computer's specialised method for the gate when there is one.
+     * @param backend The quantum computer to apply the gate to
+     * @throws UnsupportedOperationException If this is a fused block and the backend is not a {@link QuantumComputer}
+     */
+    public void applyTo(QuantumBackend backend) {
+        int qubit = qubits[0];
+        switch (kind) {
+            case HADAMARD -> backend.applyHadamard(qubit);
+            case PAULI_X -> backend.applyPauliX(qubit);
+            case PAULI_Y -> backend.applyPauliY(qubit);
+            case PAULI_Z -> backend.applyPauliZ(qubit);
+            case S -> backend.applyS(qubit);
+            case T -> backend.applyT(qubit);
+            case SX -> backend.applySX(qubit);
+            case PHASE -> backend.applyPhase(qubit, angle);
+            case RX -> backend.applyRX(qubit, angle);
+            case RY -> backend.applyRY(qubit, angle);
+            case RZ -> backend.applyRZ(qubit, angle);
+            case UNITARY -> backend.applySingleQubitGate(qubit, matrix);
+            case CNOT -> backend.applyCNOT(qubits[0], qubits[1]);
+            case BLOCK -> {
+                if (!(backend instanceof QuantumComputer quantumComputer)) {
+                    throw new UnsupportedOperationException("Fused blocks can only be applied to a QuantumComputer");
+                }
+                quantumComputer.applyMultiQubitGate(qubits, matrix);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder stringBuilder = new StringBuilder(kind.label).append("(");
+        for (int i = 0; i < qubits.length; i++) {
+            stringBuilder.append(i == 0 ? "q" : ", q").append(qubits[i]);
+        }
+        if (kind == Kind.PHASE || kind == Kind.RX || kind == Kind.RY || kind == Kind.RZ) {
+            stringBuilder.append(", ").append(angle);
+        }
+        return stringBuilder.append(")").toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof CircuitOperation other)) {
+            return false;
+        }
+        return kind == other.kind
+                && Arrays.equals(qubits, other.qubits)
+                && Double.compare(angle, other.angle) == 0
+                && Arrays.deepEquals(matrix, other.matrix);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = kind.hashCode();
+        hash = 31 * hash + Arrays.hashCode(qubits);
+        hash = 31 * hash + Double.hashCode(angle);
+        return 31 * hash + Arrays.deepHashCode(matrix);
+    }
+
+    /**
+     * CNOT with qubits {control, target}: local state 1 (control set, target clear) swaps with 3 (both set).
+     */
+    private static Complex[][] cnotMatrix() {
+        Complex zero = new Complex(0);
+        Complex one = new Complex(1);
+        return new Complex[][] {
+            {one, zero, zero, zero},
+            {zero, zero, zero, one},
+            {zero, zero, one, zero},
+            {zero, one, zero, zero}
+        };
+    }
+
+    private static Complex[][] copy(Complex[][] matrix) {
+        Complex[][] copy = new Complex[matrix.length][];
+        for (int row = 0; row < matrix.length; row++) {
+            copy[row] = matrix[row].clone();
+        }
+        return copy;
+    }
+}
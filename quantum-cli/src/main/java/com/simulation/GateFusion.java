@@ -0,0 +1,212 @@
+package com.simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.core.Complex;
+import com.core.Gates;
+
+/**
+ * Merges the gates of a recorded circuit so the state vector is walked fewer times.
+ * <p>
+ * The pass has two steps:
+ * <ol>
+ *   <li>Runs of single qubit gates on the same qubit are multiplied into one 2x2 matrix. Gates on other qubits commute with
+ *       them, so a run only ends when a multi qubit gate touches the qubit.</li>
+ *   <li>Consecutive gates whose qubits together fit in {@code maxBlockQubits} qubits are multiplied into one dense block.</li>
+ * </ol>
+ * A group that ends up holding just one gate is left as that gate, so it still gets its specialised kernel.
+ */
+public final class GateFusion {
+    /**
+     * The default largest dense block. An 8x8 block is still cheap next to the memory traffic of a pass over the state.
+     */
+    public static final int DEFAULT_MAX_BLOCK_QUBITS = 3;
+
+    private GateFusion() {
+    }
+
+    /**
+     * Fuse a circuit.
+     * @param operations The gates in the order they are applied
+     * @param maxBlockQubits The largest dense block to build (1 turns off block fusion, only single qubit runs are merged)
+     * @return The fused gates, which have the same overall effect
+     */
+    public static List<CircuitOperation> fuse(List<CircuitOperation> operations, int maxBlockQubits) {
+        List<CircuitOperation> merged = mergeSingleQubitRuns(operations);
+        if (maxBlockQubits < 2) {
+            return merged;
+        }
+        return buildBlocks(merged, maxBlockQubits);
+    }
+
+    /**
+     * Step 1: multiply runs of single qubit gates on the same qubit together.
+     */
+    static List<CircuitOperation> mergeSingleQubitRuns(List<CircuitOperation> operations) {
+        List<CircuitOperation> result = new ArrayList<>();
+        // the pending run for each qubit, in the order the runs were started
+        List<Integer> pendingQubits = new ArrayList<>();
+        List<List<CircuitOperation>> pendingRuns = new ArrayList<>();
+
+        for (CircuitOperation operation : operations) {
+            if (operation.getQubitCount() == 1) {
+                int qubit = operation.getQubit(0);
+                int position = pendingQubits.indexOf(qubit);
+                if (position < 0) {
+                    pendingQubits.add(qubit);
+                    pendingRuns.add(new ArrayList<>());
+                    position = pendingQubits.size() - 1;
+                }
+                pendingRuns.get(position).add(operation);
+                continue;
+            }
+            // a multi qubit gate ends the runs on its qubits
+            for (int i = 0; i < operation.getQubitCount(); i++) {
+                int position = pendingQubits.indexOf(operation.getQubit(i));
+                if (position >= 0) {
+                    result.add(collapseRun(pendingRuns.get(position)));
+                    pendingQubits.remove(position);
+                    pendingRuns.remove(position);
+                }
+            }
+            result.add(operation);
+        }
+        for (List<CircuitOperation> run : pendingRuns) {
+            result.add(collapseRun(run));
+        }
+        return result;
+    }
+
+    /**
+     * Step 2: greedily grow dense blocks over consecutive gates.
+     */
+    static List<CircuitOperation> buildBlocks(List<CircuitOperation> operations, int maxBlockQubits) {
+        List<CircuitOperation> result = new ArrayList<>();
+        List<CircuitOperation> group = new ArrayList<>();
+        List<Integer> groupQubits = new ArrayList<>();
+
+        for (CircuitOperation operation : operations) {
+            List<Integer> combined = new ArrayList<>(groupQubits);
+            for (int i = 0; i < operation.getQubitCount(); i++) {
+                if (!combined.contains(operation.getQubit(i))) {
+                    combined.add(operation.getQubit(i));
+                }
+            }
+            if (combined.size() > maxBlockQubits && !group.isEmpty()) {
+                result.add(collapseGroup(group, groupQubits));
+                group.clear();
+                groupQubits.clear();
+                for (int i = 0; i < operation.getQubitCount(); i++) {
+                    groupQubits.add(operation.getQubit(i));
+                }
+            } else {
+                groupQubits = combined;
+            }
+            group.add(operation);
+        }
+        if (!group.isEmpty()) {
+            result.add(collapseGroup(group, groupQubits));
+        }
+        return result;
+    }
+
+    private static CircuitOperation collapseRun(List<CircuitOperation> run) {
+        if (run.size() == 1) {
+            return run.get(0);
+        }
+        Complex[][] product = run.get(0).getMatrix();
+        for (int i = 1; i < run.size(); i++) {
+            // later gates multiply from the left
+            product = Gates.multiply(run.get(i).getMatrix(), product);
+        }
+        return CircuitOperation.unitary(run.get(0).getQubit(0), product);
+    }
+
+    private static CircuitOperation collapseGroup(List<CircuitOperation> group, List<Integer> qubits) {
+        if (group.size() == 1) {
+            return group.get(0);
+        }
+        int[] blockQubits = qubits.stream().mapToInt(Integer::intValue).toArray();
+        Complex[][] product = null;
+        for (CircuitOperation operation : group) {
+            Complex[][] expanded = embed(operation.getMatrix(), operation.getQubits(), blockQubits);
+            product = product == null ? expanded : multiply(expanded, product);
+        }
+        if (blockQubits.length == 1) {
+            return CircuitOperation.unitary(blockQubits[0], product);
+        }
+        return CircuitOperation.block(blockQubits, product);
+    }
+
+    /**
+     * Write a gate's matrix in the basis of a bigger set of qubits (identity on the qubits the gate does not touch).
+     * @param matrix The gate matrix, where bit j of a row/column is {@code gateQubits[j]}
+     * @param gateQubits The qubits of the gate
+     * @param blockQubits The qubits of the block, which include all the gate's qubits
+     * @return The 2^m x 2^m matrix where m is the number of block qubits
+     */
+    static Complex[][] embed(Complex[][] matrix, int[] gateQubits, int[] blockQubits) {
+        int[] positions = new int[gateQubits.length];
+        int gateMask = 0;
+        for (int j = 0; j < gateQubits.length; j++) {
+            positions[j] = indexOf(blockQubits, gateQubits[j]);
+            gateMask |= 1 << positions[j];
+        }
+
+        int dimension = 1 << blockQubits.length;
+        Complex zero = new Complex(0);
+        Complex[][] result = new Complex[dimension][dimension];
+        for (Complex[] row : result) {
+            Arrays.fill(row, zero);
+        }
+        for (int row = 0; row < dimension; row++) {
+            for (int column = 0; column < dimension; column++) {
+                if ((row & ~gateMask) != (column & ~gateMask)) {
+                    continue;
+                }
+                result[row][column] = matrix[localIndex(row, positions)][localIndex(column, positions)];
+            }
+        }
+        return result;
+    }
+
+    private static int localIndex(int blockIndex, int[] positions) {
+        int local = 0;
+        for (int j = 0; j < positions.length; j++) {
+            if ((blockIndex & (1 << positions[j])) != 0) {
+                local |= 1 << j;
+            }
+        }
+        return local;
+    }
+
+    private static int indexOf(int[] values, int value) {
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] == value) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Qubit " + value + " is not part of the block");
+    }
+
+    private static Complex[][] multiply(Complex[][] left, Complex[][] right) {
+        int dimension = left.length;
+        Complex[][] product = new Complex[dimension][dimension];
+        for (int row = 0; row < dimension; row++) {
+            for (int column = 0; column < dimension; column++) {
+                double sumReal = 0;
+                double sumImaginary = 0;
+                for (int k = 0; k < dimension; k++) {
+                    Complex a = left[row][k];
+                    Complex b = right[k][column];
+                    sumReal += a.real() * b.real() - a.imaginary() * b.imaginary();
+                    sumImaginary += a.real() * b.imaginary() + a.imaginary() * b.real();
+                }
+                product[row][column] = new Complex(sumReal, sumImaginary);
+            }
+        }
+        return product;
+    }
+}
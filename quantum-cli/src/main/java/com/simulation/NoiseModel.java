@@ -0,0 +1,119 @@
+package com.simulation;
+
+import java.util.Arrays;
+
+import com.simulation.CircuitOperation.Kind;
+
+/**
+ * Pauli error probabilities that are applied after every gate of a circuit, for the {@link TrajectorySimulator}.
+ * <p>
+ * After a gate, every qubit the gate touched independently gets:
+ * <ul>
+ *   <li>a random X, Y or Z with the depolarizing probability,</li>
+ *   <li>an X with the bit flip probability,</li>
+ *   <li>a Z with the phase flip probability.</li>
+ * </ul>
+ * The probabilities can be set for all gates at once or for one kind of gate (for example noisier CNOTs).
+ */
+public class NoiseModel {
+    private final double[] depolarizing = new double[Kind.values().length];
+    private final double[] bitFlip = new double[Kind.values().length];
+    private final double[] phaseFlip = new double[Kind.values().length];
+
+    /**
+     * Set the depolarizing probability of every kind of gate.
+     * @param probability The probability of a random X, Y or Z error
+     * @return This noise model (to allow for chaining commands)
+     */
+    public NoiseModel setDepolarizing(double probability) {
+        Arrays.fill(depolarizing, validate(probability));
+        return this;
+    }
+
+    /**
+     * Set the depolarizing probability of one kind of gate.
+     * @param kind The kind of gate
+     * @param probability The probability of a random X, Y or Z error
+     * @return This noise model (to allow for chaining commands)
+     */
+    public NoiseModel setDepolarizing(Kind kind, double probability) {
+        depolarizing[kind.ordinal()] = validate(probability);
+        return this;
+    }
+
+    /**
+     * Set the bit flip probability of every kind of gate.
+     * @param probability The probability of an X error
+     * @return This noise model (to allow for chaining commands)
+     */
+    public NoiseModel setBitFlip(double probability) {
+        Arrays.fill(bitFlip, validate(probability));
+        return this;
+    }
+
+    /**
+     * Set the bit flip probability of one kind of gate.
+     * @param kind The kind of gate
+     * @param probability The probability of an X error
+     * @return This noise model (to allow for chaining commands)
+     */
+    public NoiseModel setBitFlip(Kind kind, double probability) {
+        bitFlip[kind.ordinal()] = validate(probability);
+        return this;
+    }
+
+    /**
+     * Set the phase flip probability of every kind of gate.
+     * @param probability The probability of a Z error
+     * @return This noise model (to allow for chaining commands)
+     */
+    public NoiseModel setPhaseFlip(double probability) {
+        Arrays.fill(phaseFlip, validate(probability));
+        return this;
+    }
+
+    /**
+     * Set the phase flip probability of one kind of gate.
+     * @param kind The kind of gate
+     * @param probability The probability of a Z error
+     * @return This noise model (to allow for chaining commands)
+     */
+    public NoiseModel setPhaseFlip(Kind kind, double probability) {
+        phaseFlip[kind.ordinal()] = validate(probability);
+        return this;
+    }
+
+    /**
+     * Get the depolarizing probability of a kind of gate.
+     * @param kind The kind of gate
+     * @return The probability
+     */
+    public double getDepolarizing(Kind kind) {
+        return depolarizing[kind.ordinal()];
+    }
+
+    /**
+     * Get the bit flip probability of a kind of gate.
+     * @param kind The kind of gate
+     * @return The probability
+     */
+    public double getBitFlip(Kind kind) {
+        return bitFlip[kind.ordinal()];
+    }
+
+    /**
+     * Get the phase flip probability of a kind of gate.
+     * @param kind The kind of gate
+     * @return The probability
+     */
+    public double getPhaseFlip(Kind kind) {
+        return phaseFlip[kind.ordinal()];
+    }
+
+    private static double validate(double probability) {
+        if (!(probability >= 0 && probability <= 1)) {
+            throw new IllegalArgumentException("Probability must be between 0 and 1: " + probability);
+        }
+        return probability;
+    }
+}
@@ -0,0 +1,183 @@
+package com.simulation;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.core.QuantumComputer;
+import com.core.StateSnapshot;
+
+/**
+ * Remembers the states reached after circuit prefixes, so circuits that start with the same gates only simulate them once.
+ * <p>
+ * The prefixes are stored in a trie with one level per gate. {@link #prepare(String, List)} walks the trie to the longest
+ * prefix that has a snapshot, forks a quantum computer from it (see {@link QuantumComputer#fromSnapshot(String, StateSnapshot)},
+ * which does not copy the state until it changes) and only runs the remaining gates. The new prefix is then cached as well.
+ * When the snapshots use more than the memory budget the least recently used ones are dropped.
+ * <p>
+ * A parameter study that runs {@code prefix + variant} for many variants costs about one prefix plus the variants this way.
+ * The cache is not thread safe.
+ */
+public class SnapshotCache {
+    private final int numQubits;
+    private final long maxBytes;
+    private final Node root = new Node(null, null);
+    /**
+     * The nodes that hold a snapshot, least recently used first.
+     */
+    private final LinkedHashMap<Node, StateSnapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true);
+    private long usedBytes;
+    private long hits;
+    private long misses;
+    private long gatesSkipped;
+
+    /**
+     * A node of the trie: the state after the gates on the path from the root.
+     */
+    private static final class Node {
+        private final Node parent;
+        private final CircuitOperation operation;
+        private final Map<CircuitOperation, Node> children = new HashMap<>();
+
+        private Node(Node parent, CircuitOperation operation) {
+            this.parent = parent;
+            this.operation = operation;
+        }
+    }
+
+    /**
+     * Create a snapshot cache.
+     * @param numQubits The number of qubits of every circuit
+     * @param maxBytes The most memory the cached states may use
+     */
+    public SnapshotCache(int numQubits, long maxBytes) {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Memory budget can not be negative: " + maxBytes);
+        }
+        this.numQubits = numQubits;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Get a quantum computer in the state after a circuit prefix, reusing the longest cached prefix.
+     * @param name The name of the new quantum computer
+     * @param prefix The gates to run from |0...0>
+     * @return A new quantum computer in the state after the prefix, which the caller may change freely
+     */
+    public QuantumComputer prepare(String name, List<CircuitOperation> prefix) {
+        Node node = root;
+        Node best = null;
+        int bestLength = 0;
+        for (int i = 0; i < prefix.size(); i++) {
+            node = node.children.get(prefix.get(i));
+            if (node == null) {
+                break;
+            }
+            if (snapshots.containsKey(node)) {
+                best = node;
+                bestLength = i + 1;
+            }
+        }
+
+        QuantumComputer quantumComputer;
+        if (best == null) {
+            misses++;
+            quantumComputer = new QuantumComputer(name, numQubits);
+        } else {
+            hits++;
+            gatesSkipped += bestLength;
+            quantumComputer = QuantumComputer.fromSnapshot(name, snapshots.get(best));
+        }
+        if (bestLength == prefix.size()) {
+            return quantumComputer;
+        }
+
+        for (int i = bestLength; i < prefix.size(); i++) {
+            prefix.get(i).applyTo(quantumComputer);
+        }
+        StateSnapshot snapshot = quantumComputer.snapshot();
+        if (snapshot.getSizeInBytes() <= maxBytes) {
+            Node target = best == null ? root : best;
+            for (int i = bestLength; i < prefix.size(); i++) {
+                Node parent = target;
+                CircuitOperation operation = prefix.get(i);
+                target = parent.children.computeIfAbsent(operation, key -> new Node(parent, key));
+            }
+            snapshots.put(target, snapshot);
+            usedBytes += snapshot.getSizeInBytes();
+            evict();
+        }
+        return quantumComputer;
+    }
+
+    /**
+     * Drop every cached state.
+     */
+    public void clear() {
+        snapshots.clear();
+        root.children.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * Get the number of cached states.
+     * @return The number of snapshots
+     */
+    public int getSnapshotCount() {
+        return snapshots.size();
+    }
+
+    /**
+     * Get the memory the cached states use.
+     * @return The size in bytes
+     */
+    public long getUsedBytes() {
+        return usedBytes;
+    }
+
+    /**
+     * Get how many calls to {@link #prepare(String, List)} could start from a cached state.
+     * @return The number of hits
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Get how many calls to {@link #prepare(String, List)} had to start from |0...0>.
+     * @return The number of misses
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Get the number of gates that did not have to be simulated because of the cache.
+     * @return The number of gates
+     */
+    public long getGatesSkipped() {
+        return gatesSkipped;
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<Node, StateSnapshot>> iterator = snapshots.entrySet().iterator();
+        while (usedBytes > maxBytes && iterator.hasNext()) {
+            Map.Entry<Node, StateSnapshot> entry = iterator.next();
+            usedBytes -= entry.getValue().getSizeInBytes();
+            iterator.remove();
+            prune(entry.getKey());
+        }
+    }
+
+    /**
+     * Remove nodes that have no snapshot and no children, walking up towards the root.
+     */
+    private void prune(Node node) {
+        while (node != root && node.children.isEmpty() && !snapshots.containsKey(node)) {
+            node.parent.children.remove(node.operation);
+            node = node.parent;
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.simulation;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The combined results of a {@link TrajectorySimulator} run: a histogram of the measurements and, for every observable,
+ * the mean over the trajectories with its standard error.
+ */
+public class TrajectoryResult {
+    /**
+     * The z value of a two sided 95% confidence interval (the trajectory count is large, so the normal approximation is used).
+     */
+    private static final double Z_95 = 1.959963984540054;
+
+    private final int trajectories;
+    private final Map<String, Long> histogram;
+    private final double[] means;
+    private final double[] standardErrors;
+
+    TrajectoryResult(int trajectories, Map<String, Long> histogram, double[] sums, double[] sumsOfSquares) {
+        this.trajectories = trajectories;
+        this.histogram = Collections.unmodifiableMap(histogram);
+        this.means = new double[sums.length];
+        this.standardErrors = new double[sums.length];
+        for (int i = 0; i < sums.length; i++) {
+            double mean = sums[i] / trajectories;
+            means[i] = mean;
+            if (trajectories > 1) {
+                // sample variance, clamped because rounding can make it slightly negative
+                double variance = Math.max(0.0, (sumsOfSquares[i] - trajectories * mean * mean) / (trajectories - 1));
+                standardErrors[i] = Math.sqrt(variance / trajectories);
+            }
+        }
+    }
+
+    /**
+     * Get the number of trajectories that were run.
+     * @return The number of trajectories
+     */
+    public int getTrajectories() {
+        return trajectories;
+    }
+
+    /**
+     * Get how often each measurement outcome happened. The first measured qubit is the rightmost character of a key.
+     * @return The counts for each outcome that happened, in order of the bit strings
+     */
+    public Map<String, Long> getHistogram() {
+        return histogram;
+    }
+
+    /**
+     * Get the mean of an observable over all trajectories.
+     * @param observable The position of the observable in the list given to the simulator
+     * @return The mean
+     */
+    public double getMean(int observable) {
+        return means[observable];
+    }
+
+    /**
+     * Get the standard error of the mean of an observable.
+     * @param observable The position of the observable in the list given to the simulator
+     * @return The standard error
+     */
+    public double getStandardError(int observable) {
+        return standardErrors[observable];
+    }
+
+    /**
+     * Get the 95% confidence interval of the mean of an observable.
+     * @param observable The position of the observable in the list given to the simulator
+     * @return {lower, upper}
+     */
+    public double[] getConfidenceInterval(int observable) {
+        double halfWidth = Z_95 * standardErrors[observable];
+        return new double[] {means[observable] - halfWidth, means[observable] + halfWidth};
+    }
+
+    @Override
+    public String toString() {
+        return "TrajectoryResult{" + "trajectories=" + trajectories + ", histogram=" + histogram + '}';
+    }
+}
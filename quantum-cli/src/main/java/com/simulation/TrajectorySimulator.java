@@ -0,0 +1,236 @@
+package com.simulation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+import com.core.QuantumComputer;
+
+/**
+ * Simulates a noisy circuit with Monte Carlo quantum trajectories.
+ * <p>
+ * Each trajectory runs the circuit on a pure state and, after every gate, draws Pauli errors from the {@link NoiseModel}.
+ * Averaged over many trajectories this gives the same statistics as a density matrix simulation, but each trajectory only
+ * needs a 2^n state vector instead of a 4^n density matrix.
+ * <p>
+ * Trajectories are split into fixed chunks that the workers of a fork/join pool take in turn. Every chunk gets its own
+ * {@link SplittableRandom} stream, split from the seed in chunk order, and the chunk results are added up in chunk order,
+ * so a run gives the same result for the same seed however many threads it uses. Each worker keeps one
+ * {@link QuantumComputer} and resets it between trajectories, so the state arrays are allocated once per worker.
+ */
+public class TrajectorySimulator {
+    /**
+     * The number of trajectories in one chunk of work.
+     */
+    public static final int CHUNK_SIZE = 64;
+
+    private final int numQubits;
+    private final List<CircuitOperation> circuit;
+    private final NoiseModel noiseModel;
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+    /**
+     * Create a trajectory simulator.
+     * @param numQubits The number of qubits the circuit uses
+     * @param circuit The gates (for example from a deferred {@link CircuitBuilder#getPendingOperations()})
+     * @param noiseModel The errors to add after each gate
+     */
+    public TrajectorySimulator(int numQubits, List<CircuitOperation> circuit, NoiseModel noiseModel) {
+        for (CircuitOperation operation : circuit) {
+            for (int i = 0; i < operation.getQubitCount(); i++) {
+                if (operation.getQubit(i) < 0 || operation.getQubit(i) >= numQubits) {
+                    throw new IllegalArgumentException("Qubit index out of bounds: " + operation.getQubit(i));
+                }
+            }
+        }
+        this.numQubits = numQubits;
+        this.circuit = List.copyOf(circuit);
+        this.noiseModel = noiseModel;
+    }
+
+    /**
+     * Use a specific fork/join pool for the trajectories.
+     * @param pool The pool
+     * @return This simulator (to allow for chaining commands)
+     */
+    public TrajectorySimulator setForkJoinPool(ForkJoinPool pool) {
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool can not be null");
+        }
+        this.pool = pool;
+        return this;
+    }
+
+    /**
+     * Run trajectories and only collect measurements.
+     * @param trajectories The number of trajectories
+     * @param seed The seed for all randomness
+     * @param measuredQubits The qubits measured at the end of each trajectory
+     * @return The results
+     */
+    public TrajectoryResult run(int trajectories, long seed, int... measuredQubits) {
+        return run(trajectories, seed, measuredQubits, List.of());
+    }
+
+    /**
+     * Run trajectories.
+     * @param trajectories The number of trajectories
+     * @param seed The seed for all randomness
+     * @param measuredQubits The qubits measured at the end of each trajectory (may be empty)
+     * @param observables Values worked out from the final state of each trajectory, before it is measured
+     * @return The results
+     */
+    public TrajectoryResult run(int trajectories, long seed, int[] measuredQubits, List<ToDoubleFunction<QuantumComputer>> observables) {
+        if (trajectories < 1) {
+            throw new IllegalArgumentException("Number of trajectories must be at least 1: " + trajectories);
+        }
+        for (int qubit : measuredQubits) {
+            if (qubit < 0 || qubit >= numQubits) {
+                throw new IllegalArgumentException("Qubit index out of bounds: " + qubit);
+            }
+        }
+
+        int chunks = (trajectories + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        SplittableRandom root = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[chunks];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            streams[chunk] = root.split();
+        }
+        int[][] outcomes = new int[chunks][];
+        double[][] sums = new double[chunks][observables.size()];
+        double[][] sumsOfSquares = new double[chunks][observables.size()];
+
+        int workers = Math.min(pool.getParallelism(), chunks);
+        AtomicInteger nextChunk = new AtomicInteger();
+        List<Callable<Void>> tasks = new ArrayList<>(workers);
+        for (int worker = 0; worker < workers; worker++) {
+            tasks.add(() -> {
+                QuantumComputer quantumComputer = new QuantumComputer("trajectory", numQubits);
+                // the trajectories already use every thread, so the gates themselves run serially
+                quantumComputer.setParallelEnabled(workers == 1);
+                for (int chunk = nextChunk.getAndIncrement(); chunk < chunks; chunk = nextChunk.getAndIncrement()) {
+                    int from = chunk * CHUNK_SIZE;
+                    int count = Math.min(CHUNK_SIZE, trajectories - from);
+                    outcomes[chunk] = new int[count];
+                    SplittableRandom random = streams[chunk];
+                    quantumComputer.setRandomGenerator(random);
+                    for (int t = 0; t < count; t++) {
+                        quantumComputer.reset();
+                        runTrajectory(quantumComputer, random);
+                        for (int i = 0; i < observables.size(); i++) {
+                            double value = observables.get(i).applyAsDouble(quantumComputer);
+                            sums[chunk][i] += value;
+                            sumsOfSquares[chunk][i] += value * value;
+                        }
+                        outcomes[chunk][t] = measure(quantumComputer, measuredQubits);
+                    }
+                }
+                return null;
+            });
+        }
+        for (Future<Void> future : pool.invokeAll(tasks)) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while running trajectories", e);
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("A trajectory failed: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+
+        return combine(trajectories, measuredQubits.length, outcomes, sums, sumsOfSquares, observables.size());
+    }
+
+    /**
+     * Apply the circuit, drawing errors after every gate.
+     */
+    private void runTrajectory(QuantumComputer quantumComputer, SplittableRandom random) {
+        for (CircuitOperation operation : circuit) {
+            operation.applyTo(quantumComputer);
+            CircuitOperation.Kind kind = operation.getKind();
+            double depolarizing = noiseModel.getDepolarizing(kind);
+            double bitFlip = noiseModel.getBitFlip(kind);
+            double phaseFlip = noiseModel.getPhaseFlip(kind);
+            for (int i = 0; i < operation.getQubitCount(); i++) {
+                int qubit = operation.getQubit(i);
+                if (depolarizing > 0 && random.nextDouble() < depolarizing) {
+                    switch (random.nextInt(3)) {
+                        case 0 -> quantumComputer.applyPauliX(qubit);
+                        case 1 -> quantumComputer.applyPauliY(qubit);
+                        default -> quantumComputer.applyPauliZ(qubit);
+                    }
+                }
+                if (bitFlip > 0 && random.nextDouble() < bitFlip) {
+                    quantumComputer.applyPauliX(qubit);
+                }
+                if (phaseFlip > 0 && random.nextDouble() < phaseFlip) {
+                    quantumComputer.applyPauliZ(qubit);
+                }
+            }
+        }
+    }
+
+    /**
+     * Measure the qubits and pack the results, bit j is the value of measuredQubits[j].
+     */
+    private static int measure(QuantumComputer quantumComputer, int[] measuredQubits) {
+        if (measuredQubits.length == 0) {
+            return 0;
+        }
+        int[] results = quantumComputer.measureRegister(measuredQubits);
+        int packed = 0;
+        for (int j = 0; j < results.length; j++) {
+            packed |= results[j] << j;
+        }
+        return packed;
+    }
+
+    private static TrajectoryResult combine(int trajectories, int measuredCount, int[][] outcomes,
+                                            double[][] sums, double[][] sumsOfSquares, int observableCount) {
+        Map<String, Long> histogram = new TreeMap<>();
+        if (measuredCount > 0) {
+            // sort and count runs, which works for any number of measured qubits
+            int[] all = new int[trajectories];
+            int position = 0;
+            for (int[] chunk : outcomes) {
+                System.arraycopy(chunk, 0, all, position, chunk.length);
+                position += chunk.length;
+            }
+            Arrays.sort(all);
+            for (int start = 0, end; start < all.length; start = end) {
+                end = start;
+                while (end < all.length && all[end] == all[start]) {
+                    end++;
+                }
+                histogram.put(toBitString(all[start], measuredCount), (long) (end - start));
+            }
+        }
+        double[] totalSums = new double[observableCount];
+        double[] totalSumsOfSquares = new double[observableCount];
+        for (int chunk = 0; chunk < sums.length; chunk++) {
+            for (int i = 0; i < observableCount; i++) {
+                totalSums[i] += sums[chunk][i];
+                totalSumsOfSquares[i] += sumsOfSquares[chunk][i];
+            }
+        }
+        return new TrajectoryResult(trajectories, histogram, totalSums, totalSumsOfSquares);
+    }
+
+    private static String toBitString(int outcome, int length) {
+        char[] bits = new char[length];
+        for (int j = 0; j < length; j++) {
+            bits[length - 1 - j] = ((outcome >> j) & 1) == 0 ? '0' : '1';
+        }
+        return new String(bits);
+    }
+}
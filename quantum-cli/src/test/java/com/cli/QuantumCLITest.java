@@ -3,6 +3,12 @@ package com.cli;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+
 public class QuantumCLITest {
 
     @Test
@@ -12,4 +18,73 @@ public class QuantumCLITest {
         // Test that network and quantumComputers are initialized
         // Since they are private, we can't directly test, but constructor should not throw
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testTokenize() {
+        assertArrayEquals(new String[] {"cnot", "a", "0", "1"}, QuantumCLI.tokenize("  cnot\ta   0 1  "));
+        assertEquals(0, QuantumCLI.tokenize("   ").length);
+    }
+
+    @Test
+    public void testRunScript() throws Exception {
+        StringWriter output = new StringWriter();
+        QuantumCLI cli = new QuantumCLI(output);
+        cli.setEcho(false);
+        String script = String.join("\n",
+                "# prepare a Bell pair",
+                "create bell 2",
+                "",
+                "hadamard bell 0",
+                "cnot bell 0 1",
+                "hadamard bell 7",
+                "show bell",
+                "quit",
+                "x bell 0");
+        int failures = cli.runScript(new BufferedReader(new StringReader(script)));
+        assertEquals(1, failures);
+        String text = output.toString();
+        assertTrue(text.contains("Error on line 6"));
+        assertTrue(text.contains("|00>: 0.707107(prob 0.5000)"));
+        assertTrue(text.contains("|11>: 0.707107(prob 0.5000)"));
+        assertFalse(text.contains("qit> "));
+        assertFalse(text.contains("Pauli-X"));
+    }
+
+    @Test
+    public void testBadCommandsCountAsFailures() throws Exception {
+        StringWriter output = new StringWriter();
+        QuantumCLI cli = new QuantumCLI(output);
+        cli.setEcho(false);
+        String script = String.join("\n",
+                "create a 1",
+                "hadamard missing 0",
+                "x a",
+                "create a 2",
+                "show a sideways",
+                "load b /no/such/file",
+                "x a 0");
+        int failures = cli.runScript(new BufferedReader(new StringReader(script)));
+        assertEquals(5, failures);
+        String text = output.toString();
+        assertTrue(text.contains("Error on line 2: Computer not found: missing"));
+        assertTrue(text.contains("Error on line 3: Usage: x <computer_name> <qubit_index>"));
+        assertTrue(text.contains("Applied Pauli-X gate to a qubit 0"));
+    }
+
+    @Test
+    public void testRegistrationGoesThroughOutput() throws Exception {
+        PrintStream systemOut = System.out;
+        ByteArrayOutputStream console = new ByteArrayOutputStream();
+        StringWriter output = new StringWriter();
+        try {
+            System.setOut(new PrintStream(console, true));
+            QuantumCLI cli = new QuantumCLI(output);
+            cli.setEcho(false);
+            assertEquals(0, cli.runScript(new BufferedReader(new StringReader("create a 2"))));
+        } finally {
+            System.setOut(systemOut);
+        }
+        assertEquals(0, console.size());
+        assertTrue(output.toString().contains("created quantum computer 'a' with 2 qubits."));
+    }
+}
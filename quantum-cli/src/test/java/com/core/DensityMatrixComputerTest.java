@@ -0,0 +1,76 @@
+package com.core;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DensityMatrixComputerTest {
+
+    @Test
+    public void testPureStateMatchesStateVector() {
+        QuantumComputer pure = new QuantumComputer("pure", 3);
+        DensityMatrixComputer mixed = new DensityMatrixComputer("mixed", 3);
+        for (QuantumBackend qc : new QuantumBackend[] {pure, mixed}) {
+            qc.applyHadamard(0);
+            qc.applyRX(1, 0.7);
+            qc.applyCNOT(0, 2);
+            qc.applyT(2);
+            qc.applyPauliY(1);
+        }
+        Complex[] state = pure.getState();
+        for (int row = 0; row < 8; row++) {
+            for (int column = 0; column < 8; column++) {
+                Complex expected = state[row].multiply(state[column].conjugate());
+                Complex actual = mixed.getElement(row, column);
+                assertEquals(expected.real(), actual.real(), 1e-12);
+                assertEquals(expected.imaginary(), actual.imaginary(), 1e-12);
+            }
+        }
+        assertEquals(1.0, mixed.getPurity(), 1e-12);
+    }
+
+    @Test
+    public void testDepolarizingMakesFullyMixedState() {
+        DensityMatrixComputer qc = new DensityMatrixComputer("test", 1);
+        qc.applyDepolarizing(0, 0.75);
+        assertEquals(0.5, qc.getProbability(0), 1e-12);
+        assertEquals(0.5, qc.getProbability(1), 1e-12);
+        assertEquals(0.5, qc.getPurity(), 1e-12);
+    }
+
+    @Test
+    public void testAmplitudeDamping() {
+        DensityMatrixComputer qc = new DensityMatrixComputer("test", 2);
+        qc.applyPauliX(1);
+        qc.applyAmplitudeDamping(1, 0.3);
+        assertEquals(0.3, qc.getProbability(0), 1e-12);
+        assertEquals(0.7, qc.getProbability(2), 1e-12);
+        qc.applyAmplitudeDamping(1, 1.0);
+        assertEquals(1.0, qc.getProbability(0), 1e-12);
+    }
+
+    @Test
+    public void testDephasingShrinksCoherence() {
+        DensityMatrixComputer qc = new DensityMatrixComputer("test", 1);
+        qc.applyHadamard(0);
+        qc.applyDephasing(0, 0.1);
+        assertEquals(0.5 * 0.8, qc.getElement(0, 1).real(), 1e-12);
+        assertEquals(0.5, qc.getProbability(1), 1e-12);
+    }
+
+    @Test
+    public void testMeasureCollapses() {
+        DensityMatrixComputer qc = new DensityMatrixComputer("test", 2, 1L);
+        qc.applyHadamard(0);
+        qc.applyCNOT(0, 1);
+        qc.applyDepolarizing(1, 0.2);
+        int result = qc.measure(0);
+        int basis = result == 0 ? 0 : 1;
+        assertEquals(1.0, qc.getProbability(basis) + qc.getProbability(basis | 2), 1e-12);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsNonTracePreservingChannel() {
+        DensityMatrixComputer qc = new DensityMatrixComputer("test", 1);
+        qc.applyChannel(0, new Complex[][] {{new Complex(0.5), new Complex(0)}, {new Complex(0), new Complex(1)}});
+    }
+}
@@ -0,0 +1,32 @@
+package com.core;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class GatesTest {
+
+    @Test
+    public void testClassify() {
+        assertEquals(Gates.Kind.DIAGONAL, Gates.classify(Gates.pauliZ()));
+        assertEquals(Gates.Kind.DIAGONAL, Gates.classify(Gates.rz(0.3)));
+        assertEquals(Gates.Kind.ANTI_DIAGONAL, Gates.classify(Gates.pauliX()));
+        assertEquals(Gates.Kind.ANTI_DIAGONAL, Gates.classify(Gates.pauliY()));
+        assertEquals(Gates.Kind.REAL, Gates.classify(Gates.hadamard()));
+        assertEquals(Gates.Kind.REAL, Gates.classify(Gates.ry(0.3)));
+        assertEquals(Gates.Kind.GENERAL, Gates.classify(Gates.rx(0.3)));
+        assertEquals(Gates.Kind.GENERAL, Gates.classify(Gates.sx()));
+    }
+
+    @Test
+    public void testMultiply() {
+        Complex[][] product = Gates.multiply(Gates.s(), Gates.s());
+        assertEquals(new Complex(1), product[0][0]);
+        assertEquals(new Complex(-1), product[1][1]);
+        assertEquals(Gates.Kind.DIAGONAL, Gates.classify(product));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testClassifyRejectsWrongSize() {
+        Gates.classify(new Complex[][] {{new Complex(1), new Complex(0)}});
+    }
+}
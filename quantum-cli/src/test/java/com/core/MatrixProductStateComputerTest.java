@@ -0,0 +1,82 @@
+package com.core;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class MatrixProductStateComputerTest {
+
+    @Test
+    public void testMatchesQuantumComputer() {
+        QuantumComputer dense = new QuantumComputer("dense", 7, 9L);
+        MatrixProductStateComputer mps = new MatrixProductStateComputer("mps", 7, 9L);
+        for (QuantumBackend qc : new QuantumBackend[] {dense, mps}) {
+            for (int q = 0; q < 7; q++) {
+                qc.applyHadamard(q);
+                qc.applyRY(q, 0.4 * q);
+            }
+            qc.applyCNOT(0, 6);
+            qc.applyCNOT(5, 1);
+            for (int q = 0; q < 6; q++) {
+                qc.applyCNOT(q, q + 1);
+                qc.applyT(q);
+                qc.applyRX(q + 1, 0.3);
+            }
+            qc.applyCNOT(6, 2);
+            qc.applyPauliY(3);
+        }
+        assertEquals(0.0, mps.getTruncationError(), 1e-12);
+
+        Complex[] expected = dense.getState();
+        for (int i = 0; i < expected.length; i++) {
+            Complex actual = mps.getAmplitude(i);
+            assertEquals(expected[i].real(), actual.real(), 1e-10);
+            assertEquals(expected[i].imaginary(), actual.imaginary(), 1e-10);
+        }
+    }
+
+    @Test
+    public void testMeasurementMatchesQuantumComputer() {
+        QuantumComputer dense = new QuantumComputer("dense", 5, 4L);
+        MatrixProductStateComputer mps = new MatrixProductStateComputer("mps", 5, 4L);
+        for (QuantumBackend qc : new QuantumBackend[] {dense, mps}) {
+            for (int q = 0; q < 5; q++) {
+                qc.applyRY(q, 1.0 + 0.2 * q);
+            }
+            qc.applyCNOT(0, 4);
+            qc.applyCNOT(2, 3);
+        }
+        assertEquals(dense.measure(4), mps.measure(4));
+        assertEquals(dense.measure(1), mps.measure(1));
+
+        Complex[] expected = dense.getState();
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].real(), mps.getAmplitude(i).real(), 1e-10);
+        }
+    }
+
+    @Test
+    public void testLongGhzChain() {
+        MatrixProductStateComputer qc = new MatrixProductStateComputer("ghz", 120, 3L);
+        qc.applyHadamard(0);
+        for (int q = 1; q < 120; q++) {
+            qc.applyCNOT(q - 1, q);
+        }
+        assertEquals(2, qc.getBondDimension());
+        int first = qc.measure(60);
+        for (int q = 0; q < 120; q += 9) {
+            assertEquals(first, qc.measure(q));
+        }
+    }
+
+    @Test
+    public void testTruncationErrorIsReported() {
+        MatrixProductStateComputer qc = new MatrixProductStateComputer("test", 6);
+        qc.setMaxBondDimension(1);
+        qc.applyRY(0, 1.0);
+        qc.applyCNOT(0, 1);
+        assertTrue(qc.getTruncationError() > 0.1);
+        assertEquals(1, qc.getBondDimension());
+        qc.reset();
+        assertEquals(0.0, qc.getTruncationError(), 0.0);
+    }
+}
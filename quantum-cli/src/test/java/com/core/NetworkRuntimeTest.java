@@ -0,0 +1,85 @@
+package com.core;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class NetworkRuntimeTest {
+
+    @Test
+    public void testRingOfNodes() throws InterruptedException {
+        int nodes = 2000;
+        QuantumNetwork network = new QuantumNetwork();
+        network.setVerbose(false);
+        for (int i = 0; i < nodes; i++) {
+            network.registerQuantumComputer(new QuantumComputer("n" + i, 1));
+        }
+        NetworkRuntime runtime = new NetworkRuntime(network);
+        for (int i = 0; i < nodes; i++) {
+            String next = "n" + ((i + 1) % nodes);
+            String previous = "n" + ((i + nodes - 1) % nodes);
+            // every node sends a token to the next node and waits for the token of the previous one
+            runtime.node("n" + i, node -> {
+                node.send(next, node.getName());
+                String token = node.receiveClassical();
+                if (!token.equals(previous)) {
+                    throw new IllegalStateException("Got " + token + " instead of " + previous);
+                }
+            });
+        }
+        NetworkRunResult result = runtime.run(30, TimeUnit.SECONDS);
+        assertTrue(result.toString(), result.isSuccessful());
+        assertEquals(nodes, result.getCompletedCount());
+        assertEquals(0, network.getMessageQueueSize());
+    }
+
+    @Test
+    public void testQuantumStateTransfer() throws InterruptedException {
+        QuantumNetwork network = new QuantumNetwork();
+        network.setVerbose(false);
+        network.registerQuantumComputer(new QuantumComputer("alice", 2));
+        network.registerQuantumComputer(new QuantumComputer("bob", 2));
+        double[] fidelity = new double[1];
+        NetworkRunResult result = new NetworkRuntime(network)
+                .node("alice", alice -> {
+                    alice.getQuantumComputer().applyHadamard(0);
+                    alice.getQuantumComputer().applyCNOT(0, 1);
+                    alice.sendQuantumState("bob");
+                })
+                .node("bob", bob -> fidelity[0] = bob.receive().fidelity)
+                .run();
+        assertTrue(result.isSuccessful());
+        assertEquals(1.0, fidelity[0], 1e-12);
+        assertEquals(1.0, QuantumComputer.fidelity(network.getComputer("alice"), network.getComputer("bob")), 1e-12);
+    }
+
+    @Test
+    public void testFailureStopsWaitingNodes() throws InterruptedException {
+        QuantumNetwork network = new QuantumNetwork();
+        network.setVerbose(false);
+        network.registerQuantumComputer(new QuantumComputer("broken", 1));
+        network.registerQuantumComputer(new QuantumComputer("waiting", 1));
+        NetworkRunResult result = new NetworkRuntime(network)
+                .node("broken", node -> {
+                    throw new IllegalStateException("protocol error");
+                })
+                .node("waiting", NetworkNode::receive)
+                .run();
+        assertFalse(result.isSuccessful());
+        assertFalse(result.isTimedOut());
+        assertEquals("protocol error", result.getFailures().get("broken").getMessage());
+        assertTrue(result.getCancelled().contains("waiting"));
+    }
+
+    @Test
+    public void testTimeoutStopsNodes() throws InterruptedException {
+        QuantumNetwork network = new QuantumNetwork();
+        network.setVerbose(false);
+        network.registerQuantumComputer(new QuantumComputer("alone", 1));
+        NetworkRunResult result = new NetworkRuntime(network).node("alone", NetworkNode::receive).run(50, TimeUnit.MILLISECONDS);
+        assertTrue(result.isTimedOut());
+        assertEquals(1, result.getCancelled().size());
+        assertTrue(result.getFailures().isEmpty());
+    }
+}
@@ -0,0 +1,180 @@
+package com.core;
+
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class NetworkSimulatorTest {
+
+    private static QuantumNetwork network(String... names) {
+        QuantumNetwork network = new QuantumNetwork();
+        network.setVerbose(false);
+        for (String name : names) {
+            network.registerQuantumComputer(new QuantumComputer(name, 1));
+        }
+        return network;
+    }
+
+    @Test
+    public void testCalendarQueueOrder() {
+        CalendarQueue queue = new CalendarQueue();
+        Random random = new Random(7);
+        int[] order = new int[1];
+        long[] lastTime = {-1};
+        long[] lastSequence = {-1};
+        // a hold model: every event schedules a new one, with bursts of equal times and far future outliers
+        for (int i = 0; i < 1000; i++) {
+            queue.add(random.nextInt(1000), () -> order[0]++);
+        }
+        for (int i = 0; i < 200000; i++) {
+            CalendarQueue.Event event = queue.poll();
+            assertTrue(event.time > lastTime[0] || (event.time == lastTime[0] && event.sequence > lastSequence[0]));
+            lastTime[0] = event.time;
+            lastSequence[0] = event.sequence;
+            long delay = i % 100 == 0 ? 1_000_000 + random.nextInt(1000) : (i % 3 == 0 ? 0 : random.nextInt(2000));
+            queue.add(event.time + delay, () -> order[0]++);
+            if (i % 50000 == 0) {
+                // grow and shrink the queue
+                for (int j = 0; j < 5000; j++) {
+                    queue.add(event.time + random.nextInt(100000), () -> order[0]++);
+                }
+            }
+        }
+        long previous = -1;
+        while (queue.size() > 0) {
+            long peeked = queue.peekTime();
+            CalendarQueue.Event event = queue.poll();
+            assertEquals(peeked, event.time);
+            assertTrue(event.time >= previous);
+            previous = event.time;
+        }
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void testCanNotScheduleInThePast() {
+        NetworkSimulator simulator = new NetworkSimulator(network("a"), 1);
+        simulator.schedule(100, () -> { });
+        simulator.run();
+        try {
+            simulator.scheduleAt(50, () -> { });
+            fail("Expected an event in the past to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertEquals(100, simulator.getTime());
+        }
+        // runUntil moves the clock past the last event, which must not let earlier times in
+        simulator.runUntil(1_000_000);
+        try {
+            simulator.scheduleAt(10, () -> { });
+            fail("Expected an event in the past to be rejected");
+        } catch (IllegalArgumentException e) {
+            assertFalse(simulator.step());
+            assertEquals(1_000_000, simulator.getTime());
+        }
+    }
+
+    @Test
+    public void testQuantumSendRejectsWrongRegisterSize() {
+        QuantumNetwork network = network("alice");
+        network.registerQuantumComputer(new QuantumComputer("bob", 2));
+        NetworkSimulator simulator = new NetworkSimulator(network, 1);
+        try {
+            simulator.sendQuantumState("alice", "bob");
+            fail("Expected a size mismatch");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("State size mismatch"));
+        }
+        assertEquals(0, simulator.getPendingEvents());
+        assertEquals(0, simulator.getMessagesSent());
+    }
+
+    @Test
+    public void testLatencyAndHandlers() {
+        QuantumNetwork network = network("alice", "bob");
+        NetworkSimulator simulator = new NetworkSimulator(network, 1)
+                .connect("alice", "bob", new LinkModel(5_000_000));
+        long[] replyTime = new long[1];
+        simulator.onMessage("bob", msg -> simulator.sendClassicalMessage("bob", "alice", "pong " + msg.classicalData));
+        simulator.onMessage("alice", msg -> replyTime[0] = msg.simulatedTime);
+        simulator.schedule(1_000, () -> simulator.sendClassicalMessage("alice", "bob", "ping"));
+        assertEquals(3, simulator.run());
+        assertEquals(10_001_000, replyTime[0]);
+        assertEquals(10_001_000, simulator.getTime());
+
+        // without a handler the message waits in the mailbox, stamped with the arrival time
+        simulator.onMessage("alice", null);
+        simulator.sendClassicalMessage("bob", "alice", "hello");
+        simulator.runUntil(20_000_000);
+        QuantumNetwork.Message msg = network.receive("alice");
+        assertEquals("hello", msg.classicalData);
+        assertEquals(15_001_000, msg.simulatedTime);
+        assertEquals(20_000_000, simulator.getTime());
+    }
+
+    @Test
+    public void testSameSeedSameRun() {
+        long[][] results = new long[2][];
+        for (int run = 0; run < 2; run++) {
+            NetworkSimulator simulator = new NetworkSimulator(network("a", "b"), 42)
+                    .connect("a", "b", new LinkModel(1000).setJitter(500).setLoss(0.1));
+            long[] sum = new long[1];
+            simulator.onMessage("b", msg -> sum[0] += msg.simulatedTime);
+            for (int i = 0; i < 10000; i++) {
+                simulator.schedule(i, () -> simulator.sendClassicalMessage("a", "b", "x"));
+            }
+            simulator.run();
+            results[run] = new long[] {sum[0], simulator.getMessagesLost(), simulator.getTime()};
+        }
+        assertArrayEquals(results[0], results[1]);
+        assertTrue(results[0][1] > 800 && results[0][1] < 1200);
+    }
+
+    @Test
+    public void testDecoherenceInTransitAndMemory() {
+        QuantumNetwork network = network("alice", "bob");
+        NetworkSimulator simulator = new NetworkSimulator(network, 3)
+                .setLink("alice", "bob", new LinkModel(1_000).setDecoherence(DecoherenceModel.dephasing(1e-3)))
+                .setMemoryDecoherence("alice", DecoherenceModel.dephasing(1e9));
+        network.getComputer("alice").applyHadamard(0);
+        double[] fidelitySum = new double[1];
+        simulator.onMessage("bob", msg -> fidelitySum[0] += msg.fidelity);
+        int sends = 2000;
+        for (int i = 0; i < sends; i++) {
+            simulator.sendQuantumState("alice", "bob");
+        }
+        simulator.run();
+        // a full dephasing of |+> gives |+> or |-> with probability 1/2 each
+        assertEquals(0.5, fidelitySum[0] / sends, 0.05);
+
+        // alice stored her qubit for much longer than T2 = 1 s
+        QuantumComputer stored = network.getComputer("alice").fork("stored");
+        simulator.runUntil(1_000_000_000_000L);
+        double fidelity = QuantumComputer.fidelity(stored, simulator.getComputer("alice"));
+        assertTrue(fidelity < 1e-12 || fidelity > 1 - 1e-12);
+    }
+
+    @Test(timeout = 10_000)
+    public void testRunUntilEndOfTime() {
+        NetworkSimulator simulator = new NetworkSimulator(network("a"), 1);
+        simulator.schedule(100, () -> { });
+        assertEquals(1, simulator.runUntil(Long.MAX_VALUE));
+        assertEquals(0, simulator.getPendingEvents());
+        assertEquals(0, simulator.runUntil(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testMemoryDecoherenceStartsWhenSet() {
+        for (long seed = 0; seed < 20; seed++) {
+            QuantumNetwork network = network("alice");
+            network.getComputer("alice").applyHadamard(0);
+            QuantumComputer plus = network.getComputer("alice").fork("plus");
+            NetworkSimulator simulator = new NetworkSimulator(network, seed);
+            simulator.runUntil(1_000_000_000_000L);
+            // neither the handler nor the model existed before now, so 1000 s with T2 = 1 s must not count
+            simulator.onMessage("alice", msg -> { });
+            simulator.setMemoryDecoherence("alice", DecoherenceModel.dephasing(1e9));
+            assertEquals(1.0, QuantumComputer.fidelity(plus, simulator.getComputer("alice")), 1e-12);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.core;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class OffHeapQuantumComputerTest {
+
+    @Test
+    public void testMatchesHeapQuantumComputer() {
+        QuantumComputer heap = new QuantumComputer("heap", 12, 7L);
+        try (OffHeapQuantumComputer offHeap = new OffHeapQuantumComputer("offHeap", 12, 7L)) {
+            offHeap.setParallelThreshold(1);
+            for (QuantumBackend qc : new QuantumBackend[] {heap, offHeap}) {
+                for (int q = 0; q < 12; q++) {
+                    qc.applyHadamard(q);
+                    qc.applyRX(q, 0.2 * q);
+                }
+                for (int q = 0; q < 11; q++) {
+                    qc.applyCNOT(q, 11 - q);
+                    qc.applyT(q);
+                    qc.applyPauliY(q + 1);
+                }
+                qc.applyPauliZ(4);
+                qc.applyPauliX(0);
+            }
+            for (int q = 0; q < 12; q += 5) {
+                assertEquals(heap.measure(q), offHeap.measure(q));
+            }
+
+            Complex[] expected = heap.getState();
+            for (int i = 0; i < expected.length; i++) {
+                Complex actual = offHeap.getAmplitude(i);
+                assertEquals(expected[i].real(), actual.real(), 1e-12);
+                assertEquals(expected[i].imaginary(), actual.imaginary(), 1e-12);
+            }
+        }
+    }
+
+    @Test
+    public void testReset() {
+        try (OffHeapQuantumComputer qc = new OffHeapQuantumComputer("test", 3)) {
+            qc.applyHadamard(1);
+            qc.reset();
+            assertEquals(1.0, qc.getAmplitude(0).real(), 0.0);
+            assertEquals(0.0, qc.getAmplitude(2).real(), 0.0);
+            assertEquals(8L, qc.getStateSize());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testUseAfterClose() {
+        OffHeapQuantumComputer qc = new OffHeapQuantumComputer("test", 2);
+        qc.close();
+        qc.applyHadamard(0);
+    }
+}
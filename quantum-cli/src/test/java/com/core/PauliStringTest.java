@@ -0,0 +1,25 @@
+package com.core;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class PauliStringTest {
+
+    @Test
+    public void testParse() {
+        PauliString pauliString = PauliString.of("-XIYZ");
+        assertEquals(-1.0, pauliString.getCoefficient(), 0.0);
+        assertEquals(0b1010L, pauliString.getXMask());
+        assertEquals(0b0011L, pauliString.getZMask());
+        assertEquals(1, pauliString.getYCount());
+        assertEquals(4, pauliString.getQubitSpan());
+        assertEquals('Z', pauliString.getPauli(0));
+        assertEquals('X', pauliString.getPauli(3));
+        assertEquals(PauliString.single('Y', 1).withCoefficient(2.0), PauliString.of(2.0, "YI"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsUnknownPauli() {
+        PauliString.of("XQZ");
+    }
+}
@@ -1,5 +1,11 @@
 package com.core;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -103,9 +109,505 @@ public class QuantumComputerTest {
         qc.applyHadamard(1); // out of bounds
     }
 
+    @Test
+    public void testHadamardTwiceIsIdentity() {
+        QuantumComputer qc = new QuantumComputer("test", 3);
+        qc.applyPauliX(2);
+        qc.applyHadamard(1);
+        qc.applyHadamard(1);
+        Complex[] state = qc.getState();
+        assertEquals(1.0, state[4].real(), 1e-12);
+        assertEquals(0.0, state[6].real(), 1e-12);
+    }
+
+    @Test
+    public void testCNOTControlZeroDoesNothing() {
+        QuantumComputer qc = new QuantumComputer("test", 2);
+        qc.applyPauliX(1); // |10>, control qubit 0 is still 0
+        qc.applyCNOT(0, 1);
+        Complex[] state = qc.getState();
+        assertEquals(1.0, state[2].real(), 0.0);
+        assertEquals(0.0, state[3].real(), 0.0);
+    }
+
+    @Test
+    public void testMeasureCollapsesBellPair() {
+        QuantumComputer qc = new QuantumComputer("test", 2);
+        qc.applyHadamard(0);
+        qc.applyCNOT(0, 1);
+        int first = qc.measure(0);
+        Complex[] state = qc.getState();
+        int kept = first == 0 ? 0 : 3;
+        assertEquals(1.0, state[kept].magnitudeSquared(), 1e-12);
+        assertEquals(0.0, state[3 - kept].magnitudeSquared(), 0.0);
+        assertEquals(first, qc.measure(1));
+    }
+
+    @Test
+    public void testApplyRXPi() {
+        QuantumComputer qc = new QuantumComputer("test", 1);
+        qc.applyRX(0, Math.PI); // -i|1>
+        Complex[] state = qc.getState();
+        assertEquals(0.0, state[0].magnitude(), 1e-12);
+        assertEquals(-1.0, state[1].imaginary(), 1e-12);
+    }
+
+    @Test
+    public void testApplyRYMatchesHadamardOnZero() {
+        QuantumComputer qc = new QuantumComputer("test", 2);
+        qc.applyRY(1, Math.PI / 2);
+        Complex[] state = qc.getState();
+        double expected = 1.0 / Math.sqrt(2);
+        assertEquals(expected, state[0].real(), 1e-12);
+        assertEquals(expected, state[2].real(), 1e-12);
+    }
+
+    @Test
+    public void testSTwiceIsZ() {
+        QuantumComputer qc = new QuantumComputer("test", 1);
+        qc.applyHadamard(0);
+        qc.applyS(0);
+        qc.applyS(0);
+        Complex[] state = qc.getState();
+        double expected = 1.0 / Math.sqrt(2);
+        assertEquals(expected, state[0].real(), 1e-12);
+        assertEquals(-expected, state[1].real(), 1e-12);
+        assertEquals(0.0, state[1].imaginary(), 1e-12);
+    }
+
+    @Test
+    public void testApplyTAndPauliY() {
+        QuantumComputer qc = new QuantumComputer("test", 1);
+        qc.applyPauliX(0);
+        qc.applyT(0);
+        Complex[] state = qc.getState();
+        assertEquals(Math.cos(Math.PI / 4), state[1].real(), 1e-12);
+        assertEquals(Math.sin(Math.PI / 4), state[1].imaginary(), 1e-12);
+
+        qc.reset();
+        qc.applyPauliY(0); // i|1>
+        state = qc.getState();
+        assertEquals(1.0, state[1].imaginary(), 1e-12);
+    }
+
+    @Test
+    public void testSXTwiceIsX() {
+        QuantumComputer qc = new QuantumComputer("test", 2);
+        qc.applySX(1);
+        qc.applySX(1);
+        Complex[] state = qc.getState();
+        assertEquals(1.0, state[2].real(), 1e-12);
+        assertEquals(0.0, state[0].magnitude(), 1e-12);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSingleQubitGateWrongSize() {
+        QuantumComputer qc = new QuantumComputer("test", 1);
+        qc.applySingleQubitGate(0, new Complex[][] {{new Complex(1)}});
+    }
+
+    @Test
+    public void testParallelMatchesSerial() {
+        QuantumComputer serial = new QuantumComputer("serial", 16, 42L);
+        QuantumComputer parallel = new QuantumComputer("parallel", 16, 42L);
+        serial.setParallelEnabled(false);
+        parallel.setParallelThreshold(1);
+
+        for (QuantumComputer qc : new QuantumComputer[] {serial, parallel}) {
+            for (int q = 0; q < 16; q++) {
+                qc.applyHadamard(q);
+                qc.applyRX(q, 0.1 * q);
+            }
+            for (int q = 0; q < 15; q++) {
+                qc.applyCNOT(q, q + 1);
+                qc.applyT(q);
+            }
+            qc.applyPauliZ(3);
+            qc.applyPauliX(15);
+            qc.applyRY(7, 1.3);
+        }
+
+        for (int q = 0; q < 16; q += 3) {
+            assertEquals(serial.measure(q), parallel.measure(q));
+        }
+        Complex[] serialState = serial.getState();
+        Complex[] parallelState = parallel.getState();
+        for (int i = 0; i < serialState.length; i++) {
+            assertEquals(serialState[i].real(), parallelState[i].real(), 0.0);
+            assertEquals(serialState[i].imaginary(), parallelState[i].imaginary(), 0.0);
+        }
+    }
+
+    @Test
+    public void testVectorMatchesScalar() {
+        // covers both the low target (shuffle) and high target paths, and low and high controls
+        QuantumComputer scalar = new QuantumComputer("scalar", 10);
+        QuantumComputer vector = new QuantumComputer("vector", 10);
+        scalar.setVectorEnabled(false);
+
+        for (QuantumComputer qc : new QuantumComputer[] {scalar, vector}) {
+            for (int q = 0; q < 10; q++) {
+                qc.applyHadamard(q);
+                qc.applyRX(q, 0.3 + q);
+            }
+            for (int q = 0; q < 9; q++) {
+                qc.applyCNOT(q, 9 - q);
+                qc.applyRY(q, 0.7 * q);
+                qc.applySX(9 - q);
+            }
+            qc.applyCNOT(9, 0);
+            qc.applyCNOT(0, 1);
+        }
+
+        Complex[] expected = scalar.getState();
+        Complex[] actual = vector.getState();
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].real(), actual[i].real(), 1e-12);
+            assertEquals(expected[i].imaginary(), actual[i].imaginary(), 1e-12);
+        }
+    }
+
+    @Test
+    public void testSampleBellPair() {
+        QuantumComputer qc = new QuantumComputer("test", 3, 11L);
+        qc.applyHadamard(0);
+        qc.applyCNOT(0, 2);
+        java.util.Map<String, Integer> counts = qc.sample(10000);
+        assertEquals(2, counts.size());
+        assertEquals(10000, counts.get("000") + counts.get("101"));
+        assertEquals(5000, counts.get("101"), 300);
+        // sampling does not collapse the state
+        assertEquals(0.5, qc.getState()[5].magnitudeSquared(), 1e-12);
+    }
+
+    @Test
+    public void testToBitString() {
+        QuantumComputer qc = new QuantumComputer("test", 4);
+        assertEquals("0110", qc.toBitString(6));
+        assertEquals("0001", qc.toBitString(1));
+    }
+
+    @Test
+    public void testMeasureRegisterGHZ() {
+        for (long seed = 0; seed < 10; seed++) {
+            QuantumComputer qc = new QuantumComputer("test", 4, seed);
+            qc.applyHadamard(0);
+            qc.applyCNOT(0, 1);
+            qc.applyCNOT(1, 2);
+            qc.applyCNOT(2, 3);
+            int[] results = qc.measureRegister(3, 0, 2);
+            assertEquals(results[0], results[1]);
+            assertEquals(results[0], results[2]);
+            int kept = results[0] == 0 ? 0 : 15;
+            assertEquals(1.0, qc.getState()[kept].magnitudeSquared(), 1e-12);
+            assertEquals(results[0], qc.measure(1));
+        }
+    }
+
+    @Test
+    public void testMeasureRegisterDistribution() {
+        QuantumComputer qc = new QuantumComputer("test", 2, 5L);
+        int ones = 0;
+        for (int shot = 0; shot < 2000; shot++) {
+            qc.reset();
+            qc.applyHadamard(0);
+            qc.applyPauliX(1);
+            int[] results = qc.measureRegister(0, 1);
+            assertEquals(1, results[1]);
+            ones += results[0];
+        }
+        assertEquals(1000, ones, 100);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testMeasureRegisterDuplicateQubit() {
+        new QuantumComputer("test", 2).measureRegister(1, 1);
+    }
+
     @Test
     public void testToString() {
         QuantumComputer qc = new QuantumComputer("test", 1);
         assertEquals("Quantum Computer{name='test', numQubits=1}", qc.toString());
     }
-}
\ No newline at end of file
+
+    private static void prepareRandomState(QuantumComputer qc) {
+        for (int q = 0; q < qc.getNumQubits(); q++) {
+            qc.applyHadamard(q);
+            qc.applyRX(q, 0.37 * q + 0.1);
+            qc.applyT(q);
+        }
+        for (int q = 0; q < qc.getNumQubits() - 1; q++) {
+            qc.applyCNOT(q, q + 1);
+            qc.applyRY(q, 0.21 * q);
+        }
+    }
+
+    @Test
+    public void testPauliExpectationMatchesAppliedGates() {
+        QuantumComputer qc = new QuantumComputer("test", 5);
+        prepareRandomState(qc);
+        Complex[] state = qc.getState();
+        for (String paulis : new String[] {"IIIIZ", "XIIII", "YZIXI", "ZZZZZ", "IYIYI", "XYZYX", "YYYII"}) {
+            QuantumComputer applied = new QuantumComputer("applied", 5);
+            applied.setState(state);
+            for (int q = 0; q < 5; q++) {
+                switch (paulis.charAt(4 - q)) {
+                    case 'X' -> applied.applyPauliX(q);
+                    case 'Y' -> applied.applyPauliY(q);
+                    case 'Z' -> applied.applyPauliZ(q);
+                    default -> { }
+                }
+            }
+            Complex[] image = applied.getState();
+            double expected = 0;
+            for (int i = 0; i < state.length; i++) {
+                expected += state[i].conjugate().multiply(image[i]).real();
+            }
+            assertEquals(paulis, expected, qc.expectation(PauliString.of(paulis)), 1e-12);
+        }
+    }
+
+    @Test
+    public void testWeightedObservable() {
+        QuantumComputer qc = new QuantumComputer("test", 2);
+        qc.applyHadamard(0);
+        qc.applyCNOT(0, 1);
+        List<PauliString> observable = List.of(PauliString.of(0.5, "XX"), PauliString.of(-2.0, "ZZ"), PauliString.of(3.0, "YY"));
+        assertEquals(0.5 - 2.0 - 3.0, qc.expectation(observable), 1e-12);
+    }
+
+    @Test
+    public void testParallelExpectationMatchesSerial() {
+        QuantumComputer qc = new QuantumComputer("test", 16);
+        prepareRandomState(qc);
+        PauliString pauliString = PauliString.of(0.7, "XIZYIIIIZXXIYIIZ");
+        qc.setParallelEnabled(false);
+        double serial = qc.expectation(pauliString);
+        qc.setParallelEnabled(true);
+        qc.setParallelThreshold(1);
+        assertEquals(serial, qc.expectation(pauliString), 0.0);
+    }
+
+    @Test
+    public void testStateStringMatchesFormatter() {
+        QuantumComputer qc = new QuantumComputer("test", 5);
+        prepareRandomState(qc);
+        qc.applyPauliX(3);
+        StringBuilder expected = new StringBuilder();
+        Complex[] state = qc.getState();
+        for (int i = 0; i < state.length; i++) {
+            double probability = state[i].magnitudeSquared();
+            if (probability > 1e-20) {
+                expected.append(String.format("|%s>: %s(prob %.4f)\n", qc.toBitString(i), state[i], probability));
+            }
+        }
+        assertEquals(expected.toString(), qc.getStateString());
+
+        // decimal ties are not exact in binary, %.nf rounds them on the shortest decimal form
+        for (double value : new double[] {0.58415, 0.00005, 0.12345, 1.00005, -0.58415, 0.5, 0.0}) {
+            StringBuilder fixed = new StringBuilder();
+            StateRenderer.appendFixed(fixed, value, 4);
+            assertEquals(String.format("%.4f", value), fixed.toString());
+        }
+        for (int i = 5; i < 2_000_000; i += 10) {
+            double value = i / 1e7;
+            StringBuilder fixed = new StringBuilder();
+            StateRenderer.appendFixed(fixed, value, 6);
+            assertEquals(String.format("%.6f", value), fixed.toString());
+        }
+    }
+
+    @Test
+    public void testStateStringWideRegister() {
+        // the bit string of index 2^20 + 1 used to overflow when parsed as a decimal int
+        QuantumComputer qc = new QuantumComputer("test", 21);
+        qc.applyPauliX(0);
+        qc.applyPauliX(20);
+        assertEquals("|100000000000000000001>: 1.000000(prob 1.0000)\n", qc.getStateString());
+    }
+
+    @Test
+    public void testTopStatesAndThreshold() throws Exception {
+        QuantumComputer qc = new QuantumComputer("test", 2);
+        qc.applyRY(0, 2 * Math.acos(Math.sqrt(0.8)));
+        qc.applyRY(1, 2 * Math.acos(Math.sqrt(0.6)));
+        // probabilities: |00> 0.48, |01> 0.12, |10> 0.32, |11> 0.08
+        StringBuilder top = new StringBuilder();
+        assertEquals(2, qc.writeTopStates(top, 2));
+        String[] lines = top.toString().split("\n");
+        assertTrue(lines[0].startsWith("|00>"));
+        assertTrue(lines[1].startsWith("|10>"));
+
+        StringBuilder above = new StringBuilder();
+        assertEquals(3, qc.writeState(above, 0.1));
+        assertFalse(above.toString().contains("|11>"));
+
+        StringBuilder all = new StringBuilder();
+        assertEquals(4, qc.writeTopStates(all, 100));
+    }
+
+    @Test
+    public void testCheckpointRoundTrip() throws Exception {
+        QuantumComputer qc = new QuantumComputer("test", 16);
+        prepareRandomState(qc);
+        Path path = Files.createTempFile("state", ".qst");
+        try {
+            qc.saveState(path);
+            QuantumComputer loaded = QuantumComputer.loadState("loaded", path);
+            assertEquals("loaded", loaded.getName());
+            assertEquals(16, loaded.getNumQubits());
+            assertArrayEquals(qc.realParts(), loaded.realParts(), 0.0);
+            assertArrayEquals(qc.imaginaryParts(), loaded.imaginaryParts(), 0.0);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testCheckpointSkipsZeroChunks() throws Exception {
+        // only the first and the last amplitude are nonzero, so only 2 of the 64 chunks are stored
+        QuantumComputer qc = new QuantumComputer("test", 20);
+        qc.applyHadamard(19);
+        for (int q = 0; q < 19; q++) {
+            qc.applyCNOT(19, q);
+        }
+        Path path = Files.createTempFile("state", ".qst");
+        try {
+            qc.saveState(path);
+            assertTrue(Files.size(path) < 3L * 2 * StateCheckpoint.CHUNK_AMPLITUDES * Double.BYTES);
+            QuantumComputer loaded = QuantumComputer.loadState("loaded", path);
+            assertEquals(Math.sqrt(0.5), loaded.getAmplitude(0).real(), 1e-15);
+            assertEquals(Math.sqrt(0.5), loaded.getAmplitude((1 << 20) - 1).real(), 1e-15);
+            assertEquals(0.0, loaded.getAmplitude(1 << 19).real(), 0.0);
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testCorruptCheckpointIsRejected() throws Exception {
+        QuantumComputer qc = new QuantumComputer("test", 4);
+        qc.applyHadamard(2);
+        Path path = Files.createTempFile("state", ".qst");
+        try {
+            qc.saveState(path);
+            byte[] bytes = Files.readAllBytes(path);
+            bytes[bytes.length - 3] ^= 1;
+            Files.write(path, bytes);
+            try {
+                QuantumComputer.loadState("loaded", path);
+                fail("Expected the checksum to fail");
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("checksum"));
+            }
+        } finally {
+            Files.deleteIfExists(path);
+        }
+    }
+
+    @Test
+    public void testSnapshotRestoreAndFork() {
+        QuantumComputer qc = new QuantumComputer("test", 10);
+        prepareRandomState(qc);
+        Complex[] prepared = qc.getState();
+        StateSnapshot snapshot = qc.snapshot();
+
+        QuantumComputer fork = qc.fork("fork");
+        fork.applyHadamard(3);
+        qc.applyPauliX(7);
+        qc.measure(2);
+        // neither branch changed the other or the snapshot
+        assertEquals(prepared[5].real(), snapshot.getAmplitude(5).real(), 0.0);
+        assertNotEquals(qc.getState()[5].real(), fork.getState()[5].real(), 1e-9);
+
+        qc.restore(snapshot);
+        Complex[] restored = qc.getState();
+        for (int i = 0; i < prepared.length; i++) {
+            assertEquals(prepared[i].real(), restored[i].real(), 0.0);
+            assertEquals(prepared[i].imaginary(), restored[i].imaginary(), 0.0);
+        }
+        qc.reset();
+        assertEquals(prepared[0].real(), snapshot.getAmplitude(0).real(), 0.0);
+    }
+
+    @Test
+    public void testOverlapFidelityAndTraceDistance() {
+        QuantumComputer a = new QuantumComputer("a", 16);
+        prepareRandomState(a);
+        QuantumComputer b = a.fork("b");
+        assertEquals(1.0, QuantumComputer.fidelity(a, b), 1e-12);
+        assertEquals(0.0, QuantumComputer.traceDistance(a, b), 1e-6);
+
+        // RZ only changes relative phases: <a|b> = sum |a_i|^2 e^{+-i theta/2}
+        b.applyRZ(5, 0.8);
+        Complex overlap = QuantumComputer.overlap(a, b);
+        assertEquals(Math.cos(0.4), overlap.real(), 1e-12);
+        double fidelity = overlap.magnitudeSquared();
+        assertTrue(fidelity < 1.0);
+        assertEquals(fidelity, QuantumComputer.fidelity(a, b), 1e-15);
+        assertEquals(Math.sqrt(1 - fidelity), QuantumComputer.traceDistance(a, b), 1e-9);
+
+        // the parallel path adds the same blocks in the same order
+        a.setParallelThreshold(1);
+        Complex parallelOverlap = QuantumComputer.overlap(a, b);
+        assertEquals(overlap.real(), parallelOverlap.real(), 0.0);
+        assertEquals(overlap.imaginary(), parallelOverlap.imaginary(), 0.0);
+
+        StateSnapshot before = a.snapshot();
+        a.applyPauliX(0);
+        QuantumComputer zero = new QuantumComputer("zero", 16);
+        zero.applyPauliX(0);
+        assertEquals(0.0, zero.fidelity(new QuantumComputer("other", 16).snapshot()), 0.0);
+        assertTrue(a.fidelity(before) < 1.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testFidelityRejectsDifferentSizes() {
+        QuantumComputer.fidelity(new QuantumComputer("a", 2), new QuantumComputer("b", 3));
+    }
+
+    @Test
+    public void testMeasureRegisterParallelMatchesSerial() {
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            for (int[] qubits : new int[][] {{0, 3, 7}, {0, 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17}}) {
+                for (long seed = 0; seed < 5; seed++) {
+                    QuantumComputer serial = new QuantumComputer("serial", 18, seed);
+                    QuantumComputer parallel = new QuantumComputer("parallel", 18, seed);
+                    serial.setParallelEnabled(false);
+                    parallel.setParallelThreshold(1);
+                    parallel.setForkJoinPool(pool);
+                    prepareRandomState(serial);
+                    prepareRandomState(parallel);
+
+                    assertArrayEquals(serial.measureRegister(qubits), parallel.measureRegister(qubits));
+                    Complex[] serialState = serial.getState();
+                    Complex[] parallelState = parallel.getState();
+                    for (int i = 0; i < serialState.length; i++) {
+                        assertEquals(serialState[i].real(), parallelState[i].real(), 0.0);
+                        assertEquals(serialState[i].imaginary(), parallelState[i].imaginary(), 0.0);
+                    }
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testMeasureWholeLargeRegister() {
+        QuantumComputer qc = new QuantumComputer("test", 16, 11L);
+        prepareRandomState(qc);
+        int[] qubits = new int[16];
+        for (int q = 0; q < 16; q++) {
+            qubits[q] = q;
+        }
+        int[] bits = qc.measureRegister(qubits);
+        int index = 0;
+        for (int q = 0; q < 16; q++) {
+            index |= bits[q] << q;
+        }
+        // the state collapsed onto the measured basis state
+        assertEquals(1.0, qc.getState()[index].magnitudeSquared(), 1e-12);
+    }
+}
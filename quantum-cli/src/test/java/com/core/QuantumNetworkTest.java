@@ -0,0 +1,128 @@
+package com.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class QuantumNetworkTest {
+
+    @Test
+    public void testDeliverLoadsSentState() {
+        QuantumNetwork network = new QuantumNetwork();
+        QuantumComputer alice = new QuantumComputer("alice", 3);
+        QuantumComputer bob = new QuantumComputer("bob", 3);
+        network.registerQuantumComputer(alice);
+        network.registerQuantumComputer(bob);
+
+        alice.applyHadamard(0);
+        alice.applyCNOT(0, 2);
+        network.sendQuantumState("alice", "bob");
+        network.sendClassicalMessage("alice", "bob", "done");
+        // later changes of the sender do not change the sent state
+        alice.applyPauliX(1);
+
+        QuantumNetwork.Message quantum = network.deliver();
+        assertTrue(quantum.isQuantum());
+        // nothing on the network changes a state in transit
+        assertEquals(1.0, quantum.fidelity, 0.0);
+        assertEquals(1 / Math.sqrt(2), bob.getState()[5].real(), 1e-12);
+        assertEquals(0.0, QuantumComputer.fidelity(alice, bob), 1e-12);
+
+        QuantumNetwork.Message classical = network.deliver();
+        assertFalse(classical.isQuantum());
+        assertTrue(Double.isNaN(classical.fidelity));
+        assertNull(network.deliver());
+    }
+
+    @Test
+    public void testConcurrentSendersKeepPerSenderOrder() throws InterruptedException {
+        QuantumNetwork network = new QuantumNetwork();
+        network.setVerbose(false);
+        int senders = 4;
+        int messagesEach = 20000;
+        network.registerQuantumComputer(new QuantumComputer("receiver", 1));
+        for (int s = 0; s < senders; s++) {
+            network.registerQuantumComputer(new QuantumComputer("sender" + s, 1));
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        for (int s = 0; s < senders; s++) {
+            String name = "sender" + s;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < messagesEach; i++) {
+                    network.sendClassicalMessage(name, "receiver", Integer.toString(i));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+
+        int[] next = new int[senders];
+        List<QuantumNetwork.Message> batch = new ArrayList<>();
+        int received = 0;
+        while (received < senders * messagesEach) {
+            QuantumNetwork.Message first = network.receive("receiver", 5, TimeUnit.SECONDS);
+            assertNotNull(first);
+            batch.clear();
+            batch.add(first);
+            network.drainTo("receiver", batch, 1000);
+            for (QuantumNetwork.Message message : batch) {
+                int sender = message.from.charAt(6) - '0';
+                assertEquals(next[sender]++, Integer.parseInt(message.classicalData));
+            }
+            received += batch.size();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(0, network.getMessageQueueSize());
+        assertEquals(senders * messagesEach, network.getClassicalMessages("receiver").size());
+        assertNull(network.receive("receiver", 10, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testReceiveIsPerComputer() throws InterruptedException {
+        QuantumNetwork network = new QuantumNetwork();
+        network.setVerbose(false);
+        network.registerQuantumComputer(new QuantumComputer("alice", 1));
+        network.registerQuantumComputer(new QuantumComputer("bob", 1));
+        network.sendClassicalMessage("alice", "bob", "for bob");
+        assertNull(network.receive("alice"));
+        assertEquals(1, network.getMessageQueueSize("bob"));
+
+        Thread sender = new Thread(() -> network.sendClassicalMessage("bob", "alice", "for alice"));
+        sender.start();
+        assertEquals("for alice", network.receiveBlocking("alice").classicalData);
+        sender.join();
+        assertEquals("for bob", network.receive("bob").classicalData);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReceiveRejectsUnknownComputer() {
+        new QuantumNetwork().receive("nobody");
+    }
+
+    @Test
+    public void testQuantumSendRejectsWrongRegisterSize() {
+        QuantumNetwork network = new QuantumNetwork();
+        network.setVerbose(false);
+        network.registerQuantumComputer(new QuantumComputer("alice", 2));
+        network.registerQuantumComputer(new QuantumComputer("bob", 3));
+        try {
+            network.sendQuantumState("alice", "bob");
+            fail("Expected a size mismatch");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("State size mismatch"));
+        }
+        try {
+            network.sendQuantumState("bob", "alice", new QuantumComputer("payload", 3).getState());
+            fail("Expected a size mismatch");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().startsWith("State size mismatch"));
+        }
+        assertEquals(0, network.getMessageQueueSize());
+    }
+}
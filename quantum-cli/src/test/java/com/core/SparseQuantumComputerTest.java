@@ -0,0 +1,83 @@
+package com.core;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class SparseQuantumComputerTest {
+
+    @Test
+    public void testMatchesDenseQuantumComputer() {
+        QuantumComputer dense = new QuantumComputer("dense", 8, 3L);
+        SparseQuantumComputer sparse = new SparseQuantumComputer("sparse", 8, 3L);
+        sparse.setDenseThreshold(1.0);
+        for (QuantumBackend qc : new QuantumBackend[] {dense, sparse}) {
+            for (int q = 0; q < 8; q++) {
+                qc.applyHadamard(q);
+                qc.applyRX(q, 0.3 * q);
+            }
+            for (int q = 0; q < 7; q++) {
+                qc.applyCNOT(q, 7 - q);
+                qc.applyT(q);
+                qc.applyPauliY(q + 1);
+            }
+            qc.applyPauliZ(2);
+            qc.applyPauliX(5);
+        }
+        assertFalse(sparse.isDense());
+        assertEquals(dense.measure(3), sparse.measure(3));
+
+        Complex[] expected = dense.getState();
+        for (int i = 0; i < expected.length; i++) {
+            Complex actual = sparse.getAmplitude(i);
+            assertEquals(expected[i].real(), actual.real(), 1e-12);
+            assertEquals(expected[i].imaginary(), actual.imaginary(), 1e-12);
+        }
+    }
+
+    @Test
+    public void testLargeGhzState() {
+        SparseQuantumComputer qc = new SparseQuantumComputer("ghz", 60, 1L);
+        qc.applyHadamard(0);
+        for (int q = 1; q < 60; q++) {
+            qc.applyCNOT(0, q);
+        }
+        assertEquals(2, qc.getSupportSize());
+        assertEquals(1 / Math.sqrt(2), qc.getAmplitude((1L << 60) - 1).real(), 1e-12);
+
+        int first = qc.measure(17);
+        for (int q = 0; q < 60; q++) {
+            assertEquals(first, qc.measure(q));
+        }
+        assertEquals(1, qc.getSupportSize());
+    }
+
+    @Test
+    public void testCancellationIsPruned() {
+        SparseQuantumComputer qc = new SparseQuantumComputer("test", 40);
+        qc.applyHadamard(39);
+        qc.applyHadamard(39);
+        assertEquals(1, qc.getSupportSize());
+        assertEquals(1.0, qc.getAmplitude(0).real(), 1e-12);
+    }
+
+    @Test
+    public void testSwitchesToDense() {
+        SparseQuantumComputer qc = new SparseQuantumComputer("test", 6, 5L);
+        qc.setDenseThreshold(0.1);
+        qc.applyHadamard(0);
+        qc.applyHadamard(1);
+        assertFalse(qc.isDense());
+        qc.applyHadamard(2);
+        assertTrue(qc.isDense());
+        assertEquals(0.125, Math.pow(qc.getAmplitude(7).real(), 2), 1e-12);
+
+        qc.reset();
+        assertFalse(qc.isDense());
+        assertEquals(1, qc.getSupportSize());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testTooManyQubits() {
+        new SparseQuantumComputer("test", 63);
+    }
+}
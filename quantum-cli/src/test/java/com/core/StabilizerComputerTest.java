@@ -0,0 +1,78 @@
+package com.core;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class StabilizerComputerTest {
+
+    @Test
+    public void testBellPairStabilizers() {
+        StabilizerComputer qc = new StabilizerComputer("test", 2);
+        qc.applyHadamard(0);
+        qc.applyCNOT(0, 1);
+        assertEquals(Arrays.asList("+XX", "+ZZ"), qc.getStabilizers());
+    }
+
+    @Test
+    public void testDeterministicMeasurement() {
+        StabilizerComputer qc = new StabilizerComputer("test", 3);
+        qc.applyPauliX(1);
+        qc.applyHadamard(2);
+        qc.applyS(2);
+        qc.applyS(2);
+        qc.applyHadamard(2); // H Z H = X
+        assertEquals(0, qc.measure(0));
+        assertEquals(1, qc.measure(1));
+        assertEquals(1, qc.measure(2));
+    }
+
+    @Test
+    public void testLargeGhzState() {
+        StabilizerComputer qc = new StabilizerComputer("ghz", 2000, 11L);
+        qc.applyHadamard(0);
+        for (int q = 1; q < 2000; q++) {
+            qc.applyCNOT(q - 1, q);
+        }
+        int first = qc.measure(1234);
+        for (int q = 0; q < 2000; q += 7) {
+            assertEquals(first, qc.measure(q));
+        }
+    }
+
+    @Test
+    public void testOutcomesArePossibleInStateVector() {
+        Random circuitRandom = new Random(5L);
+        for (int trial = 0; trial < 20; trial++) {
+            QuantumComputer dense = new QuantumComputer("dense", 5);
+            StabilizerComputer stabilizer = new StabilizerComputer("stabilizer", 5, trial);
+            for (int step = 0; step < 40; step++) {
+                int q = circuitRandom.nextInt(5);
+                switch (circuitRandom.nextInt(5)) {
+                    case 0 -> { dense.applyHadamard(q); stabilizer.applyHadamard(q); }
+                    case 1 -> { dense.applyS(q); stabilizer.applyS(q); }
+                    case 2 -> { dense.applySX(q); stabilizer.applySX(q); }
+                    case 3 -> { dense.applyPauliY(q); stabilizer.applyPauliY(q); }
+                    default -> {
+                        int target = (q + 1 + circuitRandom.nextInt(4)) % 5;
+                        dense.applyCNOT(q, target);
+                        stabilizer.applyCNOT(q, target);
+                    }
+                }
+            }
+            Complex[] state = dense.getState();
+            int outcome = 0;
+            for (int q = 0; q < 5; q++) {
+                outcome |= stabilizer.measure(q) << q;
+            }
+            assertTrue(state[outcome].magnitudeSquared() > 1e-9);
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testNonCliffordGate() {
+        new StabilizerComputer("test", 1).applyT(0);
+    }
+}
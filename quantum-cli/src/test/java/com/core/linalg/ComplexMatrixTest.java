@@ -0,0 +1,116 @@
+package com.core.linalg;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.core.Complex;
+import com.core.Gates;
+
+public class ComplexMatrixTest {
+
+    private static ComplexMatrix random(int rows, int columns, long seed) {
+        Random random = new Random(seed);
+        ComplexMatrix matrix = new ComplexMatrix(rows, columns);
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < columns; c++) {
+                matrix.set(r, c, random.nextGaussian(), random.nextGaussian());
+            }
+        }
+        return matrix;
+    }
+
+    private static void assertClose(ComplexMatrix expected, ComplexMatrix actual, double delta) {
+        assertEquals(expected.getRows(), actual.getRows());
+        assertEquals(expected.getColumns(), actual.getColumns());
+        assertTrue(expected.subtract(actual).norm() < delta);
+    }
+
+    @Test
+    public void testMultiplyMatchesNaiveProduct() {
+        ComplexMatrix a = random(150, 300, 1);
+        ComplexMatrix b = random(300, 270, 2);
+        ComplexMatrix expected = new ComplexMatrix(150, 270);
+        for (int i = 0; i < 150; i++) {
+            for (int j = 0; j < 270; j++) {
+                Complex sum = new Complex(0);
+                for (int k = 0; k < 300; k++) {
+                    sum = sum.add(a.get(i, k).multiply(b.get(k, j)));
+                }
+                expected.set(i, j, sum.real(), sum.imaginary());
+            }
+        }
+        ComplexMatrix parallel = a.multiply(b, new ForkJoinPool(4));
+        ComplexMatrix serial = a.multiply(b, new ForkJoinPool(1));
+        assertClose(expected, parallel, 1e-9);
+        // every element is summed in the same order, so the results are identical
+        assertEquals(0.0, parallel.subtract(serial).norm(), 0.0);
+    }
+
+    @Test
+    public void testKroneckerAndAdjoint() {
+        ComplexMatrix h = ComplexMatrix.of(Gates.hadamard());
+        ComplexMatrix x = ComplexMatrix.of(Gates.pauliX());
+        ComplexMatrix hx = h.kronecker(x);
+        assertEquals(4, hx.getRows());
+        assertEquals(1 / Math.sqrt(2), hx.getReal(0, 1), 1e-12);
+        assertEquals(-1 / Math.sqrt(2), hx.getReal(2, 3), 1e-12);
+        assertTrue(hx.isUnitary(1e-12));
+
+        ComplexMatrix s = ComplexMatrix.of(Gates.s());
+        assertEquals(-1.0, s.conjugateTranspose().getImaginary(1, 1), 0.0);
+        assertClose(ComplexMatrix.identity(2), s.multiply(s.conjugateTranspose()), 1e-12);
+        assertEquals(2.0, s.innerProduct(s).real(), 1e-12);
+        assertEquals(Math.sqrt(2), s.norm(), 1e-12);
+    }
+
+    @Test
+    public void testInverse() {
+        ComplexMatrix a = random(40, 40, 3);
+        assertClose(ComplexMatrix.identity(40), a.multiply(a.inverse()), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInverseRejectsSingular() {
+        ComplexMatrix a = new ComplexMatrix(2, 2);
+        a.set(0, 0, 1, 1);
+        a.set(0, 1, 2, 2);
+        a.set(1, 0, 2, 0);
+        a.set(1, 1, 4, 0);
+        a.inverse();
+    }
+
+    @Test
+    public void testEigenHermitian() {
+        ComplexMatrix a = random(12, 12, 4);
+        ComplexMatrix hermitian = a.add(a.conjugateTranspose());
+        HermitianEigen eigen = hermitian.eigenHermitian();
+        double[] values = eigen.getEigenvalues();
+        ComplexMatrix vectors = eigen.getEigenvectors();
+        assertTrue(vectors.isUnitary(1e-10));
+        ComplexMatrix diagonal = new ComplexMatrix(12, 12);
+        for (int i = 0; i < 12; i++) {
+            diagonal.set(i, i, values[i], 0);
+            if (i > 0) {
+                assertTrue(values[i - 1] <= values[i]);
+            }
+        }
+        assertClose(hermitian, vectors.multiply(diagonal).multiply(vectors.conjugateTranspose()), 1e-9);
+
+        double[] pauliY = ComplexMatrix.of(Gates.pauliY()).eigenHermitian().getEigenvalues();
+        assertEquals(-1.0, pauliY[0], 1e-12);
+        assertEquals(1.0, pauliY[1], 1e-12);
+    }
+
+    @Test
+    public void testSvdSingularValues() {
+        ComplexMatrix a = ComplexMatrix.identity(3).scale(0, 2);
+        ComplexSvd svd = a.svd();
+        assertEquals(3, svd.getRank());
+        for (double value : svd.getSingularValues()) {
+            assertEquals(2.0, value, 1e-12);
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.simulation;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.List;
+
+import com.core.CompiledCircuit;
+import com.core.Complex;
+import com.core.QuantumComputer;
+import com.core.StabilizerComputer;
+
+public class CircuitBuilderTest {
+
+    private static void buildCircuit(CircuitBuilder builder) {
+        for (int q = 0; q < 5; q++) {
+            builder.hadamard(q).rx(q, 0.3 * q).t(q).rz(q, 0.1);
+        }
+        builder.cnot(0, 1).ry(1, 0.4).cnot(1, 2).s(2).cnot(3, 4).sx(4).pauliY(0).cnot(4, 0).phase(3, 1.1).pauliZ(2).pauliX(1);
+    }
+
+    @Test
+    public void testDeferredMatchesImmediate() {
+        QuantumComputer immediate = new QuantumComputer("immediate", 5);
+        QuantumComputer deferred = new QuantumComputer("deferred", 5);
+        buildCircuit(new CircuitBuilder(immediate));
+
+        CircuitBuilder builder = new CircuitBuilder(deferred).setDeferred(true);
+        buildCircuit(builder);
+        assertEquals(1.0, deferred.getState()[0].real(), 0.0); // nothing applied yet
+        builder.execute();
+        assertTrue(builder.getPendingOperations().isEmpty());
+
+        Complex[] expected = immediate.getState();
+        Complex[] actual = deferred.getState();
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].real(), actual[i].real(), 1e-12);
+            assertEquals(expected[i].imaginary(), actual[i].imaginary(), 1e-12);
+        }
+    }
+
+    @Test
+    public void testFusionReducesOperations() {
+        QuantumComputer qc = new QuantumComputer("test", 5);
+        CircuitBuilder builder = new CircuitBuilder(qc).setDeferred(true);
+        buildCircuit(builder);
+        List<CircuitOperation> pending = builder.getPendingOperations();
+
+        List<CircuitOperation> singleRuns = GateFusion.fuse(pending, 1);
+        List<CircuitOperation> blocks = GateFusion.fuse(pending, 3);
+        assertTrue(singleRuns.size() < pending.size());
+        assertTrue(blocks.size() < singleRuns.size());
+        for (CircuitOperation operation : blocks) {
+            assertTrue(operation.getQubitCount() <= 3);
+        }
+    }
+
+    @Test
+    public void testMeasureExecutesPendingGates() {
+        QuantumComputer qc = new QuantumComputer("test", 2);
+        CircuitBuilder builder = new CircuitBuilder(qc).setDeferred(true);
+        builder.pauliX(0).cnot(0, 1);
+        assertEquals(1, builder.measure(1));
+        assertEquals(1, builder.measure(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDeferredValidatesQubits() {
+        new CircuitBuilder(new QuantumComputer("test", 2)).setDeferred(true).hadamard(2);
+    }
+
+    @Test
+    public void testBellPairOnStabilizerBackend() {
+        StabilizerComputer qc = new StabilizerComputer("test", 500, 2L);
+        CircuitBuilder builder = new CircuitBuilder(qc).setDeferred(true);
+        builder.createBellPair(10, 400).s(10).s(10).pauliZ(10);
+        int[] results = builder.measureRegister(10, 400);
+        assertEquals(results[0], results[1]);
+        assertSame(qc, builder.getBackend());
+    }
+
+    @Test
+    public void testCompiledCircuitMatchesImmediate() {
+        QuantumComputer immediate = new QuantumComputer("immediate", 5);
+        buildCircuit(new CircuitBuilder(immediate));
+
+        CircuitBuilder builder = new CircuitBuilder(new QuantumComputer("recorder", 5)).setDeferred(true);
+        buildCircuit(builder);
+        CompiledCircuit compiled = builder.compile();
+        assertTrue(builder.getPendingOperations().isEmpty());
+
+        Complex[] expected = immediate.getState();
+        for (int run = 0; run < 3; run++) {
+            QuantumComputer qc = new QuantumComputer("run" + run, 5);
+            compiled.run(qc);
+            Complex[] actual = qc.getState();
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i].real(), actual[i].real(), 1e-12);
+                assertEquals(expected[i].imaginary(), actual[i].imaginary(), 1e-12);
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testCompileNeedsDeferredMode() {
+        // the gate is applied straight away, so compiling would silently give an empty circuit
+        new CircuitBuilder(new QuantumComputer("test", 2)).hadamard(0).compile();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testCompiledCircuitChecksQubitCount() {
+        CompiledCircuit compiled = CompiledCircuit.builder(3).cnot(0, 2).build();
+        compiled.run(new QuantumComputer("test", 2));
+    }
+}
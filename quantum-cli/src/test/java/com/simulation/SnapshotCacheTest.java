@@ -0,0 +1,72 @@
+package com.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.core.Complex;
+import com.core.QuantumComputer;
+
+public class SnapshotCacheTest {
+
+    private static List<CircuitOperation> prefix(int layers) {
+        List<CircuitOperation> circuit = new ArrayList<>();
+        for (int layer = 0; layer < layers; layer++) {
+            for (int q = 0; q < 6; q++) {
+                circuit.add(CircuitOperation.rotation(CircuitOperation.Kind.RY, q, 0.3 * (layer + q)));
+            }
+            for (int q = 0; q < 5; q++) {
+                circuit.add(CircuitOperation.cnot(q, q + 1));
+            }
+        }
+        return circuit;
+    }
+
+    @Test
+    public void testReusesLongestPrefix() {
+        SnapshotCache cache = new SnapshotCache(6, 1 << 20);
+        List<CircuitOperation> shared = prefix(3);
+        cache.prepare("first", shared);
+        assertEquals(1, cache.getMisses());
+
+        List<CircuitOperation> longer = new ArrayList<>(shared);
+        longer.add(CircuitOperation.gate(CircuitOperation.Kind.HADAMARD, 2));
+        QuantumComputer fromCache = cache.prepare("second", longer);
+        assertEquals(1, cache.getHits());
+        assertEquals(shared.size(), cache.getGatesSkipped());
+        assertEquals(2, cache.getSnapshotCount());
+
+        QuantumComputer direct = new QuantumComputer("direct", 6);
+        for (CircuitOperation operation : longer) {
+            operation.applyTo(direct);
+        }
+        Complex[] expected = direct.getState();
+        Complex[] actual = fromCache.getState();
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i].real(), actual[i].real(), 1e-12);
+            assertEquals(expected[i].imaginary(), actual[i].imaginary(), 1e-12);
+        }
+
+        // changing a prepared computer does not change what the cache hands out next
+        fromCache.applyPauliX(0);
+        Complex[] again = cache.prepare("third", longer).getState();
+        assertEquals(expected[1].real(), again[1].real(), 1e-12);
+    }
+
+    @Test
+    public void testEvictsLeastRecentlyUsed() {
+        long stateBytes = 2L * (1 << 6) * Double.BYTES;
+        SnapshotCache cache = new SnapshotCache(6, 2 * stateBytes);
+        cache.prepare("a", prefix(1));
+        cache.prepare("b", prefix(2).subList(0, 7));
+        cache.prepare("a", prefix(1));
+        cache.prepare("c", List.of(CircuitOperation.gate(CircuitOperation.Kind.PAULI_X, 0)));
+        assertEquals(2, cache.getSnapshotCount());
+        assertEquals(2 * stateBytes, cache.getUsedBytes());
+        long hits = cache.getHits();
+        cache.prepare("a", prefix(1));
+        assertEquals(hits + 1, cache.getHits());
+    }
+}
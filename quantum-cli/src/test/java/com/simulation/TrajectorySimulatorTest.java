@@ -0,0 +1,54 @@
+package com.simulation;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.ToDoubleFunction;
+
+import com.core.Complex;
+import com.core.QuantumComputer;
+
+public class TrajectorySimulatorTest {
+
+    private static List<CircuitOperation> bellCircuit() {
+        CircuitBuilder builder = new CircuitBuilder(new QuantumComputer("record", 2)).setDeferred(true);
+        builder.createBellPair(0, 1);
+        return builder.getPendingOperations();
+    }
+
+    @Test
+    public void testNoiselessBellPair() {
+        TrajectorySimulator simulator = new TrajectorySimulator(2, bellCircuit(), new NoiseModel());
+        TrajectoryResult result = simulator.run(1000, 1L, 0, 1);
+        Map<String, Long> histogram = result.getHistogram();
+        assertEquals(2, histogram.size());
+        assertEquals(1000L, histogram.get("00") + histogram.get("11"));
+    }
+
+    @Test
+    public void testBitFlipMatchesExpectedError() {
+        // X on a fresh qubit with a bit flip probability of 0.2 after it: <Z> = -(1 - 2 * 0.2)
+        List<CircuitOperation> circuit = List.of(CircuitOperation.gate(CircuitOperation.Kind.PAULI_X, 0));
+        ToDoubleFunction<QuantumComputer> z = qc -> {
+            Complex[] state = qc.getState();
+            return state[0].magnitudeSquared() - state[1].magnitudeSquared();
+        };
+        TrajectorySimulator simulator = new TrajectorySimulator(1, circuit, new NoiseModel().setBitFlip(0.2));
+        TrajectoryResult result = simulator.run(4000, 7L, new int[] {0}, List.of(z));
+        double[] interval = result.getConfidenceInterval(0);
+        assertTrue(interval[0] < -0.6 && -0.6 < interval[1]);
+        assertEquals(4000, result.getTrajectories());
+    }
+
+    @Test
+    public void testSameSeedSameResultForAnyPool() {
+        NoiseModel noise = new NoiseModel().setDepolarizing(0.05).setPhaseFlip(CircuitOperation.Kind.CNOT, 0.1);
+        TrajectorySimulator simulator = new TrajectorySimulator(2, bellCircuit(), noise);
+        TrajectoryResult serial = simulator.setForkJoinPool(new ForkJoinPool(1)).run(500, 3L, 0, 1);
+        TrajectoryResult parallel = simulator.setForkJoinPool(new ForkJoinPool(4)).run(500, 3L, 0, 1);
+        assertEquals(serial.getHistogram(), parallel.getHistogram());
+    }
+}